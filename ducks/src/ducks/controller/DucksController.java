@@ -22,6 +22,8 @@ import jargs.gnu.CmdLineParser;
 import java.io.File;
 import java.io.IOException;
 import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
@@ -29,6 +31,7 @@ import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
 import ducks.controller.output.StorageManager;
+import ducks.controller.server.Server;
 import ducks.controller.server.ServerManager;
 import ducks.controller.simulation.Simulation;
 import ducks.controller.simulation.SimulationInstance;
@@ -56,6 +59,9 @@ public class DucksController
     private ControllerProxy         proxy;
     public static final String      CGF_PROXY_ENABLED = "ducks.config.monitor.enabled";
 
+    // interval of study state reports in milliseconds
+    private static final long       STATUS_INTERVAL   = 10000;
+
     // list of available servers
     private ServerManager           servers;
     // current result manager
@@ -63,6 +69,8 @@ public class DucksController
 
     // simulation studies
     private Vector<SimulationStudy> studies;
+    // simulation studies not processed yet, in order
+    private LinkedBlockingQueue<SimulationStudy> queuedStudies;
     // currently simulation study beeing processed
     private SimulationStudy         currentStudy      = null;
 
@@ -71,6 +79,7 @@ public class DucksController
         storage = new StorageManager();
 
         studies = new Vector<SimulationStudy>();
+        queuedStudies = new LinkedBlockingQueue<SimulationStudy>();
     }
 
     /**
@@ -91,6 +100,17 @@ public class DucksController
         return studies;
     }
 
+    /**
+     * Add a simulation study, to be processed after the studies added before
+     * 
+     * @param study
+     *            simulation study
+     */
+    public void addSimulationStudy(SimulationStudy study) {
+        studies.add(study);
+        queuedStudies.add(study);
+    }
+
     /**
      * Get first unscheduled simulation
      * 
@@ -106,21 +126,66 @@ public class DucksController
     }
 
     /**
-     * Find a simulation study that has not been processed yet
+     * Get first unscheduled simulation, waiting until one is available
      * 
-     * @return Unprocessed simulation study object, or null if none is available
+     * @param server
+     *            the server asking for work
+     * @return Simulation first unscheduled simulation, or null if the server
+     *         has been disabled meanwhile
+     * @throws InterruptedException
+     *             if the server thread was interrupted while waiting
      */
-    private SimulationStudy getNextSimulationStudy() {
-        for (int i = 0; i < studies.size(); i++) {
-            SimulationStudy sst = (SimulationStudy) studies.get(i);
-            if (!sst.hasFinished() && sst != currentStudy) {
-                return sst;
+    public synchronized SimulationInstance takeFreeSimulation(Server server) throws InterruptedException {
+        while (server.isEnabled()) {
+            SimulationInstance simu = getFreeSimulation();
+            if (simu != null) {
+                return simu;
             }
+            log.info("Server " + server.toString() + " is waiting for work...");
+            wait();
         }
-        // no unprocessed study found
         return null;
     }
 
+    /**
+     * Wake up servers waiting for work, after new simulations have become
+     * available (or a server has been disabled)
+     */
+    public synchronized void simulationsChanged() {
+        notifyAll();
+    }
+
+    /**
+     * Set the simulation study to be processed
+     * 
+     * @param study
+     *            simulation study, or null
+     */
+    private synchronized void setCurrentStudy(SimulationStudy study) {
+        currentStudy = study;
+        notifyAll();
+    }
+
+    /**
+     * Take the next simulation study that has not been processed yet
+     * 
+     * @param timeout
+     *            Maximum time to wait for a study in milliseconds (0 = do not
+     *            wait)
+     * @return Unprocessed simulation study object, or null if none is available
+     */
+    private SimulationStudy takeNextSimulationStudy(long timeout) {
+        SimulationStudy study = null;
+        try {
+            do {
+                study = queuedStudies.poll(timeout, TimeUnit.MILLISECONDS);
+            } while (study != null && study.hasFinished());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return study;
+    }
+
     /**
      * Main method
      * 
@@ -246,7 +311,7 @@ public class DucksController
         try {
             SimulationStudy simStudy = new SimulationStudy();
             simStudy.configure(config);
-            dc.studies.add(simStudy);
+            dc.addSimulationStudy(simStudy);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -256,15 +321,6 @@ public class DucksController
         // Run simulations
         // ............................................................
 
-        // set simulation study
-        if (dc.studies.size() > 0) {
-            dc.currentStudy = (SimulationStudy) dc.studies.get(0);
-
-            if ((!nosave) && dc.storage.backgroundSavingEnabled()) {
-                dc.storage.startBackgroundSaving(dc.currentStudy);
-            }
-        }
-
         // enable the simulation server threads
         dc.servers.enable();
 
@@ -275,74 +331,83 @@ public class DucksController
         }
 
         // main loop
+        boolean persist = parser.getOptionValue(optPersist) != null;
         while (true) {
 
-            // Sleep for 10 seconds
+            if (dc.currentStudy == null) {
+                // do we have unfinished studies in the queue?
+                SimulationStudy study = dc.takeNextSimulationStudy(persist ? STATUS_INTERVAL : 0);
+                if (study != null) {
+                    // yeah, we have got one! -> set to current study and
+                    // continue! (saving first, so that no finished
+                    // simulation is missed)
+                    if ((!nosave) && dc.storage.backgroundSavingEnabled()) {
+                        dc.storage.startBackgroundSaving(study);
+                    }
+                    dc.setCurrentStudy(study);
+                } else if (!persist) {
+                    // no study any more, and we do not want to persist, so
+                    // exit loop here
+                    break;
+                } else {
+                    // well, we shall persist, so wait ...
+                    log.info("Waiting for new simulation studies ...");
+                    continue;
+                }
+            }
+
+            // wait for the current study to finish
+            boolean finished = false;
             try {
-                Thread.sleep(10000);
-            } catch (Exception e) {
+                finished = dc.currentStudy.waitFinished(STATUS_INTERVAL);
+            } catch (InterruptedException e) {
+                break;
             }
 
-            if (dc.currentStudy != null) {
-                // we are currently processing a study
-                if (dc.currentStudy.hasFinished()) {
-                    // current study has finished
+            if (finished) {
+                // current study has finished
 
-                    if ((!nosave) && dc.storage.backgroundSavingEnabled()) {
-                        dc.storage.stopBackgroundSaving();
-                    }
+                if ((!nosave) && dc.storage.backgroundSavingEnabled()) {
+                    dc.storage.stopBackgroundSaving();
+                }
 
-                    // Save data to db (if no already done in while running)
-                    if ((!nosave) && (!dc.storage.backgroundSavingEnabled())) {
+                // Save data to db (if no already done in while running)
+                if ((!nosave) && (!dc.storage.backgroundSavingEnabled())) {
+                    try {
+                        dc.storage.saveAll(dc.currentStudy);
+                    } catch (Exception e) {
+                        log.error("Failure with simulation study " + dc.currentStudy.getIdentifier());
+                        log.error("  Saving results to database failed: " + e.getMessage());
+                        log.error("  Waiting for user intervention ...");
+                        e.printStackTrace();
+                        // wait for user intervention ... (e.g. reparing the
+                        // database)
                         try {
-                            dc.storage.saveAll(dc.currentStudy);
-                        } catch (Exception e) {
-                            log.error("Failure with simulation study " + dc.currentStudy.getIdentifier());
-                            log.error("  Saving results to database failed: " + e.getMessage());
-                            log.error("  Waiting for user intervention ...");
-                            e.printStackTrace();
-                            // wait for user intervention ... (e.g. reparing the
-                            // database)
-                            continue;
+                            Thread.sleep(STATUS_INTERVAL);
+                        } catch (InterruptedException ie) {
                         }
+                        continue;
                     }
-
-                    // set currentStudy to null
-                    // -> will select next available in next iteration of the
-                    // main loop
-                    // or quit, or idle
-                    dc.currentStudy = null;
-                } else {
-                    // current study still processing
-                    // -> give some stats
-                    int[] states = dc.currentStudy.getStateCount();
-                    String st = "State of study " + dc.currentStudy.getIdentifier() + ": ";
-                    st += "Pending: " + states[Simulation.PENDING] + ", ";
-                    st += "Running: " + states[Simulation.RUNNING] + ", ";
-                    st += "Finished: " + states[Simulation.FINISHED] + ", ";
-                    st += "Flushed: " + states[Simulation.FLUSHED];
-                    log.info(st);
                 }
 
-            } else {
-                // do we have unfinished studies in the queue?
-                SimulationStudy study = dc.getNextSimulationStudy();
-                if (study != null) {
-                    // yeah, we have got one! -> set to current study and
-                    // continue!
-                    dc.currentStudy = study;
-                } else {
-                    // not study any more? So, idle or exit
-                    if (parser.getOptionValue(optPersist) == null) {
-                        // ok, we do not want to persist, so exit loop here
-                        break;
-                    } else {
-                        // well, we shall persist, so wait ...
-                        log.info("Waiting for new simulation studies ...");
-                    }
-                }
+                // set currentStudy to null
+                // -> will select next available in next iteration of the
+                // main loop
+                // or quit, or idle
+                dc.setCurrentStudy(null);
+                continue;
             }
 
+            // current study still processing
+            // -> give some stats
+            int[] states = dc.currentStudy.getStateCount();
+            String st = "State of study " + dc.currentStudy.getIdentifier() + ": ";
+            st += "Pending: " + states[Simulation.PENDING] + ", ";
+            st += "Running: " + states[Simulation.RUNNING] + ", ";
+            st += "Finished: " + states[Simulation.FINISHED] + ", ";
+            st += "Flushed: " + states[Simulation.FLUSHED];
+            log.info(st);
+
             // Check if there are still processing servers available
             if (dc.currentStudy != null && dc.servers.numberOfEnabledServers() == 0) {
                 log.warn("Number of enabled servers is zero, though simulations are pending!");
@@ -0,0 +1,455 @@
+/*
+ * Ulm University DUCKS project
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.controller.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.log4j.Logger;
+
+import ducks.controller.simulation.Simulation;
+import ducks.controller.simulation.SimulationInstance;
+import ducks.controller.simulation.SimulationStudy;
+import ducks.misc.DucksException;
+import ext.util.ExtendedProperties;
+
+/**
+ * Storage provider that appends all results of a simulation study to one
+ * columnar file, which can be queried efficiently with ResultTable.
+ *
+ * Every simulation instance is a row. Besides the configuration and instance
+ * numbers, there is one column per (filtered) simulation parameter, whose
+ * values are dictionary-encoded, and one column per result key, which holds
+ * doubles as long as all values of the key are numeric and dictionary-encoded
+ * strings otherwise. A double column is widened to a string column by
+ * defining it again when the first non-numeric value occurs. Numeric values of
+ * string columns are stored in the canonical form of Double.toString, so that
+ * e.g. "1" and "1.0" are the same value before and after widening. A row
+ * without a value of a double column holds a NaN with its own bit pattern,
+ * which is kept apart from a NaN result.
+ *
+ * The file is a sequence of records: column definitions and dictionary
+ * entries as they first occur, and blocks of rows (one per save), which hold
+ * the values of each column present in the block contiguously.
+ *
+ * @see ResultTable
+ */
+public class ColumnStore implements StorageProvider
+{
+
+    // log4j Logger
+    private static Logger      log              = Logger.getLogger(ColumnStore.class.getName());
+
+    // Configuration options relative to namespace
+    public static final String CFG_DIRECTORY    = "dir";
+
+    // File format
+    static final int           MAGIC            = 0x44435331;
+    static final String        SUFFIX           = ".dcs";
+
+    static final byte          RECORD_COLUMN    = 1;
+    static final byte          RECORD_DICT      = 2;
+    static final byte          RECORD_BLOCK     = 3;
+
+    static final byte          KIND_INT         = 0;
+    static final byte          KIND_CODE        = 1;
+    static final byte          KIND_DOUBLE      = 2;
+
+    // bits of the double of rows without value (a NaN other than Double.NaN)
+    static final long          MISSING_BITS     = 0x7ff8000000000001L;
+    static final double        MISSING          = Double.longBitsToDouble(MISSING_BITS);
+
+    // Columns identifying the instance
+    public static final String COLUMN_CONFIG    = "ducks.config.id";
+    public static final String COLUMN_INSTANCE  = "ducks.config.instance";
+
+    private String             directory;
+
+    // open study files
+    private HashMap<SimulationStudy, Writer> files = new HashMap<SimulationStudy, Writer>();
+
+    // Initialization, opening & closing
+    // ..........................................
+
+    public void configure(ExtendedProperties config) throws DucksException {
+        directory = config.getStringProperty(CFG_DIRECTORY, ".");
+        log.debug("Saving to directory " + directory);
+    }
+
+    public void enable() throws DucksException {
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new DucksException("Result directory could not be created: " + directory);
+        }
+    }
+
+    public synchronized void disable() throws DucksException {
+        DucksException failure = null;
+        for (Writer f : files.values()) {
+            try {
+                f.close();
+            } catch (DucksException e) {
+                failure = e;
+            }
+        }
+        files.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Saving of data
+    // .............................................................
+
+    /**
+     * Create the result file of the study, named after the current time and
+     * the study identifier
+     */
+    public synchronized void saveSimulationStudy(SimulationStudy study) throws DucksException {
+        if (files.containsKey(study)) {
+            return;
+        }
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-study" + study.getIdentifier()
+                + SUFFIX;
+        File file = new File(directory, name);
+        files.put(study, new Writer(file));
+        log.info("Saving results of study " + study.getIdentifier() + " to " + file);
+    }
+
+    public void saveSimulation(Simulation simu) throws DucksException {
+        saveSimulations(Collections.singletonList(simu));
+    }
+
+    public synchronized void saveSimulations(List<Simulation> simus) throws DucksException {
+        HashSet<Writer> written = new HashSet<Writer>();
+        for (Simulation simu : simus) {
+            Writer f = files.get(simu.getSimStudy());
+            if (f == null) {
+                throw new DucksException("Simulation study " + simu.getSimStudy().getIdentifier() + " not saved yet");
+            }
+            written.add(f);
+
+            // what do we need to save
+            ExtendedProperties config = simu.getSimuConfig();
+            String excParams = config.getProperty(StorageManager.CFG_EXCLUDE_PARAMS);
+            String incParams = config.getProperty(StorageManager.CFG_INCLUDE_PARAMS);
+            String excResults = config.getProperty(StorageManager.CFG_EXCLUDE_RESULTS);
+            String incResults = config.getProperty(StorageManager.CFG_INCLUDE_RESULTS);
+            config = config.getFilteredSet(StorageProvider.CFG_EXCLUDE_PARAMS);
+            // NOTE: incParams and excParams may be null intentionally!!
+            ExtendedProperties fields = config.getFilteredSet(incParams, excParams);
+
+            Vector<SimulationInstance> instances = simu.getFinishedInstances();
+            for (int i = 0; i < instances.size(); i++) {
+                ExtendedProperties results = instances.get(i).getResults();
+                if (results == null) {
+                    continue;
+                }
+                results = results.getFilteredSet(incResults, excResults);
+                f.addRow(simu.getIdentifier(), i, fields, results);
+            }
+        }
+        for (Writer f : written) {
+            f.flush();
+        }
+    }
+
+    // Result file
+    // ................................................................
+
+    /**
+     * Appends rows to a result file. Rows are collected by column and written
+     * as one block on flush, preceded by the definitions of new columns and
+     * dictionary entries.
+     */
+    static class Writer
+    {
+        private FileChannel                         channel;
+
+        private HashMap<String, Integer>            columnIds   = new HashMap<String, Integer>();
+        private ArrayList<Byte>                     columnKinds = new ArrayList<Byte>();
+        private ArrayList<HashMap<String, Integer>> dicts       = new ArrayList<HashMap<String, Integer>>();
+
+        // records pending for the next flush
+        private ByteArrayOutputStream               pending     = new ByteArrayOutputStream();
+        private DataOutputStream                    out         = new DataOutputStream(pending);
+
+        // rows of the current block; values by column id, int[] for codes
+        // and ints, double[] for doubles, null if column not used
+        private int                                 rows;
+        private ArrayList<Object>                   columns     = new ArrayList<Object>();
+
+        public Writer(File file) throws DucksException {
+            try {
+                channel = new RandomAccessFile(file, "rw").getChannel();
+                channel.truncate(0);
+                out.writeInt(MAGIC);
+                column(COLUMN_CONFIG, KIND_INT);
+                column(COLUMN_INSTANCE, KIND_INT);
+            } catch (IOException e) {
+                throw new DucksException("Result file could not be created: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Add row; a result is stored as double, as long as all values of the
+         * result are numeric, and dictionary-encoded otherwise
+         */
+        public void addRow(int config, int instance, ExtendedProperties params, ExtendedProperties results)
+                throws DucksException {
+            try {
+                set(0, config);
+                set(1, instance);
+                Enumeration e = params.keys();
+                while (e.hasMoreElements()) {
+                    String name = (String) e.nextElement();
+                    int col = column(name, KIND_CODE);
+                    set(col, code(col, value(params, name)));
+                }
+                e = results.keys();
+                while (e.hasMoreElements()) {
+                    String name = (String) e.nextElement();
+                    String value = value(results, name);
+                    double d = parse(value);
+                    boolean numeric = !Double.isNaN(d) || "NaN".equals(value);
+                    int col = column(name, numeric ? KIND_DOUBLE : KIND_CODE);
+                    if (kind(col) == KIND_DOUBLE && !numeric) {
+                        widen(col, name);
+                    }
+                    if (kind(col) == KIND_DOUBLE) {
+                        set(col, d);
+                    } else {
+                        set(col, code(col, numeric ? Double.toString(d) : value));
+                    }
+                }
+            } catch (IOException e) {
+                throw new DucksException("Result columns could not be defined: " + e.getMessage());
+            }
+            rows++;
+        }
+
+        /**
+         * Append current block and pending definitions to the file
+         */
+        public void flush() throws DucksException {
+            try {
+                writeBlock();
+                out.flush();
+                ByteBuffer buf = ByteBuffer.wrap(pending.toByteArray());
+                while (buf.hasRemaining()) {
+                    channel.write(buf, channel.size());
+                }
+                pending.reset();
+            } catch (IOException e) {
+                throw new DucksException("Results could not be saved to result file: " + e.getMessage());
+            }
+        }
+
+        public void close() throws DucksException {
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new DucksException("Closing result file failed: " + e.getMessage());
+            }
+        }
+
+        // Columns & dictionaries
+
+        /**
+         * Return column id, defining the column if it is new
+         */
+        private int column(String name, byte kind) throws IOException {
+            Integer id = columnIds.get(name);
+            if (id != null) {
+                return id.intValue();
+            }
+            int col = columnKinds.size();
+            columnIds.put(name, new Integer(col));
+            columnKinds.add(new Byte(kind));
+            dicts.add(kind == KIND_CODE ? new HashMap<String, Integer>() : null);
+            ByteArrayOutputStream rec = new ByteArrayOutputStream();
+            DataOutputStream r = new DataOutputStream(rec);
+            r.writeInt(col);
+            r.writeByte(kind);
+            r.writeUTF(name);
+            record(RECORD_COLUMN, rec.toByteArray());
+            return col;
+        }
+
+        private byte kind(int col) {
+            return columnKinds.get(col).byteValue();
+        }
+
+        /**
+         * Turn double column into dictionary-encoded column, by defining it
+         * again; values of the current block are converted here, those of
+         * earlier blocks by ResultTable
+         */
+        private void widen(int col, String name) throws IOException {
+            columnKinds.set(col, new Byte(KIND_CODE));
+            dicts.set(col, new HashMap<String, Integer>());
+            ByteArrayOutputStream rec = new ByteArrayOutputStream();
+            DataOutputStream r = new DataOutputStream(rec);
+            r.writeInt(col);
+            r.writeByte(KIND_CODE);
+            r.writeUTF(name);
+            record(RECORD_COLUMN, rec.toByteArray());
+            if (col < columns.size() && columns.get(col) != null) {
+                double[] d = (double[]) columns.get(col);
+                int[] c = new int[d.length];
+                Arrays.fill(c, -1);
+                for (int row = 0; row < rows; row++) {
+                    if (Double.doubleToRawLongBits(d[row]) != MISSING_BITS) {
+                        c[row] = code(col, Double.toString(d[row]));
+                    }
+                }
+                columns.set(col, c);
+            }
+        }
+
+        /**
+         * Return dictionary code of value, adding it if it is new
+         */
+        private int code(int col, String value) throws IOException {
+            HashMap<String, Integer> dict = dicts.get(col);
+            Integer code = dict.get(value);
+            if (code != null) {
+                return code.intValue();
+            }
+            int c = dict.size();
+            dict.put(value, new Integer(c));
+            ByteArrayOutputStream rec = new ByteArrayOutputStream();
+            DataOutputStream r = new DataOutputStream(rec);
+            r.writeInt(col);
+            r.writeInt(c);
+            r.writeUTF(value);
+            record(RECORD_DICT, rec.toByteArray());
+            return c;
+        }
+
+        private void record(byte type, byte[] payload) throws IOException {
+            out.writeByte(type);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+
+        private static String value(ExtendedProperties props, String name) {
+            String value = props.getProperty(name);
+            return value != null ? value : String.valueOf(props.get(name));
+        }
+
+        private static double parse(String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        // Block values
+
+        /**
+         * Return value array of column with room for the current row; rows
+         * without value are -1 (codes) or MISSING (doubles)
+         */
+        private Object values(int col) {
+            while (columns.size() <= col) {
+                columns.add(null);
+            }
+            Object values = columns.get(col);
+            int length = values == null ? 0 : values instanceof int[] ? ((int[]) values).length
+                    : ((double[]) values).length;
+            if (length > rows) {
+                return values;
+            }
+            int size = Math.max(16, rows * 2);
+            if (kind(col) == KIND_DOUBLE) {
+                double[] d = new double[size];
+                Arrays.fill(d, MISSING);
+                if (values != null) {
+                    System.arraycopy(values, 0, d, 0, rows);
+                }
+                values = d;
+            } else {
+                int[] c = new int[size];
+                Arrays.fill(c, -1);
+                if (values != null) {
+                    System.arraycopy(values, 0, c, 0, rows);
+                }
+                values = c;
+            }
+            columns.set(col, values);
+            return values;
+        }
+
+        private void set(int col, int value) {
+            ((int[]) values(col))[rows] = value;
+        }
+
+        private void set(int col, double value) {
+            ((double[]) values(col))[rows] = value;
+        }
+
+        private void writeBlock() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            int ncols = 0;
+            int size = 8;
+            for (int col = 0; col < columns.size(); col++) {
+                if (columns.get(col) != null) {
+                    ncols++;
+                    size += 4 + rows * (kind(col) == KIND_DOUBLE ? 8 : 4);
+                }
+            }
+            ByteBuffer buf = ByteBuffer.allocate(size);
+            buf.putInt(rows);
+            buf.putInt(ncols);
+            for (int col = 0; col < columns.size(); col++) {
+                Object values = columns.get(col);
+                if (values == null) {
+                    continue;
+                }
+                buf.putInt(col);
+                if (values instanceof double[]) {
+                    buf.asDoubleBuffer().put((double[]) values, 0, rows);
+                    buf.position(buf.position() + rows * 8);
+                } else {
+                    buf.asIntBuffer().put((int[]) values, 0, rows);
+                    buf.position(buf.position() + rows * 4);
+                }
+            }
+            record(RECORD_BLOCK, buf.array());
+            rows = 0;
+            columns.clear();
+        }
+    }
+
+}
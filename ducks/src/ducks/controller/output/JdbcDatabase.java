@@ -0,0 +1,493 @@
+/*
+ * Ulm University DUCKS project
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.controller.output;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.log4j.Logger;
+
+import ducks.controller.simulation.Simulation;
+import ducks.controller.simulation.SimulationInstance;
+import ducks.controller.simulation.SimulationStudy;
+import ducks.misc.DucksException;
+import ext.util.ExtendedProperties;
+
+/**
+ * Storage provider for any JDBC database, e.g. an embedded one. Each study,
+ * simulation configuration and simulation instance becomes a row of its
+ * table, with one (text) column per parameter or result; missing tables and
+ * columns are added on the fly. Simulations are saved with prepared statement
+ * batches, within one transaction per call.
+ *
+ * Example configuration for an embedded H2 database:
+ *
+ * <pre>
+ * ducks.stats.db.class=ducks.controller.output.JdbcDatabase
+ * ducks.stats.db.url=jdbc:h2:./results
+ * </pre>
+ */
+public class JdbcDatabase implements StorageProvider
+{
+
+    // log4j Logger
+    private static Logger                    log                = Logger.getLogger(JdbcDatabase.class.getName());
+
+    // Configuration options relative to namespace
+    public static final String               URL                = "url";
+    public static final String               DRIVER             = "driver";
+    public static final String               AUTH_USERNAME      = "username";
+    public static final String               AUTH_PASSWORD      = "password";
+    // number of rows sent to the database at once
+    public static final String               BATCH_ROWS         = "batch.rows";
+
+    protected String                         dbUrl;
+    protected String                         dbDriver;
+    protected String                         dbUsername;
+    protected String                         dbPassword;
+    private int                              batchRows          = 1000;
+
+    private Connection                       dbConnection;
+    // quote for table and column names (which contain dots)
+    private String                           quote;
+
+    // Structure of database
+    // - table for simulation study (i.e. 1 entry per config file)
+    // - table for simulation configurations (including all input parameters)
+    // (1:n)
+    // - table for simulation instances (included all output parameters) (1:n)
+    // (should contain both foreign keys (of simu study and simu config)
+
+    public static final String               DB_SIMU_STUD       = "simu_stud";
+    public static final String               DB_SIMU_CONF       = "simu_conf";
+    public static final String               DB_SIMU_INST       = "simu_inst";
+
+    public static final String               PRIMARY_KEY        = "ID";
+    public static final String               STUDY_FOREIGN_KEY  = "StudyID";
+    public static final String               CONFIG_FOREIGN_KEY = "ConfigID";
+
+    // Relation between objects and IDs (since we only have IDs in the database)
+    private HashMap<Object, Long>            simuIds            = new HashMap<Object, Long>();
+
+    // Columns of the tables known to exist, so that the database structure
+    // is only read once
+    private HashMap<String, HashSet<String>> tableColumns       = new HashMap<String, HashSet<String>>();
+
+    // Initialization, opening & closing
+    // ..........................................
+
+    public void configure(ExtendedProperties config) throws DucksException {
+        dbUrl = config.getProperty(URL);
+        if (dbUrl == null) {
+            throw new DucksException("Missing result database url in config file");
+        }
+        dbUrl = dbUrl.trim();
+        dbDriver = config.getProperty(DRIVER);
+        dbUsername = config.getStringProperty(AUTH_USERNAME, "").trim();
+        dbPassword = config.getStringProperty(AUTH_PASSWORD, "").trim();
+        configureBatching(config);
+    }
+
+    /**
+     * Read batching options
+     *
+     * @param config
+     *            Provider configuration
+     */
+    protected void configureBatching(ExtendedProperties config) {
+        batchRows = Math.max(1, config.getIntProperty(BATCH_ROWS, batchRows));
+    }
+
+    public void enable() throws DucksException {
+
+        try {
+            if (dbDriver != null) {
+                Class.forName(dbDriver.trim()).newInstance();
+            }
+            dbConnection = DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
+            dbConnection.setAutoCommit(false);
+            quote = dbConnection.getMetaData().getIdentifierQuoteString().trim();
+        } catch (Exception e) {
+            dbConnection = null;
+            throw new DucksException("Could not connect to database: " + e.getMessage());
+        }
+    }
+
+    public void disable() throws DucksException {
+
+        try {
+            if (!dbConnection.getAutoCommit()) {
+                // can not commit, if auto commit is true
+                dbConnection.commit();
+            }
+            dbConnection.close();
+            dbConnection = null;
+        } catch (SQLException e) {
+            throw new DucksException("DB disconnect failed: " + e.getMessage());
+        }
+    }
+
+    // Database specifics
+    // .........................................................
+
+    /**
+     * Column definition of auto-generated primary keys
+     */
+    protected String getPrimaryKeyType() {
+        return "BIGINT NOT NULL AUTO_INCREMENT";
+    }
+
+    /**
+     * Column definition of foreign keys
+     */
+    protected String getForeignKeyType() {
+        return "BIGINT NOT NULL";
+    }
+
+    /**
+     * Options appended to table definitions
+     */
+    protected String getTableOptions() {
+        return "";
+    }
+
+    // Saving of data
+    // .............................................................
+
+    public synchronized void saveSimulationStudy(SimulationStudy study) throws DucksException {
+
+        // if the object has been saved yet:
+        Long id = simuIds.get(study);
+        if (id != null)
+            return;
+
+        // check database connection
+        if (dbConnection == null)
+            throw new DucksException("No connection to db");
+
+        try {
+            // create structure, if required
+            ExtendedProperties fields = new ExtendedProperties();
+            fields.put("Description", "TEXT");
+            fields.put("StartDate", "DATE");
+            checkDatabaseStructure(DB_SIMU_STUD, null, fields, true);
+
+            PreparedStatement ps = dbConnection.prepareStatement("INSERT INTO " + quote(DB_SIMU_STUD) + " ("
+                    + quote("Description") + "," + quote("StartDate") + ") VALUES (?,?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, study.getDescription());
+            ps.setDate(2, new java.sql.Date(System.currentTimeMillis()));
+            long studyID = insert(ps);
+            ps.close();
+            dbConnection.commit();
+
+            simuIds.put(study, new Long(studyID));
+            log.debug("Successfully saved simulation study under ID=" + studyID);
+        } catch (SQLException e) {
+            rollback();
+            throw new DucksException("Simulation study could not be saved to database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Save simulation configuration, including the results of all contained
+     * instances.
+     *
+     * @param simu
+     *            The simulation to save
+     */
+    public void saveSimulation(Simulation simu) throws DucksException {
+        saveSimulations(Collections.singletonList(simu));
+    }
+
+    /**
+     * Save simulation configurations, including the results of all contained
+     * instances, in one transaction. All columns are created first, since
+     * changing the structure ends transactions in most databases.
+     *
+     * @param simus
+     *            The simulations to save
+     */
+    public synchronized void saveSimulations(List<Simulation> simus) throws DucksException {
+
+        // check database connection
+        if (dbConnection == null)
+            throw new DucksException("No connection to db");
+
+        // what do we need to save
+        ArrayList<ExtendedProperties> configs = new ArrayList<ExtendedProperties>();
+        ArrayList<List<ExtendedProperties>> results = new ArrayList<List<ExtendedProperties>>();
+        LinkedHashSet<String> configColumns = new LinkedHashSet<String>();
+        LinkedHashSet<String> resultColumns = new LinkedHashSet<String>();
+        for (Simulation simu : simus) {
+            Long studyID = simuIds.get(simu.getSimStudy());
+            if (studyID == null) {
+                log.error("Simulation study ID was not found when saving simulation config. Skipping saving");
+                throw new DucksException("Simulation study ID not found when saving simu config!");
+            }
+
+            ExtendedProperties config = simu.getSimuConfig();
+            String excParams = config.getProperty(StorageManager.CFG_EXCLUDE_PARAMS);
+            String incParams = config.getProperty(StorageManager.CFG_INCLUDE_PARAMS);
+            // NOTE: incParams and excParams may be null intentionally!!
+            ExtendedProperties fields = config.getFilteredSet(incParams, excParams);
+            addNames(configColumns, fields);
+            fields.put(STUDY_FOREIGN_KEY, studyID.toString());
+            configs.add(fields);
+
+            String excResults = config.getProperty(StorageManager.CFG_EXCLUDE_RESULTS);
+            String incResults = config.getProperty(StorageManager.CFG_INCLUDE_RESULTS);
+            ArrayList<ExtendedProperties> simuResults = new ArrayList<ExtendedProperties>();
+            Vector<SimulationInstance> instances = simu.getFinishedInstances();
+            for (int i = 0; i < instances.size(); i++) {
+                SimulationInstance si = instances.get(i);
+                ExtendedProperties r = si.getResults();
+                if (r == null) {
+                    log.warn("Simulation instance " + si.getIdentifier() + " did not provide results!");
+                    continue;
+                }
+                r = r.getFilteredSet(incResults, excResults);
+                addNames(resultColumns, r);
+                r.put(STUDY_FOREIGN_KEY, studyID.toString());
+                simuResults.add(r);
+            }
+            results.add(simuResults);
+        }
+
+        try {
+            // check structure
+            checkDatabaseStructure(DB_SIMU_CONF, new String[] { STUDY_FOREIGN_KEY }, toFields(configColumns), false);
+            checkDatabaseStructure(DB_SIMU_INST, new String[] { STUDY_FOREIGN_KEY, CONFIG_FOREIGN_KEY },
+                    toFields(resultColumns), false);
+
+            // save param and result values
+            configColumns.add(STUDY_FOREIGN_KEY);
+            resultColumns.add(STUDY_FOREIGN_KEY);
+            resultColumns.add(CONFIG_FOREIGN_KEY);
+            String[] confCols = configColumns.toArray(new String[configColumns.size()]);
+            String[] instCols = resultColumns.toArray(new String[resultColumns.size()]);
+            PreparedStatement confInsert = dbConnection.prepareStatement(insertQuery(DB_SIMU_CONF, confCols),
+                    Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement instInsert = dbConnection.prepareStatement(insertQuery(DB_SIMU_INST, instCols));
+            long[] simuIDs = new long[simus.size()];
+            int rows = 0;
+            for (int i = 0; i < simus.size(); i++) {
+                setValues(confInsert, confCols, configs.get(i));
+                simuIDs[i] = insert(confInsert);
+                String simuID = Long.toString(simuIDs[i]);
+                for (ExtendedProperties r : results.get(i)) {
+                    r.put(CONFIG_FOREIGN_KEY, simuID);
+                    setValues(instInsert, instCols, r);
+                    instInsert.addBatch();
+                    if (++rows % batchRows == 0) {
+                        instInsert.executeBatch();
+                    }
+                }
+            }
+            if (rows % batchRows != 0) {
+                instInsert.executeBatch();
+            }
+            confInsert.close();
+            instInsert.close();
+            dbConnection.commit();
+
+            for (int i = 0; i < simus.size(); i++) {
+                simuIds.put(simus.get(i), new Long(simuIDs[i]));
+            }
+            log.debug("Successfully saved " + simus.size() + " simulations with " + rows + " instances");
+        } catch (SQLException e) {
+            rollback();
+            throw new DucksException("Simulations could not be saved to DB: " + e.getMessage());
+        }
+    }
+
+    // Helper methods
+    // .............................................................
+
+    private String quote(String name) {
+        return quote + name + quote;
+    }
+
+    private static void addNames(LinkedHashSet<String> names, ExtendedProperties props) {
+        Enumeration e = props.keys();
+        while (e.hasMoreElements()) {
+            names.add((String) e.nextElement());
+        }
+    }
+
+    private static ExtendedProperties toFields(LinkedHashSet<String> names) {
+        ExtendedProperties fields = new ExtendedProperties();
+        for (String name : names) {
+            fields.put(name, "TEXT");
+        }
+        return fields;
+    }
+
+    private String insertQuery(String table, String[] columns) {
+        StringBuffer q = new StringBuffer("INSERT INTO " + quote(table) + " (");
+        for (int i = 0; i < columns.length; i++) {
+            q.append(i == 0 ? "" : ",").append(quote(columns[i]));
+        }
+        q.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            q.append(i == 0 ? "?" : ",?");
+        }
+        q.append(")");
+        return q.toString();
+    }
+
+    private static void setValues(PreparedStatement ps, String[] columns, ExtendedProperties values)
+            throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            String val = values.getProperty(columns[i]);
+            if (val == null) {
+                ps.setNull(i + 1, Types.VARCHAR);
+            } else {
+                ps.setString(i + 1, val);
+            }
+        }
+    }
+
+    /**
+     * Execute insert statement and return the generated key of the new row
+     */
+    private static long insert(PreparedStatement ps) throws SQLException {
+        ps.executeUpdate();
+        ResultSet rs = ps.getGeneratedKeys();
+        rs.next();
+        long id = rs.getLong(1);
+        rs.close();
+        return id;
+    }
+
+    private void rollback() {
+        try {
+            dbConnection.rollback();
+        } catch (SQLException e) {
+            log.warn("Rollback failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Check the table structure of a certain table, and create the table and
+     * missing columns.
+     *
+     * @param table
+     *            The table to check. Will also be created, if necessary, with
+     *            primary key field PRIMARY_KEY
+     * @param foreignKeys
+     *            Names of foreign keys, that will be also created, when the
+     *            table needs to be created
+     * @param fields
+     *            Properties that contain the fields to check. Only the names
+     *            will be taken, unless the <code>propertyValueIsDataType</code>
+     *            indicates to use the value as corresponding data type
+     * @param propertyValueIsDataType
+     *            Use the value of the fields property as datatype, if true
+     * @throws SQLException
+     *             Table or columns could not be read or created
+     */
+    private void checkDatabaseStructure(String table, String[] foreignKeys, ExtendedProperties fields,
+            boolean propertyValueIsDataType) throws SQLException {
+
+        HashSet<String> columns = tableColumns.get(table);
+        if (columns == null) {
+            columns = readTableColumns(table);
+            if (columns == null) {
+                log.info("checkDB: table " + table + " not found");
+                StringBuffer query = new StringBuffer("CREATE TABLE " + quote(table) + " (" + quote(PRIMARY_KEY)
+                        + " " + getPrimaryKeyType() + ", ");
+                if (foreignKeys != null) {
+                    for (int i = 0; i < foreignKeys.length; i++) {
+                        query.append(quote(foreignKeys[i]) + " " + getForeignKeyType() + ", ");
+                    }
+                }
+                query.append("PRIMARY KEY (" + quote(PRIMARY_KEY) + ") )" + getTableOptions());
+                log.debug("Executing: " + query);
+                execute(query.toString());
+                columns = readTableColumns(table);
+            }
+            tableColumns.put(table, columns);
+        }
+
+        // create columns, that were not found
+        Iterator it = fields.keySet().iterator();
+        while (it.hasNext()) {
+            String fieldname = (String) it.next();
+            if (columns.contains(fieldname)) {
+                continue;
+            }
+            String datatype = propertyValueIsDataType ? fields.getProperty(fieldname) : "TEXT";
+            execute("ALTER TABLE " + quote(table) + " ADD COLUMN " + quote(fieldname) + " " + datatype);
+            columns.add(fieldname);
+        }
+    }
+
+    /**
+     * Read the column names of a table
+     *
+     * @return Column names, or null if table does not exist
+     */
+    private HashSet<String> readTableColumns(String table) throws SQLException {
+        DatabaseMetaData dbmd = dbConnection.getMetaData();
+        ResultSet tabs = dbmd.getTables(dbConnection.getCatalog(), null, null, new String[] { "TABLE" });
+        boolean found = false;
+        while (tabs.next()) {
+            if (tabs.getString("TABLE_NAME").equals(table)) {
+                found = true;
+            }
+        }
+        tabs.close();
+        if (!found) {
+            return null;
+        }
+
+        HashSet<String> columns = new HashSet<String>();
+        Statement s = dbConnection.createStatement();
+        ResultSet cols = s.executeQuery("SELECT * FROM " + quote(table) + " WHERE 1=2");
+        ResultSetMetaData rsmd = cols.getMetaData();
+        for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+            columns.add(rsmd.getColumnName(i));
+        }
+        s.close();
+        return columns;
+    }
+
+    private void execute(String query) throws SQLException {
+        Statement s = dbConnection.createStatement();
+        try {
+            s.execute(query);
+            dbConnection.commit();
+        } finally {
+            s.close();
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Ulm University DUCKS project
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.controller.output;
+
+import jargs.gnu.CmdLineParser;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Vector;
+
+import ducks.controller.simulation.Simulation;
+import ducks.controller.simulation.SimulationInstance;
+import ducks.controller.simulation.SimulationStudy;
+import ducks.misc.DucksException;
+import ducks.misc.ResultRecord;
+import ext.util.ExtendedProperties;
+
+/**
+ * Check of the JDBC storage provider: saves a study of synthetic simulation
+ * results in one batch and reads them back, e.g. from an embedded in-memory
+ * H2 database (driver jar on the classpath).
+ *
+ * <pre>
+ * java ducks.controller.output.JdbcDatabaseCheck -u jdbc:h2:mem:check -n 10 -r 3
+ * </pre>
+ *
+ * @see JdbcDatabase
+ */
+public class JdbcDatabaseCheck
+{
+
+    // Parameter that is multiplexed into the simulation configurations
+    private static final String PARAM_NODES = "ducks.scene.nodes";
+    // Single-valued parameter with characters that must be escaped in SQL
+    // (but no comma, which would make it a multi-value)
+    private static final String PARAM_NAME  = "ducks.scene.name";
+    private static final String NAME        = "it's a \"quoted\" name";
+
+    // Result keys
+    private static final String RESULT_RUN  = "ducks.stats.run";
+    private static final String RESULT_SENT = "ducks.stats.msg.sent";
+    private static final String RESULT_RATE = "ducks.stats.msg.rate";
+
+    public static void main(String[] args) {
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option optUrl = parser.addStringOption('u', "url");
+        CmdLineParser.Option optDriver = parser.addStringOption('d', "driver");
+        CmdLineParser.Option optConfigs = parser.addIntegerOption('n', "configs");
+        CmdLineParser.Option optRuns = parser.addIntegerOption('r', "runs");
+        CmdLineParser.Option optBatch = parser.addIntegerOption('b', "batch");
+
+        try {
+            parser.parse(args);
+        } catch (Exception e) {
+            System.out.println("Usage: ");
+            System.out.println("  JdbcDatabaseCheck [-u <jdbc url>] [-d <driver class>] [-n <configs>] [-r <runs>]"
+                    + " [-b <batch rows>]");
+            System.exit(99);
+        }
+        String url = (String) parser.getOptionValue(optUrl);
+        if (url == null) {
+            url = "jdbc:h2:mem:check";
+        }
+        String driver = (String) parser.getOptionValue(optDriver);
+        int configs = intOption(parser, optConfigs, 10);
+        int runs = intOption(parser, optRuns, 3);
+        int batch = intOption(parser, optBatch, 4);
+
+        try {
+            int errors = check(url, driver, configs, runs, batch);
+            if (errors > 0) {
+                System.out.println("FAILED: " + errors + " errors");
+                System.exit(1);
+            }
+            System.out.println("OK: " + configs + " configurations with " + runs + " runs each read back");
+        } catch (Exception e) {
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int intOption(CmdLineParser parser, CmdLineParser.Option opt, int def) {
+        Integer value = (Integer) parser.getOptionValue(opt);
+        return value == null ? def : value.intValue();
+    }
+
+    /**
+     * Save a synthetic study and compare the rows read back with the saved
+     * parameters and results
+     *
+     * @return Number of mismatches found
+     */
+    private static int check(String url, String driver, int configs, int runs, int batch) throws Exception {
+
+        // study with one simulation per number of nodes
+        ExtendedProperties config = new ExtendedProperties();
+        config.setProperty(SimulationStudy.CFG_SIM_RUNS, Integer.toString(runs));
+        config.setProperty(SimulationStudy.CFG_SIM_DESC, "JDBC check");
+        StringBuffer nodes = new StringBuffer();
+        for (int i = 1; i <= configs; i++) {
+            nodes.append(i == 1 ? "" : ",").append(i * 10);
+        }
+        config.setProperty(PARAM_NODES, nodes.toString());
+        config.setProperty(PARAM_NAME, NAME);
+        SimulationStudy study = new SimulationStudy();
+        study.configure(config);
+
+        // every instance delivers its results as record, as the driver does
+        HashMap<String, ExtendedProperties> expected = new HashMap<String, ExtendedProperties>();
+        Vector<Simulation> simus = study.getSimulations();
+        for (Simulation simu : simus) {
+            SimulationInstance si;
+            for (int run = 1; (si = simu.getFreeInstance()) != null; run++) {
+                ExtendedProperties r = results(simu.getSimuConfig().getIntProperty(PARAM_NODES), run);
+                si.setResultRecord(ResultRecord.encode(r));
+                si.parseResults();
+                expected.put(simu.getSimuConfig().getProperty(PARAM_NODES) + "/" + run, r);
+            }
+        }
+
+        ExtendedProperties dbConfig = new ExtendedProperties();
+        dbConfig.setProperty(JdbcDatabase.URL, url);
+        if (driver != null) {
+            dbConfig.setProperty(JdbcDatabase.DRIVER, driver);
+        }
+        dbConfig.setProperty(JdbcDatabase.BATCH_ROWS, Integer.toString(batch));
+        JdbcDatabase db = new JdbcDatabase();
+        db.configure(dbConfig);
+        db.enable();
+        Connection con = null;
+        try {
+            db.saveSimulationStudy(study);
+            db.saveSimulations(simus);
+
+            // read back through a connection of our own, while the provider
+            // still keeps the (in-memory) database open
+            con = DriverManager.getConnection(url, "", "");
+            return compare(con, expected, configs);
+        } finally {
+            if (con != null) {
+                con.close();
+            }
+            db.disable();
+        }
+    }
+
+    private static ExtendedProperties results(int nodes, int run) {
+        ExtendedProperties r = new ExtendedProperties();
+        r.setProperty(RESULT_RUN, Integer.toString(run));
+        r.setProperty(RESULT_SENT, Integer.toString(nodes * 100 + run));
+        r.setProperty(RESULT_RATE, Double.toString(nodes / (double) (run + 1)));
+        return r;
+    }
+
+    private static int compare(Connection con, HashMap<String, ExtendedProperties> expected, int configs)
+            throws SQLException {
+
+        String q = con.getMetaData().getIdentifierQuoteString().trim();
+        int errors = 0;
+        Statement s = con.createStatement();
+
+        ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM " + q + JdbcDatabase.DB_SIMU_CONF + q);
+        rs.next();
+        if (rs.getInt(1) != configs) {
+            System.out.println("expected " + configs + " configurations, found " + rs.getInt(1));
+            errors++;
+        }
+        rs.close();
+
+        rs = s.executeQuery("SELECT c." + q + PARAM_NODES + q + ", c." + q + PARAM_NAME + q + ", i." + q + RESULT_RUN
+                + q + ", i." + q + RESULT_SENT + q + ", i." + q + RESULT_RATE + q + " FROM " + q
+                + JdbcDatabase.DB_SIMU_INST + q + " i JOIN " + q + JdbcDatabase.DB_SIMU_CONF + q + " c ON i." + q
+                + JdbcDatabase.CONFIG_FOREIGN_KEY + q + " = c." + q + JdbcDatabase.PRIMARY_KEY + q);
+        int rows = 0;
+        while (rs.next()) {
+            rows++;
+            String key = rs.getString(1) + "/" + rs.getString(3);
+            ExtendedProperties r = expected.remove(key);
+            if (r == null) {
+                System.out.println("unexpected or duplicate instance " + key);
+                errors++;
+                continue;
+            }
+            if (!NAME.equals(rs.getString(2))) {
+                System.out.println("instance " + key + ": parameter " + PARAM_NAME + "=" + rs.getString(2));
+                errors++;
+            }
+            if (!r.getProperty(RESULT_SENT).equals(rs.getString(4))) {
+                System.out.println("instance " + key + ": " + RESULT_SENT + "=" + rs.getString(4) + ", expected "
+                        + r.getProperty(RESULT_SENT));
+                errors++;
+            }
+            if (!r.getProperty(RESULT_RATE).equals(rs.getString(5))) {
+                System.out.println("instance " + key + ": " + RESULT_RATE + "=" + rs.getString(5) + ", expected "
+                        + r.getProperty(RESULT_RATE));
+                errors++;
+            }
+        }
+        rs.close();
+        s.close();
+
+        for (String key : expected.keySet()) {
+            System.out.println("instance " + key + " not saved");
+            errors++;
+        }
+        System.out.println(rows + " instance rows read");
+        return errors;
+    }
+
+}
@@ -20,6 +20,7 @@ package ducks.controller.output;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.Date;
+import java.util.List;
 import java.util.Vector;
 
 import org.apache.log4j.Logger;
@@ -135,6 +136,15 @@ public class LogFile implements StorageProvider
         fileOutput.flush();
     }
 
+    /**
+     * Save simulations to the file.
+     */
+    public void saveSimulations(List<Simulation> simus) throws DucksException {
+        for (Simulation simu : simus) {
+            saveSimulation(simu);
+        }
+    }
+
     /**
      * Save study information to file
      */
@@ -0,0 +1,726 @@
+/*
+ * Ulm University DUCKS project
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.controller.output;
+
+import jargs.gnu.CmdLineParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import ducks.misc.DucksException;
+import ext.util.ExtendedProperties;
+
+/**
+ * Read-only view of a result file written by ColumnStore, answering
+ * aggregation queries such as "mean and confidence interval of a result,
+ * grouped by some parameters, for a given set of parameter values" without
+ * loading the file: the row blocks are memory-mapped and only the columns
+ * used by a query are scanned.
+ *
+ * Can be used from the command line to query result files.
+ *
+ * @see ColumnStore
+ */
+public class ResultTable
+{
+
+    // size of the file windows that row blocks are sliced from
+    private static final long            MAP_WINDOW = 1L << 30;
+
+    // column definitions
+    private ArrayList<String>            names   = new ArrayList<String>();
+    private ArrayList<Byte>              kinds   = new ArrayList<Byte>();
+    private HashMap<String, Integer>     ids     = new HashMap<String, Integer>();
+    // dictionaries of code columns (null for other columns)
+    private ArrayList<ArrayList<String>> dicts   = new ArrayList<ArrayList<String>>();
+    // row blocks
+    private ArrayList<Block>             blocks  = new ArrayList<Block>();
+    private long                         rows;
+
+    /**
+     * Block of rows in the mapped file
+     */
+    private static class Block
+    {
+        int                     rows;
+        // column id -> values of the column
+        HashMap<Integer, ByteBuffer> columns = new HashMap<Integer, ByteBuffer>();
+        // columns stored as doubles that were widened later
+        ArrayList<Integer>      widened = new ArrayList<Integer>();
+    }
+
+    // Opening
+    // ....................................................................
+
+    /**
+     * Open result file
+     *
+     * @param file
+     *            Result file written by ColumnStore
+     * @return Result table
+     * @throws DucksException
+     *             Occurs if the file can not be read or is not a result file
+     */
+    public static ResultTable open(File file) throws DucksException {
+        ResultTable table = new ResultTable();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            if (raf.readInt() != ColumnStore.MAGIC) {
+                throw new DucksException("Not a result file: " + file);
+            }
+            long pos = 4;
+            long size = channel.size();
+            // blocks are slices of a few large mappings, not mapped one by one
+            MappedByteBuffer window = null;
+            long windowPos = 0;
+            while (pos + 5 <= size) {
+                raf.seek(pos);
+                byte type = raf.readByte();
+                int length = raf.readInt();
+                pos += 5;
+                if (pos + length > size) {
+                    // truncated by an interrupted write
+                    break;
+                }
+                switch (type) {
+                    case ColumnStore.RECORD_COLUMN:
+                        int col = raf.readInt();
+                        byte kind = raf.readByte();
+                        table.addColumn(col, kind, raf.readUTF());
+                        break;
+                    case ColumnStore.RECORD_DICT:
+                        col = raf.readInt();
+                        int code = raf.readInt();
+                        table.addCode(col, code, raf.readUTF());
+                        break;
+                    case ColumnStore.RECORD_BLOCK:
+                        if (window == null || pos + length > windowPos + window.capacity()) {
+                            windowPos = pos;
+                            window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.max(length, Math.min(
+                                    size - pos, MAP_WINDOW)));
+                        }
+                        ByteBuffer data = window.duplicate();
+                        data.position((int) (pos - windowPos));
+                        data.limit((int) (pos - windowPos) + length);
+                        table.addBlock(data.slice());
+                        break;
+                    default:
+                        throw new DucksException("Unknown record type " + type + " in " + file);
+                }
+                pos += length;
+            }
+            table.convertWidened();
+        } catch (IOException e) {
+            throw new DucksException("Reading result file failed: " + e.getMessage());
+        } finally {
+            // mappings stay valid after closing
+            try {
+                if (raf != null) {
+                    raf.close();
+                }
+            } catch (IOException e) {
+            }
+        }
+        return table;
+    }
+
+    private void addColumn(int col, byte kind, String name) throws DucksException {
+        if (col < names.size() && names.get(col).equals(name) && kind(col) == ColumnStore.KIND_DOUBLE
+                && kind == ColumnStore.KIND_CODE) {
+            // double column widened to strings
+            kinds.set(col, new Byte(kind));
+            dicts.set(col, new ArrayList<String>());
+            for (Block block : blocks) {
+                if (block.columns.containsKey(new Integer(col))) {
+                    block.widened.add(new Integer(col));
+                }
+            }
+            return;
+        }
+        if (col != names.size()) {
+            throw new DucksException("Column " + name + " defined out of order");
+        }
+        names.add(name);
+        kinds.add(new Byte(kind));
+        ids.put(name, new Integer(col));
+        dicts.add(kind == ColumnStore.KIND_CODE ? new ArrayList<String>() : null);
+    }
+
+    private void addCode(int col, int code, String value) throws DucksException {
+        if (col >= dicts.size() || dicts.get(col) == null || code != dicts.get(col).size()) {
+            throw new DucksException("Dictionary entry " + value + " defined out of order");
+        }
+        dicts.get(col).add(value);
+    }
+
+    private void addBlock(ByteBuffer data) throws DucksException {
+        Block block = new Block();
+        block.rows = data.getInt();
+        int ncols = data.getInt();
+        for (int i = 0; i < ncols; i++) {
+            int col = data.getInt();
+            if (col >= kinds.size()) {
+                throw new DucksException("Block uses undefined column " + col);
+            }
+            int length = block.rows * (kind(col) == ColumnStore.KIND_DOUBLE ? 8 : 4);
+            ByteBuffer values = data.slice();
+            values.limit(length);
+            block.columns.put(new Integer(col), values);
+            data.position(data.position() + length);
+        }
+        blocks.add(block);
+        rows += block.rows;
+    }
+
+    /**
+     * Dictionary-encode the values of widened columns in blocks written before
+     * the widening. This is done after reading the whole file, so that the
+     * codes of values first seen here follow those defined in the file.
+     */
+    private void convertWidened() {
+        HashMap<Integer, HashMap<String, Integer>> codes = new HashMap<Integer, HashMap<String, Integer>>();
+        for (Block block : blocks) {
+            for (Integer col : block.widened) {
+                HashMap<String, Integer> index = codes.get(col);
+                ArrayList<String> dict = dicts.get(col.intValue());
+                if (index == null) {
+                    index = new HashMap<String, Integer>();
+                    for (int c = 0; c < dict.size(); c++) {
+                        index.put(dict.get(c), new Integer(c));
+                    }
+                    codes.put(col, index);
+                }
+                LongBuffer d = block.columns.get(col).duplicate().asLongBuffer();
+                ByteBuffer values = ByteBuffer.allocate(block.rows * 4);
+                for (int r = 0; r < block.rows; r++) {
+                    int code = -1;
+                    if (d.get(r) != ColumnStore.MISSING_BITS) {
+                        String value = Double.toString(Double.longBitsToDouble(d.get(r)));
+                        Integer c = index.get(value);
+                        if (c == null) {
+                            c = new Integer(dict.size());
+                            dict.add(value);
+                            index.put(value, c);
+                        }
+                        code = c.intValue();
+                    }
+                    values.putInt(code);
+                }
+                values.flip();
+                block.columns.put(col, values);
+            }
+            block.widened.clear();
+        }
+    }
+
+    // Table information
+    // ..........................................................
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    /**
+     * Return the distinct values of a parameter or string result column
+     */
+    public List<String> getValues(String column) throws DucksException {
+        List<String> dict = dicts.get(column(column));
+        if (dict == null) {
+            throw new DucksException("Column " + column + " is not dictionary-encoded");
+        }
+        return dict;
+    }
+
+    private int column(String name) throws DucksException {
+        Integer col = ids.get(name);
+        if (col == null) {
+            throw new DucksException("Unknown column " + name);
+        }
+        return col.intValue();
+    }
+
+    private byte kind(int col) {
+        return kinds.get(col).byteValue();
+    }
+
+    // Queries
+    // ....................................................................
+
+    /**
+     * Start a new query over all rows
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Aggregation query, restricting rows by column values and grouping them
+     * by the values of other columns
+     */
+    public class Query
+    {
+        private ArrayList<Integer> whereCols   = new ArrayList<Integer>();
+        private ArrayList<Object>  whereValues = new ArrayList<Object>();
+        private ArrayList<Integer> groupCols   = new ArrayList<Integer>();
+
+        /**
+         * Only include rows whose column has one of the given values
+         */
+        public Query where(String column, String... values) throws DucksException {
+            int col = column(column);
+            Object match;
+            if (kind(col) == ColumnStore.KIND_CODE) {
+                // match by code
+                List<String> dict = dicts.get(col);
+                boolean[] codes = new boolean[dict.size()];
+                for (String v : values) {
+                    int code = dict.indexOf(v);
+                    if (code < 0) {
+                        // numeric results are stored in canonical form
+                        try {
+                            code = dict.indexOf(Double.toString(Double.parseDouble(v)));
+                        } catch (NumberFormatException e) {
+                        }
+                    }
+                    if (code >= 0) {
+                        codes[code] = true;
+                    }
+                }
+                match = codes;
+            } else {
+                double[] d = new double[values.length];
+                try {
+                    for (int i = 0; i < values.length; i++) {
+                        d[i] = Double.parseDouble(values[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new DucksException("Column " + column + " is numeric: " + e.getMessage());
+                }
+                match = d;
+            }
+            whereCols.add(new Integer(col));
+            whereValues.add(match);
+            return this;
+        }
+
+        /**
+         * Aggregate separately for every distinct value of the column
+         */
+        public Query groupBy(String column) throws DucksException {
+            groupCols.add(new Integer(column(column)));
+            return this;
+        }
+
+        /**
+         * Aggregate numeric result over the selected rows
+         *
+         * @param metric
+         *            Name of numeric result column
+         * @return Summary per group, by group values separated by ", "
+         *         (sorted); one entry with the empty key without grouping
+         * @throws DucksException
+         *             Occurs if a column is unknown or the metric is not
+         *             numeric
+         */
+        public Map<String, Summary> aggregate(String metric) throws DucksException {
+            int metricCol = column(metric);
+            if (kind(metricCol) != ColumnStore.KIND_DOUBLE) {
+                throw new DucksException("Result " + metric + " is not numeric");
+            }
+            HashMap<GroupKey, Summary> groups = new HashMap<GroupKey, Summary>();
+            GroupKey probe = new GroupKey(groupCols.size());
+            int nwhere = whereCols.size();
+            int ngroup = groupCols.size();
+            Object[] whereData = new Object[nwhere];
+            Object[] groupData = new Object[ngroup];
+
+            for (Block block : blocks) {
+                ByteBuffer m = block.columns.get(new Integer(metricCol));
+                if (m == null) {
+                    continue;
+                }
+                DoubleBuffer metricData = m.duplicate().asDoubleBuffer();
+                boolean skip = false;
+                for (int w = 0; w < nwhere && !skip; w++) {
+                    whereData[w] = view(block, whereCols.get(w).intValue());
+                    skip = whereData[w] == null;
+                }
+                if (skip) {
+                    // restricted column missing in this block
+                    continue;
+                }
+                for (int g = 0; g < ngroup; g++) {
+                    groupData[g] = view(block, groupCols.get(g).intValue());
+                }
+
+                rows: for (int r = 0; r < block.rows; r++) {
+                    double value = metricData.get(r);
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+                    for (int w = 0; w < nwhere; w++) {
+                        if (!matches(whereValues.get(w), whereData[w], r)) {
+                            continue rows;
+                        }
+                    }
+                    for (int g = 0; g < ngroup; g++) {
+                        Object data = groupData[g];
+                        if (data == null) {
+                            probe.values[g] = -1;
+                        } else if (data instanceof IntBuffer) {
+                            probe.values[g] = ((IntBuffer) data).get(r);
+                        } else {
+                            probe.values[g] = Double.doubleToLongBits(((DoubleBuffer) data).get(r));
+                        }
+                    }
+                    probe.rehash();
+                    Summary s = groups.get(probe);
+                    if (s == null) {
+                        s = new Summary();
+                        groups.put(probe.copy(), s);
+                    }
+                    s.add(value);
+                }
+            }
+
+            TreeMap<String, Summary> result = new TreeMap<String, Summary>();
+            for (Map.Entry<GroupKey, Summary> e : groups.entrySet()) {
+                result.put(label(e.getKey()), e.getValue());
+            }
+            return result;
+        }
+
+        private Object view(Block block, int col) {
+            ByteBuffer b = block.columns.get(new Integer(col));
+            if (b == null) {
+                return null;
+            }
+            return kind(col) == ColumnStore.KIND_DOUBLE ? (Object) b.duplicate().asDoubleBuffer() : (Object) b
+                    .duplicate().asIntBuffer();
+        }
+
+        private boolean matches(Object match, Object data, int r) {
+            if (match instanceof boolean[]) {
+                int code = ((IntBuffer) data).get(r);
+                boolean[] codes = (boolean[]) match;
+                return code >= 0 && code < codes.length && codes[code];
+            }
+            double v = data instanceof IntBuffer ? ((IntBuffer) data).get(r) : ((DoubleBuffer) data).get(r);
+            for (double d : (double[]) match) {
+                if (d == v) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String label(GroupKey key) {
+            StringBuffer sb = new StringBuffer();
+            for (int g = 0; g < key.values.length; g++) {
+                if (g > 0) {
+                    sb.append(", ");
+                }
+                int col = groupCols.get(g).intValue();
+                long v = key.values[g];
+                switch (kind(col)) {
+                    case ColumnStore.KIND_CODE:
+                        sb.append(v < 0 ? "" : dicts.get(col).get((int) v));
+                        break;
+                    case ColumnStore.KIND_DOUBLE:
+                        sb.append(Double.longBitsToDouble(v));
+                        break;
+                    default:
+                        sb.append(v);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Values of the group columns of a row
+     */
+    private static class GroupKey
+    {
+        long[] values;
+        int    hash;
+
+        GroupKey(int n) {
+            values = new long[n];
+        }
+
+        void rehash() {
+            hash = Arrays.hashCode(values);
+        }
+
+        GroupKey copy() {
+            GroupKey k = new GroupKey(values.length);
+            System.arraycopy(values, 0, k.values, 0, values.length);
+            k.hash = hash;
+            return k;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof GroupKey && Arrays.equals(values, ((GroupKey) o).values);
+        }
+    }
+
+    // Summary statistics
+    // .........................................................
+
+    /**
+     * Summary statistics of a set of values
+     */
+    public static class Summary
+    {
+        // two-sided 95% quantiles of Student's t distribution for 1..30
+        // degrees of freedom
+        private static final double[] T95 = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262,
+                2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069,
+                2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+
+        private long                  count;
+        private double                mean;
+        private double                m2;
+        private double                min    = Double.POSITIVE_INFINITY;
+        private double                max    = Double.NEGATIVE_INFINITY;
+        private double[]              values = new double[16];
+        private boolean               sorted;
+
+        void add(double v) {
+            // Welford's update
+            count++;
+            double delta = v - mean;
+            mean += delta / count;
+            m2 += delta * (v - mean);
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            if (count > values.length) {
+                double[] values2 = new double[values.length * 2];
+                System.arraycopy(values, 0, values2, 0, values.length);
+                values = values2;
+            }
+            values[(int) count - 1] = v;
+            sorted = false;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count > 0 ? mean : Double.NaN;
+        }
+
+        public double getStdDev() {
+            return count > 1 ? Math.sqrt(m2 / (count - 1)) : Double.NaN;
+        }
+
+        public double getStdErr() {
+            return getStdDev() / Math.sqrt(count);
+        }
+
+        /**
+         * Half width of the 95% confidence interval of the mean
+         */
+        public double getConfidence95() {
+            if (count < 2) {
+                return Double.NaN;
+            }
+            double t = count - 1 <= T95.length ? T95[(int) count - 2] : 1.960;
+            return t * getStdErr();
+        }
+
+        public double getMin() {
+            return count > 0 ? min : Double.NaN;
+        }
+
+        public double getMax() {
+            return count > 0 ? max : Double.NaN;
+        }
+
+        /**
+         * Return percentile (nearest rank)
+         *
+         * @param p
+         *            Percentile between 0 and 100
+         */
+        public double getPercentile(double p) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, (int) count);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(p / 100.0 * count);
+            return values[Math.max(0, Math.min((int) count - 1, rank - 1))];
+        }
+
+        public String toString() {
+            return "n=" + count + " mean=" + getMean() + " ci95=" + getConfidence95() + " sd=" + getStdDev()
+                    + " min=" + getMin() + " median=" + getPercentile(50) + " max=" + getMax();
+        }
+    }
+
+    // Command line
+    // ...............................................................
+
+    /**
+     * Query result file from the command line
+     *
+     * <li>-m / --metric : numeric result to aggregate <li>-g / --groupby :
+     * columns to group by, separated by "," <li>-w / --where : restrictions
+     * "column=value|value;column=value" <li>-c / --columns : list columns
+     * <li>-b / --benchmark : write and query a synthetic file of the given
+     * number of rows
+     */
+    public static void main(String[] args) {
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option optMetric = parser.addStringOption('m', "metric");
+        CmdLineParser.Option optGroupBy = parser.addStringOption('g', "groupby");
+        CmdLineParser.Option optWhere = parser.addStringOption('w', "where");
+        CmdLineParser.Option optColumns = parser.addBooleanOption('c', "columns");
+        CmdLineParser.Option optBenchmark = parser.addIntegerOption('b', "benchmark");
+
+        boolean valid = true;
+        try {
+            parser.parse(args);
+        } catch (Exception e) {
+            valid = false;
+        }
+        String[] files = parser.getRemainingArgs();
+        Integer benchmark = (Integer) parser.getOptionValue(optBenchmark);
+        String metric = (String) parser.getOptionValue(optMetric);
+        boolean columns = parser.getOptionValue(optColumns) != null;
+        if (!valid || benchmark == null && (files.length != 1 || (metric == null && !columns))) {
+            System.out.println("Usage: ");
+            System.out.println("  ResultTable -c <result file>");
+            System.out.println("  ResultTable -m <metric> [-g <col,col>] [-w <col=val|val;col=val>] <result file>");
+            System.out.println("  ResultTable -b <rows>");
+            System.exit(99);
+        }
+
+        try {
+            if (benchmark != null) {
+                benchmark(benchmark.intValue());
+                return;
+            }
+            ResultTable table = open(new File(files[0]));
+            if (columns) {
+                System.out.println(table.getRowCount() + " rows");
+                for (String name : table.getColumnNames()) {
+                    System.out.println("  " + name);
+                }
+                return;
+            }
+            Query q = table.query();
+            String groupBy = (String) parser.getOptionValue(optGroupBy);
+            if (groupBy != null) {
+                for (String col : groupBy.split(",")) {
+                    q.groupBy(col.trim());
+                }
+            }
+            String where = (String) parser.getOptionValue(optWhere);
+            if (where != null) {
+                for (String cond : where.split(";")) {
+                    int eq = cond.indexOf('=');
+                    if (eq < 0) {
+                        throw new DucksException("Restriction without value: " + cond);
+                    }
+                    q.where(cond.substring(0, eq).trim(), cond.substring(eq + 1).split("\\|"));
+                }
+            }
+            print(q.aggregate(metric));
+        } catch (DucksException e) {
+            System.out.println("Query failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void print(Map<String, Summary> result) {
+        Iterator<Map.Entry<String, Summary>> it = result.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Summary> e = it.next();
+            System.out.println(e.getKey() + ": " + e.getValue());
+        }
+    }
+
+    /**
+     * Write a synthetic study of the given number of rows to a temporary file
+     * and time a grouped aggregation over it
+     */
+    private static void benchmark(int rows) throws DucksException {
+        final int nodes[] = { 10, 20, 50, 100 };
+        final String[] protocols = { "aodv", "dsr", "zrp" };
+        File file;
+        try {
+            file = File.createTempFile("ducks-bench", ColumnStore.SUFFIX);
+            file.deleteOnExit();
+        } catch (IOException e) {
+            throw new DucksException("Temporary file could not be created: " + e.getMessage());
+        }
+        long start = System.currentTimeMillis();
+        ColumnStore.Writer writer = new ColumnStore.Writer(file);
+        Random random = new Random(0);
+        ExtendedProperties params = new ExtendedProperties();
+        ExtendedProperties results = new ExtendedProperties();
+        for (int r = 0; r < rows; r++) {
+            params.setProperty("nodes", Integer.toString(nodes[r % nodes.length]));
+            params.setProperty("protocol", protocols[(r / nodes.length) % protocols.length]);
+            results.setProperty("delivery", Double.toString(random.nextDouble()));
+            writer.addRow(r / 10, r % 10, params, results);
+            if ((r + 1) % 100000 == 0) {
+                writer.flush();
+            }
+        }
+        writer.close();
+        long written = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        ResultTable table = open(file);
+        Map<String, Summary> result = table.query().where("nodes", "20", "50").groupBy("protocol").groupBy(
+                "nodes").aggregate("delivery");
+        long queried = System.currentTimeMillis() - start;
+        print(result);
+        System.out.println(rows + " rows, " + file.length() + " bytes: written in " + written + " ms, queried in "
+                + queried + " ms");
+    }
+
+}
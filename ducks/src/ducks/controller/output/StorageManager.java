@@ -18,26 +18,33 @@
 package ducks.controller.output;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
 import ducks.controller.DucksControllerModule;
 import ducks.controller.simulation.Simulation;
+import ducks.controller.simulation.SimulationListener;
 import ducks.controller.simulation.SimulationStudy;
 import ducks.misc.DucksException;
 import ext.util.ExtendedProperties;
 
 /**
  * StorageManager the storage of simulation results It also features background
- * saving, i.e. can run a thread that periodically checks for finished
- * simulations and flushes these results to the storage while the overall
- * simulation study has not finished yet.
+ * saving, i.e. can run a thread that flushes finished simulations to the
+ * storage while the overall simulation study has not finished yet. Finished
+ * simulations are pushed to a bounded write-behind queue as soon as their last
+ * instance is finalized, and the thread saves whatever has accumulated in the
+ * queue as one batch.
  * 
  * @author Elmar Schoch
  * 
  */
-public class StorageManager implements Runnable, DucksControllerModule
+public class StorageManager implements Runnable, DucksControllerModule, SimulationListener
 {
 
     // log4j Logger
@@ -54,11 +61,24 @@ public class StorageManager implements Runnable, DucksControllerModule
 
     // config file option
     public static final String         CFG_BACKGROUND_SAVING    = CFG_NAMESPACE + ".backgroundsaving";
-    // Period to wait between attempts to save results (in milliseconds)
+    // Period to wait for finished simulations before checking whether to stop
+    // (in milliseconds)
     public static final int            BACKGROUND_SAVING_WAIT   = 5000;
 
+    // Maximum number of finished simulations waiting to be saved. Servers
+    // finishing further simulations wait until there is room again.
+    public static final String         CFG_QUEUE_SIZE           = CFG_NAMESPACE + ".queue.size";
+    public static final int            DEFAULT_QUEUE_SIZE       = 1024;
+    // Maximum number of simulations saved as one batch
+    public static final String         CFG_BATCH_SIZE           = CFG_NAMESPACE + ".batch.size";
+    public static final int            DEFAULT_BATCH_SIZE       = 64;
+
     private boolean                    doBackgroundSaving       = true;
     private Thread                     checkingThread;
+    private volatile boolean           savingActive             = false;
+
+    private BlockingQueue<Simulation>  saveQueue;
+    private int                        batchSize                = DEFAULT_BATCH_SIZE;
 
     private SimulationStudy            simStudy;
 
@@ -114,6 +134,8 @@ public class StorageManager implements Runnable, DucksControllerModule
         }
 
         doBackgroundSaving = config.getBooleanProperty(CFG_BACKGROUND_SAVING, true);
+        saveQueue = new ArrayBlockingQueue<Simulation>(config.getIntProperty(CFG_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+        batchSize = config.getIntProperty(CFG_BATCH_SIZE, DEFAULT_BATCH_SIZE);
     }
 
     // Connection handling ...................................................
@@ -131,10 +153,9 @@ public class StorageManager implements Runnable, DucksControllerModule
     }
 
     // Runtime-flushing to storage ...........................................
-    // - checks periodically for completed simulations in a separate thread
-    // and inserts them into the database instantly (even while other
-    // simulations
-    // are still running or pending)
+    // - takes completed simulations from the write-behind queue in a separate
+    // thread and inserts them into the database instantly (even while other
+    // simulations are still running or pending)
 
     public boolean backgroundSavingEnabled() {
         return doBackgroundSaving;
@@ -157,17 +178,44 @@ public class StorageManager implements Runnable, DucksControllerModule
         checkingThread.setName("StorageManager background saver");
 
         synchronized (this) {
+            savingActive = true;
+            study.setListener(this);
             checkingThread.start();
         }
     }
 
+    /**
+     * Stop background saving, after saving all queued simulations
+     */
     public void stopBackgroundSaving() {
-        checkingThread.interrupt();
+        if (checkingThread == null) {
+            return;
+        }
+        savingActive = false;
         try {
             checkingThread.join();
         } catch (Exception e) {
             // TODO: handle exception
         }
+        simStudy.setListener(null);
+    }
+
+    /**
+     * Queue finished simulation for background saving. Waits while the queue
+     * is full.
+     */
+    public void simulationFinished(Simulation simu) {
+        try {
+            while (savingActive) {
+                if (saveQueue.offer(simu, BACKGROUND_SAVING_WAIT, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // not queued: will be saved with the remaining results when the
+        // controller terminates
     }
 
     public synchronized void saveReadyResults() {
@@ -183,27 +231,33 @@ public class StorageManager implements Runnable, DucksControllerModule
     }
 
     /**
-     * Thread main method, checks regularly for finished simulations, whose
-     * results can be flushed
+     * Thread main method, saves finished simulations from the queue until
+     * background saving is stopped and the queue is empty
      */
     public void run() {
 
-        while (!checkingThread.isInterrupted()) {
-
-            // Check for new results and save them to db
-            saveReadyResults();
-
-            // Exit condition: if study has finished, we can break
-            if (simStudy.hasFinished()) {
+        List<Simulation> batch = new ArrayList<Simulation>(batchSize);
+        while (savingActive || !saveQueue.isEmpty()) {
+            try {
+                Simulation simu = saveQueue.poll(BACKGROUND_SAVING_WAIT, TimeUnit.MILLISECONDS);
+                if (simu == null) {
+                    continue;
+                }
+                batch.add(simu);
+            } catch (InterruptedException e) {
                 break;
             }
+            saveQueue.drainTo(batch, batchSize - 1);
 
-            // Sleep for certain period of time
             try {
-                Thread.sleep(5000);
-            } catch (InterruptedException e) {
-                checkingThread.interrupt();
+                saveSimulations(batch);
+            } catch (DucksException de) {
+                // simulations remain unsaved and are retried when the
+                // controller terminates
+                log.error("Error while flushing " + batch.size() + " simulations: " + de.getMessage());
+                de.printStackTrace();
             }
+            batch.clear();
         }
 
         log.debug("Stopped background saving of simulations");
@@ -229,4 +283,13 @@ public class StorageManager implements Runnable, DucksControllerModule
         simu.setFlushed();
     }
 
+    public synchronized void saveSimulations(List<Simulation> simus) throws DucksException {
+        for (StorageProvider provider : storageModules) {
+            provider.saveSimulations(simus);
+        }
+        for (Simulation simu : simus) {
+            simu.setFlushed();
+        }
+    }
+
 }
@@ -17,6 +17,8 @@
  */
 package ducks.controller.output;
 
+import java.util.List;
+
 import ducks.controller.DucksControllerModule;
 import ducks.controller.simulation.Simulation;
 import ducks.controller.simulation.SimulationStudy;
@@ -35,4 +37,9 @@ public interface StorageProvider extends DucksControllerModule
     public void saveSimulationStudy(SimulationStudy study) throws DucksException;
 
     public void saveSimulation(Simulation simu) throws DucksException;
+
+    /**
+     * Save several simulations at once, e.g. within one transaction
+     */
+    public void saveSimulations(List<Simulation> simus) throws DucksException;
 }
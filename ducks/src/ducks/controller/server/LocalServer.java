@@ -0,0 +1,74 @@
+/*
+ * Ulm University DUCKS project
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.controller.server;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import jist.runtime.Main;
+import jist.runtime.Main.CommandLineOptions;
+import ducks.controller.simulation.BoundedOutputStream;
+import ducks.controller.simulation.SimulationInstance;
+import ducks.misc.DucksException;
+
+/**
+ * Server that runs simulations within the DUCKS controller JVM instead of
+ * sending them to a remote JiST server. Several local servers run their
+ * simulations concurrently, each in its own JiST controller and class loader,
+ * while classes are only rewritten once for all of them. Map data and other
+ * static state is still loaded per simulation.
+ * 
+ * @see Main#runSimulationConcurrent
+ */
+public class LocalServer extends Server
+{
+
+    /**
+     * Number of local server, for identification
+     */
+    private int number;
+
+    /**
+     * LocalServer constructor
+     * 
+     * @param number
+     *            number of local server
+     */
+    public LocalServer(int number) {
+        super("localhost", 0);
+        this.number = number;
+    }
+
+    /**
+     * Run the current simulation in the calling thread, collecting its
+     * results and (bounded) standard output in the simulation instance
+     */
+    protected void runSimulation() throws DucksException {
+        SimulationInstance simu = getCurrentSimInstance();
+
+        CommandLineOptions options = new CommandLineOptions();
+        options.args = simu.getArgs();
+        options.sim = simu.getSim();
+
+        OutputStream out = simu.getOutputStream();
+        if (out == null) {
+            out = new BoundedOutputStream(0);
+        }
+        simu.setResultRecord(Main.runSimulationConcurrent(options, loadJistProperties(), new PrintStream(out)));
+    }
+
+    public String toString() {
+        return "local#" + number;
+    }
+}
@@ -29,7 +29,6 @@ import jist.runtime.Main;
 import jist.runtime.Main.CommandLineOptions;
 import jist.runtime.Node;
 import jist.runtime.RemoteJist;
-import jist.swans.Constants;
 
 import org.apache.log4j.Logger;
 
@@ -71,7 +70,7 @@ public class Server implements Runnable
     /**
      * Flag indicating whether the server is enabled to compute simulations
      */
-    private boolean            enabled     = false;
+    private volatile boolean   enabled     = false;
 
     /**
      * Holds the Simulation object that is currently computed on the JiST-server
@@ -165,6 +164,9 @@ public class Server implements Runnable
         // queue)
         if (enabled) {
             createThread();
+        } else if (dc != null) {
+            // wake up thread, if it is waiting for work
+            dc.simulationsChanged();
         }
 
     }
@@ -209,17 +211,14 @@ public class Server implements Runnable
                 break;
             }
 
-            // get the next simulation to execute (synchronized)
-            currentSimu = dc.getFreeSimulation();
-
-            // if no pending simulation is available, wait a little
+            // get the next simulation to execute, waiting until one is
+            // available or the server is disabled
+            try {
+                currentSimu = dc.takeFreeSimulation(this);
+            } catch (InterruptedException e) {
+                break;
+            }
             if (currentSimu == null) {
-                try {
-                    log.info("Server " + this.toString() + " is waiting for work...");
-                    Thread.sleep(5000 + Constants.random.nextInt(3000));
-                } catch (Exception e) {
-                    // do we have to catch the exception?
-                }
                 // next loop
                 continue;
             }
@@ -231,7 +230,7 @@ public class Server implements Runnable
 
             try {
                 // run simulation on jist server
-                runRemoteSimulation();
+                runSimulation();
 
                 // check for result section
                 try {
@@ -258,6 +257,7 @@ public class Server implements Runnable
 
                 // Cleanup: reset simulation to pending and disable server
                 currentSimu.recall();
+                dc.simulationsChanged();
 
                 setEnabled(false);
                 break;
@@ -270,12 +270,20 @@ public class Server implements Runnable
     }
 
     /**
-     * Helper method with the final code that runs the simulation on the remote
-     * jist server
+     * Run the current simulation. Returns when the simulation has finished, and
+     * throws an exception if the server failed to run it.
      * 
      */
-    private void runRemoteSimulation() throws DucksException, MalformedURLException, NotBoundException, RemoteException {
+    protected void runSimulation() throws DucksException, MalformedURLException, NotBoundException, RemoteException {
+        runRemoteSimulation();
+    }
 
+    /**
+     * Load the JiST properties passed on to simulations
+     * 
+     * @return JiST properties, or null if not available
+     */
+    protected Properties loadJistProperties() {
         Properties properties = null;
         try {
             File f = new File(Main.JIST_PROPERTIES);
@@ -286,6 +294,17 @@ public class Server implements Runnable
         } catch (IOException e) {
             properties = null;
         }
+        return properties;
+    }
+
+    /**
+     * Helper method with the final code that runs the simulation on the remote
+     * jist server
+     * 
+     */
+    private void runRemoteSimulation() throws DucksException, MalformedURLException, NotBoundException, RemoteException {
+
+        Properties properties = loadJistProperties();
 
         Node server = null;
         try {
@@ -297,7 +316,8 @@ public class Server implements Runnable
 
         // find remote server or queue server
         RemoteJist.JobQueueServerRemote jqs = RemoteJist.JobQueueServer.getRemote(server);
-        // create jist client stub
+        // create jist client stub (without output stream, if output is not
+        // kept, so that the server does not send it at all)
         RemoteJist.JistClient client = new RemoteJist.JistClient(currentSimu.getOutputStream(), System.err);
         // enqueue job
         RemoteJist.Job job = new RemoteJist.Job();
@@ -316,13 +336,12 @@ public class Server implements Runnable
 
         // wait for server to release client
         try {
-            synchronized (client) {
-                client.wait();
-            }
+            client.waitDone();
         } catch (InterruptedException e) {
             e.printStackTrace();
             throw new DucksException("Simulation was interrupted");
         }
+        currentSimu.setResultRecord(client.getResults());
     }
 
     // ========================================================
@@ -95,7 +95,10 @@ public class ServerManager implements DucksControllerModule
      * controller config). Format of server parameters is:
      * ducks.servers.{server-identifier-string}.hostname={server hostname or IP}
      * ducks.servers.{server-identifier-string}.port={server port}
-     * ducks.servers.{server-identifier-string}.enabled={0|1}
+     * ducks.servers.{server-identifier-string}.enabled={0|1}<br>
+     * Instead of hostname and port, a server may give the number of
+     * simulations to run concurrently within the DUCKS controller JVM:
+     * ducks.servers.{server-identifier-string}.instances={number}
      */
     public void configure(ExtendedProperties config) {
 
@@ -107,7 +110,10 @@ public class ServerManager implements DucksControllerModule
             boolean enabled = srvprops.getBooleanProperty("enabled", true);
             // only currently enabled servers are added to the list
             // (if the property is missing, default is to enable)
-            if (enabled) {
+            if (enabled && srvprops.getProperty("instances") != null) {
+                int instances = Integer.parseInt(srvprops.getProperty("instances"));
+                this.addLocal(instances, srvname);
+            } else if (enabled) {
                 String hostname = srvprops.getProperty("hostname");
                 int port = Integer.parseInt(srvprops.getProperty("port"));
                 String identifier = srvname;
@@ -218,6 +224,25 @@ public class ServerManager implements DucksControllerModule
         log.info("Added jist server [" + server.getIdentifier() + "] at " + server.getHost() + ":" + server.getPort());
     }
 
+    /**
+     * Add servers running simulations within this JVM
+     * 
+     * @param instances
+     *            number of simulations to run concurrently
+     * @param identifier
+     *            literal identifier of the servers (no further meaning)
+     */
+    public void addLocal(int instances, String identifier) {
+        for (int i = 0; i < instances; i++) {
+            Server server = new LocalServer(i);
+            server.setIdentifier(identifier);
+            server.setDucksController(ducksController);
+            servers.add(server);
+        }
+
+        log.info("Added " + instances + " local servers [" + identifier + "]");
+    }
+
     public void remove(Server server) {
 
         if (server.isEnabled()) {
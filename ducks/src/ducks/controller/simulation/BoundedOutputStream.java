@@ -0,0 +1,122 @@
+/*
+ * Ulm University DUCKS project
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.controller.simulation;
+
+import java.io.OutputStream;
+
+/**
+ * Output stream that keeps at most a given number of bytes of what is written
+ * to it: the first half of the limit from the beginning of the output, and the
+ * second half from its end, where errors usually show up. Everything in
+ * between is dropped, so chatty simulations do not exhaust controller memory.
+ */
+public class BoundedOutputStream extends OutputStream
+{
+
+    // first bytes written
+    private byte[] head;
+    private int    headLength;
+
+    // last bytes written, as ring buffer
+    private byte[] tail;
+    private long   tailWritten;
+
+    /**
+     * Create bounded output stream
+     *
+     * @param limit
+     *            Maximum number of bytes kept; 0 discards all output
+     */
+    public BoundedOutputStream(int limit) {
+        head = new byte[limit - limit / 2];
+        tail = new byte[limit / 2];
+    }
+
+    /**
+     * Whether the stream keeps any output at all
+     *
+     * @return False, if all output is discarded
+     */
+    public boolean isEnabled() {
+        return head.length > 0;
+    }
+
+    /**
+     * Number of bytes written but not kept
+     *
+     * @return Number of dropped bytes
+     */
+    public synchronized long getDropped() {
+        return Math.max(0, tailWritten - tail.length);
+    }
+
+    public synchronized void write(int b) {
+        if (headLength < head.length) {
+            head[headLength++] = (byte) b;
+        } else if (tail.length > 0) {
+            tail[(int) (tailWritten % tail.length)] = (byte) b;
+            tailWritten++;
+        } else {
+            tailWritten++;
+        }
+    }
+
+    public synchronized void write(byte[] b, int off, int len) {
+        int n = Math.min(len, head.length - headLength);
+        System.arraycopy(b, off, head, headLength, n);
+        headLength += n;
+        off += n;
+        len -= n;
+        if (len == 0) {
+            return;
+        }
+        if (tail.length > 0) {
+            // only the last tail.length bytes can survive
+            int skip = Math.max(0, len - tail.length);
+            tailWritten += skip;
+            off += skip;
+            len -= skip;
+            while (len > 0) {
+                int pos = (int) (tailWritten % tail.length);
+                n = Math.min(len, tail.length - pos);
+                System.arraycopy(b, off, tail, pos, n);
+                tailWritten += n;
+                off += n;
+                len -= n;
+            }
+        } else {
+            tailWritten += len;
+        }
+    }
+
+    /**
+     * Return the kept output, noting how much was dropped in between
+     */
+    public synchronized String toString() {
+        StringBuffer sb = new StringBuffer(new String(head, 0, headLength));
+        long dropped = getDropped();
+        if (dropped > 0) {
+            sb.append("\n[... " + dropped + " bytes of output dropped ...]\n");
+        }
+        if (tail.length > 0) {
+            int kept = (int) Math.min(tailWritten, tail.length);
+            int start = (int) ((tailWritten - kept) % tail.length);
+            int n = Math.min(kept, tail.length - start);
+            sb.append(new String(tail, start, n));
+            sb.append(new String(tail, 0, kept - n));
+        }
+        return sb.toString();
+    }
+
+}
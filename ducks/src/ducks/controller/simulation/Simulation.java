@@ -90,6 +90,15 @@ public class Simulation
         return maxSimInstances - remainingSimInstances;
     }
 
+    /**
+     * Retrieve number of instances that have not been handed out yet
+     * 
+     * @return remaining instances
+     */
+    public synchronized int getRemainingInstances() {
+        return remainingSimInstances;
+    }
+
     /**
      * Get the simulation state. This may be <li>pending: Simulation has not
      * been processed at all <li>running: At least one instance of the
@@ -176,6 +185,10 @@ public class Simulation
         return "jist.swans.Main";
     }
 
+    public int getOutputMax() {
+        return this.study.getOutputMax();
+    }
+
     /**
      * Call, if an error occured with the link to the processing server (i.e.
      * instance was set up, but not actually processed)
@@ -184,8 +197,11 @@ public class Simulation
      */
     public void recallInstance(SimulationInstance si) {
         log.debug("Recalling instance of simulation " + getIdentifier());
-        remainingSimInstances++;
-        runningSimInstances.remove(si);
+        synchronized (this) {
+            remainingSimInstances++;
+            runningSimInstances.remove(si);
+        }
+        study.simulationRecalled(this);
     }
 
     /**
@@ -196,8 +212,17 @@ public class Simulation
      */
     public void finalizeInstance(SimulationInstance si) {
         log.debug("Finalizing instance of simulation " + getIdentifier());
-        runningSimInstances.remove(si);
-        finishedSimInstances.add(si);
+        boolean finished;
+        synchronized (this) {
+            runningSimInstances.remove(si);
+            finishedSimInstances.add(si);
+            finished = remainingSimInstances == 0 && runningSimInstances.size() == 0;
+        }
+        // notify study without holding the lock, since the study locks itself
+        // before the simulation when handing out instances
+        if (finished) {
+            study.simulationFinished(this);
+        }
     }
 
     /*
@@ -17,11 +17,12 @@
  */
 package ducks.controller.simulation;
 
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 
 import org.apache.log4j.Logger;
 
 import ducks.misc.DucksException;
+import ducks.misc.ResultRecord;
 import ext.util.ExtendedProperties;
 
 /**
@@ -51,34 +52,53 @@ public class SimulationInstance
     // Simulation instance number
     private int                   instanceNum;
 
-    // the output produced by the simulation
-    // Caution: for productive simulations, take care that the debug output
-    // of the driver is deactivated. Otherwise, with a high number of compute
-    // servers, this may consume really much memory or even overload the
-    // network interface queues.
-    private ByteArrayOutputStream simOutput;
+    // the output produced by the simulation, bounded by the configured
+    // maximum. Caution: for productive simulations, take care that the debug
+    // output of the driver is deactivated anyway. Otherwise, with a high
+    // number of compute servers, this may overload the network interface
+    // queues.
+    private BoundedOutputStream   simOutput;
+
+    // the binary result record delivered by the simulation, if any
+    private byte[]                resultRecord;
 
     private ExtendedProperties    result;
 
     public SimulationInstance(Simulation parentSimu, int instanceNumber) {
         simu = parentSimu;
-        simOutput = new ByteArrayOutputStream();
+        simOutput = new BoundedOutputStream(parentSimu.getOutputMax());
         state = Simulation.RUNNING;
         instanceNum = instanceNumber;
     }
 
     /**
-     * Parse simulation output and extract result section
+     * Parse simulation results: decode the result record delivered by the
+     * simulation or, if there is none (e.g. for custom wrappers that only
+     * print results), extract the result section of the simulation output
      * 
      * @throws DucksException
      */
     public void parseResults() throws DucksException {
 
-        String output = simOutput.toString();
+        if (log.isDebugEnabled()) {
+            log.debug("\n8< ->>---------------------------------------------------\n" + simOutput
+                    + "8< -<<---------------------------------------------------\n");
+        }
 
-        log.debug("\n8< ->>---------------------------------------------------\n" + output
-                + "8< -<<---------------------------------------------------\n");
+        if (resultRecord != null) {
+            ExtendedProperties rd;
+            try {
+                rd = ResultRecord.decode(resultRecord);
+            } catch (DucksException e) {
+                finalize(FAILED);
+                throw e;
+            }
+            finalize(DONE);
+            result = rd;
+            return;
+        }
 
+        String output = simOutput.toString();
         int begin = output.indexOf(Simulation.BEGIN_RESULTS);
         int end = output.indexOf(Simulation.END_RESULTS, begin);
 
@@ -144,8 +164,23 @@ public class SimulationInstance
         return simOutput.toString();
     }
 
-    public ByteArrayOutputStream getOutputStream() {
-        return simOutput;
+    /**
+     * Retrieve stream collecting simulation output
+     * 
+     * @return Output stream, or null if output is not kept at all
+     */
+    public OutputStream getOutputStream() {
+        return simOutput.isEnabled() ? simOutput : null;
+    }
+
+    /**
+     * Set the binary result record delivered by the simulation
+     * 
+     * @param record
+     *            Result record, or null if the simulation delivered none
+     */
+    public void setResultRecord(byte[] record) {
+        resultRecord = record;
     }
 
     public int getState() {
@@ -209,6 +244,7 @@ public class SimulationInstance
      */
     public void releaseMemory() {
         simOutput = null;
+        resultRecord = null;
         result = null;
     }
 
@@ -0,0 +1,34 @@
+/*
+ * Ulm University DUCKS project
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.controller.simulation;
+
+/**
+ * Listener that is notified when simulations of a simulation study have
+ * finished, e.g. to save their results.
+ */
+public interface SimulationListener
+{
+
+    /**
+     * Called when the last instance of a simulation has been finalized, in the
+     * thread that finalized it. Neither the simulation nor its study is locked
+     * during the call. The study counts the simulation as finished only after
+     * the call returns.
+     * 
+     * @param simu
+     *            Finished simulation
+     */
+    public void simulationFinished(Simulation simu);
+
+}
@@ -17,6 +17,7 @@
  */
 package ducks.controller.simulation;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
 
@@ -45,9 +46,11 @@ public class SimulationStudy implements Configurable
     public static final String CFG_SIM_DESC          = "ducks.config.desc";
     public static final String CFG_SIM_MUX           = "ducks.config.multiplexer.class";
     public static final String CFG_SIM_WRAPPER       = "ducks.config.wrapper.class";
+    public static final String CFG_SIM_OUTPUT        = "ducks.config.output.max";
 
     public static final String DEFAULT_MUX_CLASS     = "ducks.controller.simulation.DefaultSimulationMultiplexer";
     public static final String DEFAULT_WRAPPER_CLASS = "ducks.driver.Main";
+    public static final int    DEFAULT_OUTPUT_MAX    = 64 * 1024;
 
     public static int          idCounter             = 1;
 
@@ -64,12 +67,26 @@ public class SimulationStudy implements Configurable
     // Number of instances to process for each simulation configuration
     private int                simuInstances         = 1;
 
+    // Maximum number of bytes of console output kept for each simulation
+    // instance (0 = do not transfer console output at all). Results do not
+    // depend on it, since they are delivered separately.
+    private int                outputMax             = DEFAULT_OUTPUT_MAX;
+
     // current ID in the result database
     private long               simRunID              = -1;
 
     // list of unique simulations
     private Vector<Simulation> simus                 = new Vector<Simulation>();
 
+    // simulations that still have instances to hand out, in order
+    private LinkedList<Simulation> pending           = new LinkedList<Simulation>();
+
+    // number of simulations that have not finished yet
+    private int                unfinished            = 0;
+
+    // notified of finished simulations, if any
+    private volatile SimulationListener listener;
+
     // Loading
     // ....................................................................
 
@@ -82,6 +99,7 @@ public class SimulationStudy implements Configurable
         simuInstances = config.getIntProperty(CFG_SIM_RUNS);
         description = config.getStringProperty(CFG_SIM_DESC);
         wrapper = config.getStringProperty(CFG_SIM_WRAPPER, DEFAULT_WRAPPER_CLASS);
+        outputMax = config.getIntProperty(CFG_SIM_OUTPUT, DEFAULT_OUTPUT_MAX);
 
         // instantiate simulation multiplexer which creates single simulations
         // out of the
@@ -109,6 +127,10 @@ public class SimulationStudy implements Configurable
             ExtendedProperties simuconfig = configSet.get(i);
             s.setSimuConfig(simuconfig);
             simus.add(s);
+            if (s.getState() < Simulation.FINISHED) {
+                pending.add(s);
+                unfinished++;
+            }
             log.debug("Simu " + s.getIdentifier() + ": " + s.getSimuConfig().saveToString());
         }
 
@@ -116,40 +138,83 @@ public class SimulationStudy implements Configurable
     }
 
     /**
-     * Retrieve a simulation that still has pending instances to execute
+     * Retrieve a simulation instance that still has to be executed, taken from
+     * the first simulation with remaining instances
      * 
-     * @return
+     * @return Simulation instance, or null if all are running or finished
      */
     public synchronized SimulationInstance getPendingSimInstance() {
-        SimulationInstance theSimu = null;
-        for (int i = 0; i < simus.size(); i++) {
-            Simulation simu = (Simulation) simus.get(i);
+        while (!pending.isEmpty()) {
+            Simulation simu = pending.getFirst();
             SimulationInstance inst = simu.getFreeInstance();
+            if (simu.getRemainingInstances() == 0) {
+                pending.removeFirst();
+            }
             if (inst != null) {
-                theSimu = inst;
-                break;
+                return inst;
             }
         }
-        return theSimu;
+        return null;
+    }
+
+    /**
+     * Hand out the instances of a simulation again, after one of its instances
+     * has been recalled
+     * 
+     * @param simu
+     *            Simulation with recalled instance
+     */
+    synchronized void simulationRecalled(Simulation simu) {
+        if (!pending.contains(simu)) {
+            pending.addFirst(simu);
+        }
+    }
+
+    /**
+     * Count simulation as finished, after all its instances have finished. The
+     * listener is notified before, so that the simulation is passed on to it
+     * when the study is seen as finished.
+     * 
+     * @param simu
+     *            Finished simulation
+     */
+    void simulationFinished(Simulation simu) {
+        SimulationListener l = listener;
+        if (l != null) {
+            l.simulationFinished(simu);
+        }
+        synchronized (this) {
+            unfinished--;
+            notifyAll();
+        }
     }
 
     /**
-     * check if this simulation run has finished all simulations yet. Note:
-     * Method returns immediately after encountering an unfinished simulation
+     * check if this simulation run has finished all simulations yet
      * 
      * @return
      */
-    public boolean hasFinished() {
+    public synchronized boolean hasFinished() {
+        return unfinished == 0;
+    }
 
-        boolean done = true;
-        for (int i = 0; i < simus.size(); i++) {
-            Simulation s = (Simulation) simus.get(i);
-            if (s.getState() < Simulation.FINISHED) {
-                done = false;
-                break;
-            }
+    /**
+     * Wait until all simulations have finished
+     * 
+     * @param timeout
+     *            Maximum time to wait in milliseconds
+     * @return Whether all simulations have finished
+     * @throws InterruptedException
+     *             if the thread was interrupted while waiting
+     */
+    public synchronized boolean waitFinished(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (unfinished > 0 && remaining > 0) {
+            wait(remaining);
+            remaining = end - System.currentTimeMillis();
         }
-        return done;
+        return unfinished == 0;
     }
 
     /**
@@ -190,6 +255,14 @@ public class SimulationStudy implements Configurable
         return simRunID;
     }
 
+    public void setListener(SimulationListener listener) {
+        this.listener = listener;
+    }
+
+    public SimulationListener getListener() {
+        return listener;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -202,6 +275,10 @@ public class SimulationStudy implements Configurable
         return simuInstances;
     }
 
+    public int getOutputMax() {
+        return outputMax;
+    }
+
     public Vector<Simulation> getSimulations() {
         return simus;
     }
@@ -29,6 +29,7 @@ import jist.swans.mac.MacInterface;
 import jist.swans.misc.Location;
 import jist.swans.misc.Location.Location2D;
 import jist.swans.misc.Mapper;
+import jist.swans.net.DupCache;
 import jist.swans.net.NetAddress;
 import jist.swans.net.NetInterface;
 import jist.swans.net.NetIp;
@@ -42,6 +43,7 @@ import jist.swans.radio.RadioNoiseAdditive;
 import jist.swans.radio.RadioNoiseIndep;
 import jist.swans.route.RouteAodv;
 import jist.swans.route.RouteDsr;
+import jist.swans.route.RouteDsrCache;
 import jist.swans.route.RouteInterface;
 import jist.swans.route.RouteZrp;
 
@@ -384,6 +386,11 @@ public class GenericNode implements Node
         final NetAddress address = new NetAddress(id);
         // NetIpBase net = new NetIp(address, protocolMap, inLoss, outLoss);
         NetIpBase net = new NetIpGeo(address, protocolMap, inLoss, outLoss, field.getRadioData(new Integer(id)), true);
+        int dupSize = options.getIntProperty(SimParams.NET_DUP_CACHE_SIZE, NetIpGeo.DUP_DATABASE_SIZE);
+        long dupTime = options.getIntProperty(SimParams.NET_DUP_CACHE_TIME,
+                (int) (NetIpGeo.DUP_DATABASE_TIME / Constants.SECOND))
+                * Constants.SECOND;
+        net.setDupCache(dupSize > 0 ? new DupCache(dupSize, dupTime) : null);
 
         this.net = net;
         this.netEntity = net.getProxy();
@@ -430,6 +437,8 @@ public class GenericNode implements Node
         } else if (routeOpt.equals(SimParams.ROUTING_PROTOCOL_DSR)) {
             RouteDsr dsr = new RouteDsr(address);
             dsr.setNetEntity(netEntity);
+            dsr.setRouteCacheCapacity(options.getIntProperty(SimParams.ROUTING_DSR_CACHE_CAPACITY,
+                    RouteDsrCache.UNLIMITED));
 
             DucksDsrStats dsrstats = null;
             try {
@@ -163,7 +163,12 @@ public class GenericScene implements Scene
         // initialize fading
         Fading fading = createFading();
 
-        return new Field(spatial, fading, pathloss, mobility, Constants.PROPAGATION_LIMIT_DEFAULT);
+        Field field = new Field(spatial, fading, pathloss, mobility, Constants.PROPAGATION_LIMIT_DEFAULT);
+
+        // cache links between radios, if enabled
+        field.setLinkCache(options.getBooleanProperty(SimParams.SCENE_FIELD_LINKCACHE, false));
+
+        return field;
     }
 
     private Mobility createMobility() throws Exception {
@@ -193,7 +198,9 @@ public class GenericScene implements Scene
             float smin = options.getFloatProperty(SimParams.MOBILITY_RWP_SPEED_MIN);
             float smax = options.getFloatProperty(SimParams.MOBILITY_RWP_SPEED_MAX);
 
-            mobility = new Mobility.RandomWaypoint(bounds, pt, prec, smin, smax);
+            Mobility.RandomWaypoint rwp = new Mobility.RandomWaypoint(bounds, pt, prec, smin, smax);
+            rwp.setInterpolate(options.getBooleanProperty(SimParams.MOBILITY_RWP_INTERPOLATE, false));
+            mobility = rwp;
             log.debug("Initialized RWP mobility: pausetime=" + pt + " prec=" + prec + " minspeed=" + smin
                     + " maxspeed=" + smax);
         }
@@ -324,6 +331,9 @@ public class GenericScene implements Scene
                 Object[] params = new Object[] { bounds, precision, file, readerClass };
                 mobility = (Mobility) ReflectionUtils.createObject("ext.jist.swans.mobility.MobilityReplay",
                         paramTypes, params);
+                if (options.getBooleanProperty(SimParams.MOBILITY_REPLAY_INTERPOLATE, false)) {
+                    mobility.getClass().getMethod("setInterpolate", boolean.class).invoke(mobility, Boolean.TRUE);
+                }
             } catch (Exception e) {
                 throw new DucksException("Could not load MobilityReplay: " + e.getMessage());
             }
@@ -352,6 +362,8 @@ public class GenericScene implements Scene
             spatial = new Spatial.Grid(corners[0], corners[1], corners[2], corners[3], spatial_div);
         } else if (binning.equals(SimParams.SPATIAL_HIER)) {
             spatial = new Spatial.HierGrid(corners[0], corners[1], corners[2], corners[3], spatial_div);
+        } else if (binning.equals(SimParams.SPATIAL_MORTON)) {
+            spatial = new Spatial.MortonGrid(corners[0], corners[1], corners[2], corners[3], spatial_div);
         } else {
             throw new DucksException("Unknown spatial binning model: " + binning);
         }
@@ -381,9 +393,13 @@ public class GenericScene implements Scene
 
         if (pathloss == null) {
             throw new DucksException("PathLoss not initialized properly: " + loss);
-        } else {
-            return pathloss;
         }
+
+        double tableError = options.getDoubleProperty(SimParams.PATHLOSS_TABLE_ERROR, 0);
+        if (tableError > 0) {
+            pathloss = new PathLoss.Table(pathloss, tableError);
+        }
+        return pathloss;
     }
 
     private Fading createFading() throws Exception {
@@ -34,6 +34,7 @@ import org.apache.log4j.PropertyConfigurator;
 
 import ducks.eventlog.EventLog;
 import ducks.misc.DucksException;
+import ducks.misc.ResultRecord;
 import ext.util.ExtendedProperties;
 import ext.util.MersenneTwister;
 import ext.util.StringUtils;
@@ -138,6 +139,9 @@ public class Main implements DucksDriverModule, Runnable
         // 1. Setup simulation ............................................
 
         Main simuMain = new Main();
+        // results go back to the DUCKS controller with the completed job,
+        // printing them is only useful for direct calls
+        simuMain.sendResults = configStream != null;
 
         try {
             simuMain.configure(options);
@@ -167,6 +171,10 @@ public class Main implements DucksDriverModule, Runnable
     // The driver to use
     private DucksDriverModule  driver;
 
+    // Whether to deliver the results as binary record to the JiST client
+    // (i.e. the DUCKS controller), instead of printing them
+    private boolean            sendResults;
+
     public void configure(ExtendedProperties config) throws Exception {
         this.options = config;
         this.startTime = new Date();
@@ -231,7 +239,11 @@ public class Main implements DucksDriverModule, Runnable
      */
     public void run() {
         System.out.println(">>> Simu finished");
-        System.out.println(this.getResults());
+        if (sendResults) {
+            JistAPI.setResults(this.getResultRecord());
+        } else {
+            System.out.println(this.getResults());
+        }
         System.out.flush();
         EventLog.finalizeLoggers();
     }
@@ -277,6 +289,19 @@ public class Main implements DucksDriverModule, Runnable
         return result;
     }
 
+    /**
+     * getResultRecord reads all statistical information like getResults, but
+     * encodes it as compact binary record for the DUCKS controller.
+     * 
+     * @return Binary result record
+     * @see ResultRecord
+     */
+    public byte[] getResultRecord() {
+        ExtendedProperties results = this.getStats();
+        results.putAll(this.driver.getStats());
+        return ResultRecord.encode(results);
+    }
+
     public ExtendedProperties getStats() {
         // general purpose information of environment (memory consumption,
         // elapsed time)
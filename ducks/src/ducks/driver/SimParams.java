@@ -70,6 +70,7 @@ public class SimParams implements JistAPI.DoNotRewrite
 
     public static final String SCENE_FIELD_SIZE_X                    = "fieldsize.x";
     public static final String SCENE_FIELD_SIZE_Y                    = "fieldsize.y";
+    public static final String SCENE_FIELD_LINKCACHE                 = "field.linkcache";
 
     public static final String SCENE_STRAWVIZ                        = "strawviz";
 
@@ -78,6 +79,7 @@ public class SimParams implements JistAPI.DoNotRewrite
     public static final String SPATIAL_LINEAR                        = "linear";
     public static final String SPATIAL_GRID                          = "grid";
     public static final String SPATIAL_HIER                          = "hier";
+    public static final String SPATIAL_MORTON                        = "morton";
 
     public static final String SPATIAL_WRAPAROUND                    = "spatial.binning.wraparound";
     public static final String SPATIAL_WRAPAROUND_TRUE               = "true";
@@ -94,6 +96,8 @@ public class SimParams implements JistAPI.DoNotRewrite
     public static final String PATHLOSS                              = "pathloss";
     public static final String PATHLOSS_FREE_SPACE                   = "freespace";
     public static final String PATHLOSS_TWO_RAY                      = "tworay";
+    // tabulate received power within this error bound (dB); exact if unset
+    public static final String PATHLOSS_TABLE_ERROR                  = "pathloss.table.error";
 
     // Node parameters
     // .....................................................................
@@ -125,6 +129,8 @@ public class SimParams implements JistAPI.DoNotRewrite
     public static final String MOBILITY_RWP_PRECISION                = "mobility.waypoint.precision";
     public static final String MOBILITY_RWP_SPEED_MIN                = "mobility.waypoint.speed.min";
     public static final String MOBILITY_RWP_SPEED_MAX                = "mobility.waypoint.speed.max";
+    // move along whole legs, with locations interpolated by the field
+    public static final String MOBILITY_RWP_INTERPOLATE              = "mobility.waypoint.interpolate";
 
     public static final String MOBILITY_WALK_FIXEDRADIUS             = "mobility.walk.fixedradius";
     public static final String MOBILITY_WALK_RANDOMRADIUS            = "mobility.walk.randomradius";
@@ -149,6 +155,7 @@ public class SimParams implements JistAPI.DoNotRewrite
     public static final String MOBILITY_REPLAY_PRECISION             = "mobility.replay.precision";
     public static final String MOBILITY_REPLAY_CLASS                 = "mobility.replay.class";
     public static final String MOBILITY_REPLAY_FILE                  = "mobility.replay.file";
+    public static final String MOBILITY_REPLAY_INTERPOLATE           = "mobility.replay.interpolate";
 
     public static final String MOBILITY_STRAW_LAT_MAX                = "mobility.straw.latitude.max";
     public static final String MOBILITY_STRAW_LAT_MIN                = "mobility.straw.latitude.min";
@@ -198,6 +205,12 @@ public class SimParams implements JistAPI.DoNotRewrite
     public static final String MAC_PROMISCUOUS_TRUE                  = "true";
     public static final String MAC_PROMISCUOUS_FALSE                 = "false";
 
+    // Network
+    // duplicate suppression of received broadcasts: cached packets (0 to
+    // disable) and seconds after which a cached packet is forgotten
+    public static final String NET_DUP_CACHE_SIZE                    = "net.dup.size";
+    public static final String NET_DUP_CACHE_TIME                    = "net.dup.time";
+
     // Routing
     public static final String ROUTING_PROTOCOL                      = "routing";
 
@@ -208,6 +221,7 @@ public class SimParams implements JistAPI.DoNotRewrite
     public static final String ROUTING_PROTOCOL_CGGC                 = "cggc";
 
     public static final String ROUTING_CGGC_DO_BEACONING             = "routing.cggc.beaconing";
+    public static final String ROUTING_DSR_CACHE_CAPACITY            = "routing.dsr.cache.capacity";
 
     // Application
     public static final String TRAFFIC_TYPE                          = "traffic";
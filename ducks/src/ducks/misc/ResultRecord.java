@@ -0,0 +1,225 @@
+/*
+ * Ulm University DUCKS project
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ducks.misc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import ext.util.ExtendedProperties;
+
+/**
+ * Compact binary encoding of simulation results, which the driver hands to the
+ * DUCKS controller with the completed job instead of printing a result section
+ * to standard output.
+ *
+ * A record holds the result properties sorted by name. Each name is stored as
+ * the length of the prefix it shares with the previous name plus the remaining
+ * characters, since result names share long namespaces. Values that are
+ * integers or doubles (and print back exactly the same) are stored in binary,
+ * all others as strings, so decoding yields exactly the encoded properties.
+ */
+public class ResultRecord
+{
+
+    /** Record format identifier and version. */
+    private static final int  MAGIC       = 0x44520001;
+
+    /** Value type tags. */
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_LONG   = 1;
+    private static final byte TYPE_DOUBLE = 2;
+
+    /**
+     * Encode result properties
+     *
+     * @param results
+     *            Result properties
+     * @return Binary result record
+     */
+    public static byte[] encode(ExtendedProperties results) {
+        TreeSet names = new TreeSet();
+        Enumeration e = results.propertyNames();
+        while (e.hasMoreElements()) {
+            names.add(e.nextElement());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(names.size() * 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            writeVarLong(out, names.size());
+            String last = "";
+            Iterator it = names.iterator();
+            while (it.hasNext()) {
+                String name = (String) it.next();
+                int shared = 0;
+                int max = Math.min(name.length(), last.length());
+                while (shared < max && name.charAt(shared) == last.charAt(shared)) {
+                    shared++;
+                }
+                writeVarLong(out, shared);
+                writeString(out, name.substring(shared));
+                last = name;
+
+                String value = results.getProperty(name);
+                if (value == null) {
+                    value = String.valueOf(results.get(name));
+                }
+                if (isLong(value)) {
+                    out.writeByte(TYPE_LONG);
+                    long l = Long.parseLong(value);
+                    writeVarLong(out, (l << 1) ^ (l >> 63));
+                } else if (isDouble(value)) {
+                    out.writeByte(TYPE_DOUBLE);
+                    out.writeDouble(Double.parseDouble(value));
+                } else {
+                    out.writeByte(TYPE_STRING);
+                    writeString(out, value);
+                }
+            }
+            out.flush();
+        } catch (IOException ex) {
+            // not thrown by byte array streams
+            throw new RuntimeException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode result record
+     *
+     * @param record
+     *            Binary result record, as produced by encode
+     * @return Result properties
+     * @throws DucksException
+     *             Occurs if the record is not a valid result record
+     */
+    public static ExtendedProperties decode(byte[] record) throws DucksException {
+        ExtendedProperties results = new ExtendedProperties();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new DucksException("Unknown result record format");
+            }
+            long count = readVarLong(in);
+            String last = "";
+            for (long i = 0; i < count; i++) {
+                int shared = (int) readVarLong(in);
+                String name = last.substring(0, shared) + readString(in);
+                last = name;
+
+                String value;
+                byte type = in.readByte();
+                switch (type) {
+                    case TYPE_LONG:
+                        long l = readVarLong(in);
+                        value = Long.toString((l >>> 1) ^ -(l & 1));
+                        break;
+                    case TYPE_DOUBLE:
+                        value = Double.toString(in.readDouble());
+                        break;
+                    case TYPE_STRING:
+                        value = readString(in);
+                        break;
+                    default:
+                        throw new DucksException("Unknown result value type " + type + " of " + name);
+                }
+                results.setProperty(name, value);
+            }
+        } catch (IOException e) {
+            throw new DucksException("Result record is truncated: " + e.getMessage());
+        } catch (StringIndexOutOfBoundsException e) {
+            throw new DucksException("Result record is corrupt");
+        }
+        return results;
+    }
+
+    // Helper methods
+    // ...................................................................
+
+    private static boolean isLong(String value) {
+        int n = value.length();
+        if (n == 0 || n > 20) {
+            return false;
+        }
+        for (int i = value.charAt(0) == '-' ? 1 : 0; i < n; i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        try {
+            return Long.toString(Long.parseLong(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDouble(String value) {
+        if (value.length() == 0) {
+            return false;
+        }
+        char c = value.charAt(0);
+        if (c != '-' && c != 'N' && c != 'I' && !Character.isDigit(c)) {
+            return false;
+        }
+        try {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("variable-length integer too long");
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes("UTF-8");
+        writeVarLong(out, b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long n = readVarLong(in);
+        if (n > in.available()) {
+            throw new IOException("string length " + n + " exceeds record");
+        }
+        byte[] b = new byte[(int) n];
+        in.readFully(b);
+        return new String(b, "UTF-8");
+    }
+
+}
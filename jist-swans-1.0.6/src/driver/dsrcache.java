@@ -0,0 +1,481 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package driver;
+
+import jargs.gnu.CmdLineParser;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Random;
+
+import jist.swans.net.NetAddress;
+import jist.swans.route.RouteDsrCache;
+
+/**
+ * DSR route cache check: applies the same random sequence of route insertions
+ * and link breaks to the indexed route cache and to the list-based route cache
+ * it replaced, and checks that every lookup returns the same route. Since both
+ * caches hand out the inserted arrays, routes are compared by identity, which
+ * checks the shortest-first, then oldest-first order of equally long routes.
+ * Link breaks check the link index, since every destination is looked up after
+ * each of them.
+ *
+ * @see jist.swans.route.RouteDsrCache
+ */
+
+public class dsrcache
+{
+    // ////////////////////////////////////////////////
+    // Constants
+    //
+
+    /** benchmark version. */
+    public static final String VERSION = "0.1";
+
+    // ////////////////////////////////////////////////
+    // Static command-line helper methods
+    //
+
+    /**
+     * Print benchmark version information.
+     */
+    private static void showVersion() {
+        System.out.println("JiST Project: DSR route cache check v" + VERSION);
+        System.out.println();
+    }
+
+    /**
+     * Print benchmark command-line syntax.
+     */
+    private static void showUsage() {
+        System.out.println("Usage: dsrcache [-o <ops>] [-n <nodes>] [-l <hops>] [-b <fraction>] [-s <seed>]");
+        System.out.println("       dsrcache -v | -h");
+        System.out.println();
+        System.out.println("  -h, --help         display this help information");
+        System.out.println("  -v, --version      display version information");
+        System.out.println("  -o, --ops          number of insert and break operations [200000]");
+        System.out.println("  -n, --nodes        number of nodes, all of them destinations [50]");
+        System.out.println("  -l, --hops         largest number of intermediate hops [6]");
+        System.out.println("  -b, --breaks       fraction of operations that break a link [0.3]");
+        System.out.println("  -s, --seed         random seed [0]");
+        System.out.println();
+    }
+
+    /** Parsed command-line options. */
+    private static class cmdlineOpts
+    {
+        // defaults
+        /** print help. */
+        public boolean help    = false;
+        /** print version. */
+        public boolean version = false;
+        /** number of operations. */
+        public int     ops     = 200000;
+        /** number of nodes. */
+        public int     nodes   = 50;
+        /** largest number of intermediate hops. */
+        public int     hops    = 6;
+        /** fraction of link breaks. */
+        public double  breaks  = 0.3;
+        /** random seed. */
+        public long    seed    = 0;
+    }
+
+    /**
+     * Parse command-line options.
+     *
+     * @param args
+     *            command-line parameters
+     * @return parsed command-line options
+     * @throws CmdLineParser.OptionException
+     *             invalid option encountered
+     */
+    private static cmdlineOpts parseCommandLineOptions(String[] args) throws CmdLineParser.OptionException {
+        // setup
+        cmdlineOpts options = new cmdlineOpts();
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+        CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+        CmdLineParser.Option opt_ops = parser.addStringOption('o', "ops");
+        CmdLineParser.Option opt_nodes = parser.addStringOption('n', "nodes");
+        CmdLineParser.Option opt_hops = parser.addStringOption('l', "hops");
+        CmdLineParser.Option opt_breaks = parser.addStringOption('b', "breaks");
+        CmdLineParser.Option opt_seed = parser.addStringOption('s', "seed");
+
+        // parse
+        parser.parse(args);
+        if (parser.getOptionValue(opt_help) != null) {
+            options.help = true;
+        }
+        if (parser.getOptionValue(opt_version) != null) {
+            options.version = true;
+        }
+        if (parser.getOptionValue(opt_ops) != null) {
+            options.ops = Integer.parseInt((String) parser.getOptionValue(opt_ops));
+        }
+        if (parser.getOptionValue(opt_nodes) != null) {
+            options.nodes = Integer.parseInt((String) parser.getOptionValue(opt_nodes));
+        }
+        if (parser.getOptionValue(opt_hops) != null) {
+            options.hops = Integer.parseInt((String) parser.getOptionValue(opt_hops));
+        }
+        if (parser.getOptionValue(opt_breaks) != null) {
+            options.breaks = Double.parseDouble((String) parser.getOptionValue(opt_breaks));
+        }
+        if (parser.getOptionValue(opt_seed) != null) {
+            options.seed = Long.parseLong((String) parser.getOptionValue(opt_seed));
+        }
+        return options;
+    }
+
+    // ////////////////////////////////////////////////
+    // reference cache
+    //
+
+    /**
+     * Route cache as previously kept by RouteDsr: a list of routes per
+     * destination, sorted by length, with links found by scanning every route.
+     */
+    private static class ListCache
+    {
+        /** local node address. */
+        private NetAddress localAddr;
+
+        /** destinations to <code>LinkedList</code>s of routes. */
+        private Hashtable  routeCache = new Hashtable();
+
+        /**
+         * Create empty route cache.
+         *
+         * @param localAddr
+         *            local node address
+         */
+        ListCache(NetAddress localAddr) {
+            this.localAddr = localAddr;
+        }
+
+        /**
+         * Insert a route, unless the same route is already cached.
+         *
+         * @param dest
+         *            route destination
+         * @param route
+         *            intermediate hops
+         * @return whether route was inserted
+         */
+        boolean insert(NetAddress dest, NetAddress[] route) {
+            if (routeCache.containsKey(dest)) {
+                LinkedList routes = (LinkedList) routeCache.get(dest);
+                for (ListIterator iter = routes.listIterator(); iter.hasNext();) {
+                    NetAddress[] curRoute = (NetAddress[]) iter.next();
+                    if (curRoute.length < route.length)
+                        continue;
+                    if (curRoute.length == route.length) {
+                        if (Arrays.equals(curRoute, route))
+                            return false;
+                    }
+                    if (curRoute.length > route.length) {
+                        iter.previous();
+                        iter.add(route);
+                        return true;
+                    }
+                }
+                routes.addLast(route);
+            } else {
+                LinkedList routes = new LinkedList();
+                routes.add(route);
+                routeCache.put(dest, routes);
+            }
+            return true;
+        }
+
+        /**
+         * Remove every cached route that uses a directed link.
+         *
+         * @param addr1
+         *            sending node of link
+         * @param addr2
+         *            receiving node of link
+         * @return number of removed routes
+         */
+        int removeLink(NetAddress addr1, NetAddress addr2) {
+            int removed = 0;
+            Enumeration e = routeCache.keys();
+            while (e.hasMoreElements()) {
+                NetAddress dest = (NetAddress) e.nextElement();
+                LinkedList routes = (LinkedList) routeCache.get(dest);
+                Iterator routeIter = routes.iterator();
+                while (routeIter.hasNext()) {
+                    NetAddress[] route = (NetAddress[]) routeIter.next();
+                    boolean remove = false;
+                    if (addr1.equals(localAddr) && route.length > 0 && addr2.equals(route[0])) {
+                        remove = true;
+                    } else if (addr1.equals(localAddr) && route.length == 0 && addr2.equals(dest)) {
+                        remove = true;
+                    } else if (addr2.equals(dest) && route.length > 0 && addr1.equals(route[route.length - 1])) {
+                        remove = true;
+                    } else {
+                        for (int i = 1; i < route.length; i++) {
+                            if (addr1.equals(route[i - 1]) && addr2.equals(route[i])) {
+                                remove = true;
+                                break;
+                            }
+                        }
+                    }
+                    if (remove) {
+                        routeIter.remove();
+                        removed++;
+                    }
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Return shortest cached route to a destination.
+         *
+         * @param dest
+         *            route destination
+         * @return intermediate hops, or null if no route cached
+         */
+        NetAddress[] get(NetAddress dest) {
+            LinkedList routes = (LinkedList) routeCache.get(dest);
+            if (routes == null || routes.isEmpty())
+                return null;
+            return (NetAddress[]) routes.getFirst();
+        }
+
+        /**
+         * Return all cached routes to a destination.
+         *
+         * @param dest
+         *            route destination
+         * @return cached routes, or null if none
+         */
+        LinkedList getAll(NetAddress dest) {
+            return (LinkedList) routeCache.get(dest);
+        }
+
+        /**
+         * Return number of cached routes.
+         *
+         * @return number of cached routes
+         */
+        int size() {
+            int size = 0;
+            Enumeration e = routeCache.elements();
+            while (e.hasMoreElements()) {
+                size += ((LinkedList) e.nextElement()).size();
+            }
+            return size;
+        }
+    }
+
+    // ////////////////////////////////////////////////
+    // check
+    //
+
+    /** number of mismatches found. */
+    private static int errors;
+
+    /**
+     * Report a mismatch.
+     *
+     * @param op
+     *            operation number
+     * @param msg
+     *            mismatch description
+     */
+    private static void error(int op, String msg) {
+        if (errors < 10) {
+            System.out.println("  op " + op + ": " + msg);
+        }
+        errors++;
+    }
+
+    /**
+     * Compare the routes both caches return for every destination.
+     *
+     * @param op
+     *            operation number
+     * @param cache
+     *            indexed cache
+     * @param ref
+     *            reference cache
+     * @param addr
+     *            node addresses
+     */
+    private static void compare(int op, RouteDsrCache cache, ListCache ref, NetAddress[] addr) {
+        for (int i = 1; i < addr.length; i++) {
+            NetAddress[] route = cache.get(addr[i]), expected = ref.get(addr[i]);
+            if (route != expected) {
+                error(op, "route to " + addr[i] + " is " + toString(route) + ", expected " + toString(expected));
+            }
+        }
+        if (cache.size() != ref.size()) {
+            error(op, "size is " + cache.size() + ", expected " + ref.size());
+        }
+    }
+
+    /**
+     * Return route as string.
+     *
+     * @param route
+     *            intermediate hops, or null
+     * @return route as string
+     */
+    private static String toString(NetAddress[] route) {
+        return route == null ? "none" : Arrays.asList(route).toString();
+    }
+
+    /**
+     * Create random route with distinct intermediate hops, that are neither
+     * the local node nor the destination.
+     *
+     * @param random
+     *            random number generator
+     * @param addr
+     *            node addresses, local node first
+     * @param dest
+     *            index of destination
+     * @param maxHops
+     *            largest number of intermediate hops
+     * @return intermediate hops
+     */
+    private static NetAddress[] randomRoute(Random random, NetAddress[] addr, int dest, int maxHops) {
+        int len = random.nextInt(StrictMath.min(maxHops, addr.length - 2) + 1);
+        NetAddress[] route = new NetAddress[len];
+        boolean[] used = new boolean[addr.length];
+        used[0] = used[dest] = true;
+        for (int i = 0; i < len; i++) {
+            int n;
+            do {
+                n = 1 + random.nextInt(addr.length - 1);
+            } while (used[n]);
+            used[n] = true;
+            route[i] = addr[n];
+        }
+        return route;
+    }
+
+    /**
+     * Check entry point: DSR route cache against reference.
+     *
+     * @param args
+     *            command-line parameters
+     */
+    public static void main(String[] args) {
+        try {
+            // command line
+            final cmdlineOpts options = parseCommandLineOptions(args);
+            // show usage
+            showVersion();
+            if (options.help) {
+                showUsage();
+                return;
+            }
+            // show version
+            if (options.version) {
+                return;
+            }
+            if (options.nodes < 2) {
+                System.out.println("At least two nodes required");
+                System.exit(1);
+            }
+            // local node is addr[0], all others are destinations
+            NetAddress[] addr = new NetAddress[options.nodes];
+            for (int i = 0; i < addr.length; i++) {
+                addr[i] = new NetAddress(i + 1);
+            }
+            RouteDsrCache cache = new RouteDsrCache(addr[0]);
+            ListCache ref = new ListCache(addr[0]);
+            Random random = new Random(options.seed);
+            int inserts = 0, breaks = 0, removed = 0;
+            int op;
+            for (op = 0; op < options.ops; op++) {
+                if (random.nextDouble() < options.breaks) {
+                    // break a link, mostly one of a cached route
+                    NetAddress from, to;
+                    int dest = 1 + random.nextInt(addr.length - 1);
+                    LinkedList routes = ref.getAll(addr[dest]);
+                    if (random.nextInt(4) > 0 && routes != null && !routes.isEmpty()) {
+                        NetAddress[] route = (NetAddress[]) routes.get(random.nextInt(routes.size()));
+                        int i = random.nextInt(route.length + 1);
+                        from = i == 0 ? addr[0] : route[i - 1];
+                        to = i == route.length ? addr[dest] : route[i];
+                    } else {
+                        from = addr[random.nextInt(addr.length)];
+                        to = addr[random.nextInt(addr.length)];
+                    }
+                    int n = cache.removeLink(from, to), expected = ref.removeLink(from, to);
+                    if (n != expected) {
+                        error(op, "link " + from + "-" + to + " removed " + n + " routes, expected " + expected);
+                    }
+                    breaks++;
+                    removed += expected;
+                    compare(op, cache, ref, addr);
+                } else {
+                    // insert random route
+                    int dest = 1 + random.nextInt(addr.length - 1);
+                    NetAddress[] route = randomRoute(random, addr, dest, options.hops);
+                    boolean inserted = cache.insert(addr[dest], route), expected = ref.insert(addr[dest], route);
+                    if (inserted != expected) {
+                        error(op, "insert of " + toString(route) + " to " + addr[dest] + " returned " + inserted);
+                    }
+                    if (expected) {
+                        inserts++;
+                    }
+                    NetAddress[] got = cache.get(addr[dest]);
+                    if (got != ref.get(addr[dest])) {
+                        error(op, "route to " + addr[dest] + " is " + toString(got) + ", expected "
+                                + toString(ref.get(addr[dest])));
+                    }
+                }
+            }
+            // drain: break a link of every returned route until both are empty,
+            // which walks each destination through all of its routes in order
+            int drained = 0;
+            for (int dest = 1; dest < addr.length; dest++) {
+                NetAddress[] route;
+                while ((route = ref.get(addr[dest])) != null) {
+                    int i = random.nextInt(route.length + 1);
+                    NetAddress from = i == 0 ? addr[0] : route[i - 1];
+                    NetAddress to = i == route.length ? addr[dest] : route[i];
+                    int n = cache.removeLink(from, to), expected = ref.removeLink(from, to);
+                    if (n != expected) {
+                        error(op, "link " + from + "-" + to + " removed " + n + " routes, expected " + expected);
+                    }
+                    drained += expected;
+                    compare(op, cache, ref, addr);
+                    op++;
+                }
+            }
+            if (cache.size() != 0) {
+                error(op, "size after drain is " + cache.size());
+            }
+            System.out.println("operations = " + options.ops);
+            System.out.println("nodes      = " + options.nodes);
+            System.out.println("inserted   = " + inserts + " routes");
+            System.out.println("broken     = " + breaks + " links, " + removed + " routes removed");
+            System.out.println("drained    = " + drained + " routes");
+            if (errors > 0) {
+                System.out.println("FAILED: " + errors + " mismatches");
+                System.exit(1);
+            }
+            System.out.println("OK: identical routes");
+        } catch (CmdLineParser.OptionException e) {
+            System.out.println("Error parsing command line: " + e.getMessage());
+        }
+    }
+
+} // class: dsrcache
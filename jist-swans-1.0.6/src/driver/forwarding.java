@@ -0,0 +1,254 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package driver;
+
+import jargs.gnu.CmdLineParser;
+
+import jist.swans.Constants;
+import jist.swans.misc.Message;
+import jist.swans.misc.MessageBytes;
+import jist.swans.net.NetAddress;
+import jist.swans.net.NetMessage;
+
+/**
+ * IP forwarding benchmark: measures how many packets per second pass through
+ * the copy that every forwarding node makes of a received (frozen) packet,
+ * with and without IP options, and checks that copies share options until
+ * they are modified.
+ *
+ * @see jist.swans.net.NetMessage.Ip#forward()
+ */
+
+public class forwarding
+{
+    // ////////////////////////////////////////////////
+    // Constants
+    //
+
+    /** benchmark version. */
+    public static final String VERSION = "0.1";
+
+    // ////////////////////////////////////////////////
+    // Static command-line helper methods
+    //
+
+    /**
+     * Print benchmark version information.
+     */
+    private static void showVersion() {
+        System.out.println("JiST Project: IP forwarding performance v" + VERSION);
+        System.out.println();
+    }
+
+    /**
+     * Print benchmark command-line syntax.
+     */
+    private static void showUsage() {
+        System.out.println("Usage: forwarding [-n <num>] [-t <hops>]");
+        System.out.println("       forwarding -v | -h");
+        System.out.println();
+        System.out.println("  -h, --help         display this help information");
+        System.out.println("  -v, --version      display version information");
+        System.out.println("  -n, --num          number of packets [1000000]");
+        System.out.println("  -t, --hops         hops per packet [20]");
+        System.out.println();
+    }
+
+    /** Parsed command-line options. */
+    private static class cmdlineOpts
+    {
+        // defaults
+        /** print help. */
+        public boolean help    = false;
+        /** print version. */
+        public boolean version = false;
+        /** number of packets. */
+        public int     num     = 1000000;
+        /** hops per packet. */
+        public int     hops    = 20;
+    }
+
+    /**
+     * Parse command-line options.
+     *
+     * @param args
+     *            command-line parameters
+     * @return parsed command-line options
+     * @throws CmdLineParser.OptionException
+     *             invalid option encountered
+     */
+    private static cmdlineOpts parseCommandLineOptions(String[] args) throws CmdLineParser.OptionException {
+        // setup
+        cmdlineOpts options = new cmdlineOpts();
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+        CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+        CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+        CmdLineParser.Option opt_hops = parser.addStringOption('t', "hops");
+
+        // parse
+        parser.parse(args);
+        if (parser.getOptionValue(opt_help) != null) {
+            options.help = true;
+        }
+        if (parser.getOptionValue(opt_version) != null) {
+            options.version = true;
+        }
+        if (parser.getOptionValue(opt_num) != null) {
+            options.num = Integer.parseInt((String) parser.getOptionValue(opt_num));
+        }
+        if (parser.getOptionValue(opt_hops) != null) {
+            options.hops = Integer.parseInt((String) parser.getOptionValue(opt_hops));
+        }
+        return options;
+    }
+
+    // ////////////////////////////////////////////////
+    // benchmarks
+    //
+
+    /** sink for computed values, so that loops are not optimized away. */
+    private static long sink;
+
+    /**
+     * Create a frozen packet, as received from the radio.
+     *
+     * @param payload
+     *            packet payload
+     * @param src
+     *            packet source
+     * @param routed
+     *            whether packet carries a source route option
+     * @return frozen packet
+     */
+    private static NetMessage.Ip packet(Message payload, NetAddress src, boolean routed) {
+        NetMessage.Ip ip = new NetMessage.Ip(payload, src, NetAddress.ANY, Constants.NET_PROTOCOL_UDP,
+                Constants.NET_PRIORITY_NORMAL, Constants.TTL_DEFAULT);
+        if (routed) {
+            ip.setOption(Constants.IP_OPTION_ZRP, new NetMessage.IpOptionSourceRoute(new NetAddress[] { src,
+                    NetAddress.ANY }));
+        }
+        return ip.freeze();
+    }
+
+    /**
+     * Forward packets over a number of hops.
+     *
+     * @param name
+     *            benchmark name
+     * @param options
+     *            command-line options
+     * @param routed
+     *            whether packets carry a source route option
+     * @param copy
+     *            whether to use a general copy instead of forward
+     */
+    private static void benchmark(String name, cmdlineOpts options, boolean routed, boolean copy) {
+        Message payload = new MessageBytes(new byte[512]);
+        NetAddress src = new NetAddress(1);
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < options.num; i++) {
+            NetMessage.Ip ip = packet(payload, src, routed);
+            for (int h = 0; h < options.hops; h++) {
+                if (copy) {
+                    ip = ip.copy();
+                    ip.decTTL();
+                } else {
+                    ip = ip.forward();
+                }
+                ip.freeze();
+            }
+            sink += ip.getTTL() + ip.getSize();
+        }
+        long time = System.currentTimeMillis() - startTime;
+        long forwarded = (long) options.num * options.hops;
+        System.out.println(name + ":");
+        System.out.println("  time             = " + time + " ms");
+        System.out.println("  forwarded        = " + (long) (forwarded * 1000.0 / Math.max(1, time)) + " packets/s");
+    }
+
+    /**
+     * Check copy semantics of forwarded packets.
+     *
+     * @return whether all checks passed
+     */
+    private static boolean check() {
+        Message payload = new MessageBytes(new byte[512]);
+        NetAddress a = new NetAddress(1), b = new NetAddress(2);
+        NetMessage.Ip ip = packet(payload, a, true);
+        NetMessage.Ip fwd = ip.forward();
+        boolean ok = fwd.getTTL() == ip.getTTL() - 1 && fwd.getId() == ip.getId() && fwd.getSrc() == ip.getSrc()
+                && fwd.getPayload() == payload && fwd.getSize() == ip.getSize()
+                && fwd.getTrafficClass() == ip.getTrafficClass()
+                && fwd.getOption(Constants.IP_OPTION_ZRP) == ip.getOption(Constants.IP_OPTION_ZRP);
+        // modifying the copy leaves the original untouched
+        fwd.setOption(Constants.IP_OPTION_HOPLOC, new NetMessage.IpOptionHopLoc(null));
+        fwd.removeOption(Constants.IP_OPTION_ZRP);
+        ok &= ip.getOptions().size() == 1 && ip.getOption(Constants.IP_OPTION_ZRP) != null
+                && ip.getOption(Constants.IP_OPTION_HOPLOC) == null;
+        ok &= fwd.getOptions().size() == 1 && fwd.getOptions().containsKey(Constants.IP_OPTION_HOPLOC);
+        // frozen packets cannot be modified
+        try {
+            ip.setOption(Constants.IP_OPTION_HOPLOC, new NetMessage.IpOptionHopLoc(null));
+            ok = false;
+        } catch (IllegalStateException e) {
+        }
+        // identification numbers are consecutive per source
+        short a1 = packet(payload, a, false).getId();
+        packet(payload, b, false);
+        short a2 = packet(payload, a, false).getId();
+        ok &= a2 == (short) (a1 + 1);
+        System.out.println("copy semantics   = " + ok);
+        return ok;
+    }
+
+    /**
+     * Benchmark entry point: ip forwarding performance.
+     *
+     * @param args
+     *            command-line parameters
+     */
+    public static void main(String[] args) {
+        try {
+            // command line
+            final cmdlineOpts options = parseCommandLineOptions(args);
+            // show usage
+            showVersion();
+            if (options.help) {
+                showUsage();
+                return;
+            }
+            // show version
+            if (options.version) {
+                return;
+            }
+            System.out.println("packets = " + options.num);
+            System.out.println("hops    = " + options.hops);
+            System.out.println();
+            if (!check()) {
+                System.out.println("FAILED");
+                System.exit(1);
+            }
+            // warm up
+            cmdlineOpts warmup = new cmdlineOpts();
+            warmup.num = options.num / 10;
+            warmup.hops = options.hops;
+            benchmark("warmup", warmup, true, false);
+            benchmark("warmup", warmup, true, true);
+            // measure
+            benchmark("forward", options, false, false);
+            benchmark("forward, source route", options, true, false);
+            benchmark("copy", options, false, true);
+            benchmark("copy, source route", options, true, true);
+        } catch (CmdLineParser.OptionException e) {
+            System.out.println("Error parsing command line: " + e.getMessage());
+        }
+    }
+
+} // class: forwarding
@@ -0,0 +1,279 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package driver;
+
+import jargs.gnu.CmdLineParser;
+
+import java.util.Random;
+
+import jist.swans.Constants;
+import jist.swans.field.Fading;
+import jist.swans.field.PathLoss;
+import jist.swans.misc.Location;
+import jist.swans.misc.Util;
+import jist.swans.radio.RadioInfo;
+
+/**
+ * Path loss and fading benchmark: compares the exact path loss models with
+ * their tabulated variants, checking that the tabulated received power stays
+ * within the error bound of the exact one, and compares per-receiver with
+ * batch fading.
+ *
+ * @see jist.swans.field.PathLoss.Table
+ */
+
+public class pathloss
+{
+    // ////////////////////////////////////////////////
+    // Constants
+    //
+
+    /** benchmark version. */
+    public static final String VERSION        = "0.1";
+
+    /** Rician fading k-factor. */
+    public static final double RICIAN_KFACTOR = 6.0;
+
+    // ////////////////////////////////////////////////
+    // Static command-line helper methods
+    //
+
+    /**
+     * Print benchmark version information.
+     */
+    private static void showVersion() {
+        System.out.println("JiST Project: Path loss and fading performance v" + VERSION);
+        System.out.println();
+    }
+
+    /**
+     * Print benchmark command-line syntax.
+     */
+    private static void showUsage() {
+        System.out.println("Usage: pathloss [-n <num>] [-d <dim>] [-e <error>]");
+        System.out.println("       pathloss -v | -h");
+        System.out.println();
+        System.out.println("  -h, --help         display this help information");
+        System.out.println("  -v, --version      display version information");
+        System.out.println("  -n, --num          number of receivers [100000]");
+        System.out.println("  -d, --dim          largest distance to receivers (meters) [2000]");
+        System.out.println("  -e, --error        tabulated path loss error bound (dB) [0.01]");
+        System.out.println();
+    }
+
+    /** Parsed command-line options. */
+    private static class cmdlineOpts
+    {
+        // defaults
+        /** print help. */
+        public boolean help    = false;
+        /** print version. */
+        public boolean version = false;
+        /** number of receivers. */
+        public int     num     = 100000;
+        /** largest distance to receivers. */
+        public float   dim     = 2000;
+        /** tabulated path loss error bound. */
+        public double  error   = 0.01;
+    }
+
+    /**
+     * Parse command-line options.
+     *
+     * @param args
+     *            command-line parameters
+     * @return parsed command-line options
+     * @throws CmdLineParser.OptionException
+     *             invalid option encountered
+     */
+    private static cmdlineOpts parseCommandLineOptions(String[] args) throws CmdLineParser.OptionException {
+        // setup
+        cmdlineOpts options = new cmdlineOpts();
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+        CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+        CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+        CmdLineParser.Option opt_dim = parser.addStringOption('d', "dim");
+        CmdLineParser.Option opt_error = parser.addStringOption('e', "error");
+
+        // parse
+        parser.parse(args);
+        if (parser.getOptionValue(opt_help) != null) {
+            options.help = true;
+        }
+        if (parser.getOptionValue(opt_version) != null) {
+            options.version = true;
+        }
+        if (parser.getOptionValue(opt_num) != null) {
+            options.num = Integer.parseInt((String) parser.getOptionValue(opt_num));
+        }
+        if (parser.getOptionValue(opt_dim) != null) {
+            options.dim = Float.parseFloat((String) parser.getOptionValue(opt_dim));
+        }
+        if (parser.getOptionValue(opt_error) != null) {
+            options.error = Double.parseDouble((String) parser.getOptionValue(opt_error));
+        }
+        return options;
+    }
+
+    // ////////////////////////////////////////////////
+    // benchmarks
+    //
+
+    /** sink for computed values, so that loops are not optimized away. */
+    private static double sink;
+
+    /**
+     * Compare exact and tabulated path loss model.
+     *
+     * @param name
+     *            model name
+     * @param model
+     *            exact path loss model
+     * @param options
+     *            command-line options
+     * @param radio
+     *            radio information of all radios
+     * @param src
+     *            source location
+     * @param dst
+     *            receiver locations
+     * @return whether tabulated model is within error bound
+     */
+    private static boolean benchmark(String name, PathLoss model, cmdlineOpts options, RadioInfo radio,
+            Location src, Location[] dst) {
+        PathLoss.Table table = new PathLoss.Table(model, options.error);
+        double power = radio.getShared().getPower();
+        // accuracy
+        double error = 0;
+        for (int i = 0; i < dst.length; i++) {
+            double exact = Util.fromDB(power - model.compute(radio, src, radio, dst[i]));
+            double approx = table.computePower_mW(radio, src, radio, dst[i], src.distanceSqr(dst[i]));
+            error = StrictMath.max(error, StrictMath.abs(Util.toDB(approx) - Util.toDB(exact)));
+        }
+        // timing
+        int rounds = (int) StrictMath.max(10, 10000000 / dst.length);
+        long startTime = System.currentTimeMillis();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < dst.length; i++) {
+                sink += Util.fromDB(power - model.compute(radio, src, radio, dst[i]));
+            }
+        }
+        long exactTime = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < dst.length; i++) {
+                sink += table.computePower_mW(radio, src, radio, dst[i], src.distanceSqr(dst[i]));
+            }
+        }
+        long tableTime = System.currentTimeMillis() - startTime;
+        double tableError = table.getError(radio, src.getHeight(), radio, dst[0].getHeight());
+        System.out.println(name + ":");
+        System.out.println("  exact time       = " + exactTime * 1000000.0 / ((long) rounds * dst.length)
+                + " ns/receiver");
+        System.out.println("  table time       = " + tableTime * 1000000.0 / ((long) rounds * dst.length)
+                + " ns/receiver");
+        System.out.println("  table error      = " + tableError + " dB at interval midpoints");
+        System.out.println("  sampled error    = " + error + " dB (bound " + options.error + " dB)");
+        return error <= options.error;
+    }
+
+    /**
+     * Compare per-receiver and batch fading.
+     *
+     * @param name
+     *            model name
+     * @param fading
+     *            fading model
+     * @param num
+     *            number of receivers
+     * @return whether batch fading draws the same fades
+     */
+    private static boolean benchmark(String name, Fading fading, int num) {
+        double[] single = new double[num], batch = new double[num];
+        Constants.random.setSeed(0);
+        for (int i = 0; i < num; i++) {
+            single[i] = fading.compute();
+        }
+        Constants.random.setSeed(0);
+        fading.compute(batch, num);
+        boolean same = java.util.Arrays.equals(single, batch);
+        int rounds = (int) StrictMath.max(10, 10000000 / num);
+        long startTime = System.currentTimeMillis();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < num; i++) {
+                single[i] = fading.compute();
+            }
+        }
+        long singleTime = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        for (int r = 0; r < rounds; r++) {
+            fading.compute(batch, num);
+        }
+        long batchTime = System.currentTimeMillis() - startTime;
+        System.out.println(name + ":");
+        System.out.println("  single time      = " + singleTime * 1000000.0 / ((long) rounds * num)
+                + " ns/receiver");
+        System.out.println("  batch time       = " + batchTime * 1000000.0 / ((long) rounds * num)
+                + " ns/receiver");
+        System.out.println("  same fades       = " + same);
+        return same;
+    }
+
+    /**
+     * Benchmark entry point: path loss and fading performance.
+     *
+     * @param args
+     *            command-line parameters
+     */
+    public static void main(String[] args) {
+        try {
+            // command line
+            final cmdlineOpts options = parseCommandLineOptions(args);
+            // show usage
+            showVersion();
+            if (options.help) {
+                showUsage();
+                return;
+            }
+            // show version
+            if (options.version) {
+                return;
+            }
+            RadioInfo.RadioInfoShared radioInfoShared = RadioInfo.createShared(Constants.FREQUENCY_DEFAULT,
+                    Constants.BANDWIDTH_DEFAULT, Constants.TRANSMIT_DEFAULT, Constants.GAIN_DEFAULT,
+                    Util.fromDB(Constants.SENSITIVITY_DEFAULT), Util.fromDB(Constants.THRESHOLD_DEFAULT),
+                    Constants.TEMPERATURE_DEFAULT, Constants.TEMPERATURE_FACTOR_DEFAULT,
+                    Constants.AMBIENT_NOISE_DEFAULT);
+            RadioInfo radio = new RadioInfo(new RadioInfo.RadioInfoUnique(), radioInfoShared);
+            // receivers at uniformly random locations within distance
+            Random random = new Random(0);
+            Location src = new Location.Location2D(0, 0);
+            Location[] dst = new Location[options.num];
+            for (int i = 0; i < dst.length; i++) {
+                dst[i] = new Location.Location2D(options.dim * random.nextFloat(), options.dim * random.nextFloat());
+            }
+            System.out.println("receivers = " + options.num);
+            System.out.println("distance  = " + options.dim);
+            System.out.println();
+            boolean ok = true;
+            ok &= benchmark("FreeSpace", new PathLoss.FreeSpace(), options, radio, src, dst);
+            ok &= benchmark("TwoRay", new PathLoss.TwoRay(), options, radio, src, dst);
+            ok &= benchmark("Rayleigh", new Fading.Rayleigh(), options.num);
+            ok &= benchmark("Rician", new Fading.Rician(RICIAN_KFACTOR), options.num);
+            if (!ok) {
+                System.out.println("FAILED");
+                System.exit(1);
+            }
+        } catch (CmdLineParser.OptionException e) {
+            System.out.println("Error parsing command line: " + e.getMessage());
+        }
+    }
+
+} // class: pathloss
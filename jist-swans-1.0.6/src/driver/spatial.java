@@ -44,6 +44,8 @@ public class spatial
     private static final int    MODE_SPATIAL_GRID          = 1;
     /** benchmark binning types. */
     private static final int    MODE_SPATIAL_HIER          = 2;
+    /** benchmark binning types. */
+    private static final int    MODE_SPATIAL_MORTON        = 3;
 
     /** benchmark binning type strings. */
     private static final String MODE_SPATIAL_STRING_LINEAR = "linear";
@@ -51,6 +53,8 @@ public class spatial
     private static final String MODE_SPATIAL_STRING_GRID   = "grid";
     /** benchmark binning type strings. */
     private static final String MODE_SPATIAL_STRING_HIER   = "hier";
+    /** benchmark binning type strings. */
+    private static final String MODE_SPATIAL_STRING_MORTON = "morton";
 
     // ////////////////////////////////////////////////
     // Static command-line helper methods
@@ -76,7 +80,7 @@ public class spatial
         System.out.println("  -v, --version      display version information");
         System.out.println("  -n, --num          number of nodes");
         System.out.println("  -d, --dim          length of square field (meters)");
-        System.out.println("  -s, --spatial      [linear], grid:n, hier:n");
+        System.out.println("  -s, --spatial      [linear], grid:n, hier:n, morton:n");
         System.out.println();
     }
 
@@ -144,6 +148,9 @@ public class spatial
         } else if (options.spatial.startsWith(MODE_SPATIAL_STRING_HIER)) {
             options.spatial_mode = MODE_SPATIAL_HIER;
             options.spatial_div = Integer.parseInt(options.spatial.split(":")[1]);
+        } else if (options.spatial.startsWith(MODE_SPATIAL_STRING_MORTON)) {
+            options.spatial_mode = MODE_SPATIAL_MORTON;
+            options.spatial_div = Integer.parseInt(options.spatial.split(":")[1]);
         } else {
             throw new RuntimeException("invalid spatial structure: " + options.spatial);
         }
@@ -225,6 +232,9 @@ public class spatial
                 case MODE_SPATIAL_HIER:
                     spatial = new Spatial.HierGrid(bounds, options.spatial_div);
                     break;
+                case MODE_SPATIAL_MORTON:
+                    spatial = new Spatial.MortonGrid(bounds, options.spatial_div);
+                    break;
                 default:
                     throw new RuntimeException("invalid spatial binning mode");
             }
@@ -248,6 +258,7 @@ public class spatial
                     bins = options.spatial_div * options.spatial_div;
                     break;
                 case MODE_SPATIAL_HIER:
+                case MODE_SPATIAL_MORTON:
                     bins = (long) StrictMath.pow(4, options.spatial_div);
                     break;
                 default:
@@ -258,12 +269,30 @@ public class spatial
             System.out.println("Average node/bin = " + nodebin);
             // run spatial data structure benchmark
             System.out.print("Running benchmark... ");
+            int rounds = (int) StrictMath.max(10, 100000 / options.num);
             long startTime = System.currentTimeMillis();
-            for (int i = 0; i < 10; i++) {
+            for (int i = 0; i < rounds; i++) {
                 f.computeAvgConnectivity(false);
             }
             long endTime = System.currentTimeMillis();
             System.out.println("done.");
+            System.out.println("Transmit time    = " + (endTime - startTime) * 1000.0 / (rounds * options.num)
+                    + " us/transmission");
+            // run radio move benchmark
+            Placement placement = new Placement.Random(bounds);
+            Location[] locs = new Location[(int) options.num];
+            for (int i = 0; i < locs.length; i++) {
+                locs[i] = placement.getNextLocation();
+            }
+            startTime = System.currentTimeMillis();
+            for (int i = 0; i < rounds * 10; i++) {
+                for (int j = 0; j < locs.length; j++) {
+                    f.moveRadio(new Integer(j), locs[(j + i) % locs.length]);
+                }
+            }
+            endTime = System.currentTimeMillis();
+            System.out.println("Move time        = " + (endTime - startTime) * 1000.0 / (rounds * 10 * options.num)
+                    + " us/move");
             /*
              * // count bins Spatial.LinearList.NUM = 0;
              * f.computeAvgConnectivity(false); double numbins =
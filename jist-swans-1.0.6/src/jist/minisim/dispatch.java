@@ -0,0 +1,305 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.minisim;
+
+import jargs.gnu.CmdLineParser;
+
+import java.lang.reflect.Method;
+
+import jist.runtime.Controller;
+import jist.runtime.Invoker;
+
+/**
+ * Measures event dispatch throughput: reflective <code>Method.invoke</code>
+ * against the typed invokers generated by the rewriter. Must be run under JiST,
+ * so that the benchmark target is loaded by the rewriter.
+ *
+ * @since JIST1.0
+ * @see jist.minisim.events
+ */
+
+public final class dispatch
+{
+    // ////////////////////////////////////////////////
+    // Constants
+    //
+
+    /** benchmark version. */
+    public static final String  VERSION            = "0.1";
+
+    /** benchmark event types. */
+    private static final int    MODE_INVALID       = -1;
+    /** benchmark event types. */
+    private static final int    MODE_NULL          = 0;
+    /** benchmark event types. */
+    private static final int    MODE_INT           = 1;
+    /** benchmark event types. */
+    private static final int    MODE_DOUBLE        = 2;
+    /** benchmark event types. */
+    private static final int    MODE_STRING        = 3;
+
+    /** benchmark event type strings. */
+    private static final String MODE_NULL_STRING   = "null";
+    /** benchmark event type strings. */
+    private static final String MODE_INT_STRING    = "int";
+    /** benchmark event type strings. */
+    private static final String MODE_DOUBLE_STRING = "double";
+    /** benchmark event type strings. */
+    private static final String MODE_STRING_STRING = "string";
+
+    // ////////////////////////////////////////////////
+    // Static command-line helper methods
+    //
+
+    /**
+     * Print benchmark version information.
+     */
+    private static void showVersion() {
+        System.out.println("JiST dispatch micro-benchmark v" + VERSION + ", Java in Simulation Time Project.");
+        System.out.println();
+    }
+
+    /**
+     * Print benchmark command-line syntax.
+     */
+    private static void showUsage() {
+        System.out.println("Usage: dispatch -m <mode> -n <num> [-w <warm>]");
+        System.out.println("       dispatch -v | -h");
+        System.out.println();
+        System.out.println("  -h, --help         display this help information");
+        System.out.println("  -v, --version      display version information");
+        System.out.println("  -m, --mode         [null], int, double, string");
+        System.out.println("  -n, --num          number of dispatches");
+        System.out.println("  -w, --warm         number of warm-up dispatches");
+        System.out.println();
+    }
+
+    /** Parsed command-line options. */
+    private static class cmdlineOpts
+    {
+        // defaults
+        /** print help. */
+        public boolean help    = false;
+        /** print version. */
+        public boolean version = false;
+        /** benchmark event type. */
+        public int     mode    = MODE_NULL;
+        /** number of dispatches to time. */
+        public long    num     = 0;
+        /** number of warmup dispatches. */
+        public long    warm    = 0;
+    }
+
+    /**
+     * Parse command-line options.
+     *
+     * @param args
+     *            command-line parameters
+     * @return parsed command-line options
+     * @throws CmdLineParser.OptionException
+     *             invalid option encountered
+     */
+    private static cmdlineOpts parseCommandLineOptions(String[] args) throws CmdLineParser.OptionException {
+        // setup
+        cmdlineOpts options = new cmdlineOpts();
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+        CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+        CmdLineParser.Option opt_mode = parser.addStringOption('m', "mode");
+        CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+        CmdLineParser.Option opt_warm = parser.addStringOption('w', "warm");
+
+        // parse
+        parser.parse(args);
+        if (parser.getOptionValue(opt_help) != null) {
+            options.help = true;
+        }
+        if (parser.getOptionValue(opt_version) != null) {
+            options.version = true;
+        }
+        if (parser.getOptionValue(opt_mode) != null) {
+            String mode = ((String) parser.getOptionValue(opt_mode)).toLowerCase();
+            if (mode.equals(MODE_NULL_STRING)) {
+                options.mode = MODE_NULL;
+            } else if (mode.equals(MODE_INT_STRING)) {
+                options.mode = MODE_INT;
+            } else if (mode.equals(MODE_DOUBLE_STRING)) {
+                options.mode = MODE_DOUBLE;
+            } else if (mode.equals(MODE_STRING_STRING)) {
+                options.mode = MODE_STRING;
+            } else {
+                throw new RuntimeException("unrecognized event type: " + mode);
+            }
+        }
+        if (parser.getOptionValue(opt_num) != null) {
+            options.num = Long.parseLong((String) parser.getOptionValue(opt_num));
+        }
+        if (parser.getOptionValue(opt_warm) != null) {
+            options.warm = Long.parseLong((String) parser.getOptionValue(opt_warm));
+        }
+        return options;
+    }
+
+    // ////////////////////////////////////////////////
+    // main
+    //
+
+    /**
+     * Benchmark entry point: measure reflective and generated dispatch.
+     *
+     * @param args
+     *            command-line parameters
+     */
+    public static void main(String[] args) {
+        try {
+            // command line
+            final cmdlineOpts options = parseCommandLineOptions(args);
+            // show usage
+            showVersion();
+            if (options.help) {
+                showUsage();
+                return;
+            }
+            // show version
+            if (options.version) {
+                return;
+            }
+            // check parameters
+            if (options.mode == MODE_INVALID || options.num == 0) {
+                showUsage();
+                return;
+            }
+            // prepare dispatch target
+            Method m;
+            Object[] params;
+            String type;
+            switch (options.mode) {
+                case MODE_NULL:
+                    type = MODE_NULL_STRING;
+                    m = target.class.getMethod("operation_null", new Class[] {});
+                    params = null;
+                    break;
+                case MODE_INT:
+                    type = MODE_INT_STRING;
+                    m = target.class.getMethod("operation_int", new Class[] { Integer.TYPE });
+                    params = new Object[] { new Integer(1) };
+                    break;
+                case MODE_DOUBLE:
+                    type = MODE_DOUBLE_STRING;
+                    m = target.class.getMethod("operation_double", new Class[] { Double.TYPE });
+                    params = new Object[] { new Double(1) };
+                    break;
+                case MODE_STRING:
+                    type = MODE_STRING_STRING;
+                    m = target.class.getMethod("operation_string", new Class[] { String.class });
+                    params = new Object[] { "jist" };
+                    break;
+                default:
+                    throw new RuntimeException("unrecognized event type: " + options.mode);
+            }
+            target t = new target();
+            Invoker reflective = new Invoker.Table(null).register(m);
+            Invoker generated = new Invoker.Table(Controller.getActiveController().getClassLoader()).register(m);
+            System.out.println("      type: " + type);
+            System.out.println("dispatches: " + options.num);
+            System.out.println("    warmup: " + options.warm);
+            System.out.println("   invoker: " + generated.getClass().getName());
+            // measure
+            double reflect = measure(reflective, t, params, options.num, options.warm);
+            System.out.println("   reflect: " + ((long) (options.num / reflect)) + " ev/s (" + reflect + " s)");
+            double gen = measure(generated, t, params, options.num, options.warm);
+            System.out.println(" generated: " + ((long) (options.num / gen)) + " ev/s (" + gen + " s)");
+            System.out.println("   speedup: " + (reflect / gen));
+        } catch (CmdLineParser.OptionException e) {
+            System.out.println("Error parsing command line: " + e.getMessage());
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("should not happen", e);
+        }
+    }
+
+    /**
+     * Time a number of dispatches through given invoker.
+     *
+     * @param inv
+     *            invoker to measure
+     * @param t
+     *            dispatch target
+     * @param params
+     *            dispatch parameters
+     * @param num
+     *            number of timed dispatches
+     * @param warm
+     *            number of warm-up dispatches
+     * @return elapsed seconds
+     */
+    private static double measure(Invoker inv, target t, Object[] params, long num, long warm) {
+        try {
+            for (long i = 0; i < warm; i++) {
+                inv.invoke(t, params);
+            }
+            System.gc();
+            long startTime = System.currentTimeMillis();
+            for (long i = 0; i < num; i++) {
+                inv.invoke(t, params);
+            }
+            long endTime = System.currentTimeMillis();
+            return (endTime - startTime) / 1000.0;
+        } catch (Throwable e) {
+            throw new RuntimeException("dispatch failed", e);
+        }
+    }
+
+    /**
+     * Dispatch benchmark target: same event methods as the events benchmark.
+     */
+    public static final class target
+    {
+        /** dispatch counter. */
+        public long count;
+
+        /**
+         * Event with no parameters.
+         */
+        public void operation_null() {
+            count++;
+        }
+
+        /**
+         * Event with primitive integer parameter.
+         *
+         * @param i
+         *            dummy int
+         */
+        public void operation_int(int i) {
+            count += i;
+        }
+
+        /**
+         * Event with primitive double parameter.
+         *
+         * @param d
+         *            dummy double
+         */
+        public void operation_double(double d) {
+            count++;
+        }
+
+        /**
+         * Event with String parameter.
+         *
+         * @param s
+         *            dummy string
+         */
+        public void operation_string(String s) {
+            count++;
+        }
+
+    } // class target
+
+} // class dispatch
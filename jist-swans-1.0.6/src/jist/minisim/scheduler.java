@@ -0,0 +1,281 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.minisim;
+
+import jargs.gnu.CmdLineParser;
+
+import java.util.Random;
+
+import jist.runtime.Event;
+import jist.runtime.Scheduler;
+
+/**
+ * Compares event queue implementations with the classic "hold" model: the
+ * queue is filled to a given size, and then repeatedly the first event is
+ * removed and a new event is inserted at a random increment after it. Also
+ * counts how many equal-time events leave the queue out of insertion order.
+ * Does not require the JiST runtime.
+ *
+ * @since JIST1.0
+ * @see jist.runtime.Scheduler#create
+ */
+
+public final class scheduler
+{
+    // ////////////////////////////////////////////////
+    // Constants
+    //
+
+    /** benchmark version. */
+    public static final String  VERSION              = "0.1";
+
+    /** increment distribution: exponential. */
+    private static final int    DIST_EXP             = 0;
+    /** increment distribution: few distinct values (many ties). */
+    private static final int    DIST_TIES            = 1;
+
+    /** increment distribution strings. */
+    private static final String DIST_EXP_STRING      = "exp";
+    /** increment distribution strings. */
+    private static final String DIST_TIES_STRING     = "ties";
+
+    /** mean event time increment (ticks). */
+    private static final long   MEAN_INCREMENT       = 1000000;
+
+    /** default list of schedulers. */
+    private static final String[] DEFAULT_SCHEDULERS = new String[] { "heap", "dary", "calendar", "adaptive",
+            "ext.jist.runtime.SchedulingQueue$PQScheduler", "ext.jist.runtime.SchedulingQueue$TMScheduler",
+            "ext.jist.runtime.SchedulingQueue$STScheduler", };
+
+    // ////////////////////////////////////////////////
+    // Static command-line helper methods
+    //
+
+    /**
+     * Print benchmark version information.
+     */
+    private static void showVersion() {
+        System.out.println("JiST scheduler micro-benchmark v" + VERSION + ", Java in Simulation Time Project.");
+        System.out.println();
+    }
+
+    /**
+     * Print benchmark command-line syntax.
+     */
+    private static void showUsage() {
+        System.out.println("Usage: scheduler -n <size> -o <ops> [-w <warm>] [-d <dist>] [scheduler ...]");
+        System.out.println("       scheduler -v | -h");
+        System.out.println();
+        System.out.println("  -h, --help         display this help information");
+        System.out.println("  -v, --version      display version information");
+        System.out.println("  -n, --num          event queue size");
+        System.out.println("  -o, --ops          number of hold operations");
+        System.out.println("  -w, --warm         number of warm-up hold operations");
+        System.out.println("  -d, --dist         time increments: [exp], ties");
+        System.out.println("  scheduler          see jist -h; default: all");
+        System.out.println();
+    }
+
+    /** Parsed command-line options. */
+    private static class cmdlineOpts
+    {
+        // defaults
+        /** print help. */
+        public boolean  help       = false;
+        /** print version. */
+        public boolean  version    = false;
+        /** queue size. */
+        public int      num        = 0;
+        /** number of hold operations to time. */
+        public long     ops        = 0;
+        /** number of warmup hold operations. */
+        public long     warm       = 0;
+        /** increment distribution. */
+        public int      dist       = DIST_EXP;
+        /** schedulers to measure. */
+        public String[] schedulers = DEFAULT_SCHEDULERS;
+    }
+
+    /**
+     * Parse command-line options.
+     *
+     * @param args
+     *            command-line parameters
+     * @return parsed command-line options
+     * @throws CmdLineParser.OptionException
+     *             invalid option encountered
+     */
+    private static cmdlineOpts parseCommandLineOptions(String[] args) throws CmdLineParser.OptionException {
+        // setup
+        cmdlineOpts options = new cmdlineOpts();
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+        CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+        CmdLineParser.Option opt_num = parser.addStringOption('n', "num");
+        CmdLineParser.Option opt_ops = parser.addStringOption('o', "ops");
+        CmdLineParser.Option opt_warm = parser.addStringOption('w', "warm");
+        CmdLineParser.Option opt_dist = parser.addStringOption('d', "dist");
+
+        // parse
+        parser.parse(args);
+        if (parser.getOptionValue(opt_help) != null) {
+            options.help = true;
+        }
+        if (parser.getOptionValue(opt_version) != null) {
+            options.version = true;
+        }
+        if (parser.getOptionValue(opt_num) != null) {
+            options.num = Integer.parseInt((String) parser.getOptionValue(opt_num));
+        }
+        if (parser.getOptionValue(opt_ops) != null) {
+            options.ops = Long.parseLong((String) parser.getOptionValue(opt_ops));
+        }
+        if (parser.getOptionValue(opt_warm) != null) {
+            options.warm = Long.parseLong((String) parser.getOptionValue(opt_warm));
+        }
+        if (parser.getOptionValue(opt_dist) != null) {
+            String dist = ((String) parser.getOptionValue(opt_dist)).toLowerCase();
+            if (dist.equals(DIST_EXP_STRING)) {
+                options.dist = DIST_EXP;
+            } else if (dist.equals(DIST_TIES_STRING)) {
+                options.dist = DIST_TIES;
+            } else {
+                throw new RuntimeException("unrecognized distribution: " + dist);
+            }
+        }
+        String[] rest = parser.getRemainingArgs();
+        if (rest.length > 0) {
+            options.schedulers = rest;
+        }
+        return options;
+    }
+
+    // ////////////////////////////////////////////////
+    // main
+    //
+
+    /**
+     * Benchmark entry point: measure hold throughput of event queues.
+     *
+     * @param args
+     *            command-line parameters
+     */
+    public static void main(String[] args) {
+        try {
+            // command line
+            final cmdlineOpts options = parseCommandLineOptions(args);
+            // show usage
+            showVersion();
+            if (options.help) {
+                showUsage();
+                return;
+            }
+            // show version
+            if (options.version) {
+                return;
+            }
+            // check parameters
+            if (options.num == 0 || options.ops == 0) {
+                showUsage();
+                return;
+            }
+            System.out.println("  size: " + options.num);
+            System.out.println("   ops: " + options.ops);
+            System.out.println("warmup: " + options.warm);
+            System.out.println("  dist: " + (options.dist == DIST_EXP ? DIST_EXP_STRING : DIST_TIES_STRING));
+            for (int i = 0; i < options.schedulers.length; i++) {
+                Scheduler s = Scheduler.create(options.schedulers[i]);
+                hold(s, options.num, options.warm, options.dist);
+                System.gc();
+                long startTime = System.currentTimeMillis();
+                long inversions = hold(s, options.num, options.ops, options.dist);
+                long endTime = System.currentTimeMillis();
+                double seconds = (endTime - startTime) / 1000.0;
+                System.out.println(options.schedulers[i] + ": " + seconds + " s, "
+                        + ((long) (options.ops / seconds)) + " hold/s, " + inversions + " tie inversions");
+            }
+        } catch (CmdLineParser.OptionException e) {
+            System.out.println("Error parsing command line: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fill queue to given size, perform hold operations, and drain queue.
+     *
+     * @param s
+     *            event queue
+     * @param size
+     *            queue size
+     * @param ops
+     *            number of hold operations
+     * @param dist
+     *            increment distribution
+     * @return number of equal-time events dequeued out of insertion order
+     */
+    private static long hold(Scheduler s, int size, long ops, int dist) {
+        Random rand = new Random(0);
+        long seq = 0, inversions = 0;
+        for (int i = 0; i < size; i++) {
+            s.insert(new tagged(increment(rand, dist), seq++));
+        }
+        tagged last = null;
+        for (long i = 0; i < ops; i++) {
+            tagged ev = (tagged) s.removeFirst();
+            if (last != null && last.time == ev.time && last.seq > ev.seq)
+                inversions++;
+            last = ev;
+            s.insert(new tagged(ev.time + increment(rand, dist), seq++));
+        }
+        s.clear();
+        return inversions;
+    }
+
+    /**
+     * Return random event time increment.
+     *
+     * @param rand
+     *            random number generator
+     * @param dist
+     *            increment distribution
+     * @return event time increment
+     */
+    private static long increment(Random rand, int dist) {
+        switch (dist) {
+            case DIST_EXP:
+                return (long) (-Math.log(1 - rand.nextDouble()) * MEAN_INCREMENT);
+            case DIST_TIES:
+                return rand.nextInt(4) * MEAN_INCREMENT / 2;
+            default:
+                throw new RuntimeException("unrecognized distribution: " + dist);
+        }
+    }
+
+    /**
+     * Benchmark event tagged with its insertion sequence number.
+     */
+    private static final class tagged extends Event
+    {
+        /** insertion sequence number. */
+        public final long seq;
+
+        /**
+         * Create tagged benchmark event.
+         *
+         * @param time
+         *            event time
+         * @param seq
+         *            insertion sequence number
+         */
+        public tagged(long time, long seq) {
+            this.time = time;
+            this.seq = seq;
+        }
+    } // class tagged
+
+} // class scheduler
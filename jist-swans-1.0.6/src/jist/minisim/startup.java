@@ -0,0 +1,324 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.minisim;
+
+import jargs.gnu.CmdLineParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import jist.runtime.JistAPI;
+import jist.runtime.RemoteJist;
+import jist.runtime.RewriteArchive;
+import jist.runtime.Rewriter;
+
+/**
+ * Measures simulation startup: the time to rewrite and load all application
+ * classes statically reachable from given classes, with a fresh rewriter and
+ * cold caches (serial and parallel class analysis), and with a fresh rewriter
+ * and warm caches (disk cache, shared in-memory cache and, optionally, an
+ * ahead-of-time rewrite archive). Does not require the JiST runtime.
+ *
+ * @since JIST1.0
+ * @see jist.runtime.Rewriter#setAnalysisThreads
+ */
+
+public final class startup
+{
+    // ////////////////////////////////////////////////
+    // Constants
+    //
+
+    /** benchmark version. */
+    public static final String VERSION = "0.1";
+
+    /**
+     * Local resource finder shared by all rewriters (its standard output
+     * streams are closed when it is finalized).
+     */
+    private static RemoteJist.JistClientLocal resources;
+
+    // ////////////////////////////////////////////////
+    // Static command-line helper methods
+    //
+
+    /**
+     * Print benchmark version information.
+     */
+    private static void showVersion() {
+        System.out.println("JiST startup micro-benchmark v" + VERSION + ", Java in Simulation Time Project.");
+        System.out.println();
+    }
+
+    /**
+     * Print benchmark command-line syntax.
+     */
+    private static void showUsage() {
+        System.out.println("Usage: startup [-t <threads>] [-n <runs>] [-r <rewriter>] [-a <archive>] class ...");
+        System.out.println("       startup -v | -h");
+        System.out.println();
+        System.out.println("  -h, --help         display this help information");
+        System.out.println("  -v, --version      display version information");
+        System.out.println("  -t, --threads      parallel class analysis threads [processors]");
+        System.out.println("  -n, --runs         number of timed runs per configuration [3]");
+        System.out.println("  -r, --rewriter     custom rewriter to install, e.g. jist.swans.Rewriter");
+        System.out.println("  -a, --archive      rewrite archive to measure (see jist.runtime.RewriteArchive)");
+        System.out.println("  class              classes whose reachable classes are loaded");
+        System.out.println();
+    }
+
+    /** Parsed command-line options. */
+    private static class cmdlineOpts
+    {
+        // defaults
+        /** print help. */
+        public boolean  help     = false;
+        /** print version. */
+        public boolean  version  = false;
+        /** number of analysis threads of parallel runs. */
+        public int      threads  = Runtime.getRuntime().availableProcessors();
+        /** number of timed runs per configuration. */
+        public int      runs     = 3;
+        /** custom rewriter class, or null. */
+        public String   rewriter = null;
+        /** rewrite archive, or null. */
+        public String   archive  = null;
+        /** root classes. */
+        public String[] classes  = new String[0];
+    }
+
+    /**
+     * Parse command-line options.
+     *
+     * @param args
+     *            command-line parameters
+     * @return parsed command-line options
+     * @throws CmdLineParser.OptionException
+     *             invalid option encountered
+     */
+    private static cmdlineOpts parseCommandLineOptions(String[] args) throws CmdLineParser.OptionException {
+        // setup
+        cmdlineOpts options = new cmdlineOpts();
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option opt_help = parser.addBooleanOption('h', "help");
+        CmdLineParser.Option opt_version = parser.addBooleanOption('v', "version");
+        CmdLineParser.Option opt_threads = parser.addStringOption('t', "threads");
+        CmdLineParser.Option opt_runs = parser.addStringOption('n', "runs");
+        CmdLineParser.Option opt_rewriter = parser.addStringOption('r', "rewriter");
+        CmdLineParser.Option opt_archive = parser.addStringOption('a', "archive");
+
+        // parse
+        parser.parse(args);
+        if (parser.getOptionValue(opt_help) != null) {
+            options.help = true;
+        }
+        if (parser.getOptionValue(opt_version) != null) {
+            options.version = true;
+        }
+        if (parser.getOptionValue(opt_threads) != null) {
+            options.threads = Integer.parseInt((String) parser.getOptionValue(opt_threads));
+        }
+        if (parser.getOptionValue(opt_runs) != null) {
+            options.runs = Integer.parseInt((String) parser.getOptionValue(opt_runs));
+        }
+        if (parser.getOptionValue(opt_rewriter) != null) {
+            options.rewriter = (String) parser.getOptionValue(opt_rewriter);
+        }
+        if (parser.getOptionValue(opt_archive) != null) {
+            options.archive = (String) parser.getOptionValue(opt_archive);
+        }
+        options.classes = parser.getRemainingArgs();
+        return options;
+    }
+
+    // ////////////////////////////////////////////////
+    // main
+    //
+
+    /**
+     * Benchmark entry point: measure cold and warm startup times.
+     *
+     * @param args
+     *            command-line parameters
+     */
+    public static void main(String[] args) {
+        try {
+            // command line
+            final cmdlineOpts options = parseCommandLineOptions(args);
+            // show usage
+            showVersion();
+            if (options.help) {
+                showUsage();
+                return;
+            }
+            // show version
+            if (options.version) {
+                return;
+            }
+            // check parameters
+            if (options.classes.length == 0) {
+                showUsage();
+                return;
+            }
+            // collect reachable classes
+            resources = new RemoteJist.JistClientLocal();
+            Rewriter.setAnalysisThreads(1);
+            Rewriter r = create(null, null, null, options.rewriter);
+            org.apache.bcel.Repository.setRepository(new RemoteJist.RemoteRepository(resources, null));
+            LinkedHashSet reachable = new LinkedHashSet();
+            for (int i = 0; i < options.classes.length; i++) {
+                reachable.addAll(java.util.Arrays.asList(r.getAllClassReferencesRecursively(options.classes[i])));
+            }
+            String[] classes = (String[]) reachable.toArray(new String[reachable.size()]);
+            System.out.println("  classes: " + classes.length);
+            System.out.println("  threads: " + options.threads);
+            System.out.println(" rewriter: " + options.rewriter);
+            System.out.println();
+            // populate warm caches
+            File cacheDir = createCacheDir();
+            Map shared = Collections.synchronizedMap(new HashMap());
+            load(create(cacheDir.getPath(), shared, null, options.rewriter), classes);
+            RewriteArchive archive = options.archive == null ? null : RewriteArchive.open(options.archive);
+            // measure
+            measure("cold, serial analysis", 1, null, null, null, options, classes);
+            measure("cold, parallel analysis", options.threads, null, null, null, options, classes);
+            measure("warm, disk cache", 1, cacheDir.getPath(), null, null, options, classes);
+            measure("warm, shared cache", 1, null, shared, null, options, classes);
+            if (archive != null) {
+                measure("warm, rewrite archive", 1, null, null, archive, options, classes);
+            }
+            deleteCacheDir(cacheDir);
+            System.exit(0);
+        } catch (CmdLineParser.OptionException e) {
+            System.out.println("Error parsing command line: " + e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Time the loading of the given classes with fresh rewriters.
+     *
+     * @param label
+     *            configuration name
+     * @param threads
+     *            number of analysis threads
+     * @param cacheDir
+     *            disk cache directory, or null
+     * @param shared
+     *            shared cache, or null
+     * @param archive
+     *            rewrite archive, or null
+     * @param options
+     *            command-line options
+     * @param classes
+     *            classes to load
+     * @throws Exception
+     *             unable to create rewriter
+     */
+    private static void measure(String label, int threads, String cacheDir, Map shared, RewriteArchive archive,
+            cmdlineOpts options, String[] classes) throws Exception {
+        Rewriter.setAnalysisThreads(threads);
+        long best = Long.MAX_VALUE, total = 0;
+        int failed = 0;
+        for (int i = 0; i < options.runs; i++) {
+            System.gc();
+            long startTime = System.currentTimeMillis();
+            failed = load(create(cacheDir, shared, archive, options.rewriter), classes);
+            long time = System.currentTimeMillis() - startTime;
+            best = Math.min(best, time);
+            total += time;
+        }
+        System.out.println(label + ": best " + best / 1000.0 + " s, mean " + total / options.runs / 1000.0 + " s"
+                + (failed > 0 ? " (" + failed + " classes failed)" : ""));
+    }
+
+    /**
+     * Create a fresh rewriter.
+     *
+     * @param cacheDir
+     *            disk cache directory, or null
+     * @param shared
+     *            shared cache, or null
+     * @param archive
+     *            rewrite archive, or null
+     * @param rewriter
+     *            custom rewriter class, or null
+     * @return new rewriter
+     * @throws Exception
+     *             unable to install custom rewriter
+     */
+    private static Rewriter create(String cacheDir, Map shared, RewriteArchive archive, String rewriter)
+            throws Exception {
+        Rewriter r = new Rewriter(null, cacheDir, resources, null);
+        r.setSharedCache(shared);
+        r.setArchive(archive);
+        if (rewriter != null) {
+            Class c = Class.forName(rewriter, true, r);
+            r.installPreRewriteTraversal((JistAPI.CustomRewriter) c.newInstance());
+        }
+        return r;
+    }
+
+    /**
+     * Load (without initializing) the given classes.
+     *
+     * @param r
+     *            rewriter
+     * @param classes
+     *            classes to load
+     * @return number of classes that could not be loaded
+     */
+    private static int load(Rewriter r, String[] classes) {
+        int failed = 0;
+        for (int i = 0; i < classes.length; i++) {
+            try {
+                r.loadClass(classes[i], false);
+            } catch (ClassNotFoundException e) {
+                failed++;
+            } catch (LinkageError e) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Create an empty disk cache directory.
+     *
+     * @return new temporary directory
+     * @throws IOException
+     *             unable to create directory
+     */
+    private static File createCacheDir() throws IOException {
+        File dir = File.createTempFile("jiststartup", "");
+        if (!dir.delete() || !dir.mkdir())
+            throw new IOException("unable to create cache directory: " + dir);
+        return dir;
+    }
+
+    /**
+     * Delete disk cache directory.
+     *
+     * @param dir
+     *            cache directory
+     */
+    private static void deleteCacheDir(File dir) {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+} // class startup
@@ -40,12 +40,14 @@ public class BlockingSleep extends Entity.Empty implements JistAPI.Entity
     }
 
     /**
-     * Create new BlockingSleepEntity.
+     * Create new BlockingSleepEntity, but do not register with controller
+     * (performed manually).
      * 
      * @see JistAPI
      */
     // intentionally prevent out-of-package initialization; use JistAPI
     BlockingSleep() {
+        super(false);
     }
 
     /**
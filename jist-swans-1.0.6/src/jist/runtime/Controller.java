@@ -11,7 +11,6 @@
 package jist.runtime;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.rmi.RemoteException;
@@ -66,6 +65,12 @@ public final class Controller implements ControllerRemote, Runnable
      */
     public static final Method          method_entityInvocationCont;
 
+    /**
+     * Method stub for callback to obtain an argument array for an entity
+     * invocation.
+     */
+    public static final Method          method_getArguments;
+
     /**
      * Return next frame of incoming event continuation state.
      */
@@ -99,6 +104,7 @@ public final class Controller implements ControllerRemote, Runnable
             Method.class, Object.class, Object[].class });
             method_entityInvocationCont = Controller.class.getDeclaredMethod("entityInvocationCont", new Class[] {
             Method.class, Object.class, Object[].class });
+            method_getArguments = Controller.class.getDeclaredMethod("getArguments", new Class[] { Integer.TYPE });
             method_popStateInFrame = Controller.class.getDeclaredMethod("popStateInFrame", new Class[] {});
             method_pushStateOutFrame = Controller.class.getDeclaredMethod("pushStateOutFrame",
                     new Class[] { Event.ContinuationFrame.class });
@@ -145,6 +151,16 @@ public final class Controller implements ControllerRemote, Runnable
      */
     public static final GuiLog          guilog           = Main.GUILOG_SIZE > 0 ? new GuiLog(Main.GUILOG_SIZE) : null;
 
+    /**
+     * Minimum number of cancelled events in queue before it is purged.
+     */
+    private static final int            PURGE_MIN        = 1024;
+
+    /**
+     * Largest number of entity invocation arguments whose arrays are pooled.
+     */
+    private static final int            ARGUMENTS_POOLED = 8;
+
     /**
      * Counts of each event type.
      */
@@ -164,16 +180,22 @@ public final class Controller implements ControllerRemote, Runnable
      */
     private final Pool.ContinuationPool continuationPool = new Pool.ContinuationPool(100);
 
+    /**
+     * Pools of entity invocation argument arrays, by number of arguments.
+     */
+    private final Pool.ArrayPool[]      argumentPools    = new Pool.ArrayPool[ARGUMENTS_POOLED + 1];
+
+    /**
+     * Event method invokers.
+     */
+    private Invoker.Cache               invokers;
+
     /**
      * Queue of simulation events.
+     * 
+     * @see Scheduler#create
      */
-    private final Scheduler             events           = new Scheduler.Heap();
-    // private final Scheduler events = new Scheduler.Calendar(1000000000,
-    // 1000);
-    // private final Scheduler events = new SchedulingQueue.PQScheduler();
-    // private final Scheduler events = new SchedulingQueue.PBScheduler();
-    // private final Scheduler events = new SchedulingQueue.TMScheduler();
-    // private final Scheduler events = new SchedulingQueue.STScheduler();
+    private Scheduler                   events           = new Scheduler.DaryHeap();
 
     /**
      * List of registered entities (possibly not completely filled).
@@ -205,6 +227,21 @@ public final class Controller implements ControllerRemote, Runnable
      */
     private long                        endSimulationTime;
 
+    /**
+     * Last event scheduled by entity invocation during current event.
+     */
+    private Event                       lastEvent;
+
+    /**
+     * Number of cancelled events still in queue.
+     */
+    private int                         cancelledEvents;
+
+    /**
+     * Number of cancelled events discarded.
+     */
+    private long                        numCancelled;
+
     /**
      * Outgoing (blocking) call event.
      */
@@ -260,6 +297,11 @@ public final class Controller implements ControllerRemote, Runnable
      */
     private JistAPI.Logger              applog;
 
+    /**
+     * Client of the simulation, which receives its results.
+     */
+    private RemoteJist.JistClientRemote client;
+
     /**
      * controller starting time.
      */
@@ -273,6 +315,12 @@ public final class Controller implements ControllerRemote, Runnable
     /** Blocking sleep singleton entity. */
     public BlockingSleep                entityBlockingSleep;
 
+    /**
+     * Whether this is the only controller, so that all entities are local and
+     * events need not be routed.
+     */
+    private boolean                     single;
+
     // ////////////////////////////////////////////////
     // threading
     //
@@ -333,12 +381,30 @@ public final class Controller implements ControllerRemote, Runnable
      * @see Main#SINGLE_CONTROLLER
      */
     public static Controller newController(ClassLoader loader) throws RemoteException {
+        return newController(loader, Main.SINGLE_CONTROLLER);
+    }
+
+    /**
+     * Create and initialize a new Controller instance. A single controller is
+     * the static active controller; otherwise, a fresh controller is created,
+     * which may run concurrently with other controllers in its own thread.
+     * 
+     * @param loader
+     *            class loader (rewriter) to use
+     * @param single
+     *            whether to return the single controller
+     * @return Controller instance
+     * @throws RemoteException
+     *             distributed simulation failure
+     */
+    public static Controller newController(ClassLoader loader, boolean single) throws RemoteException {
         Controller controller;
-        if (Main.SINGLE_CONTROLLER) {
+        if (single) {
             controller = activeController;
         } else {
             controller = new Controller();
         }
+        controller.single = single;
         controller.reset();
         controller.setClassLoader(loader);
         return controller;
@@ -353,6 +419,9 @@ public final class Controller implements ControllerRemote, Runnable
     public Throwable reset() {
         isRunning = false;
         events.clear();
+        lastEvent = null;
+        cancelledEvents = 0;
+        numCancelled = 0;
         entities = new Entity[10];
         numEntities = 0;
         Entity staticEntity = new Entity.Static();
@@ -366,9 +435,15 @@ public final class Controller implements ControllerRemote, Runnable
         currentSimulationTime = 0;
         currentEvent = new Event();
         currentEvent.time = 0;
-        loader = null;
+        for (int i = 1; Main.POOL_ARGUMENTS && i < argumentPools.length; i++) {
+            if (argumentPools[i] == null) {
+                argumentPools[i] = new Pool.ArrayPool(i, 100);
+            }
+        }
+        setClassLoader(null);
         thread = new JistThread(this, "JistController-" + controllerCount);
-        entityBlockingSleep = new BlockingSleep(); // self-registering entity
+        entityBlockingSleep = new BlockingSleep();
+        entityBlockingSleep._jistMethod_Set__ref(registerEntity(entityBlockingSleep));
         if (Main.COUNT_EVENTS) {
             eventCounts = new Hashtable();
         }
@@ -378,6 +453,31 @@ public final class Controller implements ControllerRemote, Runnable
         return t;
     }
 
+    /**
+     * Replace the event queue implementation. Any pending events are moved
+     * into the new queue.
+     * 
+     * @param scheduler
+     *            new (empty) event queue
+     */
+    public void setScheduler(Scheduler scheduler) {
+        if (isRunning)
+            throw new IllegalStateException("can not change scheduler of running controller");
+        while (!events.isEmpty()) {
+            scheduler.insert(events.removeFirst());
+        }
+        events = scheduler;
+    }
+
+    /**
+     * Return the event queue implementation.
+     * 
+     * @return event queue
+     */
+    public Scheduler getScheduler() {
+        return events;
+    }
+
     // ////////////////////////////////////////////////
     // execution
     //
@@ -410,6 +510,8 @@ public final class Controller implements ControllerRemote, Runnable
         try {
             while (events.size() > 0) {
                 currentEvent = events.removeFirst();
+                if (discardCancelled(currentEvent))
+                    continue;
                 currentSimulationTime = currentEvent.time;
                 processEvent();
                 numEvents++;
@@ -455,6 +557,8 @@ public final class Controller implements ControllerRemote, Runnable
             // process end-time events
             while (!events.isEmpty()) {
                 currentEvent = events.removeFirst();
+                if (discardCancelled(currentEvent))
+                    continue;
                 currentSimulationTime = currentEvent.time;
                 try {
                     processEvent();
@@ -494,7 +598,8 @@ public final class Controller implements ControllerRemote, Runnable
                 long endTime = System.currentTimeMillis();
                 double seconds = (endTime - startTime) / 1000.0;
                 log.info("TOTAL: " + Util.getHMS((long) seconds) + " real, " + getSimulationTimeString() + " sim, "
-                        + numEvents + "ev, " + ((long) (numEvents / seconds)) + "ev/s");
+                        + numEvents + "ev, " + ((long) (numEvents / seconds)) + "ev/s"
+                        + (numCancelled > 0 ? ", " + numCancelled + "ev cancelled" : ""));
             }
             if (Main.COUNT_EVENTS) {
                 Enumeration keys = eventCounts.keys();
@@ -534,6 +639,13 @@ public final class Controller implements ControllerRemote, Runnable
                         long memused = Util.getUsedMemory();
                         msg += " mem=" + (memused / 1024 / 1024) + "M";
                         msg += " evQ=" + events.size();
+                        msg += " evPool[" + eventPool + "]";
+                        if (Main.POOL_ARGUMENTS) {
+                            msg += " argPool[" + Pool.toString(argumentPools) + "]";
+                        }
+                        if (cancelledEvents > 0) {
+                            msg += " (" + cancelledEvents + " cancelled)";
+                        }
                         long time = System.currentTimeMillis();
                         long seconds = (long) ((time - startTime) / 1000.0);
                         msg += " t=" + Util.getHMS(seconds);
@@ -573,6 +685,7 @@ public final class Controller implements ControllerRemote, Runnable
                 log.debug(" proc: " + currentEvent);
             }
         }
+        lastEvent = null;
         if (Main.COUNT_EVENTS) {
             int[] count = (int[]) eventCounts.get(currentEvent.method);
             if (count == null) {
@@ -591,19 +704,24 @@ public final class Controller implements ControllerRemote, Runnable
             // invoke event
             Object result = null;
             Throwable exception = null;
+            int invoker = currentEvent.invoker;
+            if (invoker == 0) {
+                invoker = currentEvent.invoker = invokers.getId(currentEvent.method);
+            }
             try {
-                result = currentEvent.method.invoke(entities[currentEvent.ref.getIndex()], currentEvent.args);
-            } catch (InvocationTargetException e) {
-                exception = e.getTargetException();
+                if (invoker == Invoker.DIRECT) {
+                    ((Event.Direct) currentEvent).invoke(entities[currentEvent.ref.getIndex()]);
+                } else {
+                    result = invokers.get(invoker).invoke(entities[currentEvent.ref.getIndex()], currentEvent.args);
+                }
+            } catch (Throwable t) {
+                exception = t;
                 if (exception instanceof JistException)
                     throw (JistException) exception;
                 if (exception instanceof VirtualMachineError)
                     throw (VirtualMachineError) exception;
                 if (currentCaller == null || call != null)
-                    throw e;
-            } catch (IllegalArgumentException e) {
-                throw new NoSuchMethodException("Unable to invoke METHOD: " + currentEvent.method
-                        + " on target ENTITY: " + entities[currentEvent.ref.getIndex()]);
+                    throw new JistException("application exception propagated to event loop", exception);
             }
             // handle blocking calls
             if (call != null) {
@@ -612,6 +730,10 @@ public final class Controller implements ControllerRemote, Runnable
                         log.debug("saved event state!");
                     }
                 }
+                if (Main.POOL_ARGUMENTS) {
+                    // arguments now belong to callback event
+                    currentEvent.args = null;
+                }
                 // create callback event
                 callback.cont = continuationPool.get();
                 callback.cont.state = callState;
@@ -622,10 +744,10 @@ public final class Controller implements ControllerRemote, Runnable
                 call.cont = continuationPool.get();
                 call.cont.caller = callback;
                 // schedule
-                if (Main.SINGLE_CONTROLLER) {
+                if (single) {
                     addEvent(call);
                 } else {
-                    call.ref.getController().addEvent(call);
+                    routeEvent(call);
                 }
                 // clear controller locals
                 call = null;
@@ -637,22 +759,14 @@ public final class Controller implements ControllerRemote, Runnable
                 currentCaller.time = currentSimulationTime;
                 currentCaller.cont.result = result;
                 currentCaller.cont.exception = exception;
-                if (Main.SINGLE_CONTROLLER) {
+                if (single) {
                     addEvent(currentCaller);
                 } else {
-                    currentCaller.ref.getController().addEvent(currentCaller);
+                    routeEvent(currentCaller);
                 }
             }
             currentCaller = null;
             callbackState = null;
-        } catch (InvocationTargetException e) {
-            Throwable t = e.getTargetException();
-            if (t instanceof JistException)
-                throw (JistException) t;
-            else if (t instanceof VirtualMachineError)
-                throw (VirtualMachineError) t;
-            else
-                throw new JistException("application exception propagated to event loop", e.getTargetException());
         } catch (JistException e) {
             throw e;
         } catch (Exception e) {
@@ -711,6 +825,7 @@ public final class Controller implements ControllerRemote, Runnable
         Event ev = eventPool.get();
         ev.time = currentSimulationTime;
         ev.method = method;
+        ev.invoker = invokers.getId(method);
         ev.ref = ref;
         ev.args = args;
         return ev;
@@ -734,6 +849,7 @@ public final class Controller implements ControllerRemote, Runnable
         Event ev = eventPool.get();
         ev.time = time;
         ev.method = method;
+        ev.invoker = invokers.getId(method);
         ev.ref = ref;
         ev.args = args;
         return ev;
@@ -755,6 +871,7 @@ public final class Controller implements ControllerRemote, Runnable
         Event ev = eventPool.get();
         ev.time = currentSimulationTime;
         ev.method = method;
+        ev.invoker = invokers.getId(method);
         ev.ref = ref;
         ev.args = args;
         if (Main.ASSERT)
@@ -767,15 +884,24 @@ public final class Controller implements ControllerRemote, Runnable
     /**
      * Dispose event into the event pool, and clear any references in the event
      * object to allow for GC.
+     * Direct events are left to their owner.
      * 
      * @param ev
      *            event instance to dispose
      */
     public void disposeEvent(Event ev) {
-        if (!Main.EVENT_TRACE && !Main.EVENT_LOCATION) {
+        if (ev.invoker == Invoker.DIRECT)
+            return;
+        // traced events are referenced by the events they cause
+        if (!Main.EVENT_TRACE) {
+            if (Main.POOL_ARGUMENTS && guilog == null) {
+                putArguments(ev.args);
+            }
             ev.ref = null;
             ev.args = null;
             ev.method = null;
+            ev.invoker = 0;
+            ev.timer = null;
             if (ev.cont != null) {
                 ev.cont.state = null;
                 ev.cont.result = null;
@@ -818,6 +944,7 @@ public final class Controller implements ControllerRemote, Runnable
     public void addEvent(Method meth, EntityRef ref, Object[] params) {
         Event ev = createEvent(meth, ref, params);
         events.insert(ev);
+        lastEvent = ev;
         if (isDebugLogging)
             logEventSched(ev);
     }
@@ -827,10 +954,120 @@ public final class Controller implements ControllerRemote, Runnable
     public void addEvent(Method meth, EntityRef ref, Object[] params, long time) {
         Event ev = createEvent(meth, ref, params, time);
         events.insert(ev);
+        lastEvent = ev;
         if (isDebugLogging)
             logEventSched(ev);
     }
 
+    /**
+     * Schedule event at the controller of its target entity.
+     * 
+     * @param ev
+     *            event to schedule
+     * @throws RemoteException
+     *             distributed simulation failure
+     */
+    private void routeEvent(Event ev) throws RemoteException {
+        ControllerRemote target = ev.ref.getController();
+        if (target == this) {
+            addEvent(ev);
+        } else {
+            target.addEvent(ev);
+        }
+    }
+
+    /**
+     * Schedule direct event on given entity at the current simulation time.
+     * 
+     * @param ev
+     *            direct event
+     * @param ref
+     *            target entity reference
+     * @throws RemoteException
+     *             distributed simulation failure
+     */
+    public void schedule(Event.Direct ev, EntityRef ref) throws RemoteException {
+        ev.time = currentSimulationTime;
+        ev.ref = ref;
+        if (single) {
+            addEvent(ev);
+        } else {
+            routeEvent(ev);
+        }
+    }
+
+    // ////////////////////////////////////////////////
+    // cancellation
+    //
+
+    /**
+     * Return cancellable handle to the last event scheduled by entity
+     * invocation during the current event.
+     * 
+     * @return handle to last scheduled event
+     * @see JistAPI#timer
+     */
+    public Event.Timer getTimer() {
+        Event ev = lastEvent;
+        if (ev == null) {
+            throw new RuntimeException("no entity invocation scheduled by current event");
+        }
+        if (ev.timer == null) {
+            ev.timer = new Event.Timer(this);
+        }
+        return ev.timer;
+    }
+
+    /**
+     * Record cancellation of a queued event. Once cancelled events make up
+     * more than half of the queue, they are purged, so that the amortized
+     * cost of a cancellation is that of a queue insertion.
+     */
+    void eventCancelled() {
+        cancelledEvents++;
+        if (cancelledEvents >= PURGE_MIN && cancelledEvents * 2 > events.size()) {
+            purgeCancelled();
+        }
+    }
+
+    /**
+     * Remove all cancelled events from the event queue.
+     */
+    private void purgeCancelled() {
+        Event[] live = new Event[events.size()];
+        int n = 0;
+        while (!events.isEmpty()) {
+            Event ev = events.removeFirst();
+            if (ev.timer != null && ev.timer.isCancelled()) {
+                numCancelled++;
+                disposeEvent(ev);
+            } else {
+                live[n++] = ev;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            events.insert(live[i]);
+        }
+        cancelledEvents = 0;
+        lastEvent = null;
+    }
+
+    /**
+     * Dispose of event dequeued for processing, if it has been cancelled.
+     * 
+     * @param ev
+     *            dequeued event
+     * @return whether event was cancelled
+     */
+    private boolean discardCancelled(Event ev) {
+        if (ev.timer == null || !ev.timer.expire())
+            return false;
+        cancelledEvents--;
+        numCancelled++;
+        disposeEvent(ev);
+        return true;
+    }
+
     // ////////////////////////////////////////////////
     // time
     //
@@ -902,7 +1139,7 @@ public final class Controller implements ControllerRemote, Runnable
      */
     public synchronized EntityRef registerEntity(Entity entity) {
         EntityRef ref;
-        if (Main.SINGLE_CONTROLLER) {
+        if (single) {
             ref = new EntityRef(numEntities);
         } else {
             ref = new EntityRefDist(this, numEntities);
@@ -1007,13 +1244,8 @@ public final class Controller implements ControllerRemote, Runnable
      * @return active Controller instance
      */
     public static Controller getActiveController() {
-        if (Main.SINGLE_CONTROLLER) // (controllerCount==1)
-        {
-            // note: this "optimization" does not seem to make any difference
-            return activeController;
-        } else {
-            return ((JistThread) Thread.currentThread()).controller;
-        }
+        Thread t = Thread.currentThread();
+        return t instanceof JistThread ? ((JistThread) t).controller : activeController;
     }
 
     /**
@@ -1033,6 +1265,8 @@ public final class Controller implements ControllerRemote, Runnable
      */
     public void setClassLoader(ClassLoader loader) {
         this.loader = loader;
+        this.invokers = new Invoker.Cache(loader instanceof Rewriter ? ((Rewriter) loader).getInvokers()
+                : new Invoker.Table(loader));
     }
 
     /**
@@ -1081,11 +1315,17 @@ public final class Controller implements ControllerRemote, Runnable
      *            invocation parameters
      */
     public static void entityInvocation(Method meth, EntityRef ref, Object[] params) {
-        if (Main.SINGLE_CONTROLLER) {
-            activeController.addEvent(meth, ref, params);
+        Controller c = getActiveController();
+        if (c.single) {
+            c.addEvent(meth, ref, params);
         } else {
             try {
-                ref.getController().addEvent(meth, ref, params);
+                ControllerRemote target = ref.getController();
+                if (target == c) {
+                    c.addEvent(meth, ref, params);
+                } else {
+                    target.addEvent(meth, ref, params);
+                }
             } catch (RemoteException e) {
                 throw new JistException("distributed simulation failure", e);
             }
@@ -1123,6 +1363,39 @@ public final class Controller implements ControllerRemote, Runnable
                 callee instanceof EntityRef ? (EntityRef) callee : ((Entity) callee)._jistMethod_Get__ref(), params);
     }
 
+    /**
+     * Application callback method to obtain an array for the arguments of an
+     * entity invocation, if argument arrays are recycled. The array belongs to
+     * the event of the invocation, and is returned to the pool of the
+     * controller that disposes of the event.
+     * 
+     * @see Main#POOL_ARGUMENTS
+     * 
+     * @param n
+     *            number of arguments
+     * @return argument array of given length
+     */
+    public static Object[] getArguments(int n) {
+        if (n > ARGUMENTS_POOLED)
+            return new Object[n];
+        return getActiveController().argumentPools[n].get();
+    }
+
+    /**
+     * Clear argument array and return it to the pool.
+     * 
+     * @param args
+     *            argument array of a disposed event, or null
+     */
+    private void putArguments(Object[] args) {
+        if (args == null || args.length == 0 || args.length > ARGUMENTS_POOLED)
+            return;
+        for (int i = 0; i < args.length; i++) {
+            args[i] = null;
+        }
+        argumentPools[args.length].put(args);
+    }
+
     /**
      * Application callback method to perform (intercept) a BLOCKING entity
      * method invocation at the appropriate simulation time. This method will be
@@ -1153,6 +1426,9 @@ public final class Controller implements ControllerRemote, Runnable
                 }
             }
             // return callback result
+            if (Main.POOL_ARGUMENTS) {
+                c.putArguments(params);
+            }
             return c.clearRestoreState();
         } else {
             // calling blocking method
@@ -1313,6 +1589,34 @@ public final class Controller implements ControllerRemote, Runnable
         return tmp;
     }
 
+    // ////////////////////////////////////////////////
+    // results
+    //
+
+    /**
+     * Set simulation client.
+     * 
+     * @param client
+     *            client that receives simulation results
+     */
+    public void setClient(RemoteJist.JistClientRemote client) {
+        this.client = client;
+    }
+
+    /**
+     * Deliver simulation results to client.
+     * 
+     * @param results
+     *            encoded simulation results
+     * @throws RemoteException
+     *             rpc failure
+     */
+    public void setResults(byte[] results) throws RemoteException {
+        if (client != null) {
+            client.setResults(results);
+        }
+    }
+
     // ////////////////////////////////////////////////
     // logging
     //
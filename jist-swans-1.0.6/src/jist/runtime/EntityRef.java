@@ -79,11 +79,8 @@ public class EntityRef implements InvocationHandler
      * @return controller of referenced entity
      */
     public ControllerRemote getController() {
-        if (Main.SINGLE_CONTROLLER) {
-            return Controller.activeController;
-        } else {
-            throw new RuntimeException("multiple controllers");
-        }
+        // only the single controller creates local references
+        return Controller.activeController;
     }
 
     /**
@@ -166,11 +163,7 @@ public class EntityRef implements InvocationHandler
                 return blockingInvoke(proxy, method, args);
             } else {
                 // schedule a simulation event
-                if (Main.SINGLE_CONTROLLER) {
-                    Controller.activeController.addEvent(method, this, args);
-                } else {
-                    getController().addEvent(method, this, args);
-                }
+                Controller.entityInvocation(method, this, args);
                 return null;
             }
         } catch (RemoteException e) {
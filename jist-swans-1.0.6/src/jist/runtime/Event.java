@@ -47,6 +47,13 @@ public class Event implements Comparable
      */
     public Method       method;
 
+    /**
+     * Invoker id of event method, or zero if not yet resolved.
+     * 
+     * @see Invoker
+     */
+    public int          invoker;
+
     /**
      * Arguments to be passed to entity method for processing.
      */
@@ -58,6 +65,13 @@ public class Event implements Comparable
      */
     public Continuation cont;
 
+    /**
+     * Cancellable handle to event, if one has been requested.
+     * 
+     * @see JistAPI#timer
+     */
+    public Timer        timer;
+
     // ////////////////////////////////////////////////
     // initialize
     //
@@ -94,6 +108,7 @@ public class Event implements Comparable
         this(ev.time, ev.method, ev.ref, ev.args); // possibly not safe to
                                                    // reference same args
         this.cont = ev.cont; // possibly not safe to reference same continuation
+        this.invoker = ev.invoker;
     }
 
     // ////////////////////////////////////////////////
@@ -116,7 +131,9 @@ public class Event implements Comparable
         this.time = time;
         this.ref = ref;
         this.method = method;
+        this.invoker = 0;
         this.args = args;
+        this.timer = null;
     }
 
     /**
@@ -360,6 +377,120 @@ public class Event implements Comparable
         }
     }
 
+    // ////////////////////////////////////////////////
+    // Timers
+    //
+
+    /**
+     * Cancellable handle to a scheduled event. Cancelled events are left in
+     * the event queue, and discarded without processing when they reach its
+     * front, or when the controller purges the queue.
+     * 
+     * @since JIST1.0
+     */
+    public static final class Timer implements JistAPI.Timer
+    {
+        /**
+         * Controller whose event queue holds the event.
+         */
+        private final Controller controller;
+
+        /**
+         * Whether event is neither processed nor cancelled.
+         */
+        private boolean          pending;
+
+        /**
+         * Whether event has been cancelled.
+         */
+        private boolean          cancelled;
+
+        /**
+         * Create handle for an event in the given controller queue.
+         * 
+         * @param controller
+         *            controller whose queue holds the event
+         */
+        public Timer(Controller controller) {
+            this.controller = controller;
+            this.pending = true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean cancel() {
+            if (!pending)
+                return false;
+            pending = false;
+            cancelled = true;
+            controller.eventCancelled();
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isPending() {
+            return pending;
+        }
+
+        /**
+         * Return whether event has been cancelled.
+         * 
+         * @return whether event has been cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Mark event as removed from the event queue.
+         * 
+         * @return whether event has been cancelled
+         */
+        boolean expire() {
+            pending = false;
+            return cancelled;
+        }
+
+    } // class: Timer
+
+    // ////////////////////////////////////////////////
+    // Direct events
+    //
+
+    /**
+     * Event that carries its own (typed, possibly primitive) arguments, and
+     * invokes its target entity directly, instead of through an invoker with a
+     * boxed argument array. Direct events are not pooled: they belong to the
+     * code that creates them, which may schedule the same instance again once
+     * it is being processed.
+     * 
+     * @since JIST1.0
+     * @see JistAPI#schedule
+     */
+    public abstract static class Direct extends Event
+    {
+        /**
+         * Create direct event.
+         * 
+         * @param method
+         *            method invoked by event (for logging)
+         */
+        protected Direct(Method method) {
+            this.method = method;
+            this.invoker = Invoker.DIRECT;
+        }
+
+        /**
+         * Process event: invoke target entity.
+         * 
+         * @param entity
+         *            target entity object
+         * @throws Throwable
+         *             whatever is thrown by the invoked method
+         */
+        public abstract void invoke(Object entity) throws Throwable;
+
+    } // class: Direct
+
     // ////////////////////////////////////////////////
     // Continuations
     //
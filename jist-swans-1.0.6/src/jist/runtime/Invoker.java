@@ -0,0 +1,257 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Dispatches an event to its target entity method. An invoker is generated by
+ * the Rewriter for each event method, so that the event loop performs a typed
+ * call instead of a reflective <code>Method.invoke</code>. Methods that can not
+ * be reached from generated code fall back to a reflective invoker.
+ * <p>
+ * Invokers are registered in a per class loader table and identified by an
+ * integer id, which is what events carry (id 0 is reserved for "unresolved").
+ *
+ * @since JIST1.0
+ */
+
+public abstract class Invoker
+{
+
+    /**
+     * Invoker id of direct events, which dispatch themselves.
+     * 
+     * @see Event.Direct
+     */
+    public static final int DIRECT = -1;
+
+    // ////////////////////////////////////////////////
+    // locals
+    //
+
+    /**
+     * Invoker identifier: index into the invoker table.
+     */
+    private int    id;
+
+    /**
+     * Method dispatched by this invoker.
+     */
+    private Method method;
+
+    /**
+     * Return invoker identifier.
+     *
+     * @return invoker identifier
+     */
+    public final int getId() {
+        return id;
+    }
+
+    /**
+     * Return method dispatched by this invoker.
+     *
+     * @return method dispatched by this invoker
+     */
+    public final Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Invoke the method on the given target. Unlike
+     * <code>Method.invoke</code>, exceptions thrown by the method are NOT
+     * wrapped.
+     *
+     * @param target
+     *            target object (ignored for static methods)
+     * @param args
+     *            method arguments (primitives in boxed form), or null
+     * @return method result (boxed), or null for void methods
+     * @throws Throwable
+     *             whatever is thrown by the invoked method
+     */
+    public abstract Object invoke(Object target, Object[] args) throws Throwable;
+
+    // ////////////////////////////////////////////////
+    // reflective fallback
+    //
+
+    /**
+     * Invoker that dispatches through reflection. Used for methods that
+     * generated code can not access, such as private methods or methods of
+     * classes outside the Rewriter's reach.
+     */
+    public static final class Reflective extends Invoker
+    {
+        /** {@inheritDoc} */
+        public Object invoke(Object target, Object[] args) throws Throwable {
+            try {
+                return getMethod().invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            } catch (IllegalArgumentException e) {
+                throw new JistException("Unable to invoke METHOD: " + getMethod() + " on target ENTITY: " + target, e);
+            }
+        }
+    } // class: Reflective
+
+    // ////////////////////////////////////////////////
+    // invoker table
+    //
+
+    /**
+     * Table of invokers generated within a single simulation class loader,
+     * indexed by invoker id. Controllers that share a loader share its table,
+     * so invoker ids remain valid as events move between them.
+     */
+    public static final class Table
+    {
+        /** Invokers, indexed by id. */
+        private volatile Invoker[]  invokers = new Invoker[64];
+
+        /** Number of entries in table (id 0 is reserved). */
+        private int                 size     = 1;
+
+        /** Registered invokers, keyed by method. */
+        private final HashMap       byMethod = new HashMap();
+
+        /** Simulation class loader used to generate invokers. */
+        private final ClassLoader   loader;
+
+        /**
+         * Create an invoker table for the given simulation class loader.
+         *
+         * @param loader
+         *            simulation class loader (rewriter), or null
+         */
+        public Table(ClassLoader loader) {
+            this.loader = loader;
+        }
+
+        /**
+         * Return invoker with given id.
+         *
+         * @param id
+         *            invoker identifier
+         * @return invoker with given id
+         */
+        public Invoker get(int id) {
+            return invokers[id];
+        }
+
+        /**
+         * Return the registered invoker for a method, generating it (within
+         * the table class loader, if it is a Rewriter) on first use.
+         *
+         * @param m
+         *            method to dispatch
+         * @return invoker for given method
+         */
+        public synchronized Invoker register(Method m) {
+            Invoker inv = (Invoker) byMethod.get(m);
+            if (inv != null)
+                return inv;
+            if (loader instanceof Rewriter) {
+                inv = ((Rewriter) loader).createInvoker(m);
+            }
+            if (inv == null) {
+                if (!Modifier.isPublic(m.getModifiers()) || !Modifier.isPublic(m.getDeclaringClass().getModifiers())) {
+                    m.setAccessible(true);
+                }
+                inv = new Reflective();
+            }
+            inv.method = m;
+            inv.id = size;
+            Invoker[] invokers2 = invokers;
+            if (size == invokers2.length) {
+                invokers2 = new Invoker[invokers2.length * 2];
+                System.arraycopy(invokers, 0, invokers2, 0, size);
+            }
+            invokers2[size++] = inv;
+            invokers = invokers2;
+            byMethod.put(m, inv);
+            return inv;
+        }
+
+        /**
+         * Return number of registered invokers.
+         *
+         * @return number of registered invokers
+         */
+        public synchronized int size() {
+            return size - 1;
+        }
+    } // class: Table
+
+    /**
+     * Unsynchronized (per-controller) front-end to an invoker table. Method
+     * stubs are singletons, so the cache is keyed by identity.
+     */
+    public static final class Cache
+    {
+        /** Method to invoker. */
+        private final IdentityHashMap ids = new IdentityHashMap();
+
+        /** Backing invoker table. */
+        private final Table           table;
+
+        /** Last method looked up. */
+        private Method                lastMethod;
+
+        /** Invoker id of last method looked up. */
+        private int                   lastId;
+
+        /**
+         * Create an invoker cache on top of given table.
+         *
+         * @param table
+         *            backing invoker table
+         */
+        public Cache(Table table) {
+            this.table = table;
+        }
+
+        /**
+         * Return invoker id for given method.
+         *
+         * @param m
+         *            method to dispatch
+         * @return invoker id
+         */
+        public int getId(Method m) {
+            if (m == lastMethod)
+                return lastId;
+            Invoker inv = (Invoker) ids.get(m);
+            if (inv == null) {
+                inv = table.register(m);
+                ids.put(m, inv);
+            }
+            lastMethod = m;
+            lastId = inv.id;
+            return lastId;
+        }
+
+        /**
+         * Return invoker with given id.
+         *
+         * @param id
+         *            invoker identifier
+         * @return invoker with given id
+         */
+        public Invoker get(int id) {
+            return table.get(id);
+        }
+    } // class: Cache
+
+} // class: Invoker
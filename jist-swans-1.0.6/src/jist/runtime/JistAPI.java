@@ -104,6 +104,30 @@ public class JistAPI
     {
     }
 
+    /**
+     * Cancellable handle to a scheduled entity invocation.
+     * 
+     * @see JistAPI#timer
+     * @since JIST1.0
+     */
+    public static interface Timer
+    {
+        /**
+         * Cancel the entity invocation, if it has not yet been processed.
+         * 
+         * @return whether invocation was pending and is now cancelled
+         */
+        boolean cancel();
+
+        /**
+         * Return whether entity invocation is still scheduled: neither
+         * processed nor cancelled.
+         * 
+         * @return whether entity invocation is still scheduled
+         */
+        boolean isPending();
+    }
+
     /**
      * Interface for custom logger.
      */
@@ -165,6 +189,43 @@ public class JistAPI
             throw new RuntimeException(JistAPI_Impl.INVALID_CALL_MSG);
     }
 
+    /**
+     * Return a cancellable handle to the entity invocation most recently
+     * scheduled by the current event. Must directly follow the (non-blocking)
+     * entity invocation, as in:
+     * 
+     * <pre>
+     * JistAPI.sleep(delay);
+     * self.timeout();
+     * timer = JistAPI.timer();
+     * </pre>
+     * 
+     * Cancelled invocations are discarded without being processed.
+     * 
+     * @return handle to last scheduled entity invocation
+     */
+    public static JistAPI.Timer timer() {
+        if (Main.isRunning())
+            throw new RuntimeException(JistAPI_Impl.INVALID_CALL_MSG);
+        return null;
+    }
+
+    /**
+     * Schedule a direct event on given entity at the current simulation time.
+     * Unlike a regular entity invocation, a direct event carries its own typed
+     * arguments, so no argument array or primitive wrappers are allocated. The
+     * same event instance may be scheduled again once it is being processed.
+     * 
+     * @param ev
+     *            direct event
+     * @param entity
+     *            target entity, entity reference or proxy entity
+     */
+    public static void schedule(Event.Direct ev, Object entity) {
+        if (Main.isRunning())
+            throw new RuntimeException(JistAPI_Impl.INVALID_CALL_MSG);
+    }
+
     /**
      * Get Entity reference for given Entity.
      * 
@@ -347,6 +408,18 @@ public class JistAPI
             throw new RuntimeException(JistAPI_Impl.INVALID_CALL_MSG);
     }
 
+    /**
+     * Deliver simulation results to the client that submitted the simulation,
+     * separately from its standard output. Ignored outside of a simulation.
+     * 
+     * @param results
+     *            encoded simulation results
+     */
+    public static void setResults(byte[] results) {
+        if (Main.isRunning())
+            throw new RuntimeException(JistAPI_Impl.INVALID_CALL_MSG);
+    }
+
     /**
      * Determine whether given reference is an entity reference.
      * 
@@ -52,6 +52,16 @@ public final class JistAPI_Impl extends JistAPI
      */
     public static Method       method_sleepBlockAPI;
 
+    /**
+     * Method stub field for retrieving a handle to the last scheduled event.
+     */
+    public static Method       method_timer;
+
+    /**
+     * Method stub field for scheduling a direct event.
+     */
+    public static Method       method_schedule;
+
     /**
      * Method stub field for converting an entity into an entity reference.
      */
@@ -122,6 +132,11 @@ public final class JistAPI_Impl extends JistAPI
      */
     public static Method       method_log;
 
+    /**
+     * Method stub field for delivering simulation results.
+     */
+    public static Method       method_setResults;
+
     /**
      * Method stub field for determining whether a reference is an entity
      * reference.
@@ -139,6 +154,9 @@ public final class JistAPI_Impl extends JistAPI
             method_sleep = JistAPI_Impl.class.getDeclaredMethod("sleep", new Class[] { Long.TYPE });
             method_sleepBlock = JistAPI_Impl.class.getDeclaredMethod("sleepBlock", new Class[] { Long.TYPE });
             method_sleepBlockAPI = JistAPI.class.getDeclaredMethod("sleepBlock", new Class[] { Long.TYPE });
+            method_timer = JistAPI_Impl.class.getDeclaredMethod("timer", new Class[] {});
+            method_schedule = JistAPI_Impl.class.getDeclaredMethod("schedule", new Class[] { Event.Direct.class,
+            Object.class });
             method_ref = JistAPI_Impl.class.getDeclaredMethod("ref", new Class[] { Object.class });
             method_end = JistAPI_Impl.class.getDeclaredMethod("end", new Class[] {});
             method_endAt = JistAPI_Impl.class.getDeclaredMethod("endAt", new Class[] { Long.TYPE });
@@ -158,6 +176,7 @@ public final class JistAPI_Impl extends JistAPI
             method_getTimeString = JistAPI_Impl.class.getDeclaredMethod("getTimeString", new Class[] {});
             method_setLog = JistAPI_Impl.class.getDeclaredMethod("setLog", new Class[] { JistAPI.Logger.class });
             method_log = JistAPI_Impl.class.getDeclaredMethod("log", new Class[] { String.class });
+            method_setResults = JistAPI_Impl.class.getDeclaredMethod("setResults", new Class[] { byte[].class });
             method_isEntity = JistAPI_Impl.class.getDeclaredMethod("isEntity", new Class[] { Object.class });
             method_toString = JistAPI_Impl.class.getDeclaredMethod("toString", new Class[] { Object.class });
         } catch (NoSuchMethodException e) {
@@ -190,6 +209,30 @@ public final class JistAPI_Impl extends JistAPI
         }
     }
 
+    /** @see JistAPI */
+    public static JistAPI.Timer timer() {
+        return Controller.getActiveController().getTimer();
+    }
+
+    /** @see JistAPI */
+    public static void schedule(Event.Direct ev, Object entity) {
+        EntityRef ref;
+        if (entity instanceof EntityRef) {
+            ref = (EntityRef) entity;
+        } else if (entity instanceof jist.runtime.Entity) {
+            ref = ((jist.runtime.Entity) entity)._jistMethod_Get__ref();
+        } else if (entity instanceof Proxy) {
+            ref = (EntityRef) Proxy.getInvocationHandler(entity);
+        } else {
+            throw new IllegalArgumentException("not an entity: " + entity);
+        }
+        try {
+            Controller.getActiveController().schedule(ev, ref);
+        } catch (RemoteException e) {
+            throw new JistException("distributed simulation failure", e);
+        }
+    }
+
     /** @see JistAPI */
     public static Object ref(Object o) {
         return o instanceof jist.runtime.Entity ? ((jist.runtime.Entity) o)._jistMethod_Get__ref() : o; // will
@@ -221,6 +264,10 @@ public final class JistAPI_Impl extends JistAPI
             throw new RuntimeException("method must be public");
         }
         Controller c = Controller.getActiveController();
+        if (Main.POOL_ARGUMENTS && params != null) {
+            // event arguments are recycled; keep caller array intact
+            params = (Object[]) params.clone();
+        }
         c.addEvent(meth, c.getStaticEntityRef(), params, time);
     }
 
@@ -291,6 +338,15 @@ public final class JistAPI_Impl extends JistAPI
         Controller.getActiveController().log(s);
     }
 
+    /** @see JistAPI */
+    public static void setResults(byte[] results) {
+        try {
+            Controller.getActiveController().setResults(results);
+        } catch (RemoteException e) {
+            throw new JistException("unable to deliver simulation results", e);
+        }
+    }
+
     /** @see JistAPI */
     public static boolean isEntity(Object o) {
         try {
@@ -25,6 +25,9 @@ import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.log4j.BasicConfigurator;
@@ -84,6 +87,12 @@ public final class Main
      */
     public static final boolean COUNT_EVENTS                  = false;
 
+    /**
+     * Whether to recycle the argument arrays of entity invocations. (Usually
+     * slower than allocation on current virtual machines.)
+     */
+    public static final boolean POOL_ARGUMENTS                = false;
+
     /**
      * Whether to assume a single controller.
      */
@@ -124,6 +133,12 @@ public final class Main
     /** Default jist properties file name. */
     public static final String  JIST_PROPERTIES               = "jist.properties";
 
+    /** Jist property naming default event queue (overridden by --scheduler). */
+    public static final String  JIST_PROPERTY_SCHEDULER       = "jist.scheduler";
+
+    /** Jist property giving the number of rewriter class analysis threads. */
+    public static final String  JIST_PROPERTY_REWRITER_THREADS = "jist.rewriter.threads";
+
     // ////////////////////////////////////////////////
     // Static command-line helper methods
     //
@@ -154,6 +169,10 @@ public final class Main
         System.out.println("  --bsh             run input with BeanShell script engine");
         System.out.println("  --jpy             run input with Jython script engine");
         System.out.println("  --nocache         disable rewriter cache");
+        System.out.println("  -a, --archive     load classes rewritten ahead of time from given archive");
+        System.out.println("                       (see jist.runtime.RewriteArchive)");
+        System.out.println("  -s, --scheduler   event queue: heap, [dary[:arity]], calendar[:width,nbins],");
+        System.out.println("                       adaptive, or Scheduler class name [jist.scheduler]");
         System.out.println("  -r, --remote      specify remote job or processing server");
         System.out.println("  where: ");
         System.out.println("    <sim>  is:      simulation program with command-line arguments, or");
@@ -189,6 +208,12 @@ public final class Main
         public boolean  jpy        = false;
         /** do not use rewriter cache. */
         public boolean  nocache    = false;
+        /** archive of classes rewritten ahead of time. */
+        public String   archive    = null;
+        /** event queue specification. */
+        public String   scheduler  = null;
+        /** run concurrently with other simulations in this jvm. */
+        public boolean  concurrent = false;
         /** remote server job queue. */
         public Node     remote     = null;
         /** server mode. */
@@ -225,6 +250,8 @@ public final class Main
         CmdLineParser.Option opt_bsh = parser.addBooleanOption('.', "bsh");
         CmdLineParser.Option opt_jpy = parser.addBooleanOption(',', "jpy");
         CmdLineParser.Option opt_nocache = parser.addBooleanOption(']', "nocache");
+        CmdLineParser.Option opt_archive = parser.addStringOption('a', "archive");
+        CmdLineParser.Option opt_scheduler = parser.addStringOption('s', "scheduler");
         CmdLineParser.Option opt_remote = parser.addStringOption('r', "remote");
         CmdLineParser.Option opt_server = parser.addBooleanOption('S', "server");
         CmdLineParser.Option opt_port = parser.addStringOption('p', "port");
@@ -255,6 +282,12 @@ public final class Main
         if (parser.getOptionValue(opt_nocache) != null) {
             options.nocache = true;
         }
+        if (parser.getOptionValue(opt_archive) != null) {
+            options.archive = (String) parser.getOptionValue(opt_archive);
+        }
+        if (parser.getOptionValue(opt_scheduler) != null) {
+            options.scheduler = (String) parser.getOptionValue(opt_scheduler);
+        }
         if (parser.getOptionValue(opt_remote) != null) {
             options.remote = Node.parse((String) parser.getOptionValue(opt_remote), JIST_PORT);
         }
@@ -289,6 +322,12 @@ public final class Main
     /** current job. */
     private static RemoteJist.Job currentJob = null;
 
+    /** rewritten classes shared by concurrent simulations, if any. */
+    private static Map            rewriteCache;
+
+    /** standard output of concurrent simulations, if any. */
+    private static ThreadPrintStream threadOut;
+
     /**
      * Return whether JiST is running.
      * 
@@ -298,6 +337,22 @@ public final class Main
         return running;
     }
 
+    /**
+     * Set up jist logging.
+     * 
+     * @param properties
+     *            jist properties, or null for default logging
+     */
+    private static void configureLogging(Properties properties) {
+        if (properties != null) {
+            Logger.getRootLogger().setLevel(Level.OFF);
+            PropertyConfigurator.configure(properties);
+        } else {
+            BasicConfigurator.configure();
+            Logger.getRootLogger().setLevel(Level.OFF);
+        }
+    }
+
     /**
      * Run a single simulation with given command-line options.
      * 
@@ -315,23 +370,34 @@ public final class Main
     public static void runSimulation(CommandLineOptions options, Properties properties,
             RemoteJist.JistClientRemote remote, PrintStream serverOut, RemoteJist.PingRemote ping) {
         try {
-            // set up jist logging
-            if (properties != null) {
-                Logger.getRootLogger().setLevel(Level.OFF);
-                PropertyConfigurator.configure(properties);
-            } else {
-                BasicConfigurator.configure();
-                Logger.getRootLogger().setLevel(Level.OFF);
+            // set up jist logging (once, if simulations run concurrently)
+            if (rewriteCache == null) {
+                configureLogging(properties);
             }
 
             // setup execution environment
             if (options.bsh || options.jpy || options.sim != null) {
                 // instantiate rewriter
+                int threads = Runtime.getRuntime().availableProcessors();
+                if (properties != null && properties.getProperty(JIST_PROPERTY_REWRITER_THREADS) != null) {
+                    threads = Integer.parseInt(properties.getProperty(JIST_PROPERTY_REWRITER_THREADS).trim());
+                }
+                Rewriter.setAnalysisThreads(threads);
                 String cachedir = options.nocache ? null : System.getProperty("java.io.tmpdir");
                 Rewriter rewriter = new Rewriter(null, cachedir, remote, serverOut);
+                rewriter.setSharedCache(rewriteCache);
+                if (options.archive != null) {
+                    rewriter.setArchive(RewriteArchive.open(options.archive));
+                }
                 Thread.currentThread().setContextClassLoader(rewriter);
                 // instantiate controller
-                Controller controller = Controller.newController(rewriter);
+                Controller controller = Controller.newController(rewriter, !options.concurrent);
+                String scheduler = options.scheduler;
+                if (scheduler == null && properties != null) {
+                    scheduler = properties.getProperty(JIST_PROPERTY_SCHEDULER);
+                }
+                controller.setScheduler(Scheduler.create(scheduler));
+                controller.setClient(remote);
                 if (options.bsh) {
                     Bootstrap.create(JistAPI.RUN_BSH, controller, options.sim, options.args, null);
                 } else if (options.jpy) {
@@ -375,6 +441,50 @@ public final class Main
         }
     }
 
+    /**
+     * Run a simulation in the calling thread, possibly concurrently with other
+     * simulations started the same way. Each simulation has its own controller
+     * and rewriter (hence its own copy of all static simulation state), but
+     * classes are only rewritten once and then shared. The first call installs
+     * a thread-dispatching standard output. Simulations run this way
+     * always use a single controller, and do not use the disk-based rewriter
+     * cache.
+     * 
+     * @param options
+     *            command-line options
+     * @param properties
+     *            jist properties
+     * @param out
+     *            standard output of simulation
+     * @return results delivered by simulation, or null
+     * @see JistAPI#setResults
+     */
+    public static byte[] runSimulationConcurrent(CommandLineOptions options, Properties properties, PrintStream out) {
+        synchronized (Main.class) {
+            if (rewriteCache == null) {
+                configureLogging(properties);
+                rewriteCache = Collections.synchronizedMap(new HashMap());
+                threadOut = new ThreadPrintStream(System.out);
+                System.setOut(threadOut);
+            }
+        }
+        options.nocache = true;
+        options.concurrent = true;
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        threadOut.setTarget(out);
+        try {
+            RemoteJist.JistClientLocal client = new RemoteJist.JistClientLocal();
+            runSimulation(options, properties, client, null, null);
+            return client.getResults();
+        } catch (RemoteException e) {
+            throw new JistException("should not happen", e);
+        } finally {
+            out.flush();
+            threadOut.setTarget(null);
+            Thread.currentThread().setContextClassLoader(loader);
+        }
+    }
+
     /**
      * Redirect output streams and run simulation.
      * 
@@ -472,9 +582,7 @@ public final class Main
             jqs.addJob(job, false);
             // wait for server to release client
             try {
-                synchronized (client) {
-                    client.wait();
-                }
+                client.waitDone();
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
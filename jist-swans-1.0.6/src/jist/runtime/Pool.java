@@ -19,11 +19,122 @@ package jist.runtime;
 
 public abstract class Pool
 {
+    /**
+     * Number of objects taken from the pool.
+     */
+    protected long hits;
+
+    /**
+     * Number of objects created because the pool was empty.
+     */
+    protected long misses;
+
+    /**
+     * Number of objects handed out and not yet returned.
+     */
+    protected int  live;
+
+    /**
+     * Largest number of objects handed out and not yet returned.
+     */
+    protected int  highWater;
+
+    /**
+     * Record an object handed out by the pool.
+     * 
+     * @param hit
+     *            whether object was taken from the pool
+     */
+    protected final void countGet(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+        if (++live > highWater) {
+            highWater = live;
+        }
+    }
+
+    /**
+     * Record an object returned to the pool. Objects that were not handed out
+     * by this pool (e.g. ones created elsewhere) are not counted.
+     */
+    protected final void countPut() {
+        if (live > 0) {
+            live--;
+        }
+    }
+
+    /**
+     * Return new size of a full pool array, or zero to drop a returned object.
+     * A pool never holds more objects than were live at once (or its initial
+     * size), so objects returned beyond that are left to garbage collection.
+     * 
+     * @param count
+     *            number of objects in full pool array
+     * @return new pool array size, or zero if pool is at its limit
+     */
+    protected final int grow(int count) {
+        return count >= highWater ? 0 : StrictMath.min(count * 2, highWater);
+    }
+
+    /**
+     * Return number of objects taken from the pool.
+     * 
+     * @return number of pool hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Return number of objects created because the pool was empty.
+     * 
+     * @return number of pool misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Return largest number of objects handed out and not yet returned. The
+     * pool grows up to this size.
+     * 
+     * @return live object high-water mark
+     */
+    public int getHighWater() {
+        return highWater;
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        return "hit=" + hits + " miss=" + misses + " hw=" + highWater;
+    }
+
+    /**
+     * Return pool statistics summed over several pools.
+     * 
+     * @param pools
+     *            pools, some possibly null
+     * @return summed pool statistics
+     */
+    public static String toString(Pool[] pools) {
+        long hits = 0, misses = 0, highWater = 0;
+        for (int i = 0; i < pools.length; i++) {
+            if (pools[i] != null) {
+                hits += pools[i].hits;
+                misses += pools[i].misses;
+                highWater += pools[i].highWater;
+            }
+        }
+        return "hit=" + hits + " miss=" + misses + " hw=" + highWater;
+    }
 
     /**
      * Implements an object pool for the massively used Object array objects.
-     * Note that, for performance reasons, this class is intentionally NOT
-     * thread-safe.
+     * The pool grows up to the most arrays in use at once. Note that, for
+     * performance reasons, this class is intentionally NOT thread-safe.
      * 
      * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
      * @since JIST1.0
@@ -35,30 +146,31 @@ public abstract class Pool
         /**
          * Size of Object arrays pooled.
          */
-        private final int        size;
+        private final int  size;
 
         /**
          * Private array pool of Object arrays of size 'size'.
          */
-        private final Object[][] pool;
+        private Object[][] pool;
 
         /**
          * Index into array pool.
          */
-        private int              count;
+        private int        count;
 
         /**
-         * Create new object array pool of given size, for array of given size.
+         * Create new object array pool of given initial size, for array of
+         * given size.
          * 
          * @param arraysize
          *            object array size pooled
          * @param poolsize
-         *            size of object array pool
+         *            initial size of object array pool
          */
         public ArrayPool(int arraysize, int poolsize) {
             size = arraysize;
-            pool = new Object[size][];
-            for (count = 0; count < pool.length; count++) {
+            pool = new Object[StrictMath.max(poolsize, 1)][];
+            for (count = 0; count < poolsize; count++) {
                 pool[count] = new Object[size];
             }
         }
@@ -69,6 +181,7 @@ public abstract class Pool
          * @return initialized Object array
          */
         public Object[] get() {
+            countGet(count > 0);
             if (count > 0) {
                 return pool[--count];
             } else {
@@ -77,17 +190,25 @@ public abstract class Pool
         }
 
         /**
-         * Place a free (otherwise unused) array object back in the pool, if
-         * there is space. Remember to any clear reference from the array to
-         * allow garbage collection to occur.
+         * Place a free (otherwise unused) array object back in the pool.
+         * Remember to any clear reference from the array to allow garbage
+         * collection to occur.
          * 
          * @param o
          *            reference to free array object
          */
         public void put(Object[] o) {
-            if (count < pool.length) {
-                pool[count++] = o;
+            countPut();
+            if (count == pool.length) {
+                int length = grow(count);
+                if (length == 0) {
+                    return;
+                }
+                Object[][] pool2 = new Object[length][];
+                System.arraycopy(pool, 0, pool2, 0, count);
+                pool = pool2;
             }
+            pool[count++] = o;
         }
 
         /**
@@ -132,8 +253,8 @@ public abstract class Pool
 
     /**
      * Implements an object pool for the massively used Continuation objects.
-     * Note that, for performance reasons, this class is intentionally NOT
-     * thread-safe.
+     * The pool grows up to the most continuations in use at once. Note that,
+     * for performance reasons, this class is intentionally NOT thread-safe.
      * 
      * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
      * @since JIST1.0
@@ -145,22 +266,22 @@ public abstract class Pool
         /**
          * Private object pool.
          */
-        private final Event.Continuation[] pool;
+        private Event.Continuation[] pool;
 
         /**
          * Index into object pool.
          */
-        private int                        count;
+        private int                  count;
 
         /**
-         * Create new object pool of fixed given size.
+         * Create new object pool of given initial size.
          * 
          * @param size
-         *            object pool size
+         *            initial object pool size
          */
         public ContinuationPool(int size) {
-            pool = new Event.Continuation[size];
-            for (count = 0; count < pool.length; count++) {
+            pool = new Event.Continuation[StrictMath.max(size, 1)];
+            for (count = 0; count < size; count++) {
                 pool[count] = new Event.Continuation();
             }
         }
@@ -171,6 +292,7 @@ public abstract class Pool
          * @return uninitialized Continuation object
          */
         public Event.Continuation get() {
+            countGet(count > 0);
             if (count > 0) {
                 return pool[--count];
             } else {
@@ -179,24 +301,31 @@ public abstract class Pool
         }
 
         /**
-         * Place a free (otherwise unused) Continuation object back in the pool,
-         * if there is space.
+         * Place a free (otherwise unused) Continuation object back in the pool.
          * 
          * @param cont
          *            reference to a free Continuation object
          */
         public void put(Event.Continuation cont) {
-            if (count < pool.length) {
-                pool[count++] = cont;
+            countPut();
+            if (count == pool.length) {
+                int length = grow(count);
+                if (length == 0) {
+                    return;
+                }
+                Event.Continuation[] pool2 = new Event.Continuation[length];
+                System.arraycopy(pool, 0, pool2, 0, count);
+                pool = pool2;
             }
+            pool[count++] = cont;
         }
 
     } // class: ContinuationPool
 
     /**
-     * Implements an object pool for the massively used Event objects. Note
-     * that, for performance reasons, this class is intentionally NOT
-     * thread-safe.
+     * Implements an object pool for the massively used Event objects. The pool
+     * grows up to the most events in use at once. Note that, for performance
+     * reasons, this class is intentionally NOT thread-safe.
      * 
      * @author Rimon Barr &lt;barr+jist@cs.cornell.edu&gt;
      * @since JIST1.0
@@ -208,22 +337,22 @@ public abstract class Pool
         /**
          * Private object pool.
          */
-        private final Event[] pool;
+        private Event[] pool;
 
         /**
          * Index into object pool.
          */
-        private int           count;
+        private int     count;
 
         /**
-         * Create new object pool of fixed given size.
+         * Create new object pool of given initial size.
          * 
          * @param size
-         *            object pool size
+         *            initial object pool size
          */
         public EventPool(int size) {
-            pool = new Event[size];
-            for (count = 0; count < pool.length; count++) {
+            pool = new Event[StrictMath.max(size, 1)];
+            for (count = 0; count < size; count++) {
                 pool[count] = Main.EVENT_LOCATION || Main.EVENT_TRACE ? new EventLocation() : new Event();
             }
         }
@@ -234,6 +363,7 @@ public abstract class Pool
          * @return uninitialized Event object
          */
         public Event get() {
+            countGet(count > 0);
             if (count > 0) {
                 if (Main.EVENT_LOCATION || Main.EVENT_TRACE) {
                     EventLocation ev = (EventLocation) pool[--count];
@@ -248,16 +378,23 @@ public abstract class Pool
         }
 
         /**
-         * Place a free (otherwise unused) Event object back in the pool, if
-         * there is space.
+         * Place a free (otherwise unused) Event object back in the pool.
          * 
          * @param e
          *            reference to free event object
          */
         public void put(Event e) {
-            if (count < pool.length) {
-                pool[count++] = e;
+            countPut();
+            if (count == pool.length) {
+                int length = grow(count);
+                if (length == 0) {
+                    return;
+                }
+                Event[] pool2 = new Event[length];
+                System.arraycopy(pool, 0, pool2, 0, count);
+                pool = pool2;
             }
+            pool[count++] = e;
         }
 
     } // class: EventPool
@@ -323,7 +323,7 @@ public class RemoteIO
          * remote output stream stub.
          * 
          * @param rout
-         *            remote output stream stub
+         *            remote output stream stub, or null to discard output
          */
         public RemoteOutputStream(RemoteOutputStreamRemote rout) {
             this.rout = rout;
@@ -335,27 +335,32 @@ public class RemoteIO
 
         /** {@inheritDoc} */
         public void write(int b) throws IOException {
-            rout.write(b);
+            if (rout != null)
+                rout.write(b);
         }
 
         /** {@inheritDoc} */
         public void write(byte[] b) throws IOException {
-            rout.write(b);
+            if (rout != null)
+                rout.write(b);
         }
 
         /** {@inheritDoc} */
         public void write(byte[] b, int off, int len) throws IOException {
-            rout.write(b, off, len);
+            if (rout != null)
+                rout.write(b, off, len);
         }
 
         /** {@inheritDoc} */
         public void flush() throws IOException {
-            rout.flush();
+            if (rout != null)
+                rout.flush();
         }
 
         /** {@inheritDoc} */
         public void close() throws IOException {
-            rout.close();
+            if (rout != null)
+                rout.close();
         }
 
     } // class: RemoteOutputStream
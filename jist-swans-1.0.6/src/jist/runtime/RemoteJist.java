@@ -25,6 +25,7 @@ import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -448,7 +449,8 @@ public class RemoteJist
         private ResourceFinderRemote resources;
 
         /**
-         * Map of loaded classes.
+         * Map of loaded classes (synchronized: classes are also loaded by the
+         * rewriter analysis threads).
          */
         private Map                  cache;
 
@@ -527,7 +529,7 @@ public class RemoteJist
 
         /** {@inheritDoc} */
         public void clear() {
-            cache = new HashMap();
+            cache = Collections.synchronizedMap(new HashMap());
         }
 
         /**
@@ -583,6 +585,18 @@ public class RemoteJist
          */
         RemoteIO.RemoteOutputStreamRemote getStdErr() throws RemoteException;
 
+        /**
+         * Deliver simulation results to client, in whatever encoding the
+         * simulation and client agree upon. Called at most once per
+         * simulation, before it is done.
+         * 
+         * @param results
+         *            encoded simulation results
+         * @throws RemoteException
+         *             rpc failure
+         */
+        void setResults(byte[] results) throws RemoteException;
+
         /**
          * Signal client that simulation is done.
          * 
@@ -609,6 +623,16 @@ public class RemoteJist
          */
         private RemoteIO.RemoteOutputStreamRemote rerr;
 
+        /**
+         * Simulation results, if delivered.
+         */
+        private byte[]                            results;
+
+        /**
+         * Whether the server has signalled that the simulation is done.
+         */
+        private boolean                           finished;
+
         /**
          * Create new Jist client RMI "server".
          * 
@@ -629,13 +653,14 @@ public class RemoteJist
          * 
          * @author Elmar Schoch
          * @param outStream
-         *            Stream for output (like System.out)
+         *            Stream for output (like System.out), or null to have the
+         *            server discard output instead of sending it
          * @param errStream
          *            Stream for errors (like System.err)
          * @throws RemoteException
          */
         public JistClient(OutputStream outStream, OutputStream errStream) throws RemoteException {
-            rout = new RemoteIO.RemoteOutputStreamReceiver(outStream);
+            rout = outStream == null ? null : new RemoteIO.RemoteOutputStreamReceiver(outStream);
             rerr = new RemoteIO.RemoteOutputStreamReceiver(errStream);
         }
 
@@ -655,6 +680,20 @@ public class RemoteJist
             return rerr;
         }
 
+        /** {@inheritDoc} */
+        public void setResults(byte[] results) throws RemoteException {
+            this.results = results;
+        }
+
+        /**
+         * Return simulation results.
+         * 
+         * @return simulation results, or null if not delivered
+         */
+        public byte[] getResults() {
+            return results;
+        }
+
         /** {@inheritDoc} */
         public synchronized void done() throws RemoteException {
             // @author Elmar Schoch >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>
@@ -666,12 +705,26 @@ public class RemoteJist
                 rout = null;
                 rerr = null;
 
-                notify();
+                finished = true;
+                notifyAll();
             }
             // <<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<
 
         }
 
+        /**
+         * Wait until the server signals that the simulation is done. Returns
+         * immediately, if it has already done so.
+         * 
+         * @throws InterruptedException
+         *             interrupted while waiting
+         */
+        public synchronized void waitDone() throws InterruptedException {
+            while (!finished) {
+                wait();
+            }
+        }
+
         // ////////////////////////////////////////////////
         // ResourceFinderRemote interface
         //
@@ -716,6 +769,11 @@ public class RemoteJist
          */
         private RemoteIO.RemoteOutputStreamRemote rerr;
 
+        /**
+         * Simulation results, if delivered.
+         */
+        private byte[]                            results;
+
         /**
          * Create new Jist client RMI "server".
          * 
@@ -741,6 +799,20 @@ public class RemoteJist
             return rerr;
         }
 
+        /** {@inheritDoc} */
+        public void setResults(byte[] results) {
+            this.results = results;
+        }
+
+        /**
+         * Return simulation results.
+         * 
+         * @return simulation results, or null if not delivered
+         */
+        public byte[] getResults() {
+            return results;
+        }
+
         /** {@inheritDoc} */
         public synchronized void done() {
             rout = null;
@@ -0,0 +1,503 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.Attribute;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.InnerClass;
+import org.apache.bcel.classfile.InnerClasses;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.log4j.Logger;
+
+/**
+ * Archive of classes rewritten ahead of time. The archive holds the rewritten
+ * bytecode of every application class found on the class path, indexed by
+ * class name and the content hash of the original bytecode, and is tagged
+ * with the version (content hash) of the rewriter that produced it. A
+ * Rewriter given an archive defines classes straight from the memory-mapped
+ * file, skipping both BCEL and the modification time checks of the disk
+ * cache. Classes whose original bytecode has changed since the archive was
+ * written, and all classes if the rewriter has changed, are rewritten as
+ * usual.
+ * <p>
+ * Archives are written offline, with:
+ * <code>java jist.runtime.RewriteArchive [-r &lt;rewriter&gt;] &lt;archive&gt; [&lt;dir|jar&gt; ...]</code>,
+ * and used with <code>jist --archive &lt;archive&gt; ...</code>. Classes are
+ * rewritten with the given custom rewrite traversals installed, e.g.
+ * <code>-r jist.swans.Rewriter</code> for SWANS simulations, since archived
+ * classes are only used with the same traversals.
+ *
+ * @since JIST1.0
+ * @see Rewriter#setArchive
+ */
+
+public final class RewriteArchive
+{
+    /**
+     * RewriteArchive logger.
+     */
+    private static final Logger log        = Logger.getLogger(RewriteArchive.class.getName());
+
+    /**
+     * Archive file magic number.
+     */
+    private static final int    MAGIC      = 0x4a495354;
+
+    /**
+     * Archive file format version.
+     */
+    private static final int    FORMAT     = 1;
+
+    /**
+     * Content hash algorithm.
+     */
+    private static final String HASH       = "SHA-1";
+
+    /**
+     * Archived class.
+     */
+    private static final class Entry
+    {
+        /** content hash of original bytecode. */
+        private final byte[] hash;
+
+        /** custom rewrite traversals applied. */
+        private final String signature;
+
+        /** offset of rewritten bytecode within data section. */
+        private final int    offset;
+
+        /** length of rewritten bytecode. */
+        private final int    length;
+
+        /**
+         * Create new archive entry.
+         *
+         * @param hash
+         *            content hash of original bytecode
+         * @param signature
+         *            custom rewrite traversals applied
+         * @param offset
+         *            offset of rewritten bytecode within data section
+         * @param length
+         *            length of rewritten bytecode
+         */
+        public Entry(byte[] hash, String signature, int offset, int length) {
+            this.hash = hash;
+            this.signature = signature;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Archive index: class name to Entry.
+     */
+    private final Map        index;
+
+    /**
+     * Memory-mapped data section.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Create archive from its index and data section.
+     *
+     * @param index
+     *            archive index
+     * @param data
+     *            data section
+     */
+    private RewriteArchive(Map index, ByteBuffer data) {
+        this.index = index;
+        this.data = data;
+    }
+
+    // ////////////////////////////////////////////////
+    // reading
+    //
+
+    /**
+     * Open and map an archive file.
+     *
+     * @param filename
+     *            archive file name
+     * @return opened archive, or null if it was produced by a different
+     *         rewriter
+     * @throws IOException
+     *             unable to read archive, or invalid archive
+     */
+    public static RewriteArchive open(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file.getFD()));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+                throw new IOException("not a rewrite archive: " + filename);
+            String version = in.readUTF();
+            if (!version.equals(getRewriterVersion())) {
+                log.warn("ignoring rewrite archive of different rewriter version: " + filename);
+                return null;
+            }
+            int count = in.readInt();
+            Map index = new HashMap(count * 2);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                String signature = in.readUTF();
+                int offset = in.readInt();
+                int length = in.readInt();
+                index.put(name, new Entry(hash, signature, offset, length));
+            }
+            long start = file.getFilePointer();
+            ByteBuffer data = file.getChannel().map(FileChannel.MapMode.READ_ONLY, start, file.length() - start);
+            if (log.isInfoEnabled())
+                log.info("opened rewrite archive " + filename + " with " + count + " classes");
+            return new RewriteArchive(index, data);
+        } finally {
+            // mapping remains valid after close
+            file.close();
+        }
+    }
+
+    /**
+     * Return rewritten bytecode of given class, if archived and up to date.
+     *
+     * @param name
+     *            class name
+     * @param original
+     *            current original bytecode of class
+     * @param signature
+     *            installed custom rewrite traversals
+     * @return rewritten bytecode, or null if not archived or outdated
+     * @see Rewriter#getRewritersSignature
+     */
+    public ByteBuffer get(String name, byte[] original, String signature) {
+        Entry e = (Entry) index.get(name);
+        if (e == null || original == null || !e.signature.equals(signature) || !Arrays.equals(e.hash, hash(original)))
+            return null;
+        ByteBuffer b = data.duplicate();
+        b.position(e.offset);
+        b.limit(e.offset + e.length);
+        return b;
+    }
+
+    /**
+     * Return number of archived classes.
+     *
+     * @return number of archived classes
+     */
+    public int size() {
+        return index.size();
+    }
+
+    // ////////////////////////////////////////////////
+    // hashing
+    //
+
+    /**
+     * Return content hash of given bytes.
+     *
+     * @param b
+     *            bytes to hash
+     * @return content hash
+     */
+    public static byte[] hash(byte[] b) {
+        try {
+            return MessageDigest.getInstance(HASH).digest(b);
+        } catch (NoSuchAlgorithmException e) {
+            throw new JistException("should not happen", e);
+        }
+    }
+
+    /**
+     * Return version of the rewriter: the content hash of its bytecode.
+     *
+     * @return rewriter version
+     */
+    public static String getRewriterVersion() {
+        return hashClasses(Rewriter.getRewriterClasses());
+    }
+
+    /**
+     * Return content hash of the bytecode of given classes, including their
+     * nested and anonymous classes.
+     *
+     * @param classes
+     *            classes to hash
+     * @return content hash, as hex string
+     */
+    public static String hashClasses(Class[] classes) {
+        try {
+            MessageDigest md = MessageDigest.getInstance(HASH);
+            Set done = new HashSet();
+            for (int i = 0; i < classes.length; i++) {
+                hashClass(md, classes[i].getName(), done);
+            }
+            byte[] h = md.digest();
+            StringBuffer sb = new StringBuffer();
+            for (int i = 0; i < h.length; i++) {
+                sb.append(Integer.toHexString((h[i] & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new JistException("should not happen", e);
+        }
+    }
+
+    /**
+     * Add bytecode of a class and (recursively) its nested classes to a content
+     * hash. Nested classes are found in the class file, so that no class is
+     * loaded.
+     *
+     * @param md
+     *            content hash
+     * @param name
+     *            name of class to hash
+     * @param done
+     *            names of classes already hashed
+     */
+    private static void hashClass(MessageDigest md, String name, Set done) {
+        if (!done.add(name))
+            return;
+        byte[] b = Util.getResourceBytes(Rewriter.classToFileName(name));
+        if (b == null)
+            return;
+        md.update(b);
+        try {
+            JavaClass jcl = new ClassParser(new ByteArrayInputStream(b), name).parse();
+            Attribute[] attributes = jcl.getAttributes();
+            for (int i = 0; i < attributes.length; i++) {
+                if (!(attributes[i] instanceof InnerClasses))
+                    continue;
+                InnerClass[] inner = ((InnerClasses) attributes[i]).getInnerClasses();
+                for (int j = 0; j < inner.length; j++) {
+                    String innerName = jcl.getConstantPool().getConstantString(inner[j].getInnerClassIndex(),
+                            Constants.CONSTANT_Class).replace('/', '.');
+                    if (innerName.startsWith(name + "$"))
+                        hashClass(md, innerName, done);
+                }
+            }
+        } catch (IOException e) {
+            throw new JistException("unable to parse class " + name, e);
+        }
+    }
+
+    // ////////////////////////////////////////////////
+    // writing
+    //
+
+    /**
+     * Write an archive file.
+     *
+     * @param filename
+     *            archive file name
+     * @param classes
+     *            map of class name to rewritten class (shared cache entry)
+     * @param originals
+     *            map of class name to original bytecode
+     * @throws IOException
+     *             unable to write archive
+     */
+    public static void write(String filename, Map classes, Map originals) throws IOException {
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream idx = new DataOutputStream(indexBytes);
+        ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+        int count = 0;
+        Iterator it = new TreeMap(classes).entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry e = (Map.Entry) it.next();
+            String name = (String) e.getKey();
+            byte[] original = (byte[]) originals.get(name);
+            if (original == null)
+                continue;
+            Rewriter.CachedClass cl = (Rewriter.CachedClass) e.getValue();
+            byte[] b = cl.getBytes();
+            byte[] h = hash(original);
+            idx.writeUTF(name);
+            idx.writeByte(h.length);
+            idx.write(h);
+            idx.writeUTF(cl.getSignature());
+            idx.writeInt(dataBytes.size());
+            idx.writeInt(b.length);
+            dataBytes.write(b);
+            count++;
+        }
+        idx.close();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(getRewriterVersion());
+            out.writeInt(count);
+            indexBytes.writeTo(out);
+            dataBytes.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Add names of all classes in given class path entry.
+     *
+     * @param root
+     *            directory or jar file
+     * @param names
+     *            list of class names
+     * @throws IOException
+     *             unable to read jar file
+     */
+    private static void listClasses(File root, Vector names) throws IOException {
+        if (root.isDirectory()) {
+            listClasses(root, "", names);
+        } else if (root.isFile()) {
+            ZipFile zip = new ZipFile(root);
+            try {
+                Enumeration e = zip.entries();
+                while (e.hasMoreElements()) {
+                    String name = ((ZipEntry) e.nextElement()).getName();
+                    if (name.endsWith(".class")) {
+                        names.add(name.substring(0, name.length() - 6).replace('/', '.'));
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+    }
+
+    /**
+     * Add names of all classes in given directory, recursively.
+     *
+     * @param dir
+     *            directory
+     * @param pkg
+     *            package prefix of directory
+     * @param names
+     *            list of class names
+     */
+    private static void listClasses(File dir, String pkg, Vector names) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            if (files[i].isDirectory()) {
+                listClasses(files[i], pkg + name + ".", names);
+            } else if (name.endsWith(".class")) {
+                names.add(pkg + name.substring(0, name.length() - 6));
+            }
+        }
+    }
+
+    /**
+     * Rewrite all application classes of the given class path entries (or of
+     * the class path) into an archive.
+     *
+     * @param args
+     *            custom rewriter options, archive file name, and class path
+     *            entries
+     */
+    public static void main(String[] args) {
+        int arg = 0;
+        Vector custom = new Vector();
+        while (arg + 1 < args.length && args[arg].equals("-r")) {
+            custom.add(args[arg + 1]);
+            arg += 2;
+        }
+        if (arg >= args.length) {
+            System.out.println("Usage: java jist.runtime.RewriteArchive [-r <rewriter>]... <archive> [<dir|jar> ...]");
+            return;
+        }
+        String archive = args[arg++];
+        try {
+            Vector roots = new Vector();
+            if (arg < args.length) {
+                for (; arg < args.length; arg++) {
+                    roots.add(args[arg]);
+                }
+            } else {
+                StringTokenizer st = new StringTokenizer(System.getProperty("java.class.path"), File.pathSeparator);
+                while (st.hasMoreTokens()) {
+                    roots.add(st.nextToken());
+                }
+            }
+            Vector names = new Vector();
+            for (int i = 0; i < roots.size(); i++) {
+                listClasses(new File((String) roots.elementAt(i)), names);
+            }
+            long start = System.currentTimeMillis();
+            Rewriter.setAnalysisThreads(Runtime.getRuntime().availableProcessors());
+            Rewriter rewriter = new Rewriter(null, null, new RemoteJist.JistClientLocal(), null);
+            Map rewritten = new HashMap();
+            rewriter.setSharedCache(rewritten);
+            for (int i = 0; i < custom.size(); i++) {
+                Class c = Class.forName((String) custom.elementAt(i), true, rewriter);
+                rewriter.installPreRewriteTraversal((JistAPI.CustomRewriter) c.newInstance());
+            }
+            int failed = 0;
+            for (int i = 0; i < names.size(); i++) {
+                String name = (String) names.elementAt(i);
+                if (rewriter.isIgnored(name))
+                    continue;
+                try {
+                    rewriter.loadClass(name, false);
+                } catch (Throwable t) {
+                    failed++;
+                    System.out.println("skipped " + name + ": " + t);
+                }
+            }
+            // archive rewritten bytecode along with hash of original
+            Map originals = new HashMap();
+            Iterator it = rewritten.keySet().iterator();
+            while (it.hasNext()) {
+                String name = (String) it.next();
+                originals.put(name, Util.getResourceBytes(Rewriter.classToFileName(name)));
+            }
+            write(archive, rewritten, originals);
+            System.out.println("rewrote " + rewritten.size() + " classes (" + failed + " skipped) into " + archive
+                    + " in " + (System.currentTimeMillis() - start) / 1000.0 + "s");
+        } catch (IOException e) {
+            System.out.println("Error writing archive: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error installing custom rewriter: " + e);
+        }
+        System.exit(0);
+    }
+
+} // class: RewriteArchive
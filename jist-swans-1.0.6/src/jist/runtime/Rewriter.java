@@ -20,8 +20,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.bcel.Constants;
 import org.apache.bcel.Repository;
@@ -115,6 +121,11 @@ public final class Rewriter extends ClassLoader
      */
     public static final String               JIST_METHODSTUB_PREFIX         = "_jistMethodStub_";
 
+    /**
+     * Prefix of generated event invoker classes.
+     */
+    public static final String               JIST_INVOKER_PREFIX            = "_jistInvoker_";
+
     /**
      * Prefix of generated field set accessor method.
      */
@@ -230,6 +241,17 @@ public final class Rewriter extends ClassLoader
      */
     private static Object                    repositoryLock                 = new Object();
 
+    /**
+     * Threads that parse and analyse classes ahead of the rewriters, or null
+     * if classes are analysed as they are looked up.
+     */
+    private static ExecutorService           analysisPool;
+
+    /**
+     * Number of class analysis threads.
+     */
+    private static int                       analysisThreads                = 1;
+
     // ////////////////////////////////////////////////
     // state
     //
@@ -252,6 +274,17 @@ public final class Rewriter extends ClassLoader
      */
     private String                           cacheDir;
 
+    /**
+     * Rewritten classfiles shared with other rewriters in this JVM: (class
+     * name to CachedClass), or null.
+     */
+    private Map                              sharedCache;
+
+    /**
+     * Archive of classes rewritten ahead of time, or null.
+     */
+    private RewriteArchive                   archive;
+
     /**
      * Resource locator (possibly remote).
      */
@@ -282,6 +315,11 @@ public final class Rewriter extends ClassLoader
      */
     private Vector                           rewriters;
 
+    /**
+     * Identity of installed rewrite traversals, or null if not yet computed.
+     */
+    private String                           rewritersSignature;
+
     /**
      * Classpath lookup cache: (string to JavaClass).
      */
@@ -292,6 +330,27 @@ public final class Rewriter extends ClassLoader
      */
     private HashMap                          calledBy;
 
+    /**
+     * Continuable methods whose callers are yet to be marked continuable.
+     */
+    private Vector                           continuableQueue;
+
+    /**
+     * Class analyses submitted ahead of lookup: (class name to FutureTask of
+     * ClassAnalysis).
+     */
+    private Map                              pending;
+
+    /**
+     * Generated event invokers.
+     */
+    private Invoker.Table                    invokers;
+
+    /**
+     * Number of generated event invoker classes.
+     */
+    private int                              invokerCount;
+
     // ////////////////////////////////////////////////
     // initialization
     //
@@ -333,6 +392,9 @@ public final class Rewriter extends ClassLoader
         }
         this.lookupCache = new HashMap();
         this.calledBy = new HashMap();
+        this.continuableQueue = new Vector();
+        this.pending = java.util.Collections.synchronizedMap(new HashMap());
+        this.invokers = new Invoker.Table(this);
 
         // @author Elmar Schoch
         // >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>
@@ -420,8 +482,13 @@ public final class Rewriter extends ClassLoader
         if (cl != null)
             return cl;
 
-        // then check the disk-based cache
-        if (Main.REWRITE_CACHE && cacheDir != null)
+        // then check the shared memory cache, the archive and the disk-based
+        // cache
+        if (Main.REWRITE_CACHE && sharedCache != null)
+            cl = getSharedRewrittenClass(name);
+        if (archive != null && cl == null)
+            cl = getArchivedClass(name);
+        if (Main.REWRITE_CACHE && cacheDir != null && cl == null)
             cl = getDiskRewrittenClass(name);
         if (cl == null) {
             synchronized (repositoryLock) {
@@ -499,19 +566,34 @@ public final class Rewriter extends ClassLoader
         if (log.isDebugEnabled()) {
             log.debug("retrieving class from repository: " + name);
         }
-        jcl = Repository.lookupClass(name);
+        ClassAnalysis analysis = takeAnalysis(name);
+        if (analysis != null) {
+            jcl = analysis.original;
+        } else {
+            jcl = Repository.lookupClass(name);
+        }
         if (jcl == null)
             throw new ClassNotFoundException(name);
         // process installed rewriters
         if (!(isIgnored(name) || isDoNotRewrite(jcl))) {
-            for (int i = rewriters.size() - 1; i >= 0; i--) {
-                JistAPI.CustomRewriter cr = (JistAPI.CustomRewriter) rewriters.elementAt(i);
-                jcl = cr.process(jcl);
+            if (analysis != null && analysis.processed != null) {
+                jcl = analysis.processed;
+            } else {
+                analysis = null;
+                for (int i = rewriters.size() - 1; i >= 0; i--) {
+                    JistAPI.CustomRewriter cr = (JistAPI.CustomRewriter) rewriters.elementAt(i);
+                    jcl = cr.process(jcl);
+                }
             }
+        } else {
+            analysis = null;
         }
         // put in cache
         // note: must come before call graph processing to ensure termination
         lookupCache.put(name.intern(), jcl);
+        // analyse referenced classes ahead of time
+        if (analysisPool != null)
+            submitAnalyses(jcl, analysis);
 
         // @author Elmar Schoch
         // >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>
@@ -535,7 +617,7 @@ public final class Rewriter extends ClassLoader
         if (!isIgnored(name)) {
             if (log.isDebugEnabled())
                 log.debug("** updating call graph after loading: " + name);
-            updateCallGraphAndContinuable(jcl);
+            updateCallGraphAndContinuable(analysis != null ? analysis.methods : analyzeMethods(jcl));
         }
         // return javaclass object
         return jcl;
@@ -547,6 +629,7 @@ public final class Rewriter extends ClassLoader
     public void clearLookupCache() {
         Repository.clearCache();
         lookupCache = new HashMap();
+        pending.clear();
     }
 
     /**
@@ -563,11 +646,119 @@ public final class Rewriter extends ClassLoader
         byte[] b = jcl.getBytes();
         if (Main.REWRITE_CACHE && cacheDir != null)
             putDiskRewrittenClass(name, b);
+        if (Main.REWRITE_CACHE && sharedCache != null)
+            sharedCache.put(name, new CachedClass(b, getRewritersSignature()));
         Class cl = defineClass(name, b, 0, b.length);
         rewritten.put(name, cl);
         return cl;
     }
 
+    /**
+     * Return the table of event invokers generated by this rewriter.
+     * 
+     * @return event invoker table
+     */
+    public Invoker.Table getInvokers() {
+        return invokers;
+    }
+
+    /**
+     * Generate and load a typed invoker for the given event method. The
+     * invoker unpacks the argument array, calls the method directly and boxes
+     * its result, so that the event loop avoids <code>Method.invoke</code>.
+     * The invoker class is defined in the package of the method's class, which
+     * gives it package access to (non-private) entity methods.
+     * 
+     * @param m
+     *            event method
+     * @return new invoker instance, or null if the method can not be reached
+     *         from generated code
+     */
+    public synchronized Invoker createInvoker(java.lang.reflect.Method m) {
+        Class decl = m.getDeclaringClass();
+        int mod = m.getModifiers();
+        if (java.lang.reflect.Modifier.isPrivate(mod))
+            return null;
+        if (decl.getClassLoader() != this) {
+            // loaded by parent: only public methods of public classes
+            if (!isIgnored(decl.getName()) || decl.getName().startsWith("java.")
+                    || !java.lang.reflect.Modifier.isPublic(decl.getModifiers())
+                    || !java.lang.reflect.Modifier.isPublic(mod))
+                return null;
+        }
+        String name = decl.getName() + "$" + JIST_INVOKER_PREFIX + (invokerCount++);
+        if (log.isDebugEnabled())
+            log.debug("** generating event invoker " + name + " for " + m);
+        ClassGen cg = new ClassGen(name, Invoker.class.getName(), "<generated>", Constants.ACC_PUBLIC
+                | Constants.ACC_FINAL | Constants.ACC_SUPER, null);
+        ConstantPoolGen cpg = cg.getConstantPool();
+        InstructionFactory ifc = new InstructionFactory(cg);
+        cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+        InstructionList il = new InstructionList();
+        boolean isStatic = java.lang.reflect.Modifier.isStatic(mod);
+        // target
+        if (!isStatic) {
+            il.append(InstructionFactory.createLoad(Type.OBJECT, 1));
+            il.append(ifc.createCheckCast((ReferenceType) getType(decl)));
+        }
+        // unpack arguments
+        Type[] args = getTypes(m.getParameterTypes());
+        for (int i = 0; i < args.length; i++) {
+            il.append(InstructionFactory.createLoad(Type.OBJECT, 2));
+            il.append(new PUSH(cpg, i));
+            il.append(InstructionConstants.AALOAD);
+            if (args[i] instanceof BasicType) {
+                String oname = getPrimitiveObjectType((BasicType) args[i]).getName();
+                il.append(ifc.createCheckCast(new ObjectType(oname)));
+                il.append(ifc.createInvoke(oname, getPrimitiveObjectConversionMethod((BasicType) args[i]), args[i],
+                        Type.NO_ARGS, Constants.INVOKEVIRTUAL));
+            } else if (!args[i].equals(Type.OBJECT)) {
+                il.append(ifc.createCheckCast((ReferenceType) args[i]));
+            }
+        }
+        // invoke
+        Type retType = getType(m.getReturnType());
+        il.append(ifc.createInvoke(decl.getName(), m.getName(), retType, args, isStatic ? Constants.INVOKESTATIC
+                : decl.isInterface() ? Constants.INVOKEINTERFACE : Constants.INVOKEVIRTUAL));
+        // box result
+        if (retType.equals(Type.VOID)) {
+            il.append(InstructionConstants.ACONST_NULL);
+        } else if (retType instanceof BasicType) {
+            String oname = getPrimitiveObjectType((BasicType) retType).getName();
+            il.append(ifc.createNew(oname));
+            if (retType.getSize() == 1) {
+                il.append(InstructionConstants.DUP_X1);
+                il.append(InstructionConstants.SWAP);
+            } else {
+                il.append(InstructionConstants.DUP_X2);
+                il.append(InstructionConstants.DUP_X2);
+                il.append(InstructionConstants.POP);
+            }
+            il.append(ifc.createInvoke(oname, Constants.CONSTRUCTOR_NAME, Type.VOID, new Type[] { retType },
+                    Constants.INVOKESPECIAL));
+        }
+        il.append(InstructionConstants.ARETURN);
+        MethodGen mg = new MethodGen(Constants.ACC_PUBLIC | Constants.ACC_FINAL, Type.OBJECT, new Type[] {
+                Type.OBJECT, new ArrayType(Type.OBJECT, 1) }, new String[] { "target", "args" }, "invoke", name, il,
+                cpg);
+        mg.addException(Throwable.class.getName());
+        mg.setMaxStack();
+        mg.setMaxLocals();
+        cg.addMethod(mg.getMethod());
+        il.dispose();
+        try {
+            byte[] b = cg.getJavaClass().getBytes();
+            Class cl = defineClass(name, b, 0, b.length);
+            return (Invoker) cl.newInstance();
+        } catch (Exception e) {
+            log.info("unable to generate event invoker for " + m + ": " + e);
+            return null;
+        } catch (LinkageError e) {
+            log.info("unable to generate event invoker for " + m + ": " + e);
+            return null;
+        }
+    }
+
     /**
      * Performs JiST rewriting of given JavaClass file.
      * 
@@ -741,6 +932,166 @@ public final class Rewriter extends ClassLoader
         }
     }
 
+    // ////////////////////////////////////////////////
+    // shared rewriter class cache
+    //
+
+    /**
+     * Rewritten classfile held in a shared cache.
+     */
+    static final class CachedClass
+    {
+        /** rewritten bytecode. */
+        private final byte[] bytes;
+
+        /** time of rewriting. */
+        private final long   time;
+
+        /** custom rewrite traversals applied. */
+        private final String signature;
+
+        /**
+         * Create new shared cache entry.
+         * 
+         * @param bytes
+         *            rewritten bytecode
+         * @param signature
+         *            custom rewrite traversals applied
+         */
+        public CachedClass(byte[] bytes, String signature) {
+            this.bytes = bytes;
+            this.time = System.currentTimeMillis();
+            this.signature = signature;
+        }
+
+        /**
+         * Return rewritten bytecode.
+         * 
+         * @return rewritten bytecode
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Return custom rewrite traversals applied.
+         * 
+         * @return custom rewrite traversals applied
+         * @see Rewriter#getRewritersSignature
+         */
+        public String getSignature() {
+            return signature;
+        }
+    }
+
+    /**
+     * Return the classes whose bytecode defines the rewriter version: the
+     * rewriter and its built-in traversals.
+     * 
+     * @return rewriter classes
+     * @see RewriteArchive
+     */
+    public static Class[] getRewriterClasses() {
+        return new Class[] { Rewriter.class, RewriterFlow.class, RewriterVerify.class, ClassTraversal.class,
+                RewriterTraversalVerifyEntity.class, RewriterTraversalVerifyAll.class,
+                RewriterTraversalAddAccessorMethods.class, RewriterTraversalAddEntityMethodStubs.class,
+                RewriterTraversalAddSelfEntityRef.class, RewriterTraversalImplementEntityInterface.class,
+                RewriterTraversalImplementTimelessInterface.class, RewriterTraversalModifyEntityReferences.class,
+                RewriterTraversalRemoveFieldAccess.class, RewriterTraversalModifyEntityCreation.class,
+                RewriterTraversalModifyEntityInvocation.class, RewriterTraversalTranslateAPICalls.class,
+                RewriterTraversalContinuableMethods.class, RewriterTraversalRemoveNop.class };
+    }
+
+    /**
+     * Return the identity of the installed custom rewrite traversals, which a
+     * shared or archived class must have been rewritten with. Traversals are
+     * identified by class name and the content hash of their bytecode.
+     * 
+     * @return installed custom rewrite traversals, in order of installation
+     */
+    public String getRewritersSignature() {
+        if (rewritersSignature == null) {
+            StringBuffer sb = new StringBuffer();
+            for (int i = 0; i < rewriters.size(); i++) {
+                Class c = rewriters.elementAt(i).getClass();
+                sb.append(c.getName()).append('=').append(RewriteArchive.hashClasses(new Class[] { c })).append(';');
+            }
+            rewritersSignature = sb.toString();
+        }
+        return rewritersSignature;
+    }
+
+    /**
+     * Share rewritten classes with other rewriters through given cache. Each
+     * rewriter still defines its own classes; only the rewriting is saved.
+     * Classes are only taken from the cache if they were rewritten with the
+     * same custom rewrite traversals.
+     * 
+     * @param cache
+     *            synchronized map shared by rewriters, or null
+     */
+    public void setSharedCache(Map cache) {
+        this.sharedCache = cache;
+    }
+
+    /**
+     * Define a rewritten class from the shared cache.
+     * 
+     * @param name
+     *            class name
+     * @return rewritten class, or null if it is not cached/outdated
+     */
+    protected Class getSharedRewrittenClass(String name) {
+        CachedClass cached = (CachedClass) sharedCache.get(name);
+        if (cached == null || !cached.signature.equals(getRewritersSignature()))
+            return null;
+        try {
+            // ensure cached class is newer than original
+            if (resources.getResourceLastModificationDate(classToFileName(name)) > cached.time)
+                return null;
+            if (log.isDebugEnabled())
+                log.debug("** loading rewritten class from shared cache: " + name);
+            return defineClass(name, cached.bytes, 0, cached.bytes.length);
+        } catch (Exception e) {
+            if (log.isDebugEnabled())
+                log.debug("unable to use shared cache class file: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Define rewritten classes from given archive, where it is up to date.
+     * 
+     * @param archive
+     *            archive of classes rewritten ahead of time, or null
+     */
+    public void setArchive(RewriteArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Define a rewritten class from the archive.
+     * 
+     * @param name
+     *            class name
+     * @return rewritten class, or null if it is not archived/outdated
+     */
+    protected Class getArchivedClass(String name) {
+        try {
+            java.nio.ByteBuffer b = archive.get(name, resources.getResourceBytes(classToFileName(name)),
+                    getRewritersSignature());
+            if (b == null)
+                return null;
+            if (log.isDebugEnabled())
+                log.debug("** loading rewritten class from archive: " + name);
+            return defineClass(name, b, null);
+        } catch (Exception e) {
+            if (log.isDebugEnabled())
+                log.debug("unable to use archived class file: " + e);
+            return null;
+        }
+    }
+
     // ////////////////////////////////////////////////
     // class analysis functions
     //
@@ -757,6 +1108,8 @@ public final class Rewriter extends ClassLoader
      */
     public boolean addContinuable(String sig) throws VerifyError {
         boolean added = continuable.add(sig.intern());
+        if (added)
+            continuableQueue.add(sig);
         if (added && log.isDebugEnabled()) {
             log.debug("Found continuable method: " + sig);
         }
@@ -775,82 +1128,363 @@ public final class Rewriter extends ClassLoader
      *             failure to load class in call graph
      */
     public void updateCallGraphAndContinuable(JavaClass jcl) throws ClassNotFoundException {
-        ConstantPoolGen cpg = new ConstantPoolGen(jcl.getConstantPool());
-        Method[] methods = jcl.getMethods();
+        updateCallGraphAndContinuable(analyzeMethods(jcl));
+    }
+
+    /**
+     * Update call-graph with the analysed methods of a new class.
+     * 
+     * @param methods
+     *            analysed methods of class
+     * @throws ClassNotFoundException
+     *             failure to load class in call graph
+     */
+    private void updateCallGraphAndContinuable(MethodAnalysis[] methods) throws ClassNotFoundException {
         // loop through all methods looking for blocking
         for (int i = 0; i < methods.length; i++) {
-            MethodGen mg = new MethodGen(methods[i], jcl.getClassName(), cpg);
-            if (isBlocking(mg)) {
-                boolean added = blocking.add(getSignature(mg).intern());
+            if (methods[i].blocking) {
+                boolean added = blocking.add(methods[i].sig.intern());
                 if (added && log.isDebugEnabled()) {
-                    log.debug("Found blocking method: " + getSignature(mg));
+                    log.debug("Found blocking method: " + methods[i].sig);
                 }
             }
         }
         // loop through all methods looking for continuables
         for (int i = 0; i < methods.length; i++) {
-            MethodGen mg = new MethodGen(methods[i], jcl.getClassName(), cpg);
+            MethodAnalysis ma = methods[i];
             // check for explicit continuables
-            if (isContinuable(mg)) {
-                addContinuable(getSignature(mg));
+            if (ma.continuable) {
+                addContinuable(ma.sig);
             }
-            String mySig = getSignature(mg);
-            // loop through every instruction
-            InstructionList il = mg.getInstructionList();
-            if (il == null)
-                continue;
-            Instruction[] instructions = il.getInstructions();
-            for (int j = 0; j < instructions.length; j++) {
-                Instruction inst = instructions[j];
-                // find invocation instructions
-                if (inst instanceof InvokeInstruction) {
-                    InvokeInstruction ii = (InvokeInstruction) inst;
-                    // first we recurse. terminating b/c of lookupCache
-                    lookupJavaClass(ii.getClassName(cpg));
-                    // now, classify the call are entity call or regular method
-                    // call
-                    if (ii instanceof INVOKEVIRTUAL && isEntity(ii.getClassName(cpg)) || ii instanceof INVOKEINTERFACE) {
-                        // regular or proxy entity call
-                        if (isBlocking(ii.getClassName(cpg), ii.getMethodName(cpg), ii.getReturnType(cpg),
-                                ii.getArgumentTypes(cpg))) {
-                            // entity call to blocking method
-                            addContinuable(getSignature(mg));
-                        }
-                    } else {
-                        // add to call-graph
-                        String isig = getSignature(ii, cpg);
-                        HashSet callers = (HashSet) calledBy.get(isig);
-                        if (callers == null) {
-                            callers = new HashSet();
-                            calledBy.put(isig.intern(), callers);
-                        }
-                        callers.add(mySig.intern());
+            String mySig = ma.sig;
+            // loop through every invocation
+            for (int j = 0; j < ma.invocations.length; j++) {
+                Invocation ii = ma.invocations[j];
+                // first we recurse. terminating b/c of lookupCache
+                lookupJavaClass(ii.classname);
+                // now, classify the call are entity call or regular method
+                // call
+                if (ii.virtual && isEntity(ii.classname) || ii.iface) {
+                    // regular or proxy entity call
+                    if (isBlocking(ii.classname, ii.methodname, ii.methodreturn, ii.methodargs)) {
+                        // entity call to blocking method
+                        addContinuable(mySig);
                     }
-                } // if instanceof InvokeInstruction
-            } // foreach instruction
+                } else {
+                    // add to call-graph
+                    HashSet callers = (HashSet) calledBy.get(ii.sig);
+                    if (callers == null) {
+                        callers = new HashSet();
+                        calledBy.put(ii.sig.intern(), callers);
+                    }
+                    if (callers.add(mySig.intern()) && continuable.contains(ii.sig)) {
+                        // propagate on next fixed-point computation
+                        continuableQueue.add(ii.sig);
+                    }
+                }
+            } // foreach invocation
         } // foreach method
     } // function: updateCallGraphAndContinuable
 
     /**
-     * Compute continuable fixed-point using call-graph.
+     * Compute continuable fixed-point using call-graph. Only the callers of
+     * methods that became continuable (or gained callers) since the last
+     * computation are visited, so the total work is linear in the size of the
+     * call graph.
      */
     public void computeContinuableFixedPoint() {
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            Iterator it = ((HashSet) continuable.clone()).iterator();
+        while (!continuableQueue.isEmpty()) {
+            HashSet callers = (HashSet) calledBy.get(continuableQueue.remove(continuableQueue.size() - 1));
+            if (callers == null)
+                continue;
+            Iterator it = callers.iterator();
             while (it.hasNext()) {
-                HashSet callers = (HashSet) calledBy.get(it.next());
-                if (callers == null)
-                    continue;
-                Iterator it2 = callers.iterator();
-                while (it2.hasNext()) {
-                    changed |= addContinuable((String) it2.next());
-                }
+                addContinuable((String) it.next());
             }
         }
     } // function: performContinuableFixedPoint
 
+    // ////////////////////////////////////////////////
+    // parallel class analysis
+    //
+
+    /**
+     * Method invocation found during class analysis.
+     */
+    private static final class Invocation
+    {
+        /** invoked class name. */
+        private final String  classname;
+
+        /** invoked method name. */
+        private final String  methodname;
+
+        /** invoked method return type. */
+        private final Type    methodreturn;
+
+        /** invoked method parameter types. */
+        private final Type[]  methodargs;
+
+        /** invoked method signature. */
+        private final String  sig;
+
+        /** whether invocation is virtual. */
+        private final boolean virtual;
+
+        /** whether invocation is through an interface. */
+        private final boolean iface;
+
+        /**
+         * Record method invocation.
+         * 
+         * @param ii
+         *            invocation instruction
+         * @param cpg
+         *            class constant pool
+         */
+        public Invocation(InvokeInstruction ii, ConstantPoolGen cpg) {
+            this.classname = ii.getClassName(cpg);
+            this.methodname = ii.getMethodName(cpg);
+            this.methodreturn = ii.getReturnType(cpg);
+            this.methodargs = ii.getArgumentTypes(cpg);
+            this.sig = getSignature(classname, methodname, methodreturn, methodargs);
+            this.virtual = ii instanceof INVOKEVIRTUAL;
+            this.iface = ii instanceof INVOKEINTERFACE;
+        }
+    }
+
+    /**
+     * Call-graph information of a method, which depends only on its own
+     * class.
+     */
+    private static final class MethodAnalysis
+    {
+        /** method signature. */
+        private final String       sig;
+
+        /** whether method is declared blocking. */
+        private final boolean      blocking;
+
+        /** whether method is declared continuable. */
+        private final boolean      continuable;
+
+        /** method invocations, in instruction order. */
+        private final Invocation[] invocations;
+
+        /**
+         * Analyse method.
+         * 
+         * @param mg
+         *            BCEL method object
+         * @param cpg
+         *            class constant pool
+         */
+        public MethodAnalysis(MethodGen mg, ConstantPoolGen cpg) {
+            this.sig = getSignature(mg);
+            this.blocking = isBlocking(mg);
+            this.continuable = Util.contains(mg.getExceptions(), JistAPI.Continuable.class.getName());
+            Vector v = new Vector();
+            InstructionList il = mg.getInstructionList();
+            if (il != null) {
+                Instruction[] instructions = il.getInstructions();
+                for (int i = 0; i < instructions.length; i++) {
+                    if (instructions[i] instanceof InvokeInstruction) {
+                        v.add(new Invocation((InvokeInstruction) instructions[i], cpg));
+                    }
+                }
+            }
+            this.invocations = new Invocation[v.size()];
+            v.copyInto(this.invocations);
+        }
+    }
+
+    /**
+     * Class parsed and analysed ahead of lookup.
+     */
+    private static final class ClassAnalysis
+    {
+        /** class, as found in repository. */
+        private final JavaClass        original;
+
+        /** custom rewrite passes applied, in order of installation. */
+        private final Object[]         passes;
+
+        /** class, after custom rewrite passes; null if ignored. */
+        private JavaClass              processed;
+
+        /** analysed methods of processed class; null if ignored. */
+        private MethodAnalysis[]       methods;
+
+        /**
+         * Load and analyse class.
+         * 
+         * @param name
+         *            class name
+         * @param repository
+         *            BCEL repository to load class from
+         * @param passes
+         *            custom rewrite passes to apply
+         * @param ignored
+         *            whether class is ignored by the rewriter
+         * @throws ClassNotFoundException
+         *             class not found
+         */
+        public ClassAnalysis(String name, org.apache.bcel.util.Repository repository, Object[] passes,
+                boolean ignored) throws ClassNotFoundException {
+            this.original = repository.loadClass(name);
+            this.passes = passes;
+            if (!ignored) {
+                JavaClass jcl = original;
+                for (int i = passes.length - 1; i >= 0; i--) {
+                    jcl = ((JistAPI.CustomRewriter) passes[i]).process(jcl);
+                }
+                this.methods = analyzeMethods(jcl);
+                this.processed = jcl;
+            }
+        }
+
+        /**
+         * Return classes that the rewriter is about to look up after this one:
+         * super-class, interfaces and invoked classes.
+         * 
+         * @return names of referenced classes
+         */
+        public String[] getReferences() {
+            HashSet refs = new HashSet();
+            JavaClass jcl = processed != null ? processed : original;
+            refs.add(jcl.getSuperclassName());
+            refs.addAll(java.util.Arrays.asList(jcl.getInterfaceNames()));
+            for (int i = 0; methods != null && i < methods.length; i++) {
+                for (int j = 0; j < methods[i].invocations.length; j++) {
+                    refs.add(methods[i].invocations[j].classname);
+                }
+            }
+            return (String[]) refs.toArray(new String[refs.size()]);
+        }
+    }
+
+    /**
+     * Set the number of threads used (by all rewriters in this JVM) to parse
+     * and analyse classes ahead of the rewriter. Analysis runs concurrently
+     * with the rewriting: each class looked up schedules the analysis of the
+     * classes it references, and the lookup of an analysed class only merges
+     * its results into the call graph. Custom rewrite passes are applied by
+     * the analysis threads, and must therefore be thread-safe when more than
+     * one thread is used.
+     * 
+     * @param threads
+     *            number of analysis threads; 1 to analyse classes as they are
+     *            looked up
+     */
+    public static synchronized void setAnalysisThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads == analysisThreads)
+            return;
+        if (analysisPool != null)
+            analysisPool.shutdown();
+        analysisThreads = threads;
+        analysisPool = threads > 1 ? Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "JistRewriterAnalysis");
+                t.setDaemon(true);
+                return t;
+            }
+        }) : null;
+    }
+
+    /**
+     * Return the number of class analysis threads.
+     * 
+     * @return number of class analysis threads
+     */
+    public static int getAnalysisThreads() {
+        return analysisThreads;
+    }
+
+    /**
+     * Analyse the methods of a class for the call graph.
+     * 
+     * @param jcl
+     *            BCEL class object to analyze
+     * @return analysed methods
+     */
+    private static MethodAnalysis[] analyzeMethods(JavaClass jcl) {
+        ConstantPoolGen cpg = new ConstantPoolGen(jcl.getConstantPool());
+        Method[] methods = jcl.getMethods();
+        MethodAnalysis[] result = new MethodAnalysis[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            result[i] = new MethodAnalysis(new MethodGen(methods[i], jcl.getClassName(), cpg), cpg);
+        }
+        return result;
+    }
+
+    /**
+     * Schedule the analysis of the classes referenced by a newly looked up
+     * class.
+     * 
+     * @param jcl
+     *            newly looked up class
+     * @param analysis
+     *            its analysis, or null if analysed on lookup
+     */
+    private void submitAnalyses(JavaClass jcl, ClassAnalysis analysis) {
+        String[] refs;
+        if (analysis != null) {
+            refs = analysis.getReferences();
+        } else {
+            refs = Util.union(new String[] { jcl.getSuperclassName() }, jcl.getInterfaceNames());
+        }
+        final Object[] passes = rewriters.toArray();
+        ExecutorService pool = analysisPool;
+        for (int i = 0; pool != null && i < refs.length; i++) {
+            final String name = refs[i];
+            if (name == null || lookupCache.containsKey(name) || pending.containsKey(name))
+                continue;
+            final boolean ignored = isIgnored(name);
+            FutureTask task = new FutureTask(new java.util.concurrent.Callable() {
+                public Object call() throws Exception {
+                    return new ClassAnalysis(name, jistRepository, passes, ignored);
+                }
+            });
+            pending.put(name, task);
+            try {
+                pool.execute(task);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                // pool replaced: analyse on lookup
+                pending.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Return the analysis of a class scheduled ahead of lookup, running it
+     * now if no thread has picked it up yet.
+     * 
+     * @param name
+     *            class name
+     * @return class analysis, or null if not scheduled or failed, in which
+     *         case the class is analysed on lookup
+     */
+    private ClassAnalysis takeAnalysis(String name) {
+        FutureTask task = (FutureTask) pending.remove(name);
+        if (task == null)
+            return null;
+        task.run();
+        try {
+            ClassAnalysis analysis = (ClassAnalysis) task.get();
+            if (!java.util.Arrays.equals(analysis.passes, rewriters.toArray())) {
+                // rewrite passes installed since: keep only the parsed class
+                analysis.processed = null;
+                analysis.methods = null;
+            }
+            return analysis;
+        } catch (InterruptedException e) {
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
     /**
      * Return all the classes that are statically, directly referenced by this
      * classes.
@@ -868,7 +1502,15 @@ public final class Rewriter extends ClassLoader
         Vector result = new Vector();
         for (int i = 0; i < entries.length; i++) {
             if (entries[i] instanceof ConstantClass) {
-                result.add(((ConstantClass) entries[i]).getBytes(cp).replace('/', '.'));
+                String name = ((ConstantClass) entries[i]).getBytes(cp);
+                if (name.startsWith("[")) {
+                    // array class: reference element class, if any
+                    Type t = ((ArrayType) Type.getType(name)).getBasicType();
+                    if (!(t instanceof ObjectType))
+                        continue;
+                    name = ((ObjectType) t).getClassName();
+                }
+                result.add(name.replace('/', '.'));
             }
         }
         String[] result2 = new String[result.size()];
@@ -1826,6 +2468,18 @@ public final class Rewriter extends ClassLoader
      */
     public void installPreRewriteTraversal(ClassTraversal.Visitor rewrite) {
         rewriters.add(rewrite);
+        rewritersSignature = null;
+    }
+
+    /**
+     * Install a new custom rewrite pass.
+     * 
+     * @param rewrite
+     *            custom rewrite pass
+     */
+    public void installPreRewriteTraversal(JistAPI.CustomRewriter rewrite) {
+        rewriters.add(rewrite);
+        rewritersSignature = null;
     }
 
     /**
@@ -2431,9 +3085,14 @@ class RewriterTraversalModifyEntityInvocation extends ClassTraversal.Empty
         if (args.length == 0) {
             il.append(new ACONST_NULL());
         } else {
-            // create argument array
+            // create (or obtain pooled) argument array
             il.append(new PUSH(cpg, args.length));
-            il.append(new ANEWARRAY(cpg.addClass(Type.OBJECT)));
+            if (Main.POOL_ARGUMENTS) {
+                il.append(ifc.createInvoke(Controller.class.getName(), Controller.method_getArguments.getName(),
+                        new ArrayType(Type.OBJECT, 1), new Type[] { Type.INT }, Constants.INVOKESTATIC));
+            } else {
+                il.append(new ANEWARRAY(cpg.addClass(Type.OBJECT)));
+            }
             int maxlocals = mg.getMaxLocals();
             il.append(ifc.createStore(new ArrayType(Type.OBJECT, 1), maxlocals));
             // fill argument array from stack
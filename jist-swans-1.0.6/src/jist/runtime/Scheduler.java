@@ -65,6 +65,77 @@ public abstract class Scheduler
             removeFirst();
     }
 
+    // ////////////////////////////////////////////////
+    // factory
+    //
+
+    /** Scheduler name: binary heap. */
+    public static final String SCHEDULER_HEAP     = "heap";
+
+    /** Scheduler name: stable 4-ary heap (default). */
+    public static final String SCHEDULER_DARY     = "dary";
+
+    /** Scheduler name: fixed-size calendar queue. */
+    public static final String SCHEDULER_CALENDAR = "calendar";
+
+    /** Scheduler name: self-adjusting calendar queue. */
+    public static final String SCHEDULER_ADAPTIVE = "adaptive";
+
+    /**
+     * Create a scheduler from a specification string. Recognized forms are
+     * <code>heap</code>, <code>dary[:arity]</code>,
+     * <code>calendar[:width,nbins]</code>, <code>adaptive</code>, or the fully
+     * qualified name of a
+     * Scheduler subclass with a public no-argument constructor (e.g.
+     * <code>ext.jist.runtime.SchedulingQueue$PQScheduler</code>).
+     * 
+     * @param spec
+     *            scheduler specification, or null for the default
+     * @return new scheduler instance
+     * @throws IllegalArgumentException
+     *             invalid scheduler specification
+     */
+    public static Scheduler create(String spec) {
+        if (spec == null || spec.trim().length() == 0)
+            return new DaryHeap();
+        spec = spec.trim();
+        String name = spec, params = null;
+        int colon = spec.indexOf(':');
+        if (colon != -1) {
+            name = spec.substring(0, colon);
+            params = spec.substring(colon + 1);
+        }
+        try {
+            if (name.equalsIgnoreCase(SCHEDULER_HEAP)) {
+                return new Heap();
+            } else if (name.equalsIgnoreCase(SCHEDULER_DARY)) {
+                return params == null ? new DaryHeap() : new DaryHeap(Integer.parseInt(params.trim()));
+            } else if (name.equalsIgnoreCase(SCHEDULER_CALENDAR)) {
+                if (params == null)
+                    return new Calendar(1000000000, 1000);
+                String[] p = params.split(",");
+                if (p.length != 2)
+                    throw new IllegalArgumentException("expected calendar:width,nbins");
+                return new Calendar(Long.parseLong(p[0].trim()), Integer.parseInt(p[1].trim()));
+            } else if (name.equalsIgnoreCase(SCHEDULER_ADAPTIVE)) {
+                return new AdaptiveCalendar();
+            } else {
+                Class c = Class.forName(name);
+                if (!Scheduler.class.isAssignableFrom(c))
+                    throw new IllegalArgumentException("not a scheduler: " + name);
+                return (Scheduler) c.newInstance();
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid scheduler parameters: " + spec);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("unknown scheduler: " + spec);
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("unable to create scheduler: " + spec);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("unable to create scheduler: " + spec);
+        }
+    }
+
     /**
      * Implements an array-based heap of Events. In addition to the regular heap
      * functionality, there are methods for extracting elements other than the
@@ -302,6 +373,194 @@ public abstract class Scheduler
 
     } // class: Heap
 
+    /**
+     * Implements an array-based d-ary heap of Events with stable ordering:
+     * events with equal timestamps are returned in insertion order, so the
+     * event order does not depend on heap layout. Event times and insertion
+     * sequence numbers are kept in primitive arrays parallel to the event
+     * array, and the default arity of four keeps the children of a node within
+     * a single cache line.
+     * 
+     * @since JIST1.0
+     */
+    static final class DaryHeap extends Scheduler
+    {
+
+        /** Initial size of internal heap array. */
+        public static final int INIT_LENGTH = 16;
+
+        /** Default heap arity. */
+        public static final int ARITY       = 4;
+
+        /** Heap arity. */
+        private final int       d;
+
+        /** Internal array of heap items. */
+        private Event[]         items;
+
+        /** Event times, parallel to items. */
+        private long[]          times;
+
+        /** Event insertion sequence numbers, parallel to items. */
+        private long[]          seqs;
+
+        /** Number of elements in heap. */
+        private int             size;
+
+        /** Next insertion sequence number. */
+        private long            nextSeq;
+
+        /**
+         * Create a new, empty 4-ary heap.
+         */
+        public DaryHeap() {
+            this(ARITY);
+        }
+
+        /**
+         * Create a new, empty heap of given arity.
+         * 
+         * @param d
+         *            heap arity
+         */
+        public DaryHeap(int d) {
+            if (d < 2)
+                throw new IllegalArgumentException("heap arity must be at least 2");
+            this.d = d;
+            items = new Event[INIT_LENGTH];
+            times = new long[INIT_LENGTH];
+            seqs = new long[INIT_LENGTH];
+            size = 0;
+            nextSeq = 0;
+        }
+
+        /** {@inheritDoc} */
+        public void insert(Event ev) {
+            if (size == items.length)
+                resize(items.length * 2);
+            long time = ev.time, seq = nextSeq++;
+            // bubble hole up to the right spot
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / d;
+                long ptime = times[parent];
+                if (time > ptime || (time == ptime && seq > seqs[parent]))
+                    break;
+                items[i] = items[parent];
+                times[i] = ptime;
+                seqs[i] = seqs[parent];
+                i = parent;
+            }
+            items[i] = ev;
+            times[i] = time;
+            seqs[i] = seq;
+        }
+
+        /** {@inheritDoc} */
+        public int size() {
+            return size;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /** {@inheritDoc} */
+        public Event peekFirst() {
+            if (size == 0) {
+                throw new ArrayIndexOutOfBoundsException("heap is empty");
+            }
+            return items[0];
+        }
+
+        /** {@inheritDoc} */
+        public Event removeFirst() {
+            if (size == 0) {
+                throw new ArrayIndexOutOfBoundsException("heap is empty");
+            }
+            Event item = items[0];
+            size--;
+            if (size > 0) {
+                siftDown(0, items[size], times[size], seqs[size]);
+            }
+            items[size] = null;
+            if (size < items.length / 4 && items.length > INIT_LENGTH)
+                resize(items.length / 2);
+            return item;
+        }
+
+        /** {@inheritDoc} */
+        public void clear() {
+            for (int i = 0; i < size; i++) {
+                items[i] = null;
+            }
+            size = 0;
+        }
+
+        /**
+         * Move hole at given index down to the right spot for given entry.
+         * 
+         * @param i
+         *            index of hole in heap array
+         * @param ev
+         *            event to place
+         * @param time
+         *            event time
+         * @param seq
+         *            event insertion sequence number
+         */
+        private void siftDown(int i, Event ev, long time, long seq) {
+            while (true) {
+                int first = i * d + 1;
+                if (first >= size)
+                    break;
+                int last = Math.min(first + d, size);
+                // find minimum child
+                int min = first;
+                long mtime = times[first], mseq = seqs[first];
+                for (int c = first + 1; c < last; c++) {
+                    long ctime = times[c];
+                    if (ctime < mtime || (ctime == mtime && seqs[c] < mseq)) {
+                        min = c;
+                        mtime = ctime;
+                        mseq = seqs[c];
+                    }
+                }
+                if (time < mtime || (time == mtime && seq < mseq))
+                    break;
+                items[i] = items[min];
+                times[i] = mtime;
+                seqs[i] = mseq;
+                i = min;
+            }
+            items[i] = ev;
+            times[i] = time;
+            seqs[i] = seq;
+        }
+
+        /**
+         * Resize internal arrays.
+         * 
+         * @param length
+         *            new array length
+         */
+        private void resize(int length) {
+            if (Main.ASSERT)
+                Util.assertion(size <= length);
+            Event[] items2 = new Event[length];
+            long[] times2 = new long[length];
+            long[] seqs2 = new long[length];
+            System.arraycopy(items, 0, items2, 0, size);
+            System.arraycopy(times, 0, times2, 0, size);
+            System.arraycopy(seqs, 0, seqs2, 0, size);
+            items = items2;
+            times = times2;
+            seqs = seqs2;
+        }
+
+    } // class: DaryHeap
+
     /**
      * Implementation of calendar queue event scheduler. See R.Brown. "Calendar
      * queues: A fast O(1) priority queue implementation for the simulation
@@ -443,6 +702,328 @@ public abstract class Scheduler
 
     } // class: Calendar
 
+    /**
+     * Implementation of a self-adjusting calendar queue event scheduler. See
+     * R.Brown. "Calendar queues: A fast O(1) priority queue implementation for
+     * the simulation event set problem." Comm. of ACM, 31(10):1220-1227, Oct
+     * 1988.
+     * <p>
+     * The number of bins doubles (halves) when the queue size rises above
+     * twice (falls below half) the number of bins, and the bin width is
+     * re-estimated from the separation of the events at the head of the queue
+     * on every resize. In addition, the width is re-estimated whenever the
+     * average cost of an operation (bins scanned plus events shifted) grows
+     * too large, which tracks changes in the event-time spread at a constant
+     * queue size. Each bin is an array sorted by time with equal-time events
+     * in insertion order, so the dequeue order is deterministic.
+     * 
+     * @since JIST1.0
+     */
+    static final class AdaptiveCalendar extends Scheduler
+    {
+        /** Minimum number of bins. */
+        public static final int MIN_BINS       = 2;
+
+        /** Initial capacity of a bin array. */
+        public static final int BIN_LENGTH     = 4;
+
+        /** Maximum number of events sampled to estimate bin width. */
+        public static final int WIDTH_SAMPLES  = 25;
+
+        /** Average operation cost that triggers a bin width re-estimate. */
+        public static final int COST_THRESHOLD = 12;
+
+        /**
+         * Calendar days: events between head and tail, sorted in increasing
+         * time order.
+         */
+        private Event[][]       bins;
+
+        /** Index of first event in each bin. */
+        private int[]           heads;
+
+        /** Index after last event in each bin. */
+        private int[]           tails;
+
+        /** Width of a single bin (length of a day). */
+        private long            binWidth;
+
+        /** Event queue size. */
+        private int             size;
+
+        /** Queue size above which number of bins is doubled. */
+        private int             topThreshold;
+
+        /** Queue size below which number of bins is halved. */
+        private int             botThreshold;
+
+        /**
+         * Virtual bin (time / binWidth) at which to start searching for the
+         * earliest event; never after the earliest event.
+         */
+        private long            lastDay;
+
+        /** Accumulated operation cost since last check. */
+        private long            cost;
+
+        /** Number of operations since last cost check. */
+        private int             ops;
+
+        /**
+         * Create a self-adjusting calendar scheduler.
+         */
+        public AdaptiveCalendar() {
+            clear();
+        }
+
+        /**
+         * Allocate empty bins and set resize thresholds.
+         * 
+         * @param nbins
+         *            number of bins
+         */
+        private void allocate(int nbins) {
+            bins = new Event[nbins][];
+            heads = new int[nbins];
+            tails = new int[nbins];
+            topThreshold = nbins * 2;
+            botThreshold = nbins <= MIN_BINS ? 0 : nbins / 2;
+        }
+
+        /**
+         * Return mapped bin index for a given virtual bin.
+         * 
+         * @param day
+         *            virtual bin (time / binWidth)
+         * @return mapped bin index
+         */
+        private int getBin(long day) {
+            return (int) (day % bins.length);
+        }
+
+        /**
+         * Insert event into its bin, after any events with the same time.
+         * 
+         * @param ev
+         *            event to insert
+         */
+        private void insertBin(Event ev) {
+            long day = ev.time / binWidth;
+            if (day < lastDay) {
+                // event earlier than last dequeued event
+                lastDay = day;
+            }
+            int b = getBin(day);
+            Event[] bin = bins[b];
+            int head = heads[b], tail = tails[b];
+            if (bin == null) {
+                bin = bins[b] = new Event[BIN_LENGTH];
+            } else if (tail == bin.length) {
+                // compact or grow
+                int n = tail - head;
+                Event[] bin2 = n * 2 > bin.length ? new Event[bin.length * 2] : bin;
+                System.arraycopy(bin, head, bin2, 0, n);
+                if (bin2 == bin) {
+                    java.util.Arrays.fill(bin, n, tail, null);
+                }
+                bin = bins[b] = bin2;
+                head = heads[b] = 0;
+                tail = n;
+            }
+            // shift later events up
+            long time = ev.time;
+            int i = tail;
+            while (i > head && bin[i - 1].time > time) {
+                bin[i] = bin[i - 1];
+                i--;
+            }
+            bin[i] = ev;
+            tails[b] = tail + 1;
+            cost += tail - i;
+        }
+
+        /**
+         * Find bin containing the earliest event, scanning forward one year
+         * from lastDay, or using direct search otherwise. Updates lastDay.
+         * 
+         * @return index of bin with earliest event
+         */
+        private int nextBin() {
+            int nbins = bins.length;
+            long day = lastDay;
+            for (int i = 0; i < nbins; i++, day++) {
+                int b = getBin(day);
+                if (heads[b] < tails[b] && bins[b][heads[b]].time / binWidth == day) {
+                    cost += i;
+                    lastDay = day;
+                    return b;
+                }
+            }
+            // direct search
+            cost += nbins;
+            int min = -1;
+            long minTime = Long.MAX_VALUE;
+            for (int b = 0; b < nbins; b++) {
+                if (heads[b] < tails[b] && (min == -1 || bins[b][heads[b]].time < minTime)) {
+                    min = b;
+                    minTime = bins[b][heads[b]].time;
+                }
+            }
+            lastDay = minTime / binWidth;
+            return min;
+        }
+
+        /**
+         * Remove first event from given bin.
+         * 
+         * @param b
+         *            bin index
+         * @return first event in bin
+         */
+        private Event removeBin(int b) {
+            int head = heads[b];
+            Event ev = bins[b][head];
+            bins[b][head] = null;
+            if (++head == tails[b]) {
+                heads[b] = tails[b] = 0;
+            } else {
+                heads[b] = head;
+            }
+            return ev;
+        }
+
+        /**
+         * Check average operation cost, and re-estimate bin width if needed.
+         */
+        private void checkCost() {
+            if (++ops < bins.length)
+                return;
+            if (cost > (long) ops * COST_THRESHOLD) {
+                resize(bins.length);
+            }
+            cost = 0;
+            ops = 0;
+        }
+
+        /**
+         * Rebuild calendar with given number of bins and a re-estimated bin
+         * width.
+         * 
+         * @param nbins
+         *            new number of bins
+         */
+        private void resize(int nbins) {
+            // drain events in order
+            int n = size;
+            Event[] all = new Event[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = removeBin(nextBin());
+            }
+            // estimate width
+            binWidth = estimateWidth(all, n);
+            // refill
+            allocate(nbins);
+            lastDay = n > 0 ? all[0].time / binWidth : 0;
+            for (int i = 0; i < n; i++) {
+                insertBin(all[i]);
+            }
+            cost = 0;
+            ops = 0;
+        }
+
+        /**
+         * Estimate bin width from the average separation of the earliest
+         * events, ignoring unusually large separations.
+         * 
+         * @param sorted
+         *            events in dequeue order
+         * @param n
+         *            number of events
+         * @return new bin width
+         */
+        private long estimateWidth(Event[] sorted, int n) {
+            int samples = Math.min(n, WIDTH_SAMPLES);
+            if (samples < 2)
+                return binWidth;
+            double total = 0;
+            for (int i = 1; i < samples; i++) {
+                total += (double) (sorted[i].time - sorted[i - 1].time);
+            }
+            double avg = total / (samples - 1);
+            double total2 = 0;
+            int count2 = 0;
+            for (int i = 1; i < samples; i++) {
+                double sep = (double) (sorted[i].time - sorted[i - 1].time);
+                if (sep <= 2 * avg) {
+                    total2 += sep;
+                    count2++;
+                }
+            }
+            // with many simultaneous events, all small separations are zero
+            double sep = total2 > 0 ? total2 / count2 : avg;
+            if (sep == 0)
+                return binWidth;
+            long width = (long) (3 * sep);
+            return width < 1 ? 1 : width;
+        }
+
+        /** {@inheritDoc} */
+        public void insert(Event ev) {
+            insertBin(ev);
+            size++;
+            if (size > topThreshold) {
+                resize(bins.length * 2);
+            } else {
+                checkCost();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public Event removeFirst() {
+            if (size == 0) {
+                throw new ArrayIndexOutOfBoundsException("calendar is empty");
+            }
+            Event ev = removeBin(nextBin());
+            size--;
+            if (size < botThreshold) {
+                resize(bins.length / 2);
+            } else {
+                checkCost();
+            }
+            return ev;
+        }
+
+        /** {@inheritDoc} */
+        public Event peekFirst() {
+            if (size == 0) {
+                throw new ArrayIndexOutOfBoundsException("calendar is empty");
+            }
+            int b = nextBin();
+            return bins[b][heads[b]];
+        }
+
+        /** {@inheritDoc} */
+        public int size() {
+            return size;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /** {@inheritDoc} */
+        public void clear() {
+            binWidth = 1;
+            allocate(MIN_BINS);
+            size = 0;
+            lastDay = 0;
+            cost = 0;
+            ops = 0;
+        }
+
+    } // class: AdaptiveCalendar
+
     // ////////////////////////////////////////////////
     // testing
     //
@@ -478,6 +1059,37 @@ public abstract class Scheduler
         System.out.println("seems to work!");
     }
 
+    /**
+     * Stability test... Schedule events with few distinct times and check
+     * that events with equal times are dequeued in insertion order.
+     * 
+     * @param s
+     *            scheduler to test
+     */
+    private static void testStable(Scheduler s) {
+        int num = 500000;
+        java.util.Random rand = new java.util.Random();
+        java.util.IdentityHashMap order = new java.util.IdentityHashMap();
+        System.out.println("inserting " + num + " events with 100 distinct times.");
+        for (int i = 0; i < num; i++) {
+            Event ev = new Event();
+            ev.time = rand.nextInt(100);
+            order.put(ev, new Integer(i));
+            s.insert(ev);
+        }
+        System.out.println("checking order.");
+        Event ev = s.removeFirst();
+        while (!s.isEmpty()) {
+            Event next = s.removeFirst();
+            if (next.time < ev.time)
+                throw new RuntimeException("incorrect ordering");
+            if (next.time == ev.time && ((Integer) order.get(next)).intValue() < ((Integer) order.get(ev)).intValue())
+                throw new RuntimeException("unstable ordering");
+            ev = next;
+        }
+        System.out.println("seems to work!");
+    }
+
     /**
      * Test various schedular implementations.
      * 
@@ -489,6 +1101,14 @@ public abstract class Scheduler
         test(new Heap());
         System.out.println("testing heap calendar implementation.");
         test(new Calendar(Long.MAX_VALUE / 10000, 1000));
+        System.out.println("testing d-ary heap implementation.");
+        test(new DaryHeap());
+        System.out.println("testing d-ary heap stability.");
+        testStable(new DaryHeap());
+        System.out.println("testing adaptive calendar implementation.");
+        test(new AdaptiveCalendar());
+        System.out.println("testing adaptive calendar stability.");
+        testStable(new AdaptiveCalendar());
     }
 
 } // class: Scheduler
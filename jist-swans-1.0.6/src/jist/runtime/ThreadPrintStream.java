@@ -0,0 +1,94 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.runtime;
+
+import java.io.PrintStream;
+
+/**
+ * Print stream that writes to a separate target for each thread, so that
+ * simulations running concurrently within one JVM can each capture their own
+ * standard output. The target is inherited by threads created afterwards, such
+ * as the controller thread of a simulation. Threads without a target write to
+ * the default stream.
+ *
+ * @since JIST1.0
+ * @see Main#runSimulationConcurrent
+ */
+
+public final class ThreadPrintStream extends PrintStream
+{
+    /**
+     * Stream used by threads without a target.
+     */
+    private final PrintStream           fallback;
+
+    /**
+     * Target stream of current thread.
+     */
+    private final InheritableThreadLocal target = new InheritableThreadLocal();
+
+    /**
+     * Create new thread-dispatching print stream.
+     *
+     * @param fallback
+     *            stream used by threads without a target
+     */
+    public ThreadPrintStream(PrintStream fallback) {
+        super(fallback);
+        this.fallback = fallback;
+    }
+
+    /**
+     * Set target stream of current thread (and of threads it creates from now
+     * on).
+     *
+     * @param out
+     *            target stream, or null to use the default stream
+     */
+    public void setTarget(PrintStream out) {
+        target.set(out);
+    }
+
+    /**
+     * Return target stream of current thread.
+     *
+     * @return target stream of current thread
+     */
+    private PrintStream getTarget() {
+        PrintStream out = (PrintStream) target.get();
+        return out == null ? fallback : out;
+    }
+
+    /** {@inheritDoc} */
+    public void write(int b) {
+        getTarget().write(b);
+    }
+
+    /** {@inheritDoc} */
+    public void write(byte[] buf, int off, int len) {
+        getTarget().write(buf, off, len);
+    }
+
+    /** {@inheritDoc} */
+    public void flush() {
+        getTarget().flush();
+    }
+
+    /** {@inheritDoc} */
+    public void close() {
+        // shared by all threads; never closed
+        flush();
+    }
+
+    /** {@inheritDoc} */
+    public boolean checkError() {
+        return getTarget().checkError();
+    }
+
+} // class: ThreadPrintStream
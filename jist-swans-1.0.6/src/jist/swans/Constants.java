@@ -278,6 +278,25 @@ public final class Constants
     /** IP option number. */
     public static final Byte    IP_OPTION_HOPLOC              = new Byte((byte) 138);
 
+    /** packet traffic class: unclassified. */
+    public static final int     TRAFFIC_CLASS_NONE            = 0;
+    /** packet traffic class: service discovery request. */
+    public static final int     TRAFFIC_CLASS_DISC_REQ        = 1;
+    /** packet traffic class: service discovery response. */
+    public static final int     TRAFFIC_CLASS_DISC_RSP        = 2;
+    /** packet traffic class: service composition message. */
+    public static final int     TRAFFIC_CLASS_COMP_MSG        = 3;
+    /** packet traffic class: workflow request. */
+    public static final int     TRAFFIC_CLASS_WF_REQ          = 4;
+    /** packet traffic class: service advertisement. */
+    public static final int     TRAFFIC_CLASS_SERVICE_AD      = 5;
+    /** packet traffic class: workflow token. */
+    public static final int     TRAFFIC_CLASS_TOKEN           = 6;
+    /** packet traffic class: AODV route request. */
+    public static final int     TRAFFIC_CLASS_AODV_RREQ       = 7;
+    /** packet traffic class: AODV route reply. */
+    public static final int     TRAFFIC_CLASS_AODV_RREP       = 8;
+
     // ////////////////////////////////////////////////
     // Routing-related constants
     //
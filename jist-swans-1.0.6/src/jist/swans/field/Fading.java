@@ -32,6 +32,17 @@ public interface Fading
      */
     double compute();
 
+    /**
+     * Compute the fading losses of several receivers of a transmission, with
+     * the same random draws as successive calls to compute().
+     * 
+     * @param fades
+     *            array to fill with fading losses (units: dB)
+     * @param n
+     *            number of receivers
+     */
+    void compute(double[] fades, int n);
+
     // ////////////////////////////////////////////////
     // implementations
     //
@@ -49,6 +60,13 @@ public interface Fading
         public double compute() {
             return 0.0;
         }
+
+        /** {@inheritDoc} */
+        public void compute(double[] fades, int n) {
+            for (int i = 0; i < n; i++) {
+                fades[i] = 0.0;
+            }
+        }
     }
 
     /**
@@ -69,6 +87,14 @@ public interface Fading
             return 5.0 * StrictMath.log(-2.0 * VARIANCE * StrictMath.log(Constants.random.nextDouble()))
                     / Constants.log10;
         }
+
+        /** {@inheritDoc} */
+        public void compute(double[] fades, int n) {
+            for (int i = 0; i < n; i++) {
+                fades[i] = 5.0 * StrictMath.log(-2.0 * VARIANCE * StrictMath.log(Constants.random.nextDouble()))
+                        / Constants.log10;
+            }
+        }
     }
 
     /**
@@ -80,7 +106,7 @@ public interface Fading
     final class Rician implements Fading
     {
         /** distribution parameters. */
-        private final double kFactor, stddev;
+        private final double kFactor, stddev, a;
 
         /**
          * Create new Rician fading model object.
@@ -91,6 +117,7 @@ public interface Fading
         public Rician(double kFactor) {
             this.kFactor = kFactor;
             this.stddev = computeStandardDeviation(kFactor);
+            this.a = StrictMath.sqrt(2.0 * kFactor * stddev * stddev);
         }
 
         /**
@@ -172,7 +199,7 @@ public interface Fading
         /** {@inheritDoc} */
         public double compute() {
             // compute fading_dB; positive values are signal gains
-            double a = StrictMath.sqrt(2.0 * kFactor * stddev * stddev), r, v1, v2;
+            double r, v1, v2;
             do {
                 v1 = -1.0 + 2.0 * Constants.random.nextDouble();
                 v2 = -1.0 + 2.0 * Constants.random.nextDouble();
@@ -183,6 +210,13 @@ public interface Fading
             v2 = stddev * v2 * r;
             return 5.0 * StrictMath.log(v1 * v1 + v2 * v2) / Constants.log10;
         }
+
+        /** {@inheritDoc} */
+        public void compute(double[] fades, int n) {
+            for (int i = 0; i < n; i++) {
+                fades[i] = compute();
+            }
+        }
     }
 
 } // class: Fading
@@ -21,6 +21,7 @@ import jist.swans.misc.Message;
 import jist.swans.misc.Util;
 import jist.swans.radio.RadioInfo;
 import jist.swans.radio.RadioInterface;
+import jist.swans.radio.RadioNoise;
 
 import org.apache.log4j.Logger;
 
@@ -52,6 +53,11 @@ public class Field implements FieldInterface
      */
     protected PathLoss         pathloss;
 
+    /**
+     * Pathloss model, if it computes received power from squared distance.
+     */
+    protected PathLoss.Table   pathlossTable;
+
     /**
      * Fading model.
      */
@@ -77,6 +83,21 @@ public class Field implements FieldInterface
      */
     protected RadioData[]      radios;
 
+    /**
+     * Whether to cache the links (receivers and path loss) of each radio.
+     */
+    protected boolean          linkCache;
+
+    /**
+     * Number of radios moving along a leg.
+     */
+    protected int              legs;
+
+    /**
+     * Highest transmission power of any radio on the field (units: dBm).
+     */
+    protected double           maxPower           = Double.NEGATIVE_INFINITY;
+
     // @author Elmar Schoch >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>
     /**
      * Vector holding listeners that want to be notified on node movements
@@ -165,6 +186,8 @@ public class Field implements FieldInterface
      */
     public void setPathLoss(PathLoss pathloss) {
         this.pathloss = pathloss;
+        this.pathlossTable = pathloss instanceof PathLoss.Table ? (PathLoss.Table) pathloss : null;
+        clearLinks();
     }
 
     /**
@@ -185,6 +208,25 @@ public class Field implements FieldInterface
      */
     public void setPropagationLimit(double limit) {
         this.limit = limit;
+        clearLinks();
+    }
+
+    /**
+     * Enable or disable the link cache. When enabled, the receivers of each
+     * radio and their path loss are computed at its first transmission, and
+     * reused until a radio within range moves. Transmissions then only apply
+     * fading, per receiver, which suits static topologies and mobility with
+     * long pauses. The path loss model must be deterministic. Results are
+     * unchanged without fading; with fading, the samples are drawn in a
+     * different order, and receivers below the propagation limit are
+     * excluded before fading.
+     * 
+     * @param linkCache
+     *            whether to cache the links of each radio
+     */
+    public void setLinkCache(boolean linkCache) {
+        this.linkCache = linkCache;
+        clearLinks();
     }
 
     // ////////////////////////////////////////////////
@@ -238,16 +280,256 @@ public class Field implements FieldInterface
          */
         protected RadioData             prev, next;
 
+        /**
+         * index in spatial arrays, if any.
+         */
+        protected int                   slot;
+
+        /**
+         * cached links, if any.
+         */
+        protected Links                 links;
+
+        /**
+         * radios whose cached links include this radio, once per link.
+         */
+        protected RadioData[]           linkedFrom;
+
+        /**
+         * number of radios whose cached links include this radio.
+         */
+        protected int                   linkedFromSize;
+
+        /**
+         * leg along which radio is moving, if any.
+         */
+        protected Leg                   leg;
+
         /**
          * nodes must be able to read their position in order to enable
          * georouting
          */
         public Location getLoc() {
+            return leg == null ? loc : getLoc(JistAPI.getTime());
+        }
+
+        /**
+         * Return radio location at given (current) time.
+         * 
+         * @param time
+         *            current time
+         * @return radio location
+         */
+        protected Location getLoc(long time) {
+            if (leg != null) {
+                // still within same bin; see moveRadioAlong
+                loc = leg.getLocation(time);
+            }
             return loc;
         }
 
     } // class: RadioData
 
+    /**
+     * Cached links of a transmitting radio: the radios that receive its
+     * signal, in spatial visiting order, their path loss and received power.
+     * 
+     * @since SWANS1.0
+     */
+    protected static class Links
+    {
+        /**
+         * receiving radios.
+         */
+        protected RadioData[] dst  = new RadioData[8];
+
+        /**
+         * path loss to each receiving radio (units: dB).
+         */
+        protected double[]    loss = new double[8];
+
+        /**
+         * power received by each receiving radio, without fading (units: mW).
+         */
+        protected double[]    power = new double[8];
+
+        /**
+         * number of links.
+         */
+        protected int         size;
+
+        /**
+         * Append a link.
+         * 
+         * @param rd
+         *            receiving radio
+         * @param pathloss
+         *            path loss to receiving radio (units: dB)
+         * @param power_mW
+         *            power received by receiving radio, without fading (units:
+         *            mW)
+         */
+        protected void add(RadioData rd, double pathloss, double power_mW) {
+            if (size == dst.length) {
+                RadioData[] dst2 = new RadioData[size * 2];
+                System.arraycopy(dst, 0, dst2, 0, size);
+                dst = dst2;
+                double[] loss2 = new double[size * 2];
+                System.arraycopy(loss, 0, loss2, 0, size);
+                loss = loss2;
+                double[] power2 = new double[size * 2];
+                System.arraycopy(power, 0, power2, 0, size);
+                power = power2;
+            }
+            dst[size] = rd;
+            loss[size] = pathloss;
+            power[size] = power_mW;
+            size++;
+        }
+
+        /**
+         * Return whether given radio is linked.
+         * 
+         * @param rd
+         *            radio
+         * @return whether given radio is linked
+         */
+        protected boolean contains(RadioData rd) {
+            for (int i = 0; i < size; i++) {
+                if (dst[i] == rd)
+                    return true;
+            }
+            return false;
+        }
+
+    } // class: Links
+
+    /**
+     * Straight leg of a moving radio, of equal steps of equal duration. The
+     * location after each step is computed exactly as if the radio were moved
+     * by each step in turn, but only when needed.
+     * 
+     * @since SWANS1.0
+     */
+    protected static class Leg
+    {
+        /**
+         * leg destination.
+         */
+        protected final Location dst;
+
+        /**
+         * number of steps to destination.
+         */
+        protected final int      steps;
+
+        /**
+         * duration of each step.
+         */
+        protected final long     stepTime;
+
+        /**
+         * leg start time.
+         */
+        protected final long     start;
+
+        /**
+         * step at which radio location is next updated on field.
+         */
+        protected int            next;
+
+        /**
+         * number of steps taken to current location.
+         */
+        private int              step;
+
+        /**
+         * location after given number of steps.
+         */
+        private Location         loc;
+
+        /**
+         * Create new leg.
+         * 
+         * @param src
+         *            leg start location
+         * @param dst
+         *            leg destination
+         * @param steps
+         *            number of steps to destination
+         * @param stepTime
+         *            duration of each step
+         * @param start
+         *            leg start time
+         */
+        protected Leg(Location src, Location dst, int steps, long stepTime, long start) {
+            this.dst = dst;
+            this.steps = steps;
+            this.stepTime = stepTime;
+            this.start = start;
+            this.loc = src;
+        }
+
+        /**
+         * Return time at which given step is taken.
+         * 
+         * @param k
+         *            step number
+         * @return time of step
+         */
+        protected long getTime(int k) {
+            return start + k * stepTime;
+        }
+
+        /**
+         * Return location after given number of steps, no fewer than the
+         * steps of the previous call.
+         * 
+         * @param k
+         *            number of steps taken
+         * @return location after given number of steps
+         */
+        protected Location getLocation(int k) {
+            while (step < k) {
+                loc = loc.add(loc.step(dst, steps - step));
+                step++;
+            }
+            return loc;
+        }
+
+        /**
+         * Return location at given time, before the next update on field.
+         * 
+         * @param time
+         *            current time
+         * @return location at given time
+         */
+        protected Location getLocation(long time) {
+            long k = stepTime == 0 ? steps : (time - start) / stepTime;
+            return getLocation((int) Math.min(k, next - 1));
+        }
+
+        /**
+         * Return the first step after the current location that moves the
+         * radio out of its spatial bin (or the last step).
+         * 
+         * @param spatial
+         *            spatial data structure
+         * @return step number of next bin crossing or of leg end
+         */
+        protected int getCrossing(Spatial spatial) {
+            Location l = loc;
+            for (int k = step + 1; k < steps; k++) {
+                Location l2 = l.add(l.step(dst, steps - k + 1));
+                if (!spatial.sameBin(l, l2))
+                    return k;
+                l = l2;
+            }
+            return steps;
+        }
+
+    } // class: Leg
+
     /**
      * Add a radio onto the field.
      * 
@@ -269,6 +551,7 @@ public class Field implements FieldInterface
         data.entity = entity;
         data.info = info;
         data.loc = loc;
+        maxPower = Math.max(maxPower, info.getShared().getPower());
         // insert into array
         int idi = id.intValue();
         while (radios.length <= idi) {
@@ -279,6 +562,7 @@ public class Field implements FieldInterface
         radios[idi] = data;
         // add into spatial data structure
         spatial.add(data);
+        clearLinks();
     }
 
     /**
@@ -294,8 +578,12 @@ public class Field implements FieldInterface
         // remove from array
         RadioData data = getRadioData(id);
         radios[id.intValue()] = null;
+        if (data.leg != null) {
+            legs--;
+        }
         // remove from spatial data structure
         spatial.del(data);
+        clearLinks();
     }
 
     /**
@@ -321,14 +609,19 @@ public class Field implements FieldInterface
 
         // @author Elmar Schoch >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>
         // Call listeners that want to be notified about movements
-        for (int i = 0; i < moveRadioListeners.size(); i++) {
-            ((MovementListenerInterface) moveRadioListeners.get(i)).move(JistAPI.getTime(), loc, id.intValue());
-        }
+        fireMove(id, loc);
         // <<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<
 
         // update spatial data structure
         RadioData rd = getRadioData(id);
+        if (rd.leg != null) {
+            rd.leg = null;
+            legs--;
+        }
         spatial.moveInside(rd, loc);
+        if (linkCache) {
+            invalidateLinks(rd);
+        }
         // schedule next step
         if (rd.mobilityInfo != null) {
             mobility.next(self, id, loc, rd.mobilityInfo);
@@ -340,6 +633,66 @@ public class Field implements FieldInterface
         moveRadio(id, getRadioData(id).loc.add(delta));
     }
 
+    /** {@inheritDoc} */
+    public void moveRadioLeg(Integer id, Location dst, int steps, long stepTime) {
+        if (logField.isInfoEnabled()) {
+            logField.info("move radio id=" + id + " along leg to=" + dst + " steps=" + steps);
+        }
+        RadioData rd = getRadioData(id);
+        if (rd.leg == null) {
+            legs++;
+        }
+        rd.leg = new Leg(rd.loc, dst, steps, stepTime, JistAPI.getTime());
+        scheduleLeg(id, rd.leg);
+    }
+
+    /** {@inheritDoc} */
+    public void moveRadioAlong(Integer id) {
+        RadioData rd = getRadioData(id);
+        Leg leg = rd.leg;
+        if (leg == null || leg.getTime(leg.next) != JistAPI.getTime()) {
+            // leg ended or replaced
+            return;
+        }
+        Location loc = leg.getLocation(leg.next);
+        if (leg.next == leg.steps) {
+            moveRadio(id, loc);
+            return;
+        }
+        fireMove(id, loc);
+        spatial.moveInside(rd, loc);
+        scheduleLeg(id, leg);
+    }
+
+    /**
+     * Schedule the next update of a radio moving along a leg: at its next
+     * bin crossing or at the end of the leg.
+     * 
+     * @param id
+     *            radio identifier
+     * @param leg
+     *            leg of radio
+     */
+    private void scheduleLeg(Integer id, Leg leg) {
+        leg.next = leg.getCrossing(spatial);
+        JistAPI.sleep(leg.getTime(leg.next) - JistAPI.getTime());
+        self.moveRadioAlong(id);
+    }
+
+    /**
+     * Notify movement listeners.
+     * 
+     * @param id
+     *            radio identifier
+     * @param loc
+     *            new radio location
+     */
+    private void fireMove(Integer id, Location loc) {
+        for (int i = 0; i < moveRadioListeners.size(); i++) {
+            ((MovementListenerInterface) moveRadioListeners.get(i)).move(JistAPI.getTime(), loc, id.intValue());
+        }
+    }
+
     /**
      * Start mobility; schedule first mobility event.
      * 
@@ -356,6 +709,11 @@ public class Field implements FieldInterface
     // communication
     //
 
+    /**
+     * Time of current transmission, if radios are moving along legs.
+     */
+    private long                           transmitTime;
+
     /**
      * Transmission visitor object.
      */
@@ -371,10 +729,20 @@ public class Field implements FieldInterface
                                                                public void visitTransmit(RadioInfo srcInfo,
                                                                        Location srcLoc, RadioInfo dstInfo,
                                                                        RadioInterface dstEntity, Location dstLoc,
-                                                                       Message msg, Long durationObj) {
+                                                                       Message msg, long duration) {
                                                                    if (srcInfo.getUnique().getID() == dstInfo
                                                                            .getUnique().getID())
                                                                        return;
+                                                                   if (legs > 0) {
+                                                                       dstLoc = getRadioData(
+                                                                               dstInfo.getUnique().getID())
+                                                                               .getLoc(transmitTime);
+                                                                   }
+                                                                   if (pathlossTable != null) {
+                                                                       visitTransmitTable(srcInfo, srcLoc, dstInfo,
+                                                                               dstEntity, dstLoc, msg, duration);
+                                                                       return;
+                                                                   }
                                                                    // compute
                                                                    // signal
                                                                    // strength
@@ -393,16 +761,225 @@ public class Field implements FieldInterface
                                                                    if (dstPower_mW < dstInfo.getShared()
                                                                            .getSensitivity_mW())
                                                                        return;
-                                                                   dstEntity.receive(msg, new Double(dstPower_mW),
-                                                                           durationObj);
+                                                                   JistAPI.schedule(new RadioNoise.Signal(msg,
+                                                                           dstPower_mW, duration), dstEntity);
+                                                               }
+
+                                                               private void visitTransmitTable(RadioInfo srcInfo,
+                                                                       Location srcLoc, RadioInfo dstInfo,
+                                                                       RadioInterface dstEntity, Location dstLoc,
+                                                                       Message msg, long duration) {
+                                                                   double dstPower_mW = pathlossTable
+                                                                           .computePower_mW(srcInfo, srcLoc,
+                                                                                   dstInfo, dstLoc,
+                                                                                   srcLoc.distanceSqr(dstLoc));
+                                                                   double fade = fading.compute();
+                                                                   if (fade != 0.0) {
+                                                                       dstPower_mW *= Util.fromDB(fade);
+                                                                   }
+                                                                   if (dstPower_mW < dstInfo.getShared()
+                                                                           .getSensitivity_mW())
+                                                                       return;
+                                                                   JistAPI.schedule(new RadioNoise.Signal(msg,
+                                                                           dstPower_mW, duration), dstEntity);
                                                                }
                                                            };
 
+    /**
+     * Fading losses of the links of current transmission.
+     */
+    private double[]                       fades = new double[8];
+
     // FieldInterface interface
     /** {@inheritDoc} */
     public void transmit(RadioInfo srcInfo, Message msg, long duration) {
         RadioData srcData = getRadioData(srcInfo.getUnique().getID());
-        spatial.visitTransmit(transmitVisitor, srcData.info, srcData.loc, msg, new Long(duration), limit);
+        // links change continuously along legs
+        if (!linkCache || legs > 0) {
+            if (legs > 0) {
+                transmitTime = JistAPI.getTime();
+            }
+            spatial.visitTransmit(transmitVisitor, srcData.info, srcData.getLoc(transmitTime), msg, duration, limit);
+            return;
+        }
+        Links links = srcData.links;
+        if (links == null) {
+            links = computeLinks(srcData);
+        }
+        if (fades.length < links.size) {
+            fades = new double[links.dst.length];
+        }
+        fading.compute(fades, links.size);
+        double power = srcInfo.getShared().getPower();
+        for (int i = 0; i < links.size; i++) {
+            RadioData dst = links.dst[i];
+            double fade = fades[i];
+            double dstPower_mW = fade == 0.0 ? links.power[i] : pathlossTable != null ? links.power[i]
+                    * Util.fromDB(fade) : Util.fromDB(power - links.loss[i] + fade);
+            if (dstPower_mW < dst.info.getShared().getSensitivity_mW())
+                continue;
+            JistAPI.schedule(new RadioNoise.Signal(msg, dstPower_mW, duration), dst.entity);
+        }
+    }
+
+    // ////////////////////////////////////////////////
+    // link cache
+    //
+
+    /**
+     * Links being collected.
+     */
+    private Links                          collecting;
+
+    /**
+     * Link collection visitor object. Visits the same radios as a
+     * transmission, but without fading.
+     */
+    private Spatial.SpatialTransmitVisitor linkVisitor = new Spatial.SpatialTransmitVisitor() {
+        public double computeSignal(RadioInfo srcInfo, Location srcLoc, Location dstLoc) {
+            return srcInfo.getShared().getPower() - pathloss.compute(srcInfo, srcLoc, srcInfo, dstLoc);
+        }
+
+        public void visitTransmit(RadioInfo srcInfo, Location srcLoc, RadioInfo dstInfo,
+                RadioInterface dstEntity, Location dstLoc, Message msg, long duration) {
+            if (srcInfo.getUnique().getID() == dstInfo.getUnique().getID())
+                return;
+            double loss = pathloss.compute(srcInfo, srcLoc, dstInfo, dstLoc);
+            if (isLinked(srcInfo, dstInfo, loss)) {
+                double power_mW = pathlossTable != null ? pathlossTable.computePower_mW(srcInfo, srcLoc, dstInfo,
+                        dstLoc, srcLoc.distanceSqr(dstLoc)) : Util.fromDB(srcInfo.getShared().getPower() - loss);
+                collecting.add(getRadioData(dstInfo.getUnique().getID()), loss, power_mW);
+            }
+        }
+    };
+
+    /**
+     * Compute and cache the links of given radio.
+     * 
+     * @param src
+     *            transmitting radio
+     * @return links of transmitting radio
+     */
+    protected Links computeLinks(RadioData src) {
+        collecting = new Links();
+        spatial.visitTransmit(linkVisitor, src.info, src.loc, null, 0, limit);
+        src.links = collecting;
+        collecting = null;
+        // index reverse links
+        for (int i = 0; i < src.links.size; i++) {
+            RadioData dst = src.links.dst[i];
+            if (dst.linkedFrom == null) {
+                dst.linkedFrom = new RadioData[8];
+            } else if (dst.linkedFromSize == dst.linkedFrom.length) {
+                RadioData[] linkedFrom2 = new RadioData[dst.linkedFromSize * 2];
+                System.arraycopy(dst.linkedFrom, 0, linkedFrom2, 0, dst.linkedFromSize);
+                dst.linkedFrom = linkedFrom2;
+            }
+            dst.linkedFrom[dst.linkedFromSize++] = src;
+        }
+        return src.links;
+    }
+
+    /**
+     * Discard the cached links of given radio, if any.
+     * 
+     * @param src
+     *            transmitting radio
+     */
+    protected void discardLinks(RadioData src) {
+        Links links = src.links;
+        if (links == null)
+            return;
+        src.links = null;
+        for (int i = 0; i < links.size; i++) {
+            RadioData dst = links.dst[i];
+            // order of reverse links does not matter
+            for (int j = dst.linkedFromSize - 1; j >= 0; j--) {
+                if (dst.linkedFrom[j] == src) {
+                    dst.linkedFrom[j] = dst.linkedFrom[--dst.linkedFromSize];
+                    dst.linkedFrom[dst.linkedFromSize] = null;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return whether a signal with given path loss should be linked: either
+     * above the propagation limit, or receivable without fading.
+     * 
+     * @param srcInfo
+     *            transmitting radio properties
+     * @param dstInfo
+     *            receiving radio properties
+     * @param loss
+     *            path loss (units: dB)
+     * @return whether signal should be linked
+     */
+    private boolean isLinked(RadioInfo srcInfo, RadioInfo dstInfo, double loss) {
+        double power = srcInfo.getShared().getPower() - loss;
+        return power >= limit || Util.fromDB(power) >= dstInfo.getShared().getSensitivity_mW();
+    }
+
+    /**
+     * Radio that has moved, while visiting the radios that would now link to
+     * it.
+     */
+    private RadioData                      moved;
+
+    /**
+     * Visitor object that discards the cached links of radios that would link
+     * to the moved radio at its new location. Visits the radios within reach of
+     * the strongest transmitter on the field, assuming symmetric path loss.
+     */
+    private Spatial.SpatialTransmitVisitor movedVisitor = new Spatial.SpatialTransmitVisitor() {
+        public double computeSignal(RadioInfo srcInfo, Location srcLoc, Location dstLoc) {
+            return maxPower - pathloss.compute(srcInfo, srcLoc, srcInfo, dstLoc);
+        }
+
+        public void visitTransmit(RadioInfo srcInfo, Location srcLoc, RadioInfo dstInfo,
+                RadioInterface dstEntity, Location dstLoc, Message msg, long duration) {
+            RadioData rd = getRadioData(dstInfo.getUnique().getID());
+            if (rd == moved || rd.links == null)
+                return;
+            if (isLinked(dstInfo, srcInfo, pathloss.compute(dstInfo, dstLoc, srcInfo, srcLoc))) {
+                discardLinks(rd);
+            }
+        }
+    };
+
+    /**
+     * Discard the cached links affected by the move of given radio: its own,
+     * those that include it, found through its reverse links, and those that
+     * would include it now, found among its neighbours in the spatial data
+     * structure.
+     * 
+     * @param moved
+     *            radio that has moved
+     */
+    protected void invalidateLinks(RadioData moved) {
+        discardLinks(moved);
+        while (moved.linkedFromSize > 0) {
+            discardLinks(moved.linkedFrom[moved.linkedFromSize - 1]);
+        }
+        this.moved = moved;
+        spatial.visitTransmit(movedVisitor, moved.info, moved.loc, null, 0, limit);
+        this.moved = null;
+    }
+
+    /**
+     * Discard all cached links.
+     */
+    protected void clearLinks() {
+        if (radios == null)
+            return;
+        for (int i = 0; i < radios.length; i++) {
+            if (radios[i] != null) {
+                radios[i].links = null;
+                radios[i].linkedFrom = null;
+                radios[i].linkedFromSize = 0;
+            }
+        }
     }
 
     // ////////////////////////////////////////////////
@@ -452,7 +1029,7 @@ public class Field implements FieldInterface
             }
 
             public void visitTransmit(RadioInfo srcInfo, Location srcLoc, RadioInfo dstInfo, RadioInterface dstEntity,
-                    Location dstLoc, Message msg, Long durationObj) {
+                    Location dstLoc, Message msg, long duration) {
                 if (srcInfo.getUnique().getID() == dstInfo.getUnique().getID())
                     return;
                 // compute signal strength
@@ -469,10 +1046,17 @@ public class Field implements FieldInterface
             }
 
             public void visit(Field.RadioData dst) {
-                spatial.visitTransmit(this, dst.info, dst.loc, null, null, limit);
+                spatial.visitTransmit(this, dst.info, dst.loc, null, 0, limit);
                 nodes++;
             }
         };
+        if (legs > 0) {
+            for (int i = 0; i < radios.length; i++) {
+                if (radios[i] != null) {
+                    radios[i].getLoc();
+                }
+            }
+        }
         spatial.visit(connectivityVisitor);
         return connectivityVisitor.getAvgLinks();
     }
@@ -66,5 +66,33 @@ public interface FieldInterface extends JistAPI.Proxiable
      */
     void moveRadioOff(Integer id, Location delta);
 
+    /**
+     * Move radio along a straight leg, starting now: after each step time,
+     * the radio moves by one step towards the destination (see
+     * {@link Location#step}), until it reaches it after the given number of
+     * steps, which is a regular move. Intermediate locations are interpolated
+     * when needed, rather than scheduled.
+     * 
+     * @param id
+     *            unique radio identifier
+     * @param dst
+     *            leg destination coordinates
+     * @param steps
+     *            number of steps to destination
+     * @param stepTime
+     *            duration of each step
+     */
+    void moveRadioLeg(Integer id, Location dst, int steps, long stepTime);
+
+    /**
+     * Update location of radio moving along a leg. Scheduled by the field
+     * when the radio crosses into another spatial bin, and at the end of the
+     * leg.
+     * 
+     * @param id
+     *            unique radio identifier
+     */
+    void moveRadioAlong(Integer id);
+
 } // interface: FieldInterface
 
@@ -150,6 +150,9 @@ public interface Mobility
         /** Maximum movement speed. */
         private float               maxspeed;
 
+        /** Whether to move along whole legs, interpolated by the field. */
+        private boolean             interpolate;
+
         /**
          * Initialize random waypoint mobility model.
          * 
@@ -211,6 +214,21 @@ public interface Mobility
             this.maxspeed = maxspeed;
         }
 
+        /**
+         * Move nodes along whole legs, from waypoint to waypoint, instead of
+         * scheduling every step. The field interpolates node locations at the
+         * same step granularity, and only updates its bins when a node crosses
+         * into another bin, so results are unchanged but for the order of
+         * simultaneous events. Movement listeners are notified only at bin
+         * crossings and waypoints.
+         * 
+         * @param interpolate
+         *            whether to move along interpolated legs
+         */
+        public void setInterpolate(boolean interpolate) {
+            this.interpolate = interpolate;
+        }
+
         // ////////////////////////////////////////////////
         // Mobility interface
         //
@@ -244,6 +262,12 @@ public interface Mobility
 
                     // TODO: christin;
                     // System.out.println("node speed = "+speed);
+                    if (interpolate) {
+                        // next called again at waypoint
+                        f.moveRadioLeg(id, rwi.waypoint, rwi.steps, rwi.stepTime);
+                        rwi.steps = 0;
+                        return;
+                    }
                 }
                 // take step
                 JistAPI.sleep(rwi.stepTime);
@@ -98,6 +98,241 @@ public interface PathLoss
         }
     } // class: TwoRay
 
+    /**
+     * Computes the power received from a transmission, without fading,
+     * directly from the squared distance, by linear interpolation in tables
+     * precomputed with an exact path loss model. There is one table for each
+     * pair of shared radio parameters and antenna heights, with nodes evenly
+     * spaced within each binary octave of squared distance, as many as needed
+     * to keep the interpolation error within a given bound. The exact model
+     * computes the path loss in dB and the received power outside the tables,
+     * and must depend on the locations only through their distance and
+     * heights, as do FreeSpace and TwoRay.
+     * 
+     * @since SWANS1.0
+     */
+    final class Table implements PathLoss
+    {
+        /** binary exponent of smallest tabulated squared distance. */
+        private static final int MIN_EXP  = -10;
+
+        /** number of tabulated octaves of squared distance. */
+        private static final int OCTAVES  = 40;
+
+        /** initial and maximum number of mantissa bits of table index. */
+        private static final int MIN_BITS = 4, MAX_BITS = 12;
+
+        /**
+         * Received power table of one pair of radios.
+         */
+        private static final class Entry
+        {
+            /** shared parameters of source and destination radios. */
+            private RadioInfo.RadioInfoShared src, dst;
+            /** antenna heights of source and destination radios. */
+            private float                     srcHeight, dstHeight;
+            /** number of low bits of squared distance dropped by index. */
+            private int                       shift;
+            /** index of first node. */
+            private int                       base;
+            /** number of table intervals (zero: always use exact model). */
+            private int                       size;
+            /** mask of low bits of squared distance. */
+            private int                       mask;
+            /** scale of low bits to interpolation fraction. */
+            private double                    scale;
+            /** received power at nodes (units: mW). */
+            private double[]                  power;
+            /** largest interpolation error at interval midpoints (units: dB). */
+            private double                    error;
+        }
+
+        /** exact path loss model. */
+        private final PathLoss model;
+
+        /** interpolation error bound (units: dB). */
+        private final double   maxError;
+
+        /** tables computed so far. */
+        private Entry[]        entries = new Entry[0];
+
+        /** most recently used table. */
+        private Entry          last;
+
+        /**
+         * Create new tabulated path loss model.
+         * 
+         * @param model
+         *            exact path loss model
+         * @param maxError
+         *            interpolation error bound (units: dB)
+         */
+        public Table(PathLoss model, double maxError) {
+            this.model = model;
+            this.maxError = maxError;
+        }
+
+        // PathLoss interface
+        /** {@inheritDoc} */
+        public double compute(RadioInfo srcRadio, Location srcLocation, RadioInfo dstRadio, Location dstLocation) {
+            return model.compute(srcRadio, srcLocation, dstRadio, dstLocation);
+        }
+
+        /**
+         * Compute the received power.
+         * 
+         * @param srcRadio
+         *            source radio information
+         * @param srcLocation
+         *            source location
+         * @param dstRadio
+         *            destination radio information
+         * @param dstLocation
+         *            destination location
+         * @param dist2
+         *            squared distance between locations
+         * @return received power, without fading (units: mW)
+         */
+        public double computePower_mW(RadioInfo srcRadio, Location srcLocation, RadioInfo dstRadio,
+                Location dstLocation, double dist2) {
+            Entry e = getEntry(srcRadio, srcLocation.getHeight(), dstRadio, dstLocation.getHeight());
+            int bits = Float.floatToRawIntBits((float) dist2);
+            int k = (bits >> e.shift) - e.base;
+            if (k < 0 || k >= e.size) {
+                return Util.fromDB(srcRadio.getShared().getPower()
+                        - model.compute(srcRadio, srcLocation, dstRadio, dstLocation));
+            }
+            double p = e.power[k];
+            return p + (e.power[k + 1] - p) * ((bits & e.mask) * e.scale);
+        }
+
+        /**
+         * Return the largest interpolation error of the table of given radios.
+         * 
+         * @param srcRadio
+         *            source radio information
+         * @param srcHeight
+         *            source antenna height
+         * @param dstRadio
+         *            destination radio information
+         * @param dstHeight
+         *            destination antenna height
+         * @return largest interpolation error at interval midpoints (units:
+         *         dB)
+         */
+        public double getError(RadioInfo srcRadio, float srcHeight, RadioInfo dstRadio, float dstHeight) {
+            return getEntry(srcRadio, srcHeight, dstRadio, dstHeight).error;
+        }
+
+        /**
+         * Return the table of given radios, computing it if necessary.
+         * 
+         * @param srcRadio
+         *            source radio information
+         * @param srcHeight
+         *            source antenna height
+         * @param dstRadio
+         *            destination radio information
+         * @param dstHeight
+         *            destination antenna height
+         * @return received power table
+         */
+        private Entry getEntry(RadioInfo srcRadio, float srcHeight, RadioInfo dstRadio, float dstHeight) {
+            RadioInfo.RadioInfoShared src = srcRadio.getShared(), dst = dstRadio.getShared();
+            Entry e = last;
+            if (e != null && e.src == src && e.dst == dst && e.srcHeight == srcHeight && e.dstHeight == dstHeight)
+                return e;
+            for (int i = 0; i < entries.length; i++) {
+                e = entries[i];
+                if (e.src == src && e.dst == dst && e.srcHeight == srcHeight && e.dstHeight == dstHeight) {
+                    last = e;
+                    return e;
+                }
+            }
+            e = createEntry(srcRadio, srcHeight, dstRadio, dstHeight);
+            Entry[] entries2 = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, entries2, 0, entries.length);
+            entries2[entries.length] = e;
+            entries = entries2;
+            last = e;
+            return e;
+        }
+
+        /**
+         * Compute the table of given radios, refining it until the
+         * interpolation error is within bound. If the bound can not be met
+         * with the finest table, the exact model is used for these radios.
+         * 
+         * @param srcRadio
+         *            source radio information
+         * @param srcHeight
+         *            source antenna height
+         * @param dstRadio
+         *            destination radio information
+         * @param dstHeight
+         *            destination antenna height
+         * @return received power table
+         */
+        private Entry createEntry(RadioInfo srcRadio, float srcHeight, RadioInfo dstRadio, float dstHeight) {
+            Location srcLocation = new Location.Location2D(0, 0, srcHeight);
+            Entry e = new Entry();
+            e.src = srcRadio.getShared();
+            e.dst = dstRadio.getShared();
+            e.srcHeight = srcHeight;
+            e.dstHeight = dstHeight;
+            for (int bits = MIN_BITS; bits <= MAX_BITS; bits++) {
+                e.shift = 23 - bits;
+                e.base = (127 + MIN_EXP) << bits;
+                e.size = OCTAVES << bits;
+                e.mask = (1 << e.shift) - 1;
+                e.scale = 1.0 / (1 << e.shift);
+                e.power = new double[e.size + 1];
+                for (int k = 0; k <= e.size; k++) {
+                    e.power[k] = computePower_mW(srcRadio, srcLocation, dstRadio, dstHeight, (e.base + k) << e.shift);
+                }
+                e.error = 0;
+                for (int k = 0; k < e.size; k++) {
+                    double exact = computePower_mW(srcRadio, srcLocation, dstRadio, dstHeight, ((e.base + k) << e.shift)
+                            + (1 << (e.shift - 1)));
+                    double interp = (e.power[k] + e.power[k + 1]) / 2;
+                    e.error = StrictMath.max(e.error, StrictMath.abs(Util.toDB(interp) - Util.toDB(exact)));
+                }
+                if (e.error <= maxError)
+                    return e;
+            }
+            Field.logField.warn("path loss table error " + e.error + " dB exceeds " + maxError
+                    + " dB; using exact path loss model");
+            e.size = 0;
+            e.power = null;
+            e.error = 0;
+            return e;
+        }
+
+        /**
+         * Compute the received power with the exact model.
+         * 
+         * @param srcRadio
+         *            source radio information
+         * @param srcLocation
+         *            source location
+         * @param dstRadio
+         *            destination radio information
+         * @param dstHeight
+         *            destination antenna height
+         * @param bits
+         *            bits of squared distance (float)
+         * @return received power, without fading (units: mW)
+         */
+        private double computePower_mW(RadioInfo srcRadio, Location srcLocation, RadioInfo dstRadio, float dstHeight,
+                int bits) {
+            float dist = (float) StrictMath.sqrt(Float.intBitsToFloat(bits));
+            Location dstLocation = new Location.Location2D(dist, 0, dstHeight);
+            return Util.fromDB(srcRadio.getShared().getPower()
+                    - model.compute(srcRadio, srcLocation, dstRadio, dstLocation));
+        }
+
+    } // class: Table
+
     // todo: MITRE's pathloss format
     // Time (nearest whole second) Node A Node B Path Loss (dB) Range (meters)
     // End of file is indicated by a -1 in the first column. (And nothing else
@@ -68,11 +68,11 @@ public abstract class Spatial
          *            destination radio location
          * @param msg
          *            message to transmit
-         * @param durationObj
+         * @param duration
          *            transmit duration
          */
         void visitTransmit(RadioInfo srcInfo, Location srcLoc, RadioInfo dstInfo, RadioInterface dstEntity,
-                Location dstLoc, Message msg, Long durationObj);
+                Location dstLoc, Message msg, long duration);
     }
 
     /**
@@ -157,14 +157,14 @@ public abstract class Spatial
      *            transmission source location
      * @param msg
      *            message to transmit
-     * @param durationObj
+     * @param duration
      *            transmission duration
      * @param limit
      *            propagation limit
      * @return number of receiving radios
      */
     public abstract int visitTransmit(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, Message msg,
-            Long durationObj, double limit);
+            long duration, double limit);
 
     /**
      * Visit radios in bin.
@@ -217,6 +217,21 @@ public abstract class Spatial
             Util.assertion(rd == null);
     }
 
+    /**
+     * Return whether a radio moving between given locations stays in the same
+     * innermost bin, i.e. the bin reached by descending towards its previous
+     * location, so that it is not relinked.
+     * 
+     * @param from
+     *            previous location inside bin limits
+     * @param to
+     *            new location
+     * @return whether radio stays in same bin, false if unknown
+     */
+    public boolean sameBin(Location from, Location to) {
+        return false;
+    }
+
     /**
      * Get nearest corner to location.
      * 
@@ -422,12 +437,17 @@ public abstract class Spatial
             }
         }
 
+        /** {@inheritDoc} */
+        public boolean sameBin(Location from, Location to) {
+            return to.inside(bl, tr);
+        }
+
         /** {@inheritDoc} */
         public int visitTransmit(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, Message msg,
-                Long durationObj, double limit) {
+                long duration, double limit) {
             int visited = 0;
             for (Field.RadioData dst = radioList; dst != null && visited < size; dst = dst.next, visited++) {
-                visitor.visitTransmit(srcInfo, srcLoc, dst.info, dst.entity, dst.loc, msg, durationObj);
+                visitor.visitTransmit(srcInfo, srcLoc, dst.info, dst.entity, dst.loc, msg, duration);
             }
             return visited;
         }
@@ -601,9 +621,15 @@ public abstract class Spatial
             }
         }
 
+        /** {@inheritDoc} */
+        public boolean sameBin(Location from, Location to) {
+            LinearList bin = getBin(from);
+            return bin == getBin(to) && bin.sameBin(from, to);
+        }
+
         /** {@inheritDoc} */
         public int visitTransmit(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, Message msg,
-                Long durationObj, double limit) {
+                long duration, double limit) {
             int visited = 0;
             int si = getBinI(srcLoc), sj = getBinJ(srcLoc), r;
             boolean inRange = true;
@@ -611,7 +637,7 @@ public abstract class Spatial
                 inRange = false;
                 // top
                 for (int di = si - r, dj = sj - r; di <= si + r; di++) {
-                    int i = visitBin(visitor, srcInfo, srcLoc, msg, durationObj, limit, di, dj);
+                    int i = visitBin(visitor, srcInfo, srcLoc, msg, duration, limit, di, dj);
                     if (i != -1) {
                         inRange = true;
                         visited += i;
@@ -619,7 +645,7 @@ public abstract class Spatial
                 }
                 // right (-1)
                 for (int di = si + r, dj = sj - r + 1; dj <= sj + r; dj++) {
-                    int i = visitBin(visitor, srcInfo, srcLoc, msg, durationObj, limit, di, dj);
+                    int i = visitBin(visitor, srcInfo, srcLoc, msg, duration, limit, di, dj);
                     if (i != -1) {
                         inRange = true;
                         visited += i;
@@ -627,7 +653,7 @@ public abstract class Spatial
                 }
                 // bottom (-1)
                 for (int di = si + r - 1, dj = sj + r; di >= si - r; di--) {
-                    int i = visitBin(visitor, srcInfo, srcLoc, msg, durationObj, limit, di, dj);
+                    int i = visitBin(visitor, srcInfo, srcLoc, msg, duration, limit, di, dj);
                     if (i != -1) {
                         inRange = true;
                         visited += i;
@@ -635,7 +661,7 @@ public abstract class Spatial
                 }
                 // left (-2)
                 for (int di = si - r, dj = sj + r - 1; dj >= sj - r + 1; dj--) {
-                    int i = visitBin(visitor, srcInfo, srcLoc, msg, durationObj, limit, di, dj);
+                    int i = visitBin(visitor, srcInfo, srcLoc, msg, duration, limit, di, dj);
                     if (i != -1) {
                         inRange = true;
                         visited += i;
@@ -656,7 +682,7 @@ public abstract class Spatial
          *            source location
          * @param msg
          *            message to transmit
-         * @param durationObj
+         * @param duration
          *            duration of message transmission
          * @param limit
          *            propagation limit
@@ -667,7 +693,7 @@ public abstract class Spatial
          * @return number of radios visited
          */
         private int visitBin(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, Message msg,
-                Long durationObj, double limit, int di, int dj) {
+                long duration, double limit, int di, int dj) {
             if (di < 0 || dj < 0 || di >= bins.length || dj >= bins[0].length)
                 return -1;
             LinearList bin = bins[di][dj];
@@ -676,7 +702,7 @@ public abstract class Spatial
                 return -1;
             int visited = 0;
             if (bin.size > 0) {
-                visited = bin.visitTransmit(visitor, srcInfo, srcLoc, msg, durationObj, limit);
+                visited = bin.visitTransmit(visitor, srcInfo, srcLoc, msg, duration, limit);
             }
             return visited;
         }
@@ -820,15 +846,21 @@ public abstract class Spatial
             }
         }
 
+        /** {@inheritDoc} */
+        public boolean sameBin(Location from, Location to) {
+            Spatial bin = getBin(from);
+            return bin == getBin(to) && bin.sameBin(from, to);
+        }
+
         /** {@inheritDoc} */
         public int visitTransmit(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, Message msg,
-                Long durationObj, double limit) {
+                long duration, double limit) {
             if (!srcLoc.inside(bl, tr) && visitor.computeSignal(srcInfo, srcLoc, getNearest(srcLoc)) < limit)
                 return 0;
             int total = 0;
             for (int i = 0; i < bins.length; i++) {
                 if (bins[i].size > 0) {
-                    total += bins[i].visitTransmit(visitor, srcInfo, srcLoc, msg, durationObj, limit);
+                    total += bins[i].visitTransmit(visitor, srcInfo, srcLoc, msg, duration, limit);
                 }
             }
             return total;
@@ -847,6 +879,422 @@ public abstract class Spatial
 
     } // class: HierGrid
 
+    // ////////////////////////////////////////////////
+    // morton-ordered grid implementation
+    //
+
+    /**
+     * Uniform grid binning that keeps radios and their coordinates in arrays,
+     * sorted by cell in Morton (Z-curve) order, so that the cells of each
+     * quadrant, at every level, are stored together. A transmission finds its
+     * reach once, collects the quadrants within reach as a few contiguous
+     * index ranges, and scans them, skipping radios beyond reach by their
+     * coordinates. As for the other
+     * grids, signal strength is assumed to decrease with distance. Radios
+     * moving along a leg (see Field#moveRadioLeg) are always visited, since
+     * their coordinates are only updated when they change cells.
+     */
+    public static class MortonGrid extends Spatial
+    {
+        /** bisection steps to find the reach of a transmission. */
+        private static final int  REACH_STEPS = 8;
+
+        /** log2 of number of cells per side. */
+        private final int         height;
+        /** number of cells per side. */
+        private final int         side;
+        /** cell dimensions. */
+        private final float       di, dj;
+        /**
+         * first index of each cell, by Morton code; followed by the first and
+         * last index of the radios being added or deleted.
+         */
+        private final int[]       start;
+        /** radios, sorted by cell. */
+        private Field.RadioData[] radios;
+        /** radio coordinates. */
+        private float[]           xs, ys;
+        /** scratch array of index ranges within reach. */
+        private int[]             ranges;
+
+        /**
+         * Create new Morton-ordered grid.
+         * 
+         * @param tr
+         *            top-right corner location
+         * @param height
+         *            log2 of number of cells per side
+         */
+        public MortonGrid(Location tr, int height) {
+            this(new Location.Location2D(0, 0), tr, height);
+        }
+
+        /**
+         * Create new Morton-ordered grid.
+         * 
+         * @param bl
+         *            bottom-left corner location
+         * @param tr
+         *            top-right corner location
+         * @param height
+         *            log2 of number of cells per side
+         */
+        public MortonGrid(Location bl, Location tr, int height) {
+            this(bl, new Location.Location2D(tr.getX(), bl.getY()), new Location.Location2D(bl.getX(), tr.getY()), tr,
+                    height);
+        }
+
+        /**
+         * Create new Morton-ordered grid.
+         * 
+         * @param bl
+         *            bottom-left corner location
+         * @param br
+         *            bottom-right corner location
+         * @param tl
+         *            top-left corner location
+         * @param tr
+         *            top-right corner location
+         * @param height
+         *            log2 of number of cells per side
+         */
+        public MortonGrid(Location bl, Location br, Location tl, Location tr, int height) {
+            super(bl, br, tl, tr);
+            if (Main.ASSERT)
+                Util.assertion(height >= 0 && height <= 15);
+            this.height = height;
+            side = 1 << height;
+            di = (tr.getX() - bl.getX()) / side;
+            dj = (tr.getY() - bl.getY()) / side;
+            start = new int[side * side + 2];
+            radios = new Field.RadioData[16];
+            xs = new float[16];
+            ys = new float[16];
+            ranges = new int[16];
+        }
+
+        /**
+         * Spread the bits of a cell coordinate to the even bit positions.
+         * 
+         * @param i
+         *            cell coordinate (16 bits)
+         * @return spread coordinate
+         */
+        private static int spread(int i) {
+            i = (i | (i << 8)) & 0x00ff00ff;
+            i = (i | (i << 4)) & 0x0f0f0f0f;
+            i = (i | (i << 2)) & 0x33333333;
+            return (i | (i << 1)) & 0x55555555;
+        }
+
+        /**
+         * Return cell column of x-coordinate, clamped to grid.
+         * 
+         * @param x
+         *            x-coordinate
+         * @return cell column
+         */
+        private int getCellI(float x) {
+            int i = (int) ((x - bl.getX()) / di);
+            return i < 0 ? 0 : (i >= side ? side - 1 : i);
+        }
+
+        /**
+         * Return cell row of y-coordinate, clamped to grid.
+         * 
+         * @param y
+         *            y-coordinate
+         * @return cell row
+         */
+        private int getCellJ(float y) {
+            int j = (int) ((y - bl.getY()) / dj);
+            return j < 0 ? 0 : (j >= side ? side - 1 : j);
+        }
+
+        /**
+         * Return Morton code of cell containing coordinates.
+         * 
+         * @param x
+         *            x-coordinate
+         * @param y
+         *            y-coordinate
+         * @return cell code
+         */
+        private int getCell(float x, float y) {
+            return spread(getCellI(x)) | (spread(getCellJ(y)) << 1);
+        }
+
+        /**
+         * Copy radio between indices.
+         * 
+         * @param from
+         *            source index
+         * @param to
+         *            destination index
+         * @return source index
+         */
+        private int copy(int from, int to) {
+            if (from == to) {
+                // empty cell; hole already in place
+                return from;
+            }
+            Field.RadioData rd = radios[from];
+            radios[to] = rd;
+            xs[to] = xs[from];
+            ys[to] = ys[from];
+            rd.slot = to;
+            return from;
+        }
+
+        /**
+         * Move radio at given index from one cell to another, shifting one
+         * radio of each cell in between.
+         * 
+         * @param index
+         *            radio index
+         * @param from
+         *            current cell
+         * @param to
+         *            new cell
+         */
+        private void relocate(int index, int from, int to) {
+            Field.RadioData rd = radios[index];
+            float x = xs[index], y = ys[index];
+            int hole = index;
+            for (; from < to; from++) {
+                hole = copy(--start[from + 1], hole);
+            }
+            for (; from > to; from--) {
+                hole = copy(start[from]++, hole);
+            }
+            radios[hole] = rd;
+            xs[hole] = x;
+            ys[hole] = y;
+            rd.slot = hole;
+        }
+
+        /** {@inheritDoc} */
+        public void add(Field.RadioData rd) {
+            if (Main.ASSERT)
+                Util.assertion(rd.loc.inside(bl, tr));
+            if (size == radios.length) {
+                Field.RadioData[] radios2 = new Field.RadioData[size * 2];
+                System.arraycopy(radios, 0, radios2, 0, size);
+                radios = radios2;
+                float[] xs2 = new float[size * 2];
+                System.arraycopy(xs, 0, xs2, 0, size);
+                xs = xs2;
+                float[] ys2 = new float[size * 2];
+                System.arraycopy(ys, 0, ys2, 0, size);
+                ys = ys2;
+            }
+            int added = side * side;
+            radios[size] = rd;
+            xs[size] = rd.loc.getX();
+            ys[size] = rd.loc.getY();
+            start[added + 1]++;
+            relocate(size, added, getCell(xs[size], ys[size]));
+            size++;
+        }
+
+        /**
+         * Return whether radio is in the grid. A radio moved off the grid is
+         * deleted, but may still be moved by its mobility model.
+         * 
+         * @param rd
+         *            radio information
+         * @return whether radio is in the grid
+         */
+        private boolean contains(Field.RadioData rd) {
+            return rd.slot < size && radios[rd.slot] == rd;
+        }
+
+        /** {@inheritDoc} */
+        public void del(Field.RadioData rd) {
+            if (!contains(rd))
+                return;
+            int index = rd.slot, deleted = side * side;
+            relocate(index, getCell(xs[index], ys[index]), deleted);
+            start[deleted + 1]--;
+            size--;
+            radios[size] = null;
+        }
+
+        /** {@inheritDoc} */
+        public Field.RadioData move(Field.RadioData rd, Location l2) {
+            if (!l2.inside(bl, tr)) {
+                del(rd);
+                return rd;
+            }
+            if (!contains(rd)) {
+                // off the grid, as in the other spatial structures
+                rd.loc = l2;
+                return null;
+            }
+            int index = rd.slot, from = getCell(xs[index], ys[index]);
+            rd.loc = l2;
+            xs[index] = l2.getX();
+            ys[index] = l2.getY();
+            int to = getCell(xs[index], ys[index]);
+            if (from != to) {
+                relocate(index, from, to);
+            }
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public boolean sameBin(Location from, Location to) {
+            return getCell(from.getX(), from.getY()) == getCell(to.getX(), to.getY()) && to.inside(bl, tr);
+        }
+
+        /** {@inheritDoc} */
+        public int visitTransmit(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, Message msg,
+                long duration, double limit) {
+            float sx = srcLoc.getX(), sy = srcLoc.getY();
+            float reach = getReach(visitor, srcInfo, srcLoc, limit);
+            float reach2 = reach * reach;
+            // pad quadrant bounds against rounding of cell coordinates
+            float pad = reach + (di + dj) / 1000;
+            int n = getRanges(sx, sy, pad * pad, height, 0, 0, 0, 0);
+            int visited = 0;
+            for (int r = 0; r < n; r += 2) {
+                for (int i = ranges[r], end = ranges[r + 1]; i < end; i++) {
+                    float dx = xs[i] - sx, dy = ys[i] - sy;
+                    Field.RadioData dst = radios[i];
+                    if (dx * dx + dy * dy <= reach2 || dst.leg != null) {
+                        visitor.visitTransmit(srcInfo, srcLoc, dst.info, dst.entity, dst.loc, msg, duration);
+                        visited++;
+                    }
+                }
+            }
+            return visited;
+        }
+
+        /**
+         * Return distance beyond which the signal of a transmission is below
+         * the propagation limit.
+         * 
+         * @param visitor
+         *            transmission visitor object
+         * @param srcInfo
+         *            transmission source radio
+         * @param srcLoc
+         *            transmission source location
+         * @param limit
+         *            propagation limit
+         * @return reach of transmission, or infinity if beyond grid
+         */
+        private float getReach(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, double limit) {
+            float fx = StrictMath.max(StrictMath.abs(srcLoc.getX() - bl.getX()), StrictMath.abs(srcLoc.getX()
+                    - tr.getX()));
+            float fy = StrictMath.max(StrictMath.abs(srcLoc.getY() - bl.getY()), StrictMath.abs(srcLoc.getY()
+                    - tr.getY()));
+            float far = (float) StrictMath.sqrt(fx * fx + fy * fy);
+            float lo = 0, hi = StrictMath.max(StrictMath.min(di, dj), 1);
+            while (getSignal(visitor, srcInfo, srcLoc, hi) >= limit) {
+                if (hi >= far)
+                    return Float.POSITIVE_INFINITY;
+                lo = hi;
+                hi *= 2;
+            }
+            for (int i = 0; i < REACH_STEPS; i++) {
+                float mid = (lo + hi) / 2;
+                if (getSignal(visitor, srcInfo, srcLoc, mid) >= limit) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+            return hi;
+        }
+
+        /**
+         * Return signal strength at given distance from transmission source.
+         * 
+         * @param visitor
+         *            transmission visitor object
+         * @param srcInfo
+         *            transmission source radio
+         * @param srcLoc
+         *            transmission source location
+         * @param dist
+         *            distance from source
+         * @return signal strength (units: dBm)
+         */
+        private double getSignal(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, float dist) {
+            return visitor.computeSignal(srcInfo, srcLoc, new Location.Location2D(srcLoc.getX() + dist, srcLoc
+                    .getY()));
+        }
+
+        /**
+         * Append the index ranges of the non-empty cells of a quadrant within
+         * reach of a location to the range scratch array, as pairs of first
+         * and end index. Quadrants are visited in Morton order, so adjacent
+         * ranges are merged.
+         * 
+         * @param sx
+         *            x-coordinate
+         * @param sy
+         *            y-coordinate
+         * @param reach2
+         *            square of maximum distance
+         * @param level
+         *            log2 of quadrant cells per side
+         * @param i
+         *            column of first quadrant cell
+         * @param j
+         *            row of first quadrant cell
+         * @param code
+         *            Morton code of first quadrant cell
+         * @param m
+         *            number of range entries so far
+         * @return number of range entries
+         */
+        private int getRanges(float sx, float sy, float reach2, int level, int i, int j, int code, int m) {
+            int first = start[code], end = start[code + (1 << (2 * level))];
+            if (first == end)
+                return m;
+            float x0 = bl.getX() + i * di, x1 = bl.getX() + (i + (1 << level)) * di;
+            float y0 = bl.getY() + j * dj, y1 = bl.getY() + (j + (1 << level)) * dj;
+            float dx = StrictMath.max(StrictMath.max(x0 - sx, sx - x1), 0);
+            float dy = StrictMath.max(StrictMath.max(y0 - sy, sy - y1), 0);
+            if (dx * dx + dy * dy > reach2)
+                return m;
+            dx = StrictMath.max(sx - x0, x1 - sx);
+            dy = StrictMath.max(sy - y0, y1 - sy);
+            if (level > 0 && dx * dx + dy * dy > reach2) {
+                // partially within reach: visit sub-quadrants in Morton order
+                level--;
+                int n = 1 << level, q = 1 << (2 * level);
+                m = getRanges(sx, sy, reach2, level, i, j, code, m);
+                m = getRanges(sx, sy, reach2, level, i + n, j, code + q, m);
+                m = getRanges(sx, sy, reach2, level, i, j + n, code + 2 * q, m);
+                return getRanges(sx, sy, reach2, level, i + n, j + n, code + 3 * q, m);
+            }
+            if (m > 0 && ranges[m - 1] == first) {
+                ranges[m - 1] = end;
+                return m;
+            }
+            if (m == ranges.length) {
+                int[] ranges2 = new int[m * 2];
+                System.arraycopy(ranges, 0, ranges2, 0, m);
+                ranges = ranges2;
+            }
+            ranges[m++] = first;
+            ranges[m++] = end;
+            return m;
+        }
+
+        /** {@inheritDoc} */
+        public int visit(SpatialVisitor visitor) {
+            for (int i = 0; i < size; i++) {
+                visitor.visit(radios[i]);
+            }
+            return size;
+        }
+
+    } // class: MortonGrid
+
     // ////////////////////////////////////////////////
     // tiled wraparound implementation
     //
@@ -884,11 +1332,11 @@ public abstract class Spatial
 
         /** {@inheritDoc} */
         public int visitTransmit(SpatialTransmitVisitor visitor, RadioInfo srcInfo, Location srcLoc, Message msg,
-                Long durationObj, double limit) {
+                long duration, double limit) {
             int count = 0;
             for (int i = 0; i < offsets.length; i++) {
                 Location l = srcLoc.add(offsets[i]);
-                count += tile.visitTransmit(visitor, srcInfo, l, msg, durationObj, limit);
+                count += tile.visitTransmit(visitor, srcInfo, l, msg, duration, limit);
             }
             return count;
         }
@@ -913,5 +1361,10 @@ public abstract class Spatial
             return tile.move(radioData, newLoc);
         }
 
+        /** {@inheritDoc} */
+        public boolean sameBin(Location from, Location to) {
+            return tile.sameBin(from, to);
+        }
+
     } // class: TiledWraparound
 }
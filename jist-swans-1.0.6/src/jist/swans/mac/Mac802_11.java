@@ -270,6 +270,9 @@ public class Mac802_11 implements MacInterface.Mac802_11
     /** timer identifier. */
     protected byte                         timerId;
 
+    /** pending timer event. */
+    protected JistAPI.Timer                timer;
+
     // backoff
 
     /** backoff time remaining. */
@@ -725,29 +728,25 @@ public class Mac802_11 implements MacInterface.Mac802_11
             Util.assertion(nextHop != null);
 
         // DEBUG: Christin added this for remote debugging and for logging
-        if (msg != null) {
-            if (msg.getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                Ip ipmsg = (Ip) msg;
-                String msgClass = ipmsg.getPayload().getClass().getName();
-                // if(msgClass.equals("ext.jist.swans.app.DiscoveryRequest")){
-                // stats.incrementAppDiscReqSend();
-                // }else
-                // if(msgClass.equals("ext.jist.swans.app.DiscoveryResponse")){
-                // stats.incrementAppDiscRspSend();
-                // }else
-                // if(msgClass.equals("ext.jist.swans.app.CompositionMessage")){
-                // stats.incrementAppCompMsgSend();
-                if (msgClass.equals("ext.jist.swans.app.WorkflowRequest")) {
+        if (stats != null && msg instanceof Ip) {
+            switch (((Ip) msg).getTrafficClass()) {
+                case Constants.TRAFFIC_CLASS_WF_REQ:
                     stats.incrementAppWfReqSend();
-                } else if (msgClass.equals("ext.jist.swans.app.ServiceAd")) {
+                    break;
+                case Constants.TRAFFIC_CLASS_SERVICE_AD:
                     stats.incrementAppServiceAdSend();
-                } else if (msgClass.equals("ext.jist.swans.app.Token")) {
+                    break;
+                case Constants.TRAFFIC_CLASS_TOKEN:
                     stats.incrementAppTokenSend();
-                } else if (msgClass.equals("jist.swans.route.RouteAodv$RouteRequestMessage")) {
+                    break;
+                case Constants.TRAFFIC_CLASS_AODV_RREQ:
                     stats.incrementAodvRreqSend();
-                } else if (msgClass.equals("jist.swans.route.RouteAodv$RouteReplyMessage")) {
+                    break;
+                case Constants.TRAFFIC_CLASS_AODV_RREP:
                     stats.incrementAodvRrspSend();
-                }
+                    break;
+                default:
+                    break;
             }
         }
 
@@ -1188,13 +1187,19 @@ public class Mac802_11 implements MacInterface.Mac802_11
         setMode(mode);
         JistAPI.sleep(delay);
         self.timeout(timerId);
+        timer = JistAPI.timer();
     }
 
     /**
-     * Cancel timer event, by incrementing the timer identifer.
+     * Cancel timer event, by incrementing the timer identifer and removing
+     * any pending timer event.
      */
     private void cancelTimer() {
         timerId++;
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
     }
 
     private void idle() {
@@ -1206,6 +1211,7 @@ public class Mac802_11 implements MacInterface.Mac802_11
     public void timeout(int timerId) {
         if (timerId != this.timerId)
             return;
+        timer = null;
         switch (mode) {
             case MAC_MODE_SIDLE:
                 idle();
@@ -12,6 +12,7 @@ package jist.swans.mac;
 
 import jist.swans.Constants;
 import jist.swans.misc.Message;
+import jist.swans.misc.Util;
 
 /**
  * Defines the various message used by the Mac entity.
@@ -409,7 +410,7 @@ public abstract class MacMessage implements Message
      * @since SWANS1.0
      */
 
-    public static class Data extends MacMessage
+    public static class Data extends MacMessage implements Message.Tagged
     {
         /**
          * Packet header size.
@@ -456,6 +457,11 @@ public abstract class MacMessage implements Message
          */
         private Message           body;
 
+        /**
+         * Traffic class of data payload.
+         */
+        private int               trafficClass;
+
         // ////////////////////////////////////////////////
         // initialization
         //
@@ -489,6 +495,7 @@ public abstract class MacMessage implements Message
             this.seq = seq;
             this.frag = frag;
             this.body = body;
+            this.trafficClass = Util.getTrafficClass(body);
         }
 
         /**
@@ -565,6 +572,11 @@ public abstract class MacMessage implements Message
             return body;
         }
 
+        /** {@inheritDoc} */
+        public int getTrafficClass() {
+            return trafficClass;
+        }
+
         // ////////////////////////////////////////////////
         // message interface
         //
@@ -40,5 +40,23 @@ public interface Message extends jist.runtime.JistAPI.Timeless
      */
     void getBytes(byte[] msg, int offset);
 
+    /**
+     * Packet tagged with a traffic class, which lets statistics hooks
+     * classify it with a single field read. Applications set the class of
+     * their messages, and the network and link layer packets take on the
+     * class of the message they carry.
+     * 
+     * @since SWANS1.0
+     */
+    interface Tagged extends Message
+    {
+        /**
+         * Return packet traffic class.
+         * 
+         * @return packet traffic class, such as Constants.TRAFFIC_CLASS_NONE
+         */
+        int getTrafficClass();
+    }
+
 } // interface Message
 
@@ -305,6 +305,17 @@ public final class Util
         return (flags & mask) != 0;
     }
 
+    /**
+     * Return traffic class of a packet.
+     * 
+     * @param msg
+     *            packet, possibly null
+     * @return traffic class of tagged packet, or Constants.TRAFFIC_CLASS_NONE
+     */
+    public static int getTrafficClass(Message msg) {
+        return msg instanceof Message.Tagged ? ((Message.Tagged) msg).getTrafficClass() : Constants.TRAFFIC_CLASS_NONE;
+    }
+
     /**
      * Set status of a single bit within a byte of flags.
      * 
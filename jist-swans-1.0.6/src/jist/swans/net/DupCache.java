@@ -0,0 +1,280 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.net;
+
+/**
+ * Bounded cache of recently seen packets for duplicate suppression, keyed by
+ * packet source and identification packed into a long. Entries expire after a
+ * fixed lifetime; when the cache is full, the entry written least recently is
+ * replaced. Keys and times are kept in primitive arrays, with an open addressing
+ * hash index and a doubly linked list of slots in order of writing.
+ *
+ * @see NetIpBase#isDup(NetMessage.Ip)
+ */
+public class DupCache
+{
+
+    /** no slot. */
+    private static final int NONE = -1;
+
+    /** maximum number of entries. */
+    private final int        capacity;
+    /** time after which an entry is stale. */
+    private final long       lifetime;
+
+    /** entry keys, per slot. */
+    private final long[]     keys;
+    /** entry write times, per slot. */
+    private final long[]     times;
+    /** previous and next slot in order of writing. */
+    private final int[]      older, newer;
+    /** hash index: slot + 1, or 0 if empty. */
+    private final int[]      index;
+    /** number of entries. */
+    private int              size;
+    /** slots written least and most recently. */
+    private int              oldest  = NONE, newest = NONE;
+
+    /**
+     * Create empty duplicate cache.
+     *
+     * @param capacity
+     *            maximum number of entries
+     * @param lifetime
+     *            time after which an entry is stale
+     */
+    public DupCache(int capacity, long lifetime) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.lifetime = lifetime;
+        keys = new long[capacity];
+        times = new long[capacity];
+        older = new int[capacity];
+        newer = new int[capacity];
+        int n = 2;
+        while (n < capacity * 2) {
+            n <<= 1;
+        }
+        index = new int[n];
+    }
+
+    /**
+     * Return cache key of a packet.
+     *
+     * @param msg
+     *            ip packet
+     * @return key of packet source and identification
+     */
+    public static long key(NetMessage.Ip msg) {
+        return ((long) msg.getSrc().getIP().hashCode() << 16) | (msg.getId() & 0xffff);
+    }
+
+    /**
+     * Return number of entries, including stale entries not yet removed.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    // ////////////////////////////////////////////////
+    // cache operations
+    //
+
+    /**
+     * Record a packet and return whether it was seen before within the
+     * lifetime.
+     *
+     * @param key
+     *            packet key
+     * @param time
+     *            current time
+     * @return whether packet is a duplicate
+     */
+    public boolean isDup(long key, long time) {
+        int slot = find(key);
+        if (slot == NONE) {
+            insert(key, time);
+            return false;
+        }
+        long last = times[slot];
+        touch(slot, time);
+        return last + lifetime >= time;
+    }
+
+    /**
+     * Record a packet.
+     *
+     * @param key
+     *            packet key
+     * @param time
+     *            current time
+     */
+    public void add(long key, long time) {
+        int slot = find(key);
+        if (slot == NONE) {
+            insert(key, time);
+        } else {
+            touch(slot, time);
+        }
+    }
+
+    /**
+     * Return index position for a key.
+     *
+     * @param key
+     *            packet key
+     * @return initial probe position
+     */
+    private int hash(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (index.length - 1);
+    }
+
+    /**
+     * Find slot of a key.
+     *
+     * @param key
+     *            packet key
+     * @return slot, or NONE if key not cached
+     */
+    private int find(long key) {
+        int mask = index.length - 1;
+        for (int i = hash(key);; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if (slot == NONE || keys[slot] == key)
+                return slot;
+        }
+    }
+
+    /**
+     * Insert new key, first dropping stale entries and, if still full, the
+     * entry written least recently.
+     *
+     * @param key
+     *            packet key
+     * @param time
+     *            current time
+     */
+    private void insert(long key, long time) {
+        while (oldest != NONE && times[oldest] + lifetime < time) {
+            remove(oldest);
+        }
+        if (size == capacity) {
+            remove(oldest);
+        }
+        int slot = size++;
+        keys[slot] = key;
+        times[slot] = time;
+        link(slot);
+        int mask = index.length - 1;
+        int i = hash(key);
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    /**
+     * Update write time of a slot and make it the most recent.
+     *
+     * @param slot
+     *            cached slot
+     * @param time
+     *            current time
+     */
+    private void touch(int slot, long time) {
+        times[slot] = time;
+        if (slot != newest) {
+            unlink(slot);
+            link(slot);
+        }
+    }
+
+    /**
+     * Remove a slot, moving the last slot into its place to keep slots dense.
+     *
+     * @param slot
+     *            cached slot
+     */
+    private void remove(int slot) {
+        unlink(slot);
+        // remove from index, shifting back following entries of the cluster
+        int mask = index.length - 1;
+        int i = hash(keys[slot]);
+        while (index[i] - 1 != slot) {
+            i = (i + 1) & mask;
+        }
+        for (int j = (i + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+            int h = hash(keys[index[j] - 1]);
+            if (((j - h) & mask) >= ((j - i) & mask)) {
+                index[i] = index[j];
+                i = j;
+            }
+        }
+        index[i] = 0;
+        // fill gap with last slot
+        int last = --size;
+        if (slot != last) {
+            keys[slot] = keys[last];
+            times[slot] = times[last];
+            older[slot] = older[last];
+            newer[slot] = newer[last];
+            if (older[slot] != NONE)
+                newer[older[slot]] = slot;
+            else
+                oldest = slot;
+            if (newer[slot] != NONE)
+                older[newer[slot]] = slot;
+            else
+                newest = slot;
+            i = hash(keys[slot]);
+            while (index[i] - 1 != last) {
+                i = (i + 1) & mask;
+            }
+            index[i] = slot + 1;
+        }
+    }
+
+    /**
+     * Append slot as most recent.
+     *
+     * @param slot
+     *            cached slot
+     */
+    private void link(int slot) {
+        older[slot] = newest;
+        newer[slot] = NONE;
+        if (newest != NONE)
+            newer[newest] = slot;
+        else
+            oldest = slot;
+        newest = slot;
+    }
+
+    /**
+     * Take slot out of order of writing.
+     *
+     * @param slot
+     *            cached slot
+     */
+    private void unlink(int slot) {
+        if (older[slot] != NONE)
+            newer[older[slot]] = newer[slot];
+        else
+            oldest = newer[slot];
+        if (newer[slot] != NONE)
+            older[newer[slot]] = older[slot];
+        else
+            newest = older[slot];
+    }
+
+} // class: DupCache
@@ -99,6 +99,9 @@ public abstract class NetIpBase
     /** packet loss models. */
     protected PacketLoss     incomingLoss, outgoingLoss;
 
+    /** recently received broadcasts, or null if not suppressing duplicates. */
+    protected DupCache       dupCache;
+
     // ////////////////////////////////////////////////
     // initialization
     //
@@ -189,8 +192,35 @@ public abstract class NetIpBase
         return NetAddress.ANY.equals(addr) || NetAddress.LOCAL.equals(addr) || localAddr.equals(addr);
     }
 
+    /**
+     * Whether received broadcast packet was received before, in which case it
+     * is dropped before being delivered or forwarded. Records the packet in
+     * the duplicate cache, if any.
+     * 
+     * @param msg
+     *            packet to inspect
+     * @return whether packet is a duplicate
+     */
     protected boolean isDup(NetMessage.Ip msg) {
-        return false;
+        // loopback delivery does not produce duplicates
+        if (dupCache == null || NetAddress.LOCAL.equals(msg.getDst()))
+            return false;
+        boolean dup = dupCache.isDup(DupCache.key(msg), JistAPI.getTime());
+        if (dup && log.isDebugEnabled()) {
+            log.debug("DUP found, here=" + localAddr + " msg=" + msg.getSrc() + "/" + msg.getId());
+        }
+        return dup;
+    }
+
+    /**
+     * Set duplicate suppression of received broadcast packets.
+     * 
+     * @param dupCache
+     *            cache of recently received packets, or null to deliver all
+     *            duplicates
+     */
+    public void setDupCache(DupCache dupCache) {
+        this.dupCache = dupCache;
     }
 
     // ////////////////////////////////////////////////
@@ -315,11 +345,12 @@ public abstract class NetIpBase
                     ipmsg.getDst(), ipmsg.getPriority(), ipmsg.getTTL());
         } else {
             if (ipmsg.getTTL() > 0) {
-                if (ipmsg.isFrozen())
-                    ipmsg = ipmsg.copy();
-                else
+                if (ipmsg.isFrozen()) {
+                    ipmsg = ipmsg.forward();
+                } else {
                     log.info("NOT FRIZZLED!");
-                ipmsg.decTTL();
+                    ipmsg.decTTL();
+                }
                 sendIp(ipmsg, bcast);
             } else {
 
@@ -13,12 +13,16 @@
 
 package jist.swans.net;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import jist.swans.Constants;
 import jist.swans.misc.Location;
@@ -64,7 +68,7 @@ public abstract class NetMessage implements Message, Cloneable
     /**
      * IPv4 network packet.
      */
-    public static class Ip extends NetMessage
+    public static class Ip extends NetMessage implements Message.Tagged
     {
 
         /** Fixed IP packet size. */
@@ -92,17 +96,25 @@ public abstract class NetMessage implements Message, Cloneable
         private short           id;
         /** ip packet fragment offset. */
         private short           fragOffset;
+        /** traffic class of payload. */
+        private int             trafficClass;
 
-        // options
-        // private IpOption[] option;
-        // private ArrayList options; // List alone doesnt provide the Cloneable
-        // Interface
-        private HashMap         options;       // Map alone doesnt provide the
-                                                // Cloneable
-                                                // Interface
+        /**
+         * ip packet options, as alternating option key and option. The array is
+         * never modified, but replaced on every change, so copies of a packet
+         * share it until one of them sets or removes an option.
+         */
+        private Object[]        options;
+
+        /** No options. */
+        private static final Object[] NO_OPTIONS = new Object[0];
 
-        /** Next identification number to use. */
-        private static short    nextId    = 0;
+        /**
+         * Next identification number to use, per source address, so that
+         * source and identification of a packet stay unique irrespective of the
+         * traffic of other nodes.
+         */
+        private static final HashMap  nextIds    = new HashMap();
 
         /**
          * Create new IPv4 packet.
@@ -137,8 +149,8 @@ public abstract class NetMessage implements Message, Cloneable
             this.ttl = ttl;
             this.id = id;
             this.fragOffset = fragOffset;
-            // options = new ArrayList();
-            options = new HashMap();
+            this.trafficClass = Util.getTrafficClass(payload);
+            this.options = NO_OPTIONS;
         }
 
         /**
@@ -158,7 +170,43 @@ public abstract class NetMessage implements Message, Cloneable
          *            packet time-to-live
          */
         public Ip(Message payload, NetAddress src, NetAddress dst, short protocol, byte priority, byte ttl) {
-            this(payload, src, dst, protocol, priority, ttl, nextId++, (short) 0);
+            this(payload, src, dst, protocol, priority, ttl, nextId(src), (short) 0);
+        }
+
+        /**
+         * Create mutable copy of IPv4 packet, sharing payload and options.
+         * 
+         * @param ip
+         *            packet to copy
+         */
+        private Ip(Ip ip) {
+            this.frozen = false;
+            this.payload = ip.payload;
+            this.src = ip.src;
+            this.dst = ip.dst;
+            this.protocol = ip.protocol;
+            this.priority = ip.priority;
+            this.ttl = ip.ttl;
+            this.id = ip.id;
+            this.fragOffset = ip.fragOffset;
+            this.trafficClass = ip.trafficClass;
+            this.options = ip.options;
+        }
+
+        /**
+         * Return next identification number of a source.
+         * 
+         * @param src
+         *            packet source address
+         * @return packet identification
+         */
+        private static short nextId(NetAddress src) {
+            short[] next = (short[]) nextIds.get(src);
+            if (next == null) {
+                next = new short[1];
+                nextIds.put(src, next);
+            }
+            return next[0]++;
         }
 
         /**
@@ -187,9 +235,18 @@ public abstract class NetMessage implements Message, Cloneable
          * @return mutable copy of packet.
          */
         public Ip copy() {
-            NetMessage.Ip ip2 = new Ip(payload, src, dst, protocol, priority, ttl, id, fragOffset);
-            ip2.options = (HashMap) this.options.clone();
-            // ip2.options = (ArrayList)this.options.clone();
+            return new Ip(this);
+        }
+
+        /**
+         * Make a copy of packet for the next hop: only the header is
+         * allocated, payload and options are shared until modified.
+         * 
+         * @return mutable copy of packet with decremented TTL
+         */
+        public Ip forward() {
+            Ip ip2 = new Ip(this);
+            ip2.ttl--;
             return ip2;
         }
 
@@ -260,6 +317,11 @@ public abstract class NetMessage implements Message, Cloneable
             return fragOffset;
         }
 
+        /** {@inheritDoc} */
+        public int getTrafficClass() {
+            return trafficClass;
+        }
+
         // ////////////////////////////////////////////////
         // TTL
         //
@@ -287,22 +349,236 @@ public abstract class NetMessage implements Message, Cloneable
         //
 
         /**
-         * Return the optional (thus can be null) IpOption object. Note that
-         * IpOption objects must be immutable to avoid conflicts with the
-         * possibly frozen state of the packet
+         * Return the options of the packet as map view, keyed by option type.
+         * Note that IpOption objects must be immutable to avoid conflicts with
+         * the possibly frozen state of the packet
          * 
-         * @return IpOption (can be null)
+         * @return map of options, unmodifiable if packet is frozen
          */
         public Map getOptions() {
-            // return isFrozen() ? Collections.unmodifiableList(options) :
-            // options;
-            return isFrozen() ? Collections.unmodifiableMap(options) : options;
+            return isFrozen() ? Collections.unmodifiableMap(new OptionMap()) : new OptionMap();
         }
 
+        /**
+         * Return a packet option.
+         * 
+         * @param type
+         *            option type key
+         * @return option, or null if not set
+         */
+        public Object getOption(Object type) {
+            int i = indexOfOption(type);
+            return i < 0 ? null : options[i + 1];
+        }
+
+        /**
+         * Set a packet option, replacing an option of the same type.
+         * 
+         * @param type
+         *            option type key
+         * @param option
+         *            immutable option
+         * @return previous option of this type, or null
+         */
+        public Object setOption(Object type, Object option) {
+            if (frozen)
+                throw new IllegalStateException();
+            int i = indexOfOption(type);
+            Object[] options2;
+            if (i < 0) {
+                options2 = new Object[options.length + 2];
+                System.arraycopy(options, 0, options2, 0, options.length);
+                i = options.length;
+                options2[i] = type;
+            } else {
+                options2 = (Object[]) options.clone();
+            }
+            Object old = options2[i + 1];
+            options2[i + 1] = option;
+            options = options2;
+            return old;
+        }
+
+        /**
+         * Remove a packet option.
+         * 
+         * @param type
+         *            option type key
+         * @return removed option, or null if not set
+         */
+        public Object removeOption(Object type) {
+            if (frozen)
+                throw new IllegalStateException();
+            int i = indexOfOption(type);
+            if (i < 0)
+                return null;
+            Object old = options[i + 1];
+            if (options.length == 2) {
+                options = NO_OPTIONS;
+            } else {
+                Object[] options2 = new Object[options.length - 2];
+                System.arraycopy(options, 0, options2, 0, i);
+                System.arraycopy(options, i + 2, options2, i, options.length - i - 2);
+                options = options2;
+            }
+            return old;
+        }
+
+        /**
+         * Return position of option key within options array.
+         * 
+         * @param type
+         *            option type key
+         * @return index of key, or -1 if not set
+         */
+        private int indexOfOption(Object type) {
+            for (int i = 0; i < options.length; i += 2) {
+                if (options[i].equals(type))
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Map view of the packet options.
+         */
+        private class OptionMap extends AbstractMap
+        {
+            /**
+             * Immutable option map entry.
+             */
+            private final class OptionEntry implements Map.Entry
+            {
+                /** option type. */
+                private final Object key;
+                /** option. */
+                private final Object value;
+
+                /**
+                 * Create option map entry.
+                 * 
+                 * @param key
+                 *            option type
+                 * @param value
+                 *            option
+                 */
+                OptionEntry(Object key, Object value) {
+                    this.key = key;
+                    this.value = value;
+                }
+
+                /** {@inheritDoc} */
+                public Object getKey() {
+                    return key;
+                }
+
+                /** {@inheritDoc} */
+                public Object getValue() {
+                    return value;
+                }
+
+                /** {@inheritDoc} */
+                public Object setValue(Object value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                /** {@inheritDoc} */
+                public boolean equals(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry e = (Map.Entry) o;
+                    return (key == null ? e.getKey() == null : key.equals(e.getKey()))
+                            && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+                }
+
+                /** {@inheritDoc} */
+                public int hashCode() {
+                    return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+                }
+
+                /** {@inheritDoc} */
+                public String toString() {
+                    return key + "=" + value;
+                }
+            } // class: OptionEntry
+
+            /** {@inheritDoc} */
+            public int size() {
+                return options.length / 2;
+            }
+
+            /** {@inheritDoc} */
+            public boolean containsKey(Object key) {
+                return indexOfOption(key) >= 0;
+            }
+
+            /** {@inheritDoc} */
+            public Object get(Object key) {
+                return getOption(key);
+            }
+
+            /** {@inheritDoc} */
+            public Object put(Object key, Object value) {
+                return setOption(key, value);
+            }
+
+            /** {@inheritDoc} */
+            public Object remove(Object key) {
+                return removeOption(key);
+            }
+
+            /** {@inheritDoc} */
+            public void clear() {
+                if (frozen)
+                    throw new IllegalStateException();
+                options = NO_OPTIONS;
+            }
+
+            /** {@inheritDoc} */
+            public Set entrySet() {
+                return new AbstractSet() {
+                    public int size() {
+                        return options.length / 2;
+                    }
+
+                    public Iterator iterator() {
+                        return new Iterator() {
+                            /** options being iterated. */
+                            private Object[] current = options;
+                            /** index of next key. */
+                            private int      next    = 0;
+                            /** key of last returned entry. */
+                            private Object   last;
+
+                            public boolean hasNext() {
+                                return next < current.length;
+                            }
+
+                            public Object next() {
+                                if (next >= current.length)
+                                    throw new NoSuchElementException();
+                                last = current[next];
+                                Object value = current[next + 1];
+                                next += 2;
+                                return new OptionEntry(last, value);
+                            }
+
+                            public void remove() {
+                                if (last == null)
+                                    throw new IllegalStateException();
+                                removeOption(last);
+                                last = null;
+                            }
+                        };
+                    }
+                };
+            }
+        } // class: OptionMap
+
         /** {@inheritDoc} */
         public String toString() {
             return "ip(src=" + src + " dst=" + dst + " size=" + getSize() + " prot=" + protocol + " ttl=" + ttl
-                    + " id=" + id + " option=" + options + " data=" + payload + ")";
+                    + " id=" + id + " option=" + new OptionMap() + " data=" + payload + ")";
         }
 
         // ////////////////////////////////////////////////
@@ -315,9 +591,8 @@ public abstract class NetMessage implements Message, Cloneable
             if (size == Constants.ZERO_WIRE_SIZE) {
                 return Constants.ZERO_WIRE_SIZE;
             }
-            Iterator it = options.values().iterator();
-            while (it.hasNext()) {
-                size += ((IpOption) it.next()).getSize();
+            for (int i = 1; i < options.length; i += 2) {
+                size += ((IpOption) options[i]).getSize();
             }
             return BASE_SIZE + size + dst.getSize();
         }
@@ -59,22 +59,22 @@ public interface RadioInterface extends JistAPI.Proxiable
      * 
      * @param msg
      *            incoming message
-     * @param power
+     * @param power_mW
      *            signal strength of incoming message (units: mW)
      * @param duration
      *            time until end of transmission (units: simtime)
      */
-    void receive(Message msg, Double power, Long duration);
+    void receive(Message msg, double power_mW, long duration);
 
     /**
      * End message reception. Puts the radio back into sensing or idle mode, and
      * sends the received message to upper layers for processing, if no error
      * has occurred during the reception. Called from field entity.
      * 
-     * @param power
+     * @param power_mW
      *            signal strength of incoming message (units: mW)
      */
-    void endReceive(Double power);
+    void endReceive(double power_mW);
 
     // ////////////////////////////////////////////////
     // sleep (application)
@@ -10,6 +10,9 @@
 
 package jist.swans.radio;
 
+import java.lang.reflect.Method;
+
+import jist.runtime.Event;
 import jist.runtime.JistAPI;
 import jist.swans.Constants;
 import jist.swans.field.FieldInterface;
@@ -67,6 +70,11 @@ public abstract class RadioNoise implements RadioInterface
      */
     protected int            signals;
 
+    /**
+     * signal event being processed, to be reused for the end of reception.
+     */
+    private Signal           signal;
+
     // entity hookup
 
     /**
@@ -208,6 +216,27 @@ public abstract class RadioNoise implements RadioInterface
         signalFinish = -1;
     }
 
+    /**
+     * Schedule the end of reception of an incoming signal. Reuses the signal
+     * event that delivered the signal, if any, rather than invoking the proxy,
+     * which would allocate an argument array and wrap the power.
+     * 
+     * @param power_mW
+     *            signal power (units: mW)
+     * @param duration
+     *            time to EOT (units: simtime)
+     */
+    protected void endReceiveAfter(double power_mW, long duration) {
+        JistAPI.sleep(duration);
+        if (signal != null) {
+            signal.end();
+            JistAPI.schedule(signal, self);
+            signal = null;
+        } else {
+            self.endReceive(power_mW);
+        }
+    }
+
     // ////////////////////////////////////////////////
     // transmission
     //
@@ -249,5 +278,85 @@ public abstract class RadioNoise implements RadioInterface
         setMode(signals > 0 ? Constants.RADIO_MODE_RECEIVING : Constants.RADIO_MODE_IDLE);
     }
 
+    // ////////////////////////////////////////////////
+    // signal event
+    //
+
+    /**
+     * Delivers an incoming signal to a radio, and later the end of its
+     * reception, without wrapping the signal power and duration. Created by
+     * the field, once per receiving radio.
+     */
+    public static final class Signal extends Event.Direct
+    {
+        /** receive method stub. */
+        private static final Method RECEIVE;
+
+        /** endReceive method stub. */
+        private static final Method END_RECEIVE;
+
+        static {
+            try {
+                RECEIVE = RadioInterface.class.getDeclaredMethod("receive", new Class[] { Message.class,
+                        Double.TYPE, Long.TYPE });
+                END_RECEIVE = RadioInterface.class.getDeclaredMethod("endReceive", new Class[] { Double.TYPE });
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /** incoming message. */
+        private final Message msg;
+
+        /** signal power (units: mW). */
+        private final double  power_mW;
+
+        /** time to EOT (units: simtime). */
+        private final long    duration;
+
+        /**
+         * Create new signal event.
+         * 
+         * @param msg
+         *            incoming message
+         * @param power_mW
+         *            signal power (units: mW)
+         * @param duration
+         *            time to EOT (units: simtime)
+         */
+        public Signal(Message msg, double power_mW, long duration) {
+            super(RECEIVE);
+            this.msg = msg;
+            this.power_mW = power_mW;
+            this.duration = duration;
+        }
+
+        /**
+         * Turn event into the end of reception.
+         */
+        private void end() {
+            method = END_RECEIVE;
+        }
+
+        /** {@inheritDoc} */
+        public void invoke(Object entity) {
+            RadioInterface radio = (RadioInterface) entity;
+            if (method == END_RECEIVE) {
+                radio.endReceive(power_mW);
+            } else if (entity instanceof RadioNoise) {
+                RadioNoise noise = (RadioNoise) entity;
+                noise.signal = this;
+                try {
+                    radio.receive(msg, power_mW, duration);
+                } finally {
+                    noise.signal = null;
+                }
+            } else {
+                radio.receive(msg, power_mW, duration);
+            }
+        }
+
+    } // class: Signal
+
 } // class: RadioNoise
 
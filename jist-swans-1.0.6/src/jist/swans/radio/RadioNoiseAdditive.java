@@ -19,7 +19,6 @@ import jist.swans.Main;
 import jist.swans.mac.MacMessage.Data;
 import jist.swans.misc.Message;
 import jist.swans.misc.Util;
-import jist.swans.net.NetMessage.Ip;
 import ext.util.stats.DucksRadioNoiseAdditiveStats;
 
 /**
@@ -158,27 +157,30 @@ public class RadioNoiseAdditive extends RadioNoise
         this.stats = stats;
     }
 
+    /**
+     * Return whether given packet is a service discovery request to be
+     * counted. Always false if no stats collector is set.
+     * 
+     * @param msg
+     *            packet, possibly null
+     * @return whether packet is a service discovery request to be counted
+     */
+    private boolean isDiscReq(Message msg) {
+        return stats != null && msg instanceof Data
+                && ((Data) msg).getTrafficClass() == Constants.TRAFFIC_CLASS_DISC_REQ;
+    }
+
     // ////////////////////////////////////////////////
     // reception
     //
 
     // RadioInterface interface
     /** {@inheritDoc} */
-    public void receive(final Message msg, final Double powerObj_mW, final Long durationObj) {
-        final double power_mW = powerObj_mW.doubleValue();
-        final long duration = durationObj.longValue();
+    public void receive(final Message msg, final double power_mW, final long duration) {
 
         // DEBUG: Christin added this for remote debugging and for logging
-        if (msg != null) {
-            if (msg.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                Data datamsg = (Data) msg;
-                if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                    Ip ipmsg = (Ip) datamsg.getBody();
-                    if (ipmsg.getPayload().getClass().getName().equals("ext.jist.swans.app.DiscoveryRequest")) {
-                        stats.incAppDiscReqSensed();
-                    }
-                }
-            }
+        if (isDiscReq(msg)) {
+            stats.incAppDiscReqSensed();
         }
 
         switch (mode) {
@@ -197,17 +199,8 @@ public class RadioNoiseAdditive extends RadioNoise
                     setMode(Constants.RADIO_MODE_SENSING);
                     // DEBUG: Christin added this for remote debugging and
                     // logging
-                    if (msg != null) {
-                        if (msg.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                            Data datamsg = (Data) msg;
-                            if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                                Ip ipmsg = (Ip) datamsg.getBody();
-                                if (ipmsg.getPayload().getClass().getName()
-                                        .equals("ext.jist.swans.app.DiscoveryRequest")) {
-                                    stats.incAppDiscReqLostWeak();
-                                }
-                            }
-                        }
+                    if (isDiscReq(msg)) {
+                        stats.incAppDiscReqLostWeak();
                     }
                 }
                 break;
@@ -218,17 +211,8 @@ public class RadioNoiseAdditive extends RadioNoise
                 } else {
                     // DEBUG: Christin added this for remote debugging and
                     // logging
-                    if (msg != null) {
-                        if (msg.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                            Data datamsg = (Data) msg;
-                            if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                                Ip ipmsg = (Ip) datamsg.getBody();
-                                if (ipmsg.getPayload().getClass().getName()
-                                        .equals("ext.jist.swans.app.DiscoveryRequest")) {
-                                    stats.incAppDiscReqLostWeak();
-                                }
-                            }
-                        }
+                    if (isDiscReq(msg)) {
+                        stats.incAppDiscReqLostWeak();
                     }
                 }
                 break;
@@ -237,17 +221,8 @@ public class RadioNoiseAdditive extends RadioNoise
                 if (power_mW > signalPower_mW && power_mW >= totalPower_mW * thresholdSNR) {
                     // DEBUG: Christin added this for remote debugging and
                     // logging
-                    if (signalBuffer != null) {
-                        if (signalBuffer.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                            Data datamsg = (Data) signalBuffer;
-                            if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                                Ip ipmsg = (Ip) datamsg.getBody();
-                                if (ipmsg.getPayload().getClass().getName()
-                                        .equals("ext.jist.swans.app.DiscoveryRequest")) {
-                                    stats.incAppDiscReqLostColl();
-                                }
-                            }
-                        }
+                    if (isDiscReq(signalBuffer)) {
+                        stats.incAppDiscReqLostColl();
                     }
 
                     // ... check if we should recognize the signal as a packet
@@ -271,31 +246,13 @@ public class RadioNoiseAdditive extends RadioNoise
                     if (type == SNR && signalPower_mW < (totalPower_mW - signalPower_mW + power_mW) * thresholdSNR) {
                         // DEBUG: Christin added this for remote debugging and
                         // logging
-                        if (signalBuffer != null) {
-                            if (signalBuffer.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                                Data datamsg = (Data) signalBuffer;
-                                if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                                    Ip ipmsg = (Ip) datamsg.getBody();
-                                    if (ipmsg.getPayload().getClass().getName()
-                                            .equals("ext.jist.swans.app.DiscoveryRequest")) {
-                                        stats.incAppDiscReqLostColl();
-                                    }
-                                }
-                            }
+                        if (isDiscReq(signalBuffer)) {
+                            stats.incAppDiscReqLostColl();
                         }
                         // DEBUG: Christin added this for remote debugging and
                         // logging
-                        if (msg != null) {
-                            if (msg.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                                Data datamsg = (Data) msg;
-                                if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                                    Ip ipmsg = (Ip) datamsg.getBody();
-                                    if (ipmsg.getPayload().getClass().getName()
-                                            .equals("ext.jist.swans.app.DiscoveryRequest")) {
-                                        stats.incAppDiscReqLostColl();
-                                    }
-                                }
-                            }
+                        if (isDiscReq(msg)) {
+                            stats.incAppDiscReqLostColl();
                         }
                         unlockSignal();
                         setMode(Constants.RADIO_MODE_SENSING);
@@ -304,30 +261,14 @@ public class RadioNoiseAdditive extends RadioNoise
                 break;
             case Constants.RADIO_MODE_TRANSMITTING:
                 // DEBUG: Christin added this for remote debugging and logging
-                if (msg != null) {
-                    if (msg.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                        Data datamsg = (Data) msg;
-                        if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                            Ip ipmsg = (Ip) datamsg.getBody();
-                            if (ipmsg.getPayload().getClass().getName().equals("ext.jist.swans.app.DiscoveryRequest")) {
-                                stats.incAppDiscReqLostTran();
-                            }
-                        }
-                    }
+                if (isDiscReq(msg)) {
+                    stats.incAppDiscReqLostTran();
                 }
                 break;
             case Constants.RADIO_MODE_SLEEP:
                 // DEBUG: Christin added this for remote debugging and logging
-                if (msg != null) {
-                    if (msg.getClass().getName().equals("jist.swans.mac.MacMessage$Data")) {
-                        Data datamsg = (Data) msg;
-                        if (datamsg.getBody().getClass().getName().equals("jist.swans.net.NetMessage$Ip")) {
-                            Ip ipmsg = (Ip) datamsg.getBody();
-                            if (ipmsg.getPayload().getClass().getName().equals("ext.jist.swans.app.DiscoveryRequest")) {
-                                stats.incAppDiscReqLostSlee();
-                            }
-                        }
-                    }
+                if (isDiscReq(msg)) {
+                    stats.incAppDiscReqLostSlee();
                 }
                 break;
             default:
@@ -337,14 +278,12 @@ public class RadioNoiseAdditive extends RadioNoise
         signals++;
         totalPower_mW += power_mW;
         // schedule an endReceive
-        JistAPI.sleep(duration);
-        self.endReceive(powerObj_mW);
+        endReceiveAfter(power_mW, duration);
     } // function: receive
 
     // RadioInterface interface
     /** {@inheritDoc} */
-    public void endReceive(Double powerObj_mW) {
-        final double power_mW = powerObj_mW.doubleValue();
+    public void endReceive(double power_mW) {
         // cumulative signal
         signals--;
         if (Main.ASSERT)
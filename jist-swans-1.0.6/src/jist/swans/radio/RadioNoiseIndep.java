@@ -88,9 +88,7 @@ public final class RadioNoiseIndep extends RadioNoise
 
     // RadioInterface interface
     /** {@inheritDoc} */
-    public void receive(Message msg, Double powerObj_mW, Long durationObj) {
-        final double power_mW = powerObj_mW.doubleValue();
-        final long duration = durationObj.longValue();
+    public void receive(Message msg, double power_mW, long duration) {
         // ignore if below sensitivity
         if (power_mW < radioInfo.shared.sensitivity_mW)
             return;
@@ -121,13 +119,12 @@ public final class RadioNoiseIndep extends RadioNoise
         // increment number of incoming signals
         signals++;
         // schedule an endReceive
-        JistAPI.sleep(duration);
-        self.endReceive(powerObj_mW);
+        endReceiveAfter(power_mW, duration);
     }
 
     // RadioInterface interface
     /** {@inheritDoc} */
-    public void endReceive(final Double powerObj_mW) {
+    public void endReceive(double power_mW) {
         if (mode == Constants.RADIO_MODE_SLEEP)
             return;
         if (Main.ASSERT)
@@ -9,6 +9,7 @@
 
 package jist.swans.route;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -97,7 +98,7 @@ public class RouteAodv implements RouteInterface.Aodv
     /**
      * Represents a Route Request (RREQ) message.
      */
-    private static class RouteRequestMessage implements Message
+    private static class RouteRequestMessage implements Message.Tagged
     {
         /** RREQ message size in bytes. */
         private static final int MESSAGE_SIZE = 24;
@@ -285,12 +286,17 @@ public class RouteAodv implements RouteInterface.Aodv
             throw new RuntimeException("RouteRequestMessage.getBytes() not implememented.");
         }
 
+        /** {@inheritDoc} */
+        public int getTrafficClass() {
+            return Constants.TRAFFIC_CLASS_AODV_RREQ;
+        }
+
     }
 
     /**
      * Represents a Route Reply (RREP) message.
      */
-    private static class RouteReplyMessage implements Message
+    private static class RouteReplyMessage implements Message.Tagged
     {
         /** RREP Message size in bytes. */
         private static final int MESSAGE_SIZE = 20;
@@ -386,6 +392,11 @@ public class RouteAodv implements RouteInterface.Aodv
         public void getBytes(byte[] msg, int offset) {
             throw new RuntimeException("RouteReplyMessage.getBytes() not implemented.");
         }
+
+        /** {@inheritDoc} */
+        public int getTrafficClass() {
+            return Constants.TRAFFIC_CLASS_AODV_RREP;
+        }
     }
 
     /**
@@ -731,13 +742,25 @@ public class RouteAodv implements RouteInterface.Aodv
      * Buffer for keeping track of recently sent RREQ messages (so they are not
      * resent). Also keeps track of recent RREQ messages that were answered with
      * a RREP.
+     * 
+     * Entries are hashed for lookup, and kept in a ring in order of insertion.
+     * Since all entries live equally long, this is also their order of expiry,
+     * so expired entries are always at the head of the ring.
      */
     private static class RreqBuffer
     {
-        /** List of RreqBufferEntry objects. */
-        private LinkedList list;
+        /** RreqBufferEntry objects, oldest first, starting at head. */
+        private RreqBufferEntry[] ring = new RreqBufferEntry[MAX_RREQ_BUFFER_SIZE];
+        /** Index of oldest entry. */
+        private int               head;
+        /** Number of entries. */
+        private int               size;
+        /** Newest entry for each RREQ id and origin. */
+        private HashMap           entries;
+        /** Reusable lookup key. */
+        private RreqBufferEntry   probe;
         /** Local net address. */
-        private NetAddress localAddr;
+        private NetAddress        localAddr;
 
         /**
          * Constructs a Route Request Buffer object.
@@ -746,7 +769,8 @@ public class RouteAodv implements RouteInterface.Aodv
          *            local net address
          */
         public RreqBuffer(NetAddress netAddr) {
-            list = new LinkedList();
+            entries = new HashMap();
+            probe = new RreqBufferEntry(0, null);
             localAddr = netAddr;
         }
 
@@ -761,37 +785,52 @@ public class RouteAodv implements RouteInterface.Aodv
         public void addEntry(RreqBufferEntry entry) {
             clearExpiredEntries(); // clear expired entries
 
-            // if list is full, remove oldest entry
-            if (list.size() == MAX_RREQ_BUFFER_SIZE) {
-                list.removeLast();
-            } else if (list.size() > MAX_RREQ_BUFFER_SIZE) {
-                throw new RuntimeException("RREQ Buffer is larger than allowed size!");
+            // if buffer is full, remove oldest entry
+            if (size == MAX_RREQ_BUFFER_SIZE) {
+                removeOldest();
             }
 
-            list.addFirst(entry);
+            ring[(head + size) % ring.length] = entry;
+            size++;
+            entries.put(entry, entry);
         }
 
         /**
-         * Checks if a given RouteBufferEntry exists in the RREQ Buffer.
+         * Checks if a given RREQ exists in the RREQ Buffer.
          * 
-         * @param entry
-         *            the RouteBufferEntry
+         * @param rreqId
+         *            RREQ id of RREQ message
+         * @param originIp
+         *            Net address of node that originated the RREQ message
          * @return True, if the RREQ buffer contains the specified entry
          */
-        public boolean contains(RreqBufferEntry entry) {
-            return list.contains(entry);
+        public boolean contains(int rreqId, NetAddress originIp) {
+            probe.rreqId = rreqId;
+            probe.originIp = originIp;
+            return entries.containsKey(probe);
         }
 
         /**
          * Remove all expired entries.
          */
         public void clearExpiredEntries() {
-            // Removes entries starting from end of list, since entries are in
-            // order
-            while (!list.isEmpty()
-                    && JistAPI.getTime() > ((RreqBufferEntry) list.getLast()).getTimeSent() + RREQ_BUFFER_EXPIRE_TIME) {
+            while (size > 0 && JistAPI.getTime() > ring[head].getTimeSent() + RREQ_BUFFER_EXPIRE_TIME) {
                 printlnDebug("Removing Entry from RreqBuffer", localAddr);
-                list.removeLast();
+                removeOldest();
+            }
+        }
+
+        /**
+         * Remove oldest entry.
+         */
+        private void removeOldest() {
+            RreqBufferEntry entry = ring[head];
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+            // a newer equal entry stays
+            if (entries.get(entry) == entry) {
+                entries.remove(entry);
             }
         }
 
@@ -854,18 +893,22 @@ public class RouteAodv implements RouteInterface.Aodv
          * @return hash code
          */
         public int hashCode() {
-            return this.rreqId;
+            return this.rreqId * 31 + this.originIp.hashCode();
         }
     }
 
     /**
      * A routing table contains a hash map, consisting of
-     * NetAddress->RouteTableEntry mappings.
+     * NetAddress->RouteTableEntry mappings, and an index of the entries by
+     * next hop, so that the routes through a broken link are found without
+     * scanning the table.
      */
     private static class RouteTable
     {
         /** The routing table. */
         private HashMap    table;
+        /** Entries per next hop: MacAddress to ArrayList of RouteTableEntry. */
+        private HashMap    viaHop;
         /** Address of local node. */
         private NetAddress localAddr;
 
@@ -877,6 +920,7 @@ public class RouteAodv implements RouteInterface.Aodv
          */
         public RouteTable(NetAddress netAddr) {
             table = new HashMap();
+            viaHop = new HashMap();
             localAddr = netAddr;
         }
 
@@ -891,7 +935,12 @@ public class RouteAodv implements RouteInterface.Aodv
          */
         public void add(NetAddress key, RouteTableEntry value) {
             // add entry to routing table
-            table.put(key, value);
+            RouteTableEntry old = (RouteTableEntry) table.put(key, value);
+            if (old != null) {
+                unindex(old);
+            }
+            value.dest = key;
+            index(value);
         }
 
         /**
@@ -902,9 +951,10 @@ public class RouteAodv implements RouteInterface.Aodv
          * @return true, if entry existed and not null; false, otherwise
          */
         private boolean remove(NetAddress key) {
-            Object obj = table.remove(key);
-            if (obj == null)
+            RouteTableEntry entry = (RouteTableEntry) table.remove(key);
+            if (entry == null)
                 return false;
+            unindex(entry);
             printlnDebug("Removing destination " + key + " from routing table", localAddr);
             return true;
         }
@@ -948,13 +998,12 @@ public class RouteAodv implements RouteInterface.Aodv
          */
         public void removeNextHop(MacAddress nextHop) {
             printlnDebug("Removing all route table entries through " + nextHop, localAddr);
-            Iterator itr = table.values().iterator();
-            while (itr.hasNext()) {
-                RouteTableEntry entry = (RouteTableEntry) itr.next();
-                if (entry.getNextHop().equals(nextHop)) {
-                    // remove entry from routing table
-                    itr.remove();
-                }
+            ArrayList entries = (ArrayList) viaHop.remove(nextHop);
+            if (entries == null)
+                return;
+            for (int i = 0; i < entries.size(); i++) {
+                // remove entry from routing table
+                table.remove(((RouteTableEntry) entries.get(i)).dest);
             }
         }
 
@@ -967,18 +1016,50 @@ public class RouteAodv implements RouteInterface.Aodv
          */
         public LinkedList destsViaHop(MacAddress hop) {
             LinkedList list = new LinkedList();
-            Iterator itr = table.entrySet().iterator();
-            while (itr.hasNext()) {
-                Map.Entry kvpair = (Map.Entry) itr.next();
-                RouteTableEntry rtentry = (RouteTableEntry) kvpair.getValue();
-                NetAddress dest = (NetAddress) kvpair.getKey();
-                if (rtentry.getNextHop().equals(hop)) {
-                    list.add(dest);
+            ArrayList entries = (ArrayList) viaHop.get(hop);
+            if (entries != null) {
+                for (int i = 0; i < entries.size(); i++) {
+                    list.add(((RouteTableEntry) entries.get(i)).dest);
                 }
             }
             return list;
         }
 
+        /**
+         * Add entry to next hop index.
+         * 
+         * @param entry
+         *            routing table entry
+         */
+        private void index(RouteTableEntry entry) {
+            ArrayList entries = (ArrayList) viaHop.get(entry.nextHop);
+            if (entries == null) {
+                entries = new ArrayList();
+                viaHop.put(entry.nextHop, entries);
+            }
+            entry.viaIndex = entries.size();
+            entries.add(entry);
+        }
+
+        /**
+         * Remove entry from next hop index.
+         * 
+         * @param entry
+         *            routing table entry
+         */
+        private void unindex(RouteTableEntry entry) {
+            ArrayList entries = (ArrayList) viaHop.get(entry.nextHop);
+            // fill gap with last entry
+            RouteTableEntry last = (RouteTableEntry) entries.remove(entries.size() - 1);
+            if (last != entry) {
+                entries.set(entry.viaIndex, last);
+                last.viaIndex = entry.viaIndex;
+            }
+            if (entries.isEmpty()) {
+                viaHop.remove(entry.nextHop);
+            }
+        }
+
         /**
          * Print contents of routing table, for debugging purposes.
          */
@@ -1010,6 +1091,10 @@ public class RouteAodv implements RouteInterface.Aodv
         private int        destSeqNum;
         /** Hop count for known route to destination. */
         private int        hopCount;
+        /** Destination, set when added to routing table. */
+        private NetAddress dest;
+        /** Position in the routing table's next hop index. */
+        private int        viaIndex;
 
         /**
          * Constructs a RouteTableEntry object.
@@ -1072,10 +1157,13 @@ public class RouteAodv implements RouteInterface.Aodv
      */
     private static class MessageQueue
     {
-        /** list of IP messages (with type NetMessage.Ip). */
-        private LinkedList list;
+        /**
+         * IP messages (with type NetMessage.Ip) per destination: NetAddress to
+         * LinkedList.
+         */
+        private HashMap   queues;
         /** reference to this RouteAodv instance. */
-        private RouteAodv  thisNode;
+        private RouteAodv thisNode;
 
         /**
          * Constructs a MessageQueue object, with an empty list.
@@ -1084,7 +1172,7 @@ public class RouteAodv implements RouteInterface.Aodv
          *            reference to this RouteAodv instance
          */
         public MessageQueue(RouteAodv thisNode) {
-            list = new LinkedList();
+            queues = new HashMap();
             this.thisNode = thisNode;
         }
 
@@ -1095,12 +1183,17 @@ public class RouteAodv implements RouteInterface.Aodv
          *            message to add to queue
          */
         public void add(NetMessage.Ip msg) {
+            LinkedList list = (LinkedList) queues.get(msg.getDst());
+            if (list == null) {
+                list = new LinkedList();
+                queues.put(msg.getDst(), list);
+            }
             list.addLast(msg);
         }
 
         /**
          * Sends all messages in queue destined for a given destination via a
-         * given next hop.
+         * given next hop, and removes them from the queue.
          * 
          * @param dest
          *            destination address
@@ -1108,37 +1201,15 @@ public class RouteAodv implements RouteInterface.Aodv
          *            next hop address
          */
         public void dequeueAndSend(NetAddress dest, MacAddress nextHop) {
-            // for (int i=0; i<list.size(); i++)
-            // {
-            // if (((NetMessage.Ip)list.get(i)).getDst().equals(dest))
-            // {
-            // NetMessage.Ip msg = (NetMessage.Ip)list.remove(i);
-            // printlnDebug("Routing IP message to "+nextHop, thisNode.netAddr);
-            // thisNode.self.sendIpMsg(msg, nextHop);
-            // }
-            // }
-
-            /*
-             * BUGFIX: Christin
-             * 
-             * Problem: Above implementation is wrong since it sends only the
-             * next msg for a destination. It should, however, send all msg with
-             * that destination. Issue is with for-loop and removing elements
-             * within the loop.
-             * 
-             * Solution: Use this method to send all messages. Call
-             * removeMsgsForDest() to delete all messages with this destination
-             * in the queue. This goes through the list twice, but who cares.
-             */
-            Iterator itr = list.listIterator(0);
+            LinkedList list = (LinkedList) queues.remove(dest);
+            if (list == null)
+                return;
+            Iterator itr = list.iterator();
             while (itr.hasNext()) {
                 NetMessage.Ip msg = (NetMessage.Ip) itr.next();
-                if (msg.getDst().equals(dest)) {
-                    printlnDebug("Routing IP message to " + nextHop, thisNode.netAddr);
-                    thisNode.self.sendIpMsg(msg, nextHop);
-                }
+                printlnDebug("Routing IP message to " + nextHop, thisNode.netAddr);
+                thisNode.self.sendIpMsg(msg, nextHop);
             }
-            removeMsgsForDest(dest);
         }
 
         /**
@@ -1148,13 +1219,7 @@ public class RouteAodv implements RouteInterface.Aodv
          *            destination net address
          */
         public void removeMsgsForDest(NetAddress dest) {
-            Iterator itr = list.listIterator(0);
-            while (itr.hasNext()) {
-                NetMessage.Ip msg = (NetMessage.Ip) itr.next();
-                if (msg.getDst().equals(dest)) {
-                    itr.remove();
-                }
-            }
+            queues.remove(dest);
         }
     }
 
@@ -1172,6 +1237,9 @@ public class RouteAodv implements RouteInterface.Aodv
         /** Data structure for storing the precursor set. */
         private Map       map = new HashMap();
 
+        /** Time of last message sent to all precursors. */
+        private long      lastBroadcastTime;
+
         /** Reference to this RouteAodv instance. */
         private RouteAodv thisNode;
 
@@ -1230,6 +1298,27 @@ public class RouteAodv implements RouteInterface.Aodv
             return (PrecursorInfo) map.get(m);
         }
 
+        /**
+         * Returns the time that the last message was sent to a precursor,
+         * including messages sent to all precursors.
+         * 
+         * @param info
+         *            precursor information
+         * @return time that last message was sent to precursor
+         */
+        public long getLastMsgTime(PrecursorInfo info) {
+            return Math.max(info.getLastMsgTime(), lastBroadcastTime);
+        }
+
+        /**
+         * Renews all precursor entries with the current time, when a message is
+         * sent to all of them.
+         */
+        public void renewAll() {
+            printlnDebug("Renewing all precursor entries", thisNode.netAddr);
+            lastBroadcastTime = JistAPI.getTime();
+        }
+
         /**
          * Sends a RERR message to all precursors.
          * 
@@ -1414,8 +1503,11 @@ public class RouteAodv implements RouteInterface.Aodv
     private int                 rreqIdSeqNum;
     /** routing table. */
     private RouteTable          routeTable;
-    /** list of pending route requests (originated by this node). */
-    private LinkedList          rreqList;
+    /**
+     * pending route requests (originated by this node): NetAddress to
+     * LinkedList of RouteRequest.
+     */
+    private HashMap             rreqTable;
     /** buffer for storing info about previously sent RREQ messages. */
     private RreqBuffer          rreqBuffer;
     /** buffer for storing messages that need routes. */
@@ -1443,8 +1535,8 @@ public class RouteAodv implements RouteInterface.Aodv
         // proxy entity
         this.self = (RouteInterface.Aodv) JistAPI.proxy(this, RouteInterface.Aodv.class);
 
-        // instantiate rreq list
-        this.rreqList = new LinkedList();
+        // instantiate rreq table
+        this.rreqTable = new HashMap();
 
         // instantiate RREQ buffer
         this.rreqBuffer = new RreqBuffer(addr);
@@ -1494,8 +1586,13 @@ public class RouteAodv implements RouteInterface.Aodv
                 // throw out queued packets
                 msgQueue.removeMsgsForDest(rreq.getDest());
 
-                // remove route request from rreqList
-                rreqList.remove(rreqObj);
+                // remove route request from rreqTable
+                LinkedList rreqs = (LinkedList) rreqTable.get(rreq.getDest());
+                if (rreqs != null) {
+                    rreqs.remove(rreqObj);
+                    if (rreqs.isEmpty())
+                        rreqTable.remove(rreq.getDest());
+                }
             }
         }
     }
@@ -1536,7 +1633,7 @@ public class RouteAodv implements RouteInterface.Aodv
             Map.Entry mapEntry = (Map.Entry) itr.next();
             MacAddress macAddr = (MacAddress) mapEntry.getKey();
             PrecursorInfo precInfo = (PrecursorInfo) mapEntry.getValue();
-            if (JistAPI.getTime() >= precInfo.getLastMsgTime() + HELLO_INTERVAL) {
+            if (JistAPI.getTime() >= precursorSet.getLastMsgTime(precInfo) + HELLO_INTERVAL) {
                 printlnDebug("Sending HELLO message to macAddr " + macAddr);
                 if (helloMsgIp == null) {
                     HelloMessage helloMsg = new HelloMessage(this.netAddr, this.seqNum);
@@ -1613,13 +1710,7 @@ public class RouteAodv implements RouteInterface.Aodv
         // Update appropriate precursor entry(s)
         if (destMacAddr.equals(MacAddress.ANY)) {
             // Case 0: Update all precursor entries
-            Iterator itr = this.precursorSet.iterator();
-            while (itr.hasNext()) {
-                Map.Entry mapEntry = (Map.Entry) itr.next();
-                PrecursorInfo precInfo = (PrecursorInfo) mapEntry.getValue();
-                printlnDebug("Renewing precusor entry for " + (MacAddress) mapEntry.getKey());
-                precInfo.renew();
-            }
+            precursorSet.renewAll();
         } else {
             // Case 1: Update single precursor entry, if it exists.
             PrecursorInfo precInfo = precursorSet.getInfo(destMacAddr);
@@ -1728,8 +1819,13 @@ public class RouteAodv implements RouteInterface.Aodv
             msgQueue.add(ipMsg);
 
             RouteRequest rreq = new RouteRequest(destNetAddr, this);
-            printlnDebug("Adding rreq id " + rreq.getRreqId() + " to rreq list");
-            rreqList.add(rreq);
+            printlnDebug("Adding rreq id " + rreq.getRreqId() + " to rreq table");
+            LinkedList rreqs = (LinkedList) rreqTable.get(destNetAddr);
+            if (rreqs == null) {
+                rreqs = new LinkedList();
+                rreqTable.put(destNetAddr, rreqs);
+            }
+            rreqs.add(rreq);
             rreq.broadcast();
             // stats
             if (stats != null) {
@@ -1834,13 +1930,12 @@ public class RouteAodv implements RouteInterface.Aodv
              * become zombies because the RREQtimeout finds are route and does
              * not rebroadcast
              */
-            Iterator itr = rreqList.iterator();
-            while (itr.hasNext()) {
-                RouteRequest rreq = (RouteRequest) itr.next();
-                if (rreq.getDest().equals(rreqMsg.getOrigIp())) {
-                    printlnDebug("Removing rreq from rreqlist");
-                    rreq.setRouteFound(true);
-                    itr.remove();
+            LinkedList rreqs = (LinkedList) rreqTable.remove(rreqMsg.getOrigIp());
+            if (rreqs != null) {
+                Iterator itr = rreqs.iterator();
+                while (itr.hasNext()) {
+                    printlnDebug("Removing rreq from rreq table");
+                    ((RouteRequest) itr.next()).setRouteFound(true);
                 }
             }
             msgQueue.dequeueAndSend(rreqMsg.getOrigIp(), lastHop);
@@ -1853,7 +1948,7 @@ public class RouteAodv implements RouteInterface.Aodv
         boolean routeToDestExists = (destRouteEntry != null && destRouteEntry.nextHop != null);
         boolean hasFreshRoute = routeToDestExists && !rreqMsg.getUnknownDestSeqNum()
                 && destRouteEntry.getDestSeqNum() > rreqMsg.getDestSeqNum();
-        boolean inRreqBuffer = rreqBuffer.contains(new RreqBufferEntry(rreqMsg.getRreqId(), rreqMsg.getOrigIp()));
+        boolean inRreqBuffer = rreqBuffer.contains(rreqMsg.getRreqId(), rreqMsg.getOrigIp());
         if (isDest || hasFreshRoute) {
             if (!inRreqBuffer || updateRoute) {
                 generateRouteReplyMessage(rreqMsg, isDest, destRouteEntry);
@@ -1909,19 +2004,19 @@ public class RouteAodv implements RouteInterface.Aodv
 
         // Case 1: This node is the originator of the route request
         if (this.netAddr.equals(rrepMsg.getOrigIp())) {
-            // go through rreqlist, setting routeFound=true, and removing them
-            Iterator itr = rreqList.iterator();
-            while (itr.hasNext()) {
-                RouteRequest rreq = (RouteRequest) itr.next();
-                if (rreq.getDest().equals(rrepMsg.getDestIp())) {
-                    printlnDebug("Removing rreq from rreqlist");
-                    rreq.setRouteFound(true);
+            // remove rreqs to destination from rreq table, setting
+            // routeFound=true
+            LinkedList rreqs = (LinkedList) rreqTable.remove(rrepMsg.getDestIp());
+            if (rreqs != null) {
+                Iterator itr = rreqs.iterator();
+                while (itr.hasNext()) {
+                    printlnDebug("Removing rreq from rreq table");
+                    ((RouteRequest) itr.next()).setRouteFound(true);
                     // stats
                     if (stats != null) {
                         stats.rreqSucc++; // indicate route request was
                                           // successfully satisfied
                     }
-                    itr.remove();
                 }
             }
 
@@ -2043,9 +2138,8 @@ public class RouteAodv implements RouteInterface.Aodv
     private void generateRouteReplyMessage(RouteRequestMessage rreqMsg, boolean isDest, RouteTableEntry destRouteEntry) {
         // add rreqMsg to rreq buffer (if not there), so we do not send this
         // same RREP again
-        RreqBufferEntry newEntry = new RreqBufferEntry(rreqMsg.rreqId, rreqMsg.origIp);
-        if (!rreqBuffer.contains(newEntry)) {
-            rreqBuffer.addEntry(newEntry);
+        if (!rreqBuffer.contains(rreqMsg.rreqId, rreqMsg.origIp)) {
+            rreqBuffer.addEntry(new RreqBufferEntry(rreqMsg.rreqId, rreqMsg.origIp));
         }
 
         // set initial hop count, based on whether this node is destination or
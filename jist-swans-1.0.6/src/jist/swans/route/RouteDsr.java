@@ -12,8 +12,6 @@
 
 package jist.swans.route;
 
-import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -299,12 +297,10 @@ public class RouteDsr implements RouteInterface.Dsr
     private NetAddress         localAddr;
 
     /**
-     * The route cache maps <code>NetAddress</code>es (destinations) to
-     * <code>LinkedList</code>s of arrays of <code>NetAddress</code>es (routes).
-     * Right now the route cache has no sophisticated timeout or replacement
-     * policies.
+     * The route cache holds arrays of <code>NetAddress</code>es (routes) per
+     * destination, shortest first, and evicts the oldest route when full.
      */
-    private Hashtable          routeCache;
+    private RouteDsrCache      routeCache;
 
     /** List of <code>BufferedPacket</code>s waiting to be sent. */
     private LinkedList         sendBuffer;
@@ -1123,7 +1119,18 @@ public class RouteDsr implements RouteInterface.Dsr
 
     /** Initializes the Route Cache. */
     private void InitRouteCache() {
-        routeCache = new Hashtable();
+        routeCache = new RouteDsrCache(localAddr);
+    }
+
+    /**
+     * Sets the maximum number of routes in the Route Cache. The oldest routes
+     * are evicted first.
+     * 
+     * @param capacity
+     *            maximum number of cached routes
+     */
+    public void setRouteCacheCapacity(int capacity) {
+        routeCache.setCapacity(capacity);
     }
 
     /**
@@ -1138,41 +1145,8 @@ public class RouteDsr implements RouteInterface.Dsr
      *            should be included in the <code>route</code> array.
      */
     public void InsertRouteCache(NetAddress dest, NetAddress[] route) {
-        if (routeCache.containsKey(dest)) {
-            LinkedList routes = (LinkedList) routeCache.get(dest);
-
-            // Insert the new route in the appropriate place
-            for (ListIterator iter = routes.listIterator(); iter.hasNext();) {
-                NetAddress[] curRoute = (NetAddress[]) iter.next();
-
-                if (curRoute.length < route.length)
-                    continue;
-
-                if (curRoute.length == route.length) {
-                    // Make sure the cache doesn't already have this route
-                    if (Arrays.equals(curRoute, route))
-                        return;
-                }
-
-                if (curRoute.length > route.length) {
-                    iter.previous();
-                    iter.add(route);
-                    CheckBuffer(dest);
-                    return;
-                }
-            }
-
-            // If the we haven't added the route to the cache yet, append it
-            // now to the end of the list
-            routes.addLast(route);
+        if (routeCache.insert(dest, route))
             CheckBuffer(dest);
-        } else {
-            // Create a new entry in the route cache for this destination
-            LinkedList routes = new LinkedList();
-            routes.add(route);
-            routeCache.put(dest, routes);
-            CheckBuffer(dest);
-        }
     }
 
     /**
@@ -1185,32 +1159,7 @@ public class RouteDsr implements RouteInterface.Dsr
      *            the second address in the link
      */
     private void RemoveCachedLink(NetAddress addr1, NetAddress addr2) {
-        Enumeration e = routeCache.keys();
-        while (e.hasMoreElements()) {
-            NetAddress dest = (NetAddress) e.nextElement();
-            LinkedList routes = (LinkedList) routeCache.get(dest);
-            Iterator routeIter = routes.iterator();
-
-            while (routeIter.hasNext()) {
-                NetAddress[] route = (NetAddress[]) routeIter.next();
-
-                // Check to see if this route contains the link in question
-                if (addr1.equals(localAddr) && route.length > 0 && addr2.equals(route[0])) {
-                    routeIter.remove();
-                } else if (addr1.equals(localAddr) && route.length == 0 && addr2.equals(dest)) {
-                    routeIter.remove();
-                } else if (addr2.equals(dest) && route.length > 0 && addr1.equals(route[route.length - 1])) {
-                    routeIter.remove();
-                } else {
-                    for (int i = 1; i < route.length; i++) {
-                        if (addr1.equals(route[i - 1]) && addr2.equals(route[i])) {
-                            routeIter.remove();
-                            break;
-                        }
-                    }
-                }
-            }
-        }
+        routeCache.removeLink(addr1, addr2);
     }
 
     /**
@@ -1226,15 +1175,7 @@ public class RouteDsr implements RouteInterface.Dsr
      *         shortest is returned, with ties broken arbitrarily.
      */
     private NetAddress[] GetCachedRoute(NetAddress dest) {
-        LinkedList routes = (LinkedList) routeCache.get(dest);
-
-        if (routes == null || routes.isEmpty()) {
-            // No cached route to this destination
-            return null;
-        }
-
-        // Otherwise return the shortest (i.e., first) cached route
-        return (NetAddress[]) routes.getFirst();
+        return routeCache.get(dest);
     }
 
     /** Initializes the Send Buffer. */
@@ -0,0 +1,324 @@
+// ////////////////////////////////////////////////
+// JIST (Java In Simulation Time) Project
+//
+
+// Copyright (C) 2004 by Cornell University
+// All rights reserved.
+// Refer to LICENSE for terms and conditions of use.
+
+package jist.swans.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import jist.swans.net.NetAddress;
+
+/**
+ * Route cache of the Dynamic Source Routing protocol. Routes are kept per
+ * destination in buckets by length, so that the shortest route is found
+ * directly, and every directed link maps to the routes using it, so that a
+ * broken link removes exactly the affected routes. When the cache holds more
+ * routes than its capacity, the oldest route is evicted.
+ *
+ * @see RouteDsr
+ */
+public class RouteDsrCache
+{
+
+    /** Capacity value for a cache without limit. */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    /**
+     * A cached route.
+     */
+    private static class Route
+    {
+        /** route destination. */
+        private final NetAddress   dest;
+        /** intermediate hops, neither local address nor destination. */
+        private final NetAddress[] hops;
+        /** older and newer routes in insertion order. */
+        private Route              older, newer;
+
+        /**
+         * Create cached route.
+         *
+         * @param dest
+         *            route destination
+         * @param hops
+         *            intermediate hops
+         */
+        Route(NetAddress dest, NetAddress[] hops) {
+            this.dest = dest;
+            this.hops = hops;
+        }
+    }
+
+    /**
+     * A directed link between two nodes.
+     */
+    private static class Link
+    {
+        /** link end points. */
+        private NetAddress from, to;
+
+        /**
+         * Create directed link.
+         *
+         * @param from
+         *            sending node
+         * @param to
+         *            receiving node
+         */
+        Link(NetAddress from, NetAddress to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return from.hashCode() * 31 + to.hashCode();
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object o) {
+            if (!(o instanceof Link))
+                return false;
+            Link l = (Link) o;
+            return from.equals(l.from) && to.equals(l.to);
+        }
+    }
+
+    /**
+     * Routes to one destination, in buckets by number of hops. Within a bucket
+     * routes are kept in insertion order.
+     */
+    private static class Destination
+    {
+        /** route buckets, indexed by number of intermediate hops. */
+        private ArrayList[] buckets = new ArrayList[0];
+        /** smallest index of a non-empty bucket, or buckets.length if none. */
+        private int         shortest;
+    }
+
+    // ////////////////////////////////////////////////
+    // locals
+    //
+
+    /** local node address, the source of all cached routes. */
+    private final NetAddress localAddr;
+    /** maximum number of cached routes. */
+    private int              capacity;
+    /** number of cached routes. */
+    private int              size;
+    /** oldest and newest cached route. */
+    private Route            oldest, newest;
+    /** routes per destination: NetAddress to Destination. */
+    private HashMap          destinations = new HashMap();
+    /** routes per directed link: Link to ArrayList of Route. */
+    private HashMap          links        = new HashMap();
+    /** reusable link key for lookups. */
+    private Link             probe        = new Link(null, null);
+
+    /**
+     * Create empty route cache without capacity limit.
+     *
+     * @param localAddr
+     *            local node address
+     */
+    public RouteDsrCache(NetAddress localAddr) {
+        this(localAddr, UNLIMITED);
+    }
+
+    /**
+     * Create empty route cache.
+     *
+     * @param localAddr
+     *            local node address
+     * @param capacity
+     *            maximum number of cached routes
+     */
+    public RouteDsrCache(NetAddress localAddr, int capacity) {
+        this.localAddr = localAddr;
+        setCapacity(capacity);
+    }
+
+    /**
+     * Set the maximum number of cached routes, evicting the oldest routes if
+     * there are more.
+     *
+     * @param capacity
+     *            maximum number of cached routes
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        while (size > capacity) {
+            remove(oldest);
+        }
+    }
+
+    /**
+     * Return number of cached routes.
+     *
+     * @return number of cached routes
+     */
+    public int size() {
+        return size;
+    }
+
+    // ////////////////////////////////////////////////
+    // cache operations
+    //
+
+    /**
+     * Insert a route, unless the same route is already cached.
+     *
+     * @param dest
+     *            route destination
+     * @param hops
+     *            intermediate hops from here to <code>dest</code>, neither the
+     *            local address nor <code>dest</code> included
+     * @return whether route was inserted
+     */
+    public boolean insert(NetAddress dest, NetAddress[] hops) {
+        Destination d = (Destination) destinations.get(dest);
+        if (d == null) {
+            d = new Destination();
+            destinations.put(dest, d);
+        }
+        int len = hops.length;
+        if (len >= d.buckets.length) {
+            ArrayList[] buckets = new ArrayList[len + 1];
+            System.arraycopy(d.buckets, 0, buckets, 0, d.buckets.length);
+            if (d.shortest == d.buckets.length)
+                d.shortest = buckets.length;
+            d.buckets = buckets;
+        }
+        ArrayList bucket = d.buckets[len];
+        if (bucket == null) {
+            bucket = new ArrayList(2);
+            d.buckets[len] = bucket;
+        }
+        for (int i = 0; i < bucket.size(); i++) {
+            if (Arrays.equals(((Route) bucket.get(i)).hops, hops))
+                return false;
+        }
+        Route r = new Route(dest, hops);
+        bucket.add(r);
+        if (len < d.shortest)
+            d.shortest = len;
+        // index links
+        NetAddress from = localAddr;
+        for (int i = 0; i <= len; i++) {
+            NetAddress to = i < len ? hops[i] : dest;
+            probe.from = from;
+            probe.to = to;
+            ArrayList routes = (ArrayList) links.get(probe);
+            if (routes == null) {
+                routes = new ArrayList(2);
+                links.put(new Link(from, to), routes);
+            }
+            routes.add(r);
+            from = to;
+        }
+        // append to insertion order
+        r.older = newest;
+        if (newest != null)
+            newest.newer = r;
+        else
+            oldest = r;
+        newest = r;
+        size++;
+        if (size > capacity)
+            remove(oldest);
+        return true;
+    }
+
+    /**
+     * Return shortest cached route to a destination; among routes of equal
+     * length the one inserted first.
+     *
+     * @param dest
+     *            route destination
+     * @return intermediate hops (do not modify), or null if no route cached
+     */
+    public NetAddress[] get(NetAddress dest) {
+        Destination d = (Destination) destinations.get(dest);
+        if (d == null || d.shortest == d.buckets.length)
+            return null;
+        return ((Route) d.buckets[d.shortest].get(0)).hops;
+    }
+
+    /**
+     * Remove every cached route that uses the directed link between two nodes.
+     *
+     * @param from
+     *            sending node of link
+     * @param to
+     *            receiving node of link
+     * @return number of removed routes
+     */
+    public int removeLink(NetAddress from, NetAddress to) {
+        probe.from = from;
+        probe.to = to;
+        ArrayList routes = (ArrayList) links.get(probe);
+        if (routes == null)
+            return 0;
+        int removed = 0;
+        while (!routes.isEmpty()) {
+            remove((Route) routes.get(routes.size() - 1));
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Remove a cached route from buckets, link index and insertion order.
+     *
+     * @param r
+     *            cached route
+     */
+    private void remove(Route r) {
+        Destination d = (Destination) destinations.get(r.dest);
+        int len = r.hops.length;
+        d.buckets[len].remove(r);
+        if (len == d.shortest) {
+            while (d.shortest < d.buckets.length
+                    && (d.buckets[d.shortest] == null || d.buckets[d.shortest].isEmpty())) {
+                d.shortest++;
+            }
+            if (d.shortest == d.buckets.length)
+                destinations.remove(r.dest);
+        }
+        NetAddress from = localAddr;
+        for (int i = 0; i <= len; i++) {
+            NetAddress to = i < len ? r.hops[i] : r.dest;
+            probe.from = from;
+            probe.to = to;
+            ArrayList routes = (ArrayList) links.get(probe);
+            int j = routes.lastIndexOf(r);
+            if (j >= 0) {
+                // order within a link does not matter
+                routes.set(j, routes.get(routes.size() - 1));
+                routes.remove(routes.size() - 1);
+                if (routes.isEmpty())
+                    links.remove(probe);
+            }
+            from = to;
+        }
+        if (r.older != null)
+            r.older.newer = r.newer;
+        else
+            oldest = r.newer;
+        if (r.newer != null)
+            r.newer.older = r.older;
+        else
+            newest = r.older;
+        r.older = r.newer = null;
+        size--;
+    }
+
+} // class: RouteDsrCache
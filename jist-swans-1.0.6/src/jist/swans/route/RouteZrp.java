@@ -449,7 +449,7 @@ public class RouteZrp implements RouteInterface.Zrp
         }
         NetAddress nextHop = null;
         NetMessage.IpOption ipOpt = null;
-        ipOpt = (NetMessage.IpOption) ip.getOptions().get(Constants.IP_OPTION_ZRP);
+        ipOpt = (NetMessage.IpOption) ip.getOption(Constants.IP_OPTION_ZRP);
         // compute next hop
         if (iarp.hasRoute(ip.getDst())) {
             // route found inside zone
@@ -473,7 +473,7 @@ public class RouteZrp implements RouteInterface.Zrp
             if (i != ipOptSr.getPtr()) {
                 if (ip.isFrozen())
                     ip = ip.copy();
-                ip.getOptions().put(Constants.IP_OPTION_ZRP, new NetMessage.IpOptionSourceRoute(ipOptSr.getRoute(), i));
+                ip.setOption(Constants.IP_OPTION_ZRP, new NetMessage.IpOptionSourceRoute(ipOptSr.getRoute(), i));
             }
         }
 
@@ -144,7 +144,7 @@ public class RouteZrpIerp implements RouteInterface.Zrp.Ierp, Timer
                     // source route packet
                     if (ip.isFrozen())
                         ip = ip.copy();
-                    ip.getOptions().put(Constants.IP_OPTION_ZRP, new NetMessage.IpOptionSourceRoute(route));
+                    ip.setOption(Constants.IP_OPTION_ZRP, new NetMessage.IpOptionSourceRoute(route));
                     // send it off
                     if (logIERP.isInfoEnabled()) {
                         logIERP.info("sending off data t=" + JistAPI.getTime() + " msg=" + ip);
@@ -18,6 +18,9 @@ import java.net.SocketImpl;
 import java.net.SocketImplFactory;
 import java.net.UnknownHostException;
 import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 import jist.runtime.Channel;
 import jist.runtime.JistAPI;
@@ -299,11 +302,26 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
      */
     private int                                     persistTimerId;
 
+    /**
+     * Pending persist timer event.
+     */
+    private JistAPI.Timer                           persistTimer;
+
     /**
      * ID for reset timer (for special cases).
      */
     private int                                     resetTimerId;
 
+    /**
+     * Pending reset timer event.
+     */
+    private JistAPI.Timer                           resetTimer;
+
+    /**
+     * Pending retransmit timer events, keyed by sequence number.
+     */
+    private HashMap                                 retransmitTimers;
+
     // Debugging variables
 
     /**
@@ -826,7 +844,10 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
      */
     private void initializeTimerVariables() {
         persistTimerId = 0;
+        persistTimer = null;
         resetTimerId = 0;
+        resetTimer = null;
+        retransmitTimers = new HashMap();
     }
 
     /**
@@ -1228,6 +1249,33 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
     public void startRetransmitTimer(int seqNum, long time) {
         JistAPI.sleep(time);
         self.retransmitTimerTimeout(seqNum, time);
+        // a retransmission replaces any timer still pending for this segment
+        JistAPI.Timer previous = (JistAPI.Timer) retransmitTimers.put(new Integer(seqNum), JistAPI.timer());
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Remove acknowledged messages from the retransmit list, and cancel their
+     * retransmit timers.
+     * 
+     * @param seqNum
+     *            messages with lower sequence numbers are acknowledged
+     */
+    private void removeAcked(int seqNum) {
+        rList.removeMessages(seqNum);
+        Iterator it = retransmitTimers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry e = (Map.Entry) it.next();
+            if (((Integer) e.getKey()).intValue() < seqNum) {
+                JistAPI.Timer t = (JistAPI.Timer) e.getValue();
+                if (t != null) {
+                    t.cancel();
+                }
+                it.remove();
+            }
+        }
     }
 
     /** {@inheritDoc} */
@@ -1267,6 +1315,7 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
         }
         JistAPI.sleep(PERSIST_TIMER);
         self.persistTimerTimeout(persistTimerId, seqNum);
+        persistTimer = JistAPI.timer();
     }
 
     /**
@@ -1274,6 +1323,10 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
      */
     private void cancelPersistTimer() {
         persistTimerId++;
+        if (persistTimer != null) {
+            persistTimer.cancel();
+            persistTimer = null;
+        }
     }
 
     /** {@inheritDoc} */
@@ -1327,6 +1380,7 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
         }
         JistAPI.sleep(RETRANSMIT_TIMEOUT * 4);
         self.resetTimerTimeout(resetTimerId);
+        resetTimer = JistAPI.timer();
     }
 
     /**
@@ -1334,6 +1388,10 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
      */
     private void cancelResetTimer() {
         resetTimerId++;
+        if (resetTimer != null) {
+            resetTimer.cancel();
+            resetTimer = null;
+        }
     }
 
     /** {@inheritDoc} */
@@ -1467,7 +1525,7 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
             // update last acknowledged byte
             snd_una = msg.getAckNum();
             // remove SYN packet from retransmit list
-            rList.removeMessages(msg.getAckNum());
+            removeAcked(msg.getAckNum());
             // send ACK packet
             sendFirstACKPacket();
             // cancel reset timer
@@ -1492,7 +1550,7 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
             rcv_nxt = msg.getSeqNum() + 1;
             initAckNum = msg.getSeqNum();
             // remove SYN packet from retransmit list
-            rList.removeMessages(snd_nxt);
+            removeAcked(snd_nxt);
             // send SYNACK packet back
             sendSYNACKPacket();
             // change the state of the socket
@@ -1849,7 +1907,7 @@ public class TcpSocket implements SocketInterface.TcpSocketInterface
                 snd_una = msg.getAckNum();
                 // since one (or more) sent messages have been acknowledged,
                 // we have to remove it from the list.
-                rList.removeMessages(msg.getAckNum());
+                removeAcked(msg.getAckNum());
                 // if on established state, check if we have data to send
                 // Ask outputstream if we have more data to send
                 if (currentState == Constants.TCPSTATES.ESTABLISHED) {
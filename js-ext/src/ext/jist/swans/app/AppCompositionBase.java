@@ -1,6 +1,7 @@
 package ext.jist.swans.app;
 
 import jist.runtime.JistAPI;
+import jist.swans.Constants;
 import jist.swans.app.AppInterface;
 import jist.swans.mac.MacAddress;
 import jist.swans.misc.Message;
@@ -75,7 +76,7 @@ public abstract class AppCompositionBase implements AppInterface, NetInterface.N
     }
 }
 
-abstract class ServiceMessage implements Message
+abstract class ServiceMessage implements Message.Tagged
 {
     protected String id;
 
@@ -94,6 +95,10 @@ abstract class ServiceMessage implements Message
     public abstract void getBytes(byte[] msg, int offset);
 
     public abstract int getSize();
+
+    public int getTrafficClass() {
+        return Constants.TRAFFIC_CLASS_NONE;
+    }
 }
 
 class DiscoveryRequest extends ServiceMessage
@@ -125,6 +130,10 @@ class DiscoveryRequest extends ServiceMessage
         throw new RuntimeException("not implemented");
     }
 
+    public int getTrafficClass() {
+        return Constants.TRAFFIC_CLASS_DISC_REQ;
+    }
+
     public int getSize() {
         return Sizeof.inst(id.toCharArray()) + Sizeof.inst(serviceName);
     }
@@ -147,6 +156,10 @@ class DiscoveryResponse extends ServiceMessage
         throw new RuntimeException("not implemented");
     }
 
+    public int getTrafficClass() {
+        return Constants.TRAFFIC_CLASS_DISC_RSP;
+    }
+
     public int getSize() {
         return Sizeof.inst(id.toCharArray()) + Sizeof.inst(service);
     }
@@ -235,6 +248,10 @@ class CompositionMessage extends ServiceMessage
         throw new RuntimeException("not implemented");
     }
 
+    public int getTrafficClass() {
+        return Constants.TRAFFIC_CLASS_COMP_MSG;
+    }
+
     public int getSize() {
         return Sizeof.inst(id.toCharArray()) + Sizeof.inst(services) + Sizeof.inst(providers) + Sizeof.inst(input);
     }
@@ -288,7 +288,7 @@ class Provider
     }
 }
 
-abstract class WorkflowMessage implements Message
+abstract class WorkflowMessage implements Message.Tagged
 {
     protected String id;
 
@@ -303,6 +303,8 @@ abstract class WorkflowMessage implements Message
     public abstract void getBytes(byte[] msg, int offset);
 
     public abstract int getSize();
+
+    public abstract int getTrafficClass();
 }
 
 /**
@@ -354,6 +356,10 @@ class WorkflowRequest extends WorkflowMessage
         return Sizeof.inst(id.toCharArray()) + Sizeof.inst(version) + Sizeof.inst(services) + Sizeof.inst(inputs)
                 + Sizeof.inst(nextIndexToExecute);
     }
+
+    public int getTrafficClass() {
+        return Constants.TRAFFIC_CLASS_WF_REQ;
+    }
 }
 
 class ServiceAd extends WorkflowMessage
@@ -392,6 +398,11 @@ class ServiceAd extends WorkflowMessage
         return Sizeof.inst(id.toCharArray()) + Sizeof.inst(advertiser) + Sizeof.inst(service)
                 + Sizeof.inst(connectivity);
     }
+
+    @Override
+    public int getTrafficClass() {
+        return Constants.TRAFFIC_CLASS_SERVICE_AD;
+    }
 }
 
 class Token extends WorkflowMessage
@@ -429,4 +440,9 @@ class Token extends WorkflowMessage
     public int getSize() {
         return Sizeof.inst(id.toCharArray()) + Sizeof.inst(service) + Sizeof.inst(input) + Sizeof.inst(provider);
     }
+
+    @Override
+    public int getTrafficClass() {
+        return Constants.TRAFFIC_CLASS_TOKEN;
+    }
 }
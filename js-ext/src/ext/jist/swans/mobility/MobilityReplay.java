@@ -72,6 +72,8 @@ public class MobilityReplay implements Mobility
     private Location2D[]   foundCorners;
     private int            precision;
     private MobilityReader mr;
+    // move along whole legs, interpolated by the field
+    private boolean        interpolate;
 
     /**
      * Initialize the MobilityReplay model which is suitable to replay a
@@ -124,6 +126,19 @@ public class MobilityReplay implements Mobility
 
     }
 
+    /**
+     * Move nodes along whole legs towards destination waypoints, instead of
+     * scheduling every step. The field interpolates node locations at the
+     * same precision, so results are unchanged but for the order of
+     * simultaneous events.
+     * 
+     * @param interpolate
+     *            whether to move along interpolated legs
+     */
+    public void setInterpolate(boolean interpolate) {
+        this.interpolate = interpolate;
+    }
+
     /**
      * Retrieve the initial location of a node
      * 
@@ -248,6 +263,13 @@ public class MobilityReplay implements Mobility
                         logger.debug("... steps=" + mrmi.steps + " steptime=" + mrmi.stepTime);
                         logger.debug("    --> total time=" + mrmi.steps * mrmi.stepTime + " total dist="
                                 + ((mrmi.steps * mrmi.stepTime) / (float) Constants.SECOND) * mrmi.nextWaypoint.speed);
+
+                        if (interpolate) {
+                            // next is called again when the waypoint is reached
+                            f.moveRadioLeg(id, mrmi.nextWaypoint.location, mrmi.steps, mrmi.stepTime);
+                            mrmi.remainingSteps = 0;
+                            return;
+                        }
                     } // waypoint current or not
                 } // next WP != null
             } // remaining steps == 0
@@ -1,36 +1,59 @@
 package ext.util.stats;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Set;
 
 import jist.swans.Constants;
 import ext.util.ExtendedProperties;
 
+/**
+ * Composition statistics. Timestamps are kept only for requests in progress,
+ * in primitive arrays indexed by service, and durations are added to
+ * streaming accumulators as soon as both of their timestamps are known, so
+ * that memory stays bounded however long the simulation runs.
+ *
+ * Requests are identified by their message id ("node-number"), services by
+ * their letter ("A", "B", ...) or "dst" for the destination.
+ */
 public class DucksCompositionStats implements StatsCollector
 {
-    private static final String                                 COMPO_STAT_PROVIDERS       = "ducks.app.compo.providers";
+    private static final String  COMPO_STAT_PROVIDERS       = "ducks.app.compo.providers.bound";
     // private static final String COMPO_STAT_PROVIDERS_REPEAT =
     // "ducks.app.compo.providers.repeat";
-    private static final String                                 COMPO_STAT_REQ             = "ducks.app.compo.requests";
-    private static final String                                 COMPO_STAT_SUC_SEARCH      = "ducks.app.compo.success.search";
-    private static final String                                 COMPO_STAT_SUC_INVOKE      = "ducks.app.compo.success.invoke";
+    private static final String  COMPO_STAT_REQ             = "ducks.app.compo.requests";
+    private static final String  COMPO_STAT_SUC_SEARCH      = "ducks.app.compo.success.search";
+    private static final String  COMPO_STAT_SUC_INVOKE      = "ducks.app.compo.success.invoke";
 
-    private static final String                                 WF_STAT_LAST_BOUND         = "ducks.app.compo.last.bound";
-    private static final String                                 WF_STAT_LAST_EXEC          = "ducks.app.compo.last.exec";
-    private static final String                                 WF_STAT_I_KNOWS_LAST_BOUND = "ducks.app.compo.last.bound.initiator.knows";
-    private static final String                                 WF_STAT_I_KNOWS_LAST_EXEC  = "ducks.app.compo.last.exec.initiator.knows";
+    private static final String  WF_STAT_LAST_BOUND         = "ducks.app.compo.last.bound";
+    private static final String  WF_STAT_LAST_EXEC          = "ducks.app.compo.last.exec";
+    private static final String  WF_STAT_I_KNOWS_LAST_BOUND = "ducks.app.compo.last.bound.initiator.knows";
+    private static final String  WF_STAT_I_KNOWS_LAST_EXEC  = "ducks.app.compo.last.exec.initiator.knows";
 
-    private static final String                                 COMPO_STAT_DUR_BIND        = "ducks.app.compo.duration.service.binding";
-    private static final String                                 COMPO_STAT_DUR_FWD_TO_BIND = "ducks.app.compo.duration.service.forward.to.bind.on";
-    private static final String                                 COMPO_STAT_DUR_FWD_TO_EXEC = "ducks.app.compo.duration.service.forward.to.exec.on";
-    private static final String                                 COMPO_STAT_DUR_COMPO       = "ducks.app.compo.duration.composition.total";
+    private static final String  COMPO_STAT_DUR_BIND        = "ducks.app.compo.duration.service.binding";
+    private static final String  COMPO_STAT_DUR_FWD_TO_BIND = "ducks.app.compo.duration.service.forward.to.bind.on";
+    private static final String  COMPO_STAT_DUR_FWD_TO_EXEC = "ducks.app.compo.duration.service.forward.to.exec.on";
+    private static final String  COMPO_STAT_DUR_COMPO       = "ducks.app.compo.duration.composition.total";
 
-    private static final long                                   DUR_UNIT                   = Constants.NANO_SECOND;
+    private static final long    DUR_UNIT                   = Constants.NANO_SECOND;
 
-    private String                                              lastService;
+    /**
+     * service indices: letters A..Z, then the destination
+     */
+    private static final int     SERVICES                   = 27;
+    private static final int     SERVICE_DST                = SERVICES - 1;
+    private static final String  STRING_DESTINATION         = "dst";
+
+    /**
+     * maximum number of requests in progress; older ones are dropped
+     */
+    private static final int     MAX_PENDING                = 1024;
+
+    /**
+     * last real service of the compositions (index)
+     */
+    private static int           lastService;
 
     /**
      * log discover response condition
@@ -40,65 +63,59 @@ public class DucksCompositionStats implements StatsCollector
     /**
      * log number of issued requests
      */
-    private static int                                          numReq;
+    private static int           numReq;
 
     /**
-     * count search=binding success
+     * count search=binding success, by service
      */
-    private static HashMap<String, Integer>                     searchSuccess;
+    private static int[]         searchSuccess;
 
     /**
-     * count invoke success
+     * count invoke success, by service
      */
-    private static HashMap<String, Integer>                     invokeSuccess;
+    private static int[]         invokeSuccess;
 
     /**
-     * log service providers
+     * number of services bound to each provider
      */
-    private static HashMap<String, List<String>>                serviceProviders;
+    private static HashMap<String, Integer> providerBindings;
 
     /**
-     * start and end time of binding=searching a service for a particular
-     * message
-     */
-    private static HashMap<String, HashMap<String, List<Long>>> bindTimes;
-    /**
-     * start and end time of forwarding to execute a service for a particular
-     * message
+     * start times of binding=searching and of forwarding to execute each
+     * service, for requests in progress
      */
-    private static HashMap<String, HashMap<String, List<Long>>> forwardToExecTimes;
+    private static PendingRequests pending;
 
     /**
-     * duration for binding a service in a particular message (service, msgId,
-     * duration)
+     * duration for binding a service, by service
      */
-    private static HashMap<String, HashMap<String, Long>>       bindDurations;
+    private static StreamingStats[] bindDurations;
 
     /**
      * duration of binding end of the this service and binding start of next
      * service
      */
-    private static HashMap<String, HashMap<String, Long>>       forwardToBindDurations;
+    private static StreamingStats[] forwardToBindDurations;
 
     /**
      * duration of starting to forward to a service and the service having
      * received the message so it can now start to execute
      */
-    private static HashMap<String, HashMap<String, Long>>       forwardToExecDurations;
+    private static StreamingStats[] forwardToExecDurations;
 
     /**
-     * for each message the duration between the initiator sending the first
-     * discovery request and receiving the completed composition message
+     * duration between the initiator sending the first discovery request and
+     * receiving the completed composition message
      */
-    private static HashMap<String, Long>                        compositionDurations;
+    private static StreamingStats  compositionDurations;
 
     /*
      * For workflow stats
      */
-    private static String                                       lastServiceBound;
-    private static String                                       lastServiceExecuted;
-    private static String                                       iKnowsLastServiceBound;
-    private static String                                       iKnowsLastServiceExecuted;
+    private static String          lastServiceBound;
+    private static String          lastServiceExecuted;
+    private static String          iKnowsLastServiceBound;
+    private static String          iKnowsLastServiceExecuted;
 
     public DucksCompositionStats() {
         clear();
@@ -107,16 +124,16 @@ public class DucksCompositionStats implements StatsCollector
     public void clear() {
         // providersRepeat ="";
         numReq = 0;
-        serviceProviders = new HashMap<String, List<String>>();
-        searchSuccess = new HashMap<String, Integer>();
-        invokeSuccess = new HashMap<String, Integer>();
+        lastService = -1;
+        providerBindings = new HashMap<String, Integer>();
+        searchSuccess = new int[SERVICES];
+        invokeSuccess = new int[SERVICES];
 
-        bindTimes = new HashMap<String, HashMap<String, List<Long>>>();
-        forwardToExecTimes = new HashMap<String, HashMap<String, List<Long>>>();
-        bindDurations = new HashMap<String, HashMap<String, Long>>();
-        forwardToBindDurations = new HashMap<String, HashMap<String, Long>>();
-        forwardToExecDurations = new HashMap<String, HashMap<String, Long>>();
-        compositionDurations = new HashMap<String, Long>();
+        pending = new PendingRequests(MAX_PENDING);
+        bindDurations = new StreamingStats[SERVICES];
+        forwardToBindDurations = new StreamingStats[SERVICES];
+        forwardToExecDurations = new StreamingStats[SERVICES];
+        compositionDurations = new StreamingStats();
 
         lastServiceBound = "empty";
         lastServiceExecuted = "empty";
@@ -125,41 +142,11 @@ public class DucksCompositionStats implements StatsCollector
     }
 
     public String[] getStatParams() {
-        // determineCompositionDurations();
-        // determineBindDurations();
-        // determineForwardToBindDurations();
-        // determineForwardToExecDurations();
-        String[] params = new String[1 + 2 + 2 + serviceProviders.keySet().size() + searchSuccess.keySet().size()
-                + invokeSuccess.keySet().size() + countMapEntries(bindDurations)
-                + countMapEntries(forwardToBindDurations) + countMapEntries(forwardToExecDurations)
-                + compositionDurations.keySet().size()];
-        params[0] = COMPO_STAT_REQ;
-        // params[1] = COMPO_STAT_PROVIDERS_REPEAT;
-        params[1] = WF_STAT_LAST_BOUND;
-        params[2] = WF_STAT_LAST_EXEC;
-        params[3] = WF_STAT_I_KNOWS_LAST_BOUND;
-        params[4] = WF_STAT_I_KNOWS_LAST_EXEC;
-
-        int next = 5;
-        next = getServiceStatsParam(params, next, serviceProviders.keySet(), COMPO_STAT_PROVIDERS);
-        next = getServiceStatsParam(params, next, searchSuccess.keySet(), COMPO_STAT_SUC_SEARCH);
-        next = getServiceStatsParam(params, next, invokeSuccess.keySet(), COMPO_STAT_SUC_INVOKE);
-
-        next = getMapParams(params, next, bindDurations, COMPO_STAT_DUR_BIND);
-        next = getMapParams(params, next, forwardToBindDurations, COMPO_STAT_DUR_FWD_TO_BIND);
-        next = getMapParams(params, next, forwardToExecDurations, COMPO_STAT_DUR_FWD_TO_EXEC);
-
-        next = getServiceStatsParam(params, next, compositionDurations.keySet(), COMPO_STAT_DUR_COMPO);
-
-        return params;
+        Set<Object> keys = getStats().keySet();
+        return keys.toArray(new String[keys.size()]);
     }
 
     public ExtendedProperties getStats() {
-        determineCompositionDurations(bindTimes, forwardToExecTimes);
-        determineBindDurations(bindTimes);
-        determineForwardToBindDurations(bindTimes);
-        determineForwardToExecDurations(forwardToExecTimes);
-
         ExtendedProperties s = new ExtendedProperties();
 
         s.put(COMPO_STAT_REQ, Integer.toString(numReq));
@@ -174,382 +161,349 @@ public class DucksCompositionStats implements StatsCollector
         getServiceCountStats(searchSuccess, s, COMPO_STAT_SUC_SEARCH);
         getServiceCountStats(invokeSuccess, s, COMPO_STAT_SUC_INVOKE);
 
-        getMapStats(s, COMPO_STAT_DUR_BIND, bindDurations);
-        getMapStats(s, COMPO_STAT_DUR_FWD_TO_BIND, forwardToBindDurations);
-        getMapStats(s, COMPO_STAT_DUR_FWD_TO_EXEC, forwardToExecDurations);
-
-        getCompositionDurations(s, COMPO_STAT_DUR_COMPO);
-
-        return s;
-    }
-
-    private int countMapEntries(HashMap<String, HashMap<String, Long>> map) {
-        int count = 0;
+        getDurationStats(s, COMPO_STAT_DUR_BIND, bindDurations);
+        getDurationStats(s, COMPO_STAT_DUR_FWD_TO_BIND, forwardToBindDurations);
+        getDurationStats(s, COMPO_STAT_DUR_FWD_TO_EXEC, forwardToExecDurations);
 
-        Set<String> entries = map.keySet();
-        Iterator<String> it = entries.iterator();
-        while (it.hasNext()) {
-            String entryKey = it.next();
-            HashMap<String, Long> submap = map.get(entryKey);
-            count = count + submap.size();
+        if (compositionDurations.getCount() > 0) {
+            compositionDurations.putStats(s, COMPO_STAT_DUR_COMPO);
         }
 
-        return count;
+        return s;
     }
 
-    private int getMapParams(String[] params, int index, HashMap<String, HashMap<String, Long>> map, String prefix) {
-        Set<String> mapKeys = map.keySet();
-        Iterator<String> it = mapKeys.iterator();
-        while (it.hasNext()) {
-            String mapKey = it.next();
-            HashMap<String, Long> submap = map.get(mapKey);
-            Set<String> submapKeys = submap.keySet();
-            Iterator<String> sit = submapKeys.iterator();
-            while (sit.hasNext()) {
-                String submapKey = sit.next();
-                params[index] = prefix + "." + mapKey + "." + submapKey;
-                index++;
+    private void getDurationStats(ExtendedProperties properties, String prefix, StreamingStats[] durations) {
+        for (int i = 0; i < SERVICES; i++) {
+            if (durations[i] != null) {
+                durations[i].putStats(properties, prefix + "." + serviceName(i));
             }
         }
-
-        return index;
     }
 
-    private int getServiceStatsParam(String[] params, int index, Set<String> keys, String prefix) {
-        Iterator<String> iit = keys.iterator();
-        while (iit.hasNext()) {
-            params[index] = prefix + "." + iit.next();
-            index++;
+    private void getServiceCountStats(int[] counts, ExtendedProperties properties, String prefix) {
+        for (int i = 0; i < SERVICES; i++) {
+            if (counts[i] > 0) {
+                properties.put(prefix + "." + serviceName(i), Integer.toString(counts[i]));
+            }
         }
-        return index;
     }
 
-    private void getCompositionDurations(ExtendedProperties properties, String prefix) {
-        Set<String> keys = compositionDurations.keySet();
-        Iterator<String> it = keys.iterator();
+    private void getServiceProviderStats(ExtendedProperties properties, String prefix) {
+        Iterator<String> it = providerBindings.keySet().iterator();
         while (it.hasNext()) {
-            String key = it.next();
-            properties.put(prefix + "." + key, Long.toString(compositionDurations.get(key)));
+            String provider = it.next();
+            properties.put(prefix + "." + provider, Integer.toString(providerBindings.get(provider)));
         }
     }
 
-    private void getMapStats(ExtendedProperties properties, String prefix, HashMap<String, HashMap<String, Long>> map) {
-        Set<String> mapKeys = map.keySet();
-        Iterator<String> it = mapKeys.iterator();
-        while (it.hasNext()) {
-            String mapKey = it.next();
-            HashMap<String, Long> submap = map.get(mapKey);
-            Set<String> submapKeys = submap.keySet();
-            Iterator<String> sit = submapKeys.iterator();
-            while (sit.hasNext()) {
-                String submapKey = sit.next();
-                properties.put(prefix + "." + mapKey + "." + submapKey, Long.toString(submap.get(submapKey)));
+    // Services and requests .................................................
 
-            }
+    /**
+     * Return index of service, or -1 if the service is unknown
+     */
+    private static int serviceIndex(String service) {
+        if (service.equals(STRING_DESTINATION)) {
+            return SERVICE_DST;
         }
+        int i = service.length() == 1 ? service.charAt(0) - 'A' : -1;
+        return i >= 0 && i < SERVICE_DST ? i : -1;
     }
 
-    private void determineCompositionDurations(HashMap<String, HashMap<String, List<Long>>> mapBindTimes,
-            HashMap<String, HashMap<String, List<Long>>> mapFwdToExecTimes) {
-        // for A and every message in bindTimes, get start
-        // for dst and every message in forwardToExec get end
-        Long compositionStart = null;
-        Long compositionEnd = null;
-        Long compositionDuration = null;
-
-        HashMap<String, List<Long>> startEntry = mapBindTimes.get("A");
-        if (startEntry != null) {
-            Set<String> msgKeys = startEntry.keySet();
-            Iterator<String> it = msgKeys.iterator();
-            while (it.hasNext()) {
-                String msdId = it.next();
-                List<Long> bindStartEndTime = startEntry.get(msdId);
-                if (bindStartEndTime != null && bindStartEndTime.get(0) != null) {
-                    compositionStart = bindStartEndTime.get(0);
-                    HashMap<String, List<Long>> endEntry = mapFwdToExecTimes.get("dst");
-                    if (endEntry != null) {
-                        List<Long> forwToExecStartEndTime = endEntry.get(msdId);
-                        if (forwToExecStartEndTime != null && forwToExecStartEndTime.get(1) != null) {
-                            compositionEnd = forwToExecStartEndTime.get(1);
-                            compositionDuration = (compositionEnd - compositionStart) / DUR_UNIT;
-                            compositionDurations.put(msdId, compositionDuration);
-                        }
-                    }
-                }
-
-                compositionStart = null;
-                compositionEnd = null;
-                compositionDuration = null;
-            }
-        }
+    private static String serviceName(int service) {
+        return service == SERVICE_DST ? STRING_DESTINATION : Character.toString((char) ('A' + service));
     }
 
-    private void determineBindDurations(HashMap<String, HashMap<String, List<Long>>> mapBindTimes) {
-        Long bindDuration = null;
-
-        Set<String> serviceKeys = mapBindTimes.keySet();
-        Iterator<String> it = serviceKeys.iterator();
-        while (it.hasNext()) {
-            String service = it.next();
-            HashMap<String, List<Long>> bindEntries = mapBindTimes.get(service);
-            Set<String> msgKeys = bindEntries.keySet();
-            Iterator<String> mit = msgKeys.iterator();
-            while (mit.hasNext()) {
-                String message = mit.next();
-                List<Long> msgBindTime = bindEntries.get(message);
-                if (msgBindTime != null && msgBindTime.get(0) != null && msgBindTime.get(1) != null) {
-                    bindDuration = (msgBindTime.get(1) - msgBindTime.get(0)) / DUR_UNIT;
-                    HashMap<String, Long> msgBindDuration = new HashMap<String, Long>();
-                    msgBindDuration.put(message, bindDuration);
-                    bindDurations.put(service, msgBindDuration);
-                }
-                bindDuration = null;
-            }
+    private static int nextService(int service) {
+        if (service == lastService || service == SERVICE_DST) {
+            return SERVICE_DST;
+        } else {
+            return service + 1;
         }
     }
 
-    private void determineForwardToBindDurations(HashMap<String, HashMap<String, List<Long>>> mapBindTimes) {
-        Long bindEndThis = null;
-        Long bindStartNext = null;
-        Long forwardDuration = null;
-
-        Set<String> serviceKeys = mapBindTimes.keySet();
-        Iterator<String> it = serviceKeys.iterator();
-        while (it.hasNext()) {
-            String thisService = it.next();
-            HashMap<String, List<Long>> thisBindEntries = mapBindTimes.get(thisService);
-            Set<String> msgKeys = thisBindEntries.keySet();
-            Iterator<String> mit = msgKeys.iterator();
-            while (mit.hasNext()) {
-                String message = mit.next();
-                List<Long> thisMsgBindTime = thisBindEntries.get(message);
-                if (thisMsgBindTime != null && thisMsgBindTime.get(0) != null && thisMsgBindTime.get(1) != null) {
-                    bindEndThis = thisMsgBindTime.get(1);
-                    // get bindStartNext
-                    String nextService = getNextService(thisService);
-                    HashMap<String, List<Long>> nextBindEntries = mapBindTimes.get(nextService);
-                    if (nextBindEntries != null) {
-                        List<Long> nextMsgBindTime = nextBindEntries.get(message);
-                        if (nextMsgBindTime != null && nextMsgBindTime.get(0) != null) {
-                            bindStartNext = nextMsgBindTime.get(0);
-                            forwardDuration = (bindStartNext - bindEndThis) / DUR_UNIT;
-                            HashMap<String, Long> msgForwardDuration = new HashMap<String, Long>();
-                            msgForwardDuration.put(message, forwardDuration);
-                            forwardToBindDurations.put(thisService, msgForwardDuration);
-                        }
-                    }
-                }
-                bindEndThis = null;
-                bindStartNext = null;
-                forwardDuration = null;
-            }
+    /**
+     * Return integer id of request message id "node-number"
+     */
+    private static long requestId(String msgId) {
+        int dash = msgId.indexOf('-');
+        try {
+            return ((long) Integer.parseInt(msgId.substring(0, dash)) << 32)
+                    | (Integer.parseInt(msgId.substring(dash + 1)) & 0xFFFFFFFFL);
+        } catch (RuntimeException e) {
+            // not of the usual form
+            return msgId.hashCode() & 0xFFFFFFFFL | 1L << 62;
         }
     }
 
-    private void determineForwardToExecDurations(HashMap<String, HashMap<String, List<Long>>> mapFwdToExecTimes) {
-        Long forwardDuration = null;
-
-        Set<String> serviceKeys = mapFwdToExecTimes.keySet();
-        Iterator<String> it = serviceKeys.iterator();
-        while (it.hasNext()) {
-            String service = it.next();
-            HashMap<String, List<Long>> forwardEntries = mapFwdToExecTimes.get(service);
-            Set<String> msgKeys = forwardEntries.keySet();
-            Iterator<String> mit = msgKeys.iterator();
-            while (mit.hasNext()) {
-                String message = mit.next();
-                List<Long> msgFwdTime = forwardEntries.get(message);
-                if (msgFwdTime != null && msgFwdTime.get(0) != null && msgFwdTime.get(1) != null) {
-                    forwardDuration = (msgFwdTime.get(1) - msgFwdTime.get(0)) / DUR_UNIT;
-                    HashMap<String, Long> msgFwdDuration = new HashMap<String, Long>();
-                    msgFwdDuration.put(message, forwardDuration);
-                    forwardToExecDurations.put(service, msgFwdDuration);
-                }
-                forwardDuration = null;
-            }
+    private static void add(StreamingStats[] durations, int service, long duration) {
+        if (durations[service] == null) {
+            durations[service] = new StreamingStats();
         }
+        durations[service].add(duration / DUR_UNIT);
     }
 
     public String getNextService(String thisService) {
-        if (thisService.equals(lastService)) {
-            return "dst";
-        } else if (thisService.equals("dst")) {
-            return "dst";
-        } else {
-            char next = thisService.charAt(0);
-            next++;
-            return Character.toString(next);
-        }
+        int i = serviceIndex(thisService);
+        return i < 0 ? STRING_DESTINATION : serviceName(nextService(i));
     }
 
     public String getLastService() {
-        return lastService;
+        return lastService < 0 ? null : serviceName(lastService);
     }
 
     public void setLastService(String lastService) {
-        this.lastService = lastService;
+        DucksCompositionStats.lastService = serviceIndex(lastService);
     }
 
-    // public synchronized void setProvidersRepeat(String providersRepeat) {
+    // public void setProvidersRepeat(String providersRepeat) {
     // DucksCompositionStats.providersRepeat = providersRepeat;
     // }
 
-    private void getServiceCountStats(HashMap<String, Integer> map, ExtendedProperties properties, String prefix) {
-        Set<String> keys = map.keySet();
-        Iterator<String> it = keys.iterator();
-        while (it.hasNext()) {
-            String key = it.next();
-            properties.put(prefix + "." + key, Integer.toString(map.get(key)));
-        }
-    }
-
-    private void getServiceProviderStats(ExtendedProperties properties, String prefix) {
-        Set<String> msgIds = serviceProviders.keySet();
-        Iterator<String> it = msgIds.iterator();
-        String msgId;
-        List<String> providers;
-        String providerString = "";
-        while (it.hasNext()) {
-            msgId = it.next();
-            providers = serviceProviders.get(msgId);
-            Iterator<String> pit = providers.iterator();
-            while (pit.hasNext()) {
-                if (providerString.equals("")) {
-                    providerString = (String) pit.next();
-                } else {
-                    providerString = providerString + "#" + (String) pit.next();
-                }
-            }
-            properties.put(prefix + "." + msgId, providerString);
-            providerString = "";
-        }
-    }
+    // Event registration ....................................................
 
-    public synchronized void incrementNumReq() {
+    public void incrementNumReq() {
         numReq++;
     }
 
-    public synchronized void incrementSearchSuccess(String service) {
-        incrementHashVal(service, searchSuccess);
-    }
-
-    public synchronized void incrementInvokeSuccess(String service) {
-        incrementHashVal(service, invokeSuccess);
+    public void incrementSearchSuccess(String service) {
+        int i = serviceIndex(service);
+        if (i >= 0) {
+            searchSuccess[i]++;
+        }
     }
 
-    private synchronized void incrementHashVal(String key, HashMap<String, Integer> map) {
-        if (map.containsKey(key)) {
-            Object val = map.get(key);
-            if (val == null) {
-                map.remove(key);
-                map.put(key, new Integer(1));
-            } else {
-                map.remove(key);
-                map.put(key, ((Integer) val) + 1);
-            }
-        } else {
-            map.put(key, new Integer(1));
+    public void incrementInvokeSuccess(String service) {
+        int i = serviceIndex(service);
+        if (i >= 0) {
+            invokeSuccess[i]++;
         }
     }
 
     public void registerBindStartTime(String service, String msgId, Long time) {
-        HashMap<String, List<Long>> entry = bindTimes.get(service);
-        if (entry == null) {
-            List<Long> list = new ArrayList<Long>();
-            list.add(null);
-            list.add(null);
-            list.set(0, time);
-            HashMap<String, List<Long>> newEntry = new HashMap<String, List<Long>>();
-            newEntry.put(msgId, list);
-            bindTimes.put(service, newEntry);
+        int i = serviceIndex(service);
+        if (i >= 0) {
+            pending.setIfUnset(pending.get(requestId(msgId), true), PendingRequests.BIND_START, i, time);
         }
     }
 
     public void registerBindEndTime(String service, String msgId, Long time) {
-        HashMap<String, List<Long>> entry = bindTimes.get(service);
-        if (entry != null) {
-            List<Long> list = entry.get(msgId);
-            if (list != null) {
-                list.set(1, time);
+        int i = serviceIndex(service);
+        int slot = pending.get(requestId(msgId), false);
+        if (i < 0 || slot < 0) {
+            return;
+        }
+        long start = pending.getTime(slot, PendingRequests.BIND_START, i);
+        if (start != PendingRequests.UNSET) {
+            add(bindDurations, i, time - start);
+            long startNext = pending.getTime(slot, PendingRequests.BIND_START, nextService(i));
+            if (startNext != PendingRequests.UNSET) {
+                add(forwardToBindDurations, i, startNext - time);
             }
         }
     }
 
     public void registerForwardToExecStartTime(String service, String msgId, Long time) {
-        HashMap<String, List<Long>> entry = forwardToExecTimes.get(service);
-        if (entry == null) {
-            List<Long> list = new ArrayList<Long>();
-            list.add(null);
-            list.add(null);
-            list.set(0, time);
-            HashMap<String, List<Long>> newEntry = new HashMap<String, List<Long>>();
-            newEntry.put(msgId, list);
-            forwardToExecTimes.put(service, newEntry);
+        int i = serviceIndex(service);
+        if (i >= 0) {
+            pending.setIfUnset(pending.get(requestId(msgId), true), PendingRequests.FWD_START, i, time);
         }
     }
 
+    /**
+     * Register arrival of a request at a service. Arrival at the destination
+     * completes the request.
+     */
     public void registerForwardToExecEndTime(String service, String msgId, Long time) {
-        HashMap<String, List<Long>> entry = forwardToExecTimes.get(service);
-        if (entry != null) {
-            List<Long> list = entry.get(msgId);
-            if (list != null) {
-                list.set(1, time);
-            }
+        int i = serviceIndex(service);
+        long id = requestId(msgId);
+        int slot = pending.get(id, false);
+        if (i < 0 || slot < 0) {
+            return;
         }
-    }
-
-    public synchronized void addServiceProvider(String msgId, String providerId) {
-        List<String> providers = serviceProviders.get(msgId);
-        if (providers == null) {
-            providers = new ArrayList<String>();
-            serviceProviders.put(msgId, providers);
+        long start = pending.getTime(slot, PendingRequests.FWD_START, i);
+        if (start != PendingRequests.UNSET) {
+            add(forwardToExecDurations, i, time - start);
+            pending.setTime(slot, PendingRequests.FWD_START, i, PendingRequests.UNSET);
+        }
+        if (i == SERVICE_DST) {
+            long compositionStart = pending.getTime(slot, PendingRequests.BIND_START, 0);
+            if (compositionStart != PendingRequests.UNSET) {
+                compositionDurations.add((time - compositionStart) / DUR_UNIT);
+            }
+            pending.remove(id);
         }
-        providers.add(providerId);
-    }
-
-    public synchronized List<String> getServiceProvidersForMessage(String msgId) {
-        return serviceProviders.get(msgId);
     }
 
-    public synchronized boolean providerBoundToCompositionRequest(String msgId, String providerId) {
-        List<String> providers = serviceProviders.get(msgId);
-        if (providers == null) {
-            return false;
-        } else {
-            return providers.contains(providerId);
-        }
+    public void addServiceProvider(String msgId, String providerId) {
+        Integer count = providerBindings.get(providerId);
+        providerBindings.put(providerId, count == null ? 1 : count + 1);
     }
 
-    public synchronized String getLastServiceBound() {
+    public String getLastServiceBound() {
         return lastServiceBound;
     }
 
-    public synchronized void setLastServiceBound(String lastServiceBound) {
+    public void setLastServiceBound(String lastServiceBound) {
         DucksCompositionStats.lastServiceBound = lastServiceBound;
     }
 
-    public synchronized String getLastServiceExecuted() {
+    public String getLastServiceExecuted() {
         return lastServiceExecuted;
     }
 
-    public synchronized void setLastServiceExecuted(String lastServiceExecuted) {
+    public void setLastServiceExecuted(String lastServiceExecuted) {
         DucksCompositionStats.lastServiceExecuted = lastServiceExecuted;
     }
 
-    public synchronized String getiKnowsLastServiceBound() {
+    public String getiKnowsLastServiceBound() {
         return iKnowsLastServiceBound;
     }
 
-    public synchronized void setiKnowsLastServiceBound(String iKnowsLastServiceBound) {
+    public void setiKnowsLastServiceBound(String iKnowsLastServiceBound) {
         DucksCompositionStats.iKnowsLastServiceBound = iKnowsLastServiceBound;
     }
 
-    public synchronized String getiKnowsLastServiceExecuted() {
+    public String getiKnowsLastServiceExecuted() {
         return iKnowsLastServiceExecuted;
     }
 
-    public synchronized void setiKnowsLastServiceExecuted(String iKnowsLastServiceExecuted) {
+    public void setiKnowsLastServiceExecuted(String iKnowsLastServiceExecuted) {
         DucksCompositionStats.iKnowsLastServiceExecuted = iKnowsLastServiceExecuted;
     }
 
+    /**
+     * Start times of requests in progress: open addressing hash table from
+     * request id to a slot of start times (binding and forwarding for each
+     * service). When more than the maximum number of requests are in
+     * progress, the oldest one is dropped.
+     */
+    private static class PendingRequests
+    {
+        static final long UNSET      = Long.MIN_VALUE;
+        static final int  BIND_START = 0;
+        static final int  FWD_START  = 1;
+
+        private static final long EMPTY = -1;
+        private static final int  WIDTH = 2 * SERVICES;
+
+        private int       max;
+        private int       size;
+        private long[]    ids;
+        private long[]    times;
+
+        // request ids in order of arrival (possibly already completed)
+        private long[]    order;
+        private int       orderHead;
+        private int       orderSize;
+
+        PendingRequests(int max) {
+            this.max = max;
+            order = new long[max];
+            allocate(16);
+        }
+
+        private void allocate(int capacity) {
+            ids = new long[capacity];
+            Arrays.fill(ids, EMPTY);
+            times = new long[capacity * WIDTH];
+        }
+
+        private int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & (ids.length - 1);
+        }
+
+        /**
+         * Return slot of request, creating it if asked to, or -1
+         */
+        int get(long id, boolean create) {
+            int slot = hash(id);
+            while (ids[slot] != EMPTY) {
+                if (ids[slot] == id) {
+                    return slot;
+                }
+                slot = (slot + 1) & (ids.length - 1);
+            }
+            if (!create) {
+                return -1;
+            }
+            // make room
+            if (orderSize == max) {
+                long oldest = order[orderHead];
+                orderHead = (orderHead + 1) % max;
+                orderSize--;
+                remove(oldest);
+            }
+            if (2 * (size + 1) > ids.length) {
+                grow();
+            }
+            order[(orderHead + orderSize) % max] = id;
+            orderSize++;
+            size++;
+            slot = hash(id);
+            while (ids[slot] != EMPTY) {
+                slot = (slot + 1) & (ids.length - 1);
+            }
+            ids[slot] = id;
+            Arrays.fill(times, slot * WIDTH, (slot + 1) * WIDTH, UNSET);
+            return slot;
+        }
+
+        long getTime(int slot, int kind, int service) {
+            return times[slot * WIDTH + kind * SERVICES + service];
+        }
+
+        void setTime(int slot, int kind, int service, long time) {
+            times[slot * WIDTH + kind * SERVICES + service] = time;
+        }
+
+        void setIfUnset(int slot, int kind, int service, long time) {
+            if (getTime(slot, kind, service) == UNSET) {
+                setTime(slot, kind, service, time);
+            }
+        }
+
+        /**
+         * Remove request, if present, moving following entries of its
+         * cluster back
+         */
+        void remove(long id) {
+            int slot = get(id, false);
+            if (slot < 0) {
+                return;
+            }
+            size--;
+            int mask = ids.length - 1;
+            int free = slot;
+            int next = (free + 1) & mask;
+            while (ids[next] != EMPTY) {
+                int home = hash(ids[next]);
+                // move entry, if its home is not between free and next
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    ids[free] = ids[next];
+                    System.arraycopy(times, next * WIDTH, times, free * WIDTH, WIDTH);
+                    free = next;
+                }
+                next = (next + 1) & mask;
+            }
+            ids[free] = EMPTY;
+        }
+
+        private void grow() {
+            long[] oldIds = ids;
+            long[] oldTimes = times;
+            allocate(oldIds.length * 2);
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) {
+                    int slot = hash(oldIds[i]);
+                    while (ids[slot] != EMPTY) {
+                        slot = (slot + 1) & (ids.length - 1);
+                    }
+                    ids[slot] = oldIds[i];
+                    System.arraycopy(oldTimes, i * WIDTH, times, slot * WIDTH, WIDTH);
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,201 @@
+/*
+ * Ulm University DUCKS project
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ */
+package ext.util.stats;
+
+import java.util.Arrays;
+
+import ext.util.ExtendedProperties;
+
+/**
+ * Summary statistics of a stream of values in constant memory: count, mean,
+ * variance (Welford's method), minimum, maximum, and median and 95th
+ * percentile estimated with the P-square algorithm of Jain and Chlamtac, which
+ * keeps five markers per quantile instead of the values.
+ */
+public class StreamingStats
+{
+
+    private long     count;
+    private double   mean;
+    private double   m2;
+    private double   min    = Double.POSITIVE_INFINITY;
+    private double   max    = Double.NEGATIVE_INFINITY;
+
+    private Quantile median = new Quantile(0.5);
+    private Quantile p95    = new Quantile(0.95);
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        median.add(value);
+        p95.add(value);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    public double getMedian() {
+        return median.get();
+    }
+
+    public double getPercentile95() {
+        return p95.get();
+    }
+
+    /**
+     * Put statistics into result properties, as prefix.count, prefix.mean,
+     * prefix.stddev, prefix.min, prefix.max, prefix.median and prefix.p95
+     *
+     * @param properties
+     *            Result properties
+     * @param prefix
+     *            Result name prefix
+     */
+    public void putStats(ExtendedProperties properties, String prefix) {
+        properties.put(prefix + ".count", Long.toString(count));
+        properties.put(prefix + ".mean", Double.toString(getMean()));
+        properties.put(prefix + ".stddev", Double.toString(getStdDev()));
+        properties.put(prefix + ".min", Double.toString(getMin()));
+        properties.put(prefix + ".max", Double.toString(getMax()));
+        properties.put(prefix + ".median", Double.toString(getMedian()));
+        properties.put(prefix + ".p95", Double.toString(getPercentile95()));
+    }
+
+    /**
+     * P-square estimator of one quantile
+     */
+    private static class Quantile
+    {
+        private double   p;
+        private int      count;
+        // marker heights, positions, desired positions and their increments
+        private double[] q  = new double[5];
+        private int[]    n  = new int[5];
+        private double[] nd = new double[5];
+        private double[] dn = new double[5];
+
+        Quantile(double p) {
+            this.p = p;
+        }
+
+        void add(double x) {
+            if (count < 5) {
+                q[count++] = x;
+                if (count == 5) {
+                    Arrays.sort(q);
+                    for (int i = 0; i < 5; i++) {
+                        n[i] = i + 1;
+                    }
+                    nd[0] = 1;
+                    nd[1] = 1 + 2 * p;
+                    nd[2] = 1 + 4 * p;
+                    nd[3] = 3 + 2 * p;
+                    nd[4] = 5;
+                    dn[0] = 0;
+                    dn[1] = p / 2;
+                    dn[2] = p;
+                    dn[3] = (1 + p) / 2;
+                    dn[4] = 1;
+                }
+                return;
+            }
+            count++;
+
+            // find cell of x, adjusting extreme markers
+            int k;
+            if (x < q[0]) {
+                q[0] = x;
+                k = 0;
+            } else if (x >= q[4]) {
+                q[4] = x;
+                k = 3;
+            } else {
+                k = 0;
+                while (x >= q[k + 1]) {
+                    k++;
+                }
+            }
+            for (int i = k + 1; i < 5; i++) {
+                n[i]++;
+            }
+            for (int i = 0; i < 5; i++) {
+                nd[i] += dn[i];
+            }
+
+            // adjust middle markers
+            for (int i = 1; i < 4; i++) {
+                double d = nd[i] - n[i];
+                if ((d >= 1 && n[i + 1] - n[i] > 1) || (d <= -1 && n[i - 1] - n[i] < -1)) {
+                    int s = d > 0 ? 1 : -1;
+                    double qp = q[i]
+                            + (double) s
+                            / (n[i + 1] - n[i - 1])
+                            * ((n[i] - n[i - 1] + s) * (q[i + 1] - q[i]) / (n[i + 1] - n[i]) + (n[i + 1] - n[i] - s)
+                                    * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+                    if (q[i - 1] < qp && qp < q[i + 1]) {
+                        q[i] = qp;
+                    } else {
+                        q[i] = q[i] + s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+                    }
+                    n[i] += s;
+                }
+            }
+        }
+
+        double get() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (count <= 5) {
+                // exact (nearest rank) for few values
+                double[] v = new double[count];
+                System.arraycopy(q, 0, v, 0, count);
+                Arrays.sort(v);
+                int rank = (int) Math.ceil(p * count);
+                return v[Math.max(0, rank - 1)];
+            }
+            return q[2];
+        }
+    }
+
+}
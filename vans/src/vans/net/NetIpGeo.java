@@ -25,6 +25,7 @@ import jist.swans.field.Field.RadioData;
 import jist.swans.mac.MacAddress;
 import jist.swans.misc.Mapper;
 import jist.swans.misc.Util;
+import jist.swans.net.DupCache;
 import jist.swans.net.NetAddress;
 import jist.swans.net.NetInterface;
 import jist.swans.net.NetIpBase;
@@ -34,8 +35,6 @@ import jist.swans.route.RouteInterface;
 
 import org.apache.log4j.Logger;
 
-import ext.util.CacheMap;
-
 /**
  * Extension of NetIP that considers geographic addressing modes in NetAddress
  * 
@@ -48,20 +47,19 @@ public class NetIpGeo extends NetIpBase implements NetInterface
 
     private static Logger     log               = Logger.getLogger(NetIpGeo.class.getName());
 
-    private static final int  DUP_DATABASE_SIZE = 20;
-    private static final long DUP_DATABASE_TIME = 10 * Constants.MINUTE;
+    public static final int   DUP_DATABASE_SIZE = 20;
+    public static final long  DUP_DATABASE_TIME = 10 * Constants.MINUTE;
     public static final long  FORWARDING_JITTER = 200 * Constants.MICRO_SECOND;
 
     private final boolean     geoOption;
     private RadioData         localRadio;
-    private CacheMap          database;
     private RouteInterface    routeNonEntity;
 
     public NetIpGeo(NetAddress addr, Mapper protocolMap, PacketLoss in, PacketLoss out, RadioData rd, boolean piggy) {
         super(addr, protocolMap, in, out);
         localRadio = rd;
         geoOption = piggy;
-        database = new CacheMap(DUP_DATABASE_SIZE);
+        setDupCache(new DupCache(DUP_DATABASE_SIZE, DUP_DATABASE_TIME));
     }
 
     /**
@@ -80,53 +78,15 @@ public class NetIpGeo extends NetIpBase implements NetInterface
         return super.isForMe(msg);
     }
 
-    protected boolean isDup(NetMessage.Ip msg) {
-
-        // Beacons should not fill up the dup database
-        // if (msg.getProtocol()==Constants.NET_PROTOCOL_CGGC) return false;
-        // Loopback delivery is not suspect to dup production
-        if (NetAddress.LOCAL.equals(msg.getDst()))
-            return false;
-
-        Long key = new Long(((long) msg.getId() << 32) + msg.getSrc().getIP().hashCode());
-        Long dupTimestamp = (Long) database.put(key, new Long(JistAPI.getTime()));
-
-        log.debug("DUP check: here=" + localAddr + " msg=" + msg.getSrc() + "/" + msg.getId() + " key=" + key
-                + " dupTime=" + dupTimestamp);
-
-        if (dupTimestamp == null) {
-            return false; // fist-time delivery
-        } else if (dupTimestamp.longValue() + DUP_DATABASE_TIME < (JistAPI.getTime())) {
-            return false; // dup was stale
-        } else {
-            log.debug("DUP found, here=" + localAddr + " msg=" + msg.getSrc() + "/" + msg.getId());
-            return true; // dup detected
-        }
-
-    }
-
     /** {@inheritDoc} */
     public void send(NetMessage.Ip msg, int interfaceId, MacAddress nextHop) {
 
         log.debug("send here=" + localAddr + " to=" + nextHop + " msg=" + msg.getSrc() + "/" + msg.getId() + " iid="
                 + interfaceId);
 
-        if (geoOption) {
-            try {
-                // TODO This throws UnsupportedOperationExceptions!!!
-                // because getOptions() returns an unmodifiable map, if the
-                // packet is frozen.
-                // Then, the operation "put" is of course not allowed in such a
-                // map.
-                // -> WORKAROUND: check before, if packet is frozen
-                if (!msg.isFrozen()) {
-                    msg.getOptions()
-                            .put(Constants.IP_OPTION_HOPLOC, new NetMessage.IpOptionHopLoc(localRadio.getLoc()));
-                }
-            } catch (UnsupportedOperationException e) {
-                System.out.println(e);
-                // do nothing if options were frozen
-            }
+        // options of frozen packets cannot be set
+        if (geoOption && !msg.isFrozen()) {
+            msg.setOption(Constants.IP_OPTION_HOPLOC, new NetMessage.IpOptionHopLoc(localRadio.getLoc()));
         }
 
         super.send(msg, interfaceId, nextHop);
@@ -150,8 +110,8 @@ public class NetIpGeo extends NetIpBase implements NetInterface
                 log.debug("sendIp " + " here=" + localAddr + " msg=" + msg.getSrc() + "/" + msg.getId());
 
                 // First add packet to the local dup database
-                Long key = new Long(((long) msg.getId() << 32) + msg.getSrc().getIP().hashCode());
-                database.put(key, new Long(JistAPI.getTime()));
+                if (dupCache != null)
+                    dupCache.add(DupCache.key(msg), JistAPI.getTime());
 
                 // GEO[BROAD|MULTI]CAST can additionally send packets to upper
                 // layers via loop
@@ -165,7 +165,7 @@ public class RouteCGGC implements RouteInterface.Cggc
         NetMessage.Ip ipMsg = (NetMessage.Ip) msg;
 
         // process options
-        NetMessage.IpOption ipOpt = (NetMessage.IpOptionHopLoc) ipMsg.getOptions().get(hopLoc);
+        NetMessage.IpOption ipOpt = (NetMessage.IpOptionHopLoc) ipMsg.getOption(hopLoc);
         if (ipOpt != null)
             updateLmp(interfaceId, ((NetMessage.IpOptionHopLoc) ipOpt).getLoc(), lastHop);
 
@@ -47,6 +47,8 @@ public abstract class AStarNode implements Comparable
     public AStarNode pathParent;
     public float     costFromStart;
     public float     estimatedCostToGoal;
+    /** position in the open list of a search, or -1 if not queued */
+    int              heapIndex = -1;
 
     public float getCost() {
         return costFromStart + estimatedCostToGoal;
@@ -77,4 +79,13 @@ public abstract class AStarNode implements Comparable
      * Gets the children (AKA "neighbors" or "adjacent nodes") of this node.
      */
     public abstract List getNeighbors();
+
+    /**
+     * Gets the key under which paths from or to this node may be cached. Two
+     * nodes with equal keys must yield the same path. Returns null, disabling
+     * caching, unless overridden.
+     */
+    public Object getPathKey() {
+        return null;
+    }
 }
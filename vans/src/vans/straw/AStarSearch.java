@@ -34,9 +34,14 @@
  */
 package vans.straw;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The AStarSearch class, along with the AStarNode class, implements a generic
@@ -51,23 +56,142 @@ public class AStarSearch
     private static final boolean DEBUG       = false;
 
     /**
-     * A simple priority list, also called a priority queue. Objects in the list
-     * are ordered by their priority, determined by the object's Comparable
-     * interface. The highest priority item is first in the list.
+     * A priority queue of AStarNodes, implemented as a binary heap. The node
+     * with the lowest cost is first; among nodes of equal cost, the one added
+     * last is first.
      */
-    public static class PriorityList extends LinkedList
+    public static class PriorityList
     {
+        /** heap of queued nodes */
+        private AStarNode[] nodes = new AStarNode[64];
+        /** insertion number of each queued node, for breaking ties */
+        private long[]      order = new long[64];
+        /** number of queued nodes */
+        private int         size;
+        /** number of nodes added so far */
+        private long        added;
 
-        private static final long serialVersionUID = -4751049056047615550L;
+        public boolean isEmpty() {
+            return size == 0;
+        }
 
-        public void add(Comparable object) {
-            for (int i = 0; i < size(); i++) {
-                if (object.compareTo(get(i)) <= 0) {
-                    add(i, object);
-                    return;
-                }
+        public int size() {
+            return size;
+        }
+
+        public void add(AStarNode node) {
+            if (size == nodes.length) {
+                AStarNode[] nodes2 = new AStarNode[size * 2];
+                System.arraycopy(nodes, 0, nodes2, 0, size);
+                nodes = nodes2;
+                long[] order2 = new long[size * 2];
+                System.arraycopy(order, 0, order2, 0, size);
+                order = order2;
             }
-            addLast(object);
+            siftUp(size++, node, added++);
+        }
+
+        public AStarNode removeFirst() {
+            AStarNode first = nodes[0];
+            first.heapIndex = -1;
+            size--;
+            if (size > 0) {
+                siftDown(0, nodes[size], order[size]);
+            }
+            nodes[size] = null;
+            return first;
+        }
+
+        /**
+         * Restore the position of a queued node after its cost has decreased.
+         */
+        public void update(AStarNode node) {
+            int i = node.heapIndex;
+            // nodes are shared between searches; check this list holds it
+            if (i >= 0 && i < size && nodes[i] == node) {
+                siftUp(i, node, order[i]);
+            }
+        }
+
+        /** whether node a with insertion number ia precedes node b. */
+        private static boolean precedes(AStarNode a, long ia, AStarNode b, long ib) {
+            int c = a.compareTo(b);
+            return c < 0 || (c == 0 && ia > ib);
+        }
+
+        private void siftUp(int i, AStarNode node, long n) {
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (!precedes(node, n, nodes[parent], order[parent]))
+                    break;
+                nodes[i] = nodes[parent];
+                nodes[i].heapIndex = i;
+                order[i] = order[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            node.heapIndex = i;
+            order[i] = n;
+        }
+
+        private void siftDown(int i, AStarNode node, long n) {
+            int half = size >> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < size && precedes(nodes[right], order[right], nodes[child], order[child]))
+                    child = right;
+                if (!precedes(nodes[child], order[child], node, n))
+                    break;
+                nodes[i] = nodes[child];
+                nodes[i].heapIndex = i;
+                order[i] = order[child];
+                i = child;
+            }
+            nodes[i] = node;
+            node.heapIndex = i;
+            order[i] = n;
+        }
+    }
+
+    /**
+     * A bounded cache of paths, which evicts the least recently used path. It
+     * can be shared by all searches on the same graph, and is passed to the
+     * AStarSearch constructor in place of a plain HashMap. Paths are only
+     * cached between nodes that provide a path key.
+     */
+    public static class PathCache extends LinkedHashMap
+    {
+        private static final long serialVersionUID = 2890385093456170411L;
+
+        /** maximum number of cached paths */
+        private final int         capacity;
+        /** minimum length of cached paths */
+        private final int         minLength;
+        /** number of lookups and hits, for statistics */
+        private long              lookups, hits;
+
+        /**
+         * PathCache constructor
+         * 
+         * @param capacity
+         *            the maximum number of cached paths
+         * @param minLength
+         *            the minimum length of a path worth caching
+         */
+        public PathCache(int capacity, int minLength) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.minLength = minLength;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > capacity;
+        }
+
+        /** Returns the fraction of lookups that found a cached path. */
+        public double getHitRatio() {
+            return lookups == 0 ? 0 : (double) hits / lookups;
         }
     }
 
@@ -112,20 +236,59 @@ public class AStarSearch
 
     /**
      * Find the path from the start node to the end node. A list of AStarNodes
-     * is returned, or null if the path is not found.
+     * is returned, or null if the path is not found. Paths are looked up in,
+     * and added to, the path cache, if any; the caller receives its own copy.
      */
     public LinkedList findPath(AStarNode startNode, AStarNode goalNode) {
+        if (cachedPaths == null) {
+            return search(startNode, goalNode);
+        }
+        Object startKey = startNode.getPathKey(), goalKey = goalNode.getPathKey();
+        if (startKey == null || goalKey == null) {
+            return search(startNode, goalNode);
+        }
+        List key = new ArrayList(2);
+        key.add(startKey);
+        key.add(goalKey);
+        PathCache cache = cachedPaths instanceof PathCache ? (PathCache) cachedPaths : null;
+        if (cache != null) {
+            cache.lookups++;
+        }
+        List cached = (List) cachedPaths.get(key);
+        if (cached != null) {
+            if (cache != null) {
+                cache.hits++;
+            }
+            return new LinkedList(cached);
+        }
+        LinkedList path = search(startNode, goalNode);
+        if (path.isEmpty() || path.getFirst() != null) {
+            if (cache == null || path.size() >= cache.minLength) {
+                cachedPaths.put(key, new ArrayList(path));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Perform the A* search from the start node to the end node.
+     */
+    protected LinkedList search(AStarNode startNode, AStarNode goalNode) {
 
         PriorityList openList = new PriorityList();
-        LinkedList closedList = new LinkedList();
+        // open and closed nodes, indexed by node equality
+        HashMap open = new HashMap();
+        LinkedHashSet closed = new LinkedHashSet();
 
         startNode.costFromStart = 0;
         startNode.estimatedCostToGoal = startNode.getEstimatedCost(goalNode);
         startNode.pathParent = null;
         openList.add(startNode);
+        open.put(startNode, startNode);
 
         while (!openList.isEmpty()) {
-            AStarNode node = (AStarNode) openList.removeFirst();
+            AStarNode node = openList.removeFirst();
+            open.remove(node);
 
             if (node.equals(goalNode)) {
 
@@ -136,8 +299,9 @@ public class AStarSearch
             List neighbors = node.getNeighbors();
             for (int i = 0; i < neighbors.size(); i++) {
                 AStarNode neighborNode = (AStarNode) neighbors.get(i);
-                boolean isOpen = openList.contains(neighborNode);
-                boolean isClosed = closedList.contains(neighborNode);
+                AStarNode openNode = (AStarNode) open.get(neighborNode);
+                boolean isOpen = openNode != null;
+                boolean isClosed = closed.contains(neighborNode);
                 float costFromStart = node.costFromStart + node.getCost(neighborNode);
 
                 // check if the neighbor node has not been
@@ -151,14 +315,17 @@ public class AStarSearch
                         System.out.println("Estimated cost to goal from : " + neighborNode.getEstimatedCost(goalNode));
                     }
                     if (isClosed) {
-                        closedList.remove(neighborNode);
+                        closed.remove(neighborNode);
                     }
                     if (!isOpen) {
                         openList.add(neighborNode);
+                        open.put(neighborNode, neighborNode);
+                    } else if (openNode == neighborNode) {
+                        openList.update(neighborNode);
                     }
                 }
             }
-            closedList.add(node);
+            closed.add(node);
         }
 
         // no path found
@@ -168,6 +335,7 @@ public class AStarSearch
         // there must be some kind of problem with road and I want to remove it
         // from the grid. So I'm returning the closed list with a null first
         // value.
+        LinkedList closedList = new LinkedList(closed);
         closedList.addFirst(null);
         return closedList;
     }
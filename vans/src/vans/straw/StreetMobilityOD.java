@@ -56,7 +56,6 @@ import vans.straw.streets.SegmentNodeInfo;
 public class StreetMobilityOD extends StreetMobility
 {
     // TODO add API support for flows (sets of predefined OD pairs)
-    // TODO caching of shortest paths will be extremely useful for performance
 
     /**
      * 
@@ -86,7 +85,7 @@ public class StreetMobilityOD extends StreetMobility
     Vector                       destinationAddress     = new Vector();
     /** cache of SegmentNodes */
     Vector                       segmentNodes;
-    /** for caching paths, not currently implemented */
+    /** cache of paths, shared by all nodes */
     HashMap                      hm                     = null;
     /**
      * Helper class for referencing StreetMobility objects in the AStarSearch
@@ -97,6 +96,8 @@ public class StreetMobilityOD extends StreetMobility
     private static final boolean DEBUG_OD               = false;
     /** The minimum path to cache. */
     private static final int     MIN_CACHED_PATH_LENGTH = 5;
+    /** The maximum number of cached paths. */
+    private static final int     MAX_CACHED_PATHS       = 1000;
     /**
      * Determines the mode for OD motion. For example, origins and destinations
      * can be picked at random or fed from a list of sources and sinks.
@@ -135,6 +136,7 @@ public class StreetMobilityOD extends StreetMobility
         }
         sni = new SegmentNodeInfo(segments, shapes, intersections, streets, segmentNodes);
         SegmentNode.info = sni;
+        hm = new AStarSearch.PathCache(MAX_CACHED_PATHS, MIN_CACHED_PATH_LENGTH);
     }
 
     /*
@@ -31,6 +31,7 @@
  */
 package vans.straw.streets;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -248,6 +249,29 @@ public class SegmentNode extends AStarNode
         return ((SegmentNode) obj).segmentID == segmentID;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    public int hashCode() {
+        return segmentID;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see vans.straw.AStarNode#getPathKey()
+     */
+    public Object getPathKey() {
+        List key = new ArrayList(4);
+        key.add(new Integer(segmentID));
+        key.add(Boolean.valueOf(start));
+        key.add(Boolean.valueOf(firstNode));
+        key.add(point);
+        return key;
+    }
+
     /*
      * (non-Javadoc)
      * 